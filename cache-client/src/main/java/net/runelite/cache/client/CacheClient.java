@@ -37,16 +37,19 @@ import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
 import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import net.runelite.cache.fs.Archive;
 import net.runelite.cache.fs.Index;
-import net.runelite.cache.fs.Storage;
 import net.runelite.cache.fs.Store;
+import net.runelite.cache.fs.jagex.DiskStorage;
 import net.runelite.cache.index.ArchiveData;
 import net.runelite.cache.index.IndexData;
 import net.runelite.protocol.update.decoders.HandshakeResponseDecoder;
@@ -54,7 +57,6 @@ import net.runelite.protocol.update.encoders.ArchiveRequestEncoder;
 import net.runelite.protocol.update.encoders.EncryptionEncoder;
 import net.runelite.protocol.api.update.ArchiveRequestPacket;
 import net.runelite.protocol.api.login.HandshakeResponseType;
-import net.runelite.cache.util.Crc32;
 import net.runelite.protocol.api.handshake.UpdateHandshakePacket;
 import net.runelite.protocol.handshake.UpdateHandshakeEncoder;
 import org.slf4j.Logger;
@@ -80,7 +82,18 @@ public class CacheClient implements AutoCloseable
 	private Channel channel;
 
 	private CompletableFuture<HandshakeResponseType> handshakeFuture;
-	private final Queue<PendingFileRequest> requests = new ArrayDeque<>();
+
+	// all requests which have not yet finished, keyed by index and archive
+	private final IntObjectMap<PendingFileRequest> requests = new IntObjectHashMap<>();
+	// requests waiting for a free request slot before being sent
+	private final Queue<PendingFileRequest> queuedRequests = new ArrayDeque<>();
+	private int requestsInFlight;
+
+	private int workerThreads = Runtime.getRuntime().availableProcessors();
+	private int pipelineDepth = 256;
+	private boolean decompress;
+	private SyncManifest manifest;
+	private boolean disconnected;
 
 	public CacheClient(Store store, int clientRevision)
 	{
@@ -100,6 +113,12 @@ public class CacheClient implements AutoCloseable
 		this.watcher = watcher;
 	}
 
+	public CacheClient(Store store, String host, int clientRevision, DownloadWatcher watcher)
+	{
+		this(store, host, clientRevision);
+		this.watcher = watcher;
+	}
+
 	public void connect()
 	{
 		Bootstrap b = new Bootstrap();
@@ -159,6 +178,52 @@ public class CacheClient implements AutoCloseable
 		group.shutdownGracefully();
 	}
 
+	/**
+	 * Set the number of threads used to verify downloaded archives
+	 *
+	 * @param workerThreads
+	 */
+	public void setWorkerThreads(int workerThreads)
+	{
+		this.workerThreads = workerThreads;
+	}
+
+	/**
+	 * Set the number of downloaded archives which may be waiting to be
+	 * verified, and separately waiting to be written, before reading
+	 * from the server is paused
+	 *
+	 * @param pipelineDepth
+	 */
+	public void setPipelineDepth(int pipelineDepth)
+	{
+		this.pipelineDepth = pipelineDepth;
+	}
+
+	/**
+	 * Set whether downloaded archives are decompressed as part of their
+	 * verification. Archives which can't be decompressed, such as encrypted
+	 * archives, are verified by their crc only.
+	 *
+	 * @param decompress
+	 */
+	public void setDecompress(boolean decompress)
+	{
+		this.decompress = decompress;
+	}
+
+	/**
+	 * Set the manifest used to record downloaded archives, so that an
+	 * interrupted download can be resumed, and unchanged indexes skipped.
+	 * Stores on disk use the manifest in the store folder if none is set.
+	 *
+	 * @param manifest
+	 */
+	public void setManifest(SyncManifest manifest)
+	{
+		this.manifest = manifest;
+	}
+
 	public int getClientRevision()
 	{
 		return clientRevision;
@@ -201,12 +266,67 @@ public class CacheClient implements AutoCloseable
 	}
 
 	public void download() throws IOException
+	{
+		SyncManifest storeManifest = null;
+
+		if (store.getStorage() instanceof DiskStorage)
+		{
+			DiskStorage diskStorage = (DiskStorage) store.getStorage();
+
+			// reuse the sectors of archives which are downloaded again,
+			// otherwise the data file grows with every update
+			diskStorage.setOverwrite(true);
+
+			if (manifest == null)
+			{
+				// keep the manifest with the store so an interrupted
+				// download resumes where it left off
+				storeManifest = manifest = SyncManifest.forStore(diskStorage.getFolder());
+			}
+		}
+
+		try (DownloadPipeline pipeline = new DownloadPipeline(channel, store.getStorage(), watcher, manifest,
+			workerThreads, pipelineDepth, decompress))
+		{
+			download(pipeline);
+
+			logger.info("Downloaded {}", pipeline.getMetrics());
+		}
+		finally
+		{
+			if (storeManifest != null)
+			{
+				manifest = null;
+				storeManifest.close();
+			}
+		}
+	}
+
+	private void download(DownloadPipeline pipeline) throws IOException
 	{
 		Stopwatch stopwatch = Stopwatch.createStarted();
 
 		List<IndexInfo> indexes = requestIndexes();
+
+		if (manifest != null)
+		{
+			// skip the reference tables of indexes which have been fully downloaded
+			indexes.removeIf(this::isIndexComplete);
+		}
+
+		// request all of the reference tables up front
+		List<CompletableFuture<FileResult>> indexFutures = new ArrayList<>(indexes.size());
 		for (IndexInfo indexInfo : indexes)
 		{
+			indexFutures.add(requestFile(255, indexInfo.getId(), false));
+		}
+		channel.flush();
+
+		List<CompletableFuture<Void>> archiveFutures = new ArrayList<>();
+
+		for (int idx = 0; idx < indexes.size(); ++idx)
+		{
+			IndexInfo indexInfo = indexes.get(idx);
 			int i = indexInfo.getId();
 			int crc = indexInfo.getCrc();
 			int revision = indexInfo.getRevision();
@@ -242,7 +362,17 @@ public class CacheClient implements AutoCloseable
 
 			logger.info("Downloading index {}", i);
 
-			FileResult indexFileResult = requestFile(255, i, true).join();
+			FileResult indexFileResult;
+			try
+			{
+				indexFileResult = indexFutures.get(idx).join();
+			}
+			catch (CompletionException ex)
+			{
+				logger.warn("Unable to download index {}: {}", i, ex.getCause().getMessage());
+				continue;
+			}
+
 			indexFileResult.decompress(null);
 
 			logger.info("Downloaded index {}", i);
@@ -269,6 +399,8 @@ public class CacheClient implements AutoCloseable
 
 			logger.info("Index {} has {} archives", i, indexData.getArchives().length);
 
+			List<CompletableFuture<Void>> indexArchiveFutures = new ArrayList<>();
+
 			for (ArchiveData ad : indexData.getArchives())
 			{
 				Archive existing = index.getArchive(ad.getId());
@@ -282,6 +414,16 @@ public class CacheClient implements AutoCloseable
 					continue;
 				}
 
+				if (manifest != null && manifest.isComplete(i, ad.getId(), ad.getCrc(), ad.getRevision(),
+					SyncManifest.archiveOffset(store.getStorage(), i, ad.getId())))
+				{
+					// written by a previous download which didn't finish
+					logger.debug("Archive {}/{} in index {} has already been downloaded",
+						ad.getId(), indexData.getArchives().length, index.getId());
+					updateArchive(existing == null ? index.addArchive(ad.getId()) : existing, ad);
+					continue;
+				}
+
 				if (existing == null)
 				{
 					logger.info("Archive {}/{} in index {} is out of date, downloading",
@@ -307,67 +449,35 @@ public class CacheClient implements AutoCloseable
 					? index.addArchive(ad.getId())
 					: existing;
 
-				archive.setRevision(ad.getRevision());
-				archive.setCrc(ad.getCrc());
-				archive.setNameHash(ad.getNameHash());
-
-				// Add files
-				archive.setFileData(ad.getFiles());
+				updateArchive(archive, ad);
 
 				CompletableFuture<FileResult> future = requestFile(index.getId(), ad.getId(), false);
-				future.handle((fr, ex) ->
-				{
-					byte[] data = fr.getCompressedData();
-
-					Crc32 crc32 = new Crc32();
-					crc32.update(data, 0, data.length);
-					int hash = crc32.getHash();
-
-					if (hash != archive.getCrc())
-					{
-						logger.warn("crc mismatch on downloaded archive {}/{}: {} != {}",
-							archive.getIndex().getId(), archive.getArchiveId(),
-							hash, archive.getCrc());
-						throw new RuntimeException("crc mismatch");
-					}
-
-					if (watcher != null)
-					{
-						watcher.downloadComplete(archive, data);
-					}
-					else
-					{
-						try
-						{
-							Storage storage = store.getStorage();
-							storage.saveArchive(archive, data);
-						}
-						catch (IOException ex1)
-						{
-							logger.warn("unable to save archive data", ex1);
-						}
-					}
-					return null;
-				});
+				indexArchiveFutures.add(pipeline.submit(archive, future));
+			}
+
+			archiveFutures.addAll(indexArchiveFutures);
+
+			if (manifest != null)
+			{
+				// the index is complete once all of its archives have been written
+				CompletableFuture.allOf(indexArchiveFutures.toArray(new CompletableFuture[indexArchiveFutures.size()]))
+					.thenRun(() -> indexComplete(i, crc, revision));
 			}
+
+			// send the requests for this index while the next is processed
+			channel.flush();
 		}
 
-		// flush any pending requests
-		channel.flush();
+		// wait for pending requests, failures have already been logged
+		CompletableFuture.allOf(archiveFutures.toArray(new CompletableFuture[archiveFutures.size()]))
+			.handle((v, ex) -> null)
+			.join();
 
-		while (!requests.isEmpty())
+		synchronized (this)
 		{
-			// wait for pending requests
-			synchronized (this)
+			if (disconnected)
 			{
-				try
-				{
-					wait();
-				}
-				catch (InterruptedException ex)
-				{
-					logger.warn(null, ex);
-				}
+				throw new IOException("Connection closed before download completed");
 			}
 		}
 
@@ -375,42 +485,104 @@ public class CacheClient implements AutoCloseable
 		logger.info("Download completed in {}", stopwatch);
 	}
 
-	private synchronized CompletableFuture<FileResult> requestFile(int index, int fileId, boolean flush)
+	private static void updateArchive(Archive archive, ArchiveData ad)
+	{
+		archive.setRevision(ad.getRevision());
+		archive.setCrc(ad.getCrc());
+		archive.setNameHash(ad.getNameHash());
+
+		// Add files
+		archive.setFileData(ad.getFiles());
+	}
+
+	private boolean isIndexComplete(IndexInfo indexInfo)
+	{
+		Index index = store.findIndex(indexInfo.getId());
+
+		if (index != null && index.getCrc() == indexInfo.getCrc()
+			&& index.getRevision() == indexInfo.getRevision()
+			&& manifest.isIndexComplete(indexInfo.getId(), indexInfo.getCrc(), indexInfo.getRevision()))
+		{
+			logger.info("Index {} is up to date", indexInfo.getId());
+			return true;
+		}
+
+		return false;
+	}
+
+	private void indexComplete(int index, int crc, int revision)
+	{
+		try
+		{
+			manifest.indexComplete(index, crc, revision);
+		}
+		catch (IOException ex)
+		{
+			logger.warn("unable to update manifest", ex);
+		}
+	}
+
+	/**
+	 * Request a file from the server. If the maximum number of requests
+	 * are already outstanding the request is queued, and sent once a
+	 * response is received, so this never blocks.
+	 *
+	 * @param index index id
+	 * @param fileId archive id
+	 * @param flush whether to flush the request to the server now
+	 * @return
+	 */
+	private CompletableFuture<FileResult> requestFile(int index, int fileId, boolean flush)
 	{
 		if (state != ClientState.CONNECTED)
 		{
 			throw new IllegalStateException("Can't request files until connected!");
 		}
 
-		if (!flush)
+		int key = key(index, fileId);
+		PendingFileRequest pf;
+
+		synchronized (this)
 		{
-			while (requests.size() >= MAX_REQUESTS)
+			if (disconnected)
 			{
-				channel.flush();
+				CompletableFuture<FileResult> future = new CompletableFuture<>();
+				future.completeExceptionally(new IOException("Connection closed"));
+				return future;
+			}
 
-				try
-				{
-					wait();
-				}
-				catch (InterruptedException ex)
-				{
-					logger.warn("interrupted while waiting for requests", ex);
-				}
+			PendingFileRequest existing = requests.get(key);
+			if (existing != null)
+			{
+				// already requested
+				return existing.getFuture();
+			}
+
+			pf = new PendingFileRequest(index, fileId, new CompletableFuture<>());
+			requests.put(key, pf);
+
+			if (requestsInFlight >= MAX_REQUESTS)
+			{
+				logger.trace("Queueing request for {}/{}", index, fileId);
+				queuedRequests.add(pf);
+				return pf.getFuture();
 			}
+
+			++requestsInFlight;
 		}
 
+		send(pf, flush);
+		return pf.getFuture();
+	}
+
+	private void send(PendingFileRequest pf, boolean flush)
+	{
 		ArchiveRequestPacket archiveRequest = new ArchiveRequestPacket();
 		archiveRequest.setPriority(false);
-		archiveRequest.setIndex(index);
-		archiveRequest.setArchive(fileId);
+		archiveRequest.setIndex(pf.getIndex());
+		archiveRequest.setArchive(pf.getArchive());
 
-		CompletableFuture<FileResult> future = new CompletableFuture<>();
-		PendingFileRequest pf = new PendingFileRequest(index,
-			fileId, future);
-
-		logger.trace("Sending request for {}/{}", index, fileId);
-
-		requests.add(pf);
+		logger.trace("Sending request for {}/{}", pf.getIndex(), pf.getArchive());
 
 		if (!flush)
 		{
@@ -420,35 +592,79 @@ public class CacheClient implements AutoCloseable
 		{
 			channel.writeAndFlush(archiveRequest);
 		}
+	}
 
-		return future;
+	private static int key(int index, int archive)
+	{
+		return index << 24 | archive;
 	}
 
-	private PendingFileRequest findRequest(int index, int file)
+	/**
+	 * Fail all outstanding requests once the connection has closed
+	 */
+	void onDisconnect()
 	{
-		for (PendingFileRequest pr : requests)
+		List<PendingFileRequest> pending;
+
+		synchronized (this)
 		{
-			if (pr.getIndex() == index && pr.getArchive() == file)
-			{
-				return pr;
-			}
+			disconnected = true;
+			pending = new ArrayList<>(requests.values());
+			requests.clear();
+			queuedRequests.clear();
+			requestsInFlight = 0;
+		}
+
+		if (!pending.isEmpty())
+		{
+			logger.warn("Connection closed with {} requests outstanding", pending.size());
+		}
+
+		IOException ex = new IOException("Connection closed");
+		for (PendingFileRequest pr : pending)
+		{
+			pr.getFuture().completeExceptionally(ex);
 		}
-		return null;
 	}
 
-	protected synchronized void onFileFinish(int index, int file, byte[] compressedData)
+	protected void onFileFinish(int index, int file, byte[] compressedData)
 	{
-		PendingFileRequest pr = findRequest(index, file);
+		PendingFileRequest pr;
+		List<PendingFileRequest> toSend = null;
 
-		if (pr == null)
+		synchronized (this)
 		{
-			logger.warn("File download {}/{} with no pending request", index, file);
-			return;
-		}
+			pr = requests.remove(key(index, file));
+
+			if (pr == null)
+			{
+				logger.warn("File download {}/{} with no pending request", index, file);
+				return;
+			}
+
+			--requestsInFlight;
+
+			// fill the free request slots from the queue
+			while (requestsInFlight < MAX_REQUESTS && !queuedRequests.isEmpty())
+			{
+				if (toSend == null)
+				{
+					toSend = new ArrayList<>();
+				}
 
-		requests.remove(pr);
+				toSend.add(queuedRequests.poll());
+				++requestsInFlight;
+			}
+		}
 
-		notify();
+		if (toSend != null)
+		{
+			for (PendingFileRequest next : toSend)
+			{
+				send(next, false);
+			}
+			channel.flush();
+		}
 
 		FileResult result = new FileResult(index, file, compressedData);
 
@@ -37,6 +37,7 @@ public class CacheClientHandler extends ChannelInboundHandlerAdapter
 	public void channelInactive(ChannelHandlerContext ctx) throws Exception
 	{
 		logger.warn("Channel has gone inactive");
+		ctx.fireChannelInactive();
 	}
 
 	@Override
@@ -0,0 +1,370 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.client;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.netty.channel.Channel;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Storage;
+import net.runelite.cache.util.Crc32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Processes downloaded archives off of the network thread. Archives are
+ * verified, and optionally decompressed, on a pool of worker threads, and
+ * then handed to a single writer thread which writes them to storage in
+ * batches.
+ * <p>
+ * Both stages are bounded by the pipeline depth. Archives arrive on the
+ * channel's event loop, which must not block, so once the depth is
+ * reached reads from the server are paused by turning off the channel's
+ * auto read, and resumed once the stages have drained to half of it.
+ */
+class DownloadPipeline implements AutoCloseable
+{
+	private static final Logger logger = LoggerFactory.getLogger(DownloadPipeline.class);
+
+	private static final int MAX_BATCH = 64;
+	private static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+	private static final ArchiveWrite EOF = new ArchiveWrite(null, null, null);
+
+	private final Channel channel;
+	private final Storage storage;
+	private final DownloadWatcher watcher;
+	private final SyncManifest manifest;
+	private final boolean decompress;
+	private final int depth;
+
+	private final ThreadPoolExecutor workers;
+	private final BlockingQueue<ArchiveWrite> writeQueue;
+	private final Thread writer;
+
+	private final LongAdder archives = new LongAdder();
+	private final LongAdder bytes = new LongAdder();
+	private final long start = System.nanoTime();
+	private long lastProgress = start;
+
+	// archives received and not yet written, guarded by this
+	private int pending;
+	private boolean paused;
+
+	DownloadPipeline(Channel channel, Storage storage, DownloadWatcher watcher, SyncManifest manifest,
+		int threads, int depth, boolean decompress)
+	{
+		this.channel = channel;
+		this.storage = storage;
+		this.watcher = watcher;
+		this.manifest = manifest;
+		this.decompress = decompress;
+		this.depth = depth;
+
+		// the queue is not bounded here, reads are paused instead
+		workers = new ThreadPoolExecutor(threads, threads,
+			0L, TimeUnit.MILLISECONDS,
+			new LinkedBlockingQueue<>(),
+			new ThreadFactoryBuilder()
+				.setNameFormat("download-worker-%d")
+				.setDaemon(true)
+				.build());
+
+		writeQueue = new ArrayBlockingQueue<>(depth);
+		writer = new Thread(this::write, "download-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Verify and write an archive once it has been downloaded
+	 *
+	 * @param archive the archive, with its expected crc set
+	 * @param future future for the downloaded archive
+	 * @return a future which completes once the archive has been written
+	 */
+	CompletableFuture<Void> submit(Archive archive, CompletableFuture<FileResult> future)
+	{
+		CompletableFuture<Void> written = new CompletableFuture<>();
+		future.whenComplete((fr, ex) ->
+		{
+			if (ex != null)
+			{
+				written.completeExceptionally(ex);
+				return;
+			}
+
+			received();
+			written.whenComplete((v, e) -> processed());
+
+			try
+			{
+				workers.execute(() ->
+				{
+					try
+					{
+						byte[] data = verify(archive, fr);
+						writeQueue.put(new ArchiveWrite(archive, data, written));
+					}
+					catch (Exception e)
+					{
+						written.completeExceptionally(e);
+					}
+				});
+			}
+			catch (RejectedExecutionException e)
+			{
+				written.completeExceptionally(e);
+			}
+		});
+		return written;
+	}
+
+	private synchronized void received()
+	{
+		if (++pending >= depth && !paused)
+		{
+			logger.debug("Pausing reads with {} archives pending", pending);
+			paused = true;
+			channel.config().setAutoRead(false);
+		}
+	}
+
+	private synchronized void processed()
+	{
+		if (--pending <= depth / 2 && paused)
+		{
+			logger.debug("Resuming reads with {} archives pending", pending);
+			paused = false;
+			channel.config().setAutoRead(true);
+		}
+	}
+
+	private byte[] verify(Archive archive, FileResult fr)
+	{
+		byte[] data = fr.getCompressedData();
+		int hash;
+
+		if (decompress && decompress(fr))
+		{
+			// the crc is calculated as part of decompression
+			hash = fr.getCrc();
+		}
+		else
+		{
+			Crc32 crc32 = new Crc32();
+			crc32.update(data, 0, data.length);
+			hash = crc32.getHash();
+		}
+
+		if (hash != archive.getCrc())
+		{
+			logger.warn("crc mismatch on downloaded archive {}/{}: {} != {}",
+				archive.getIndex().getId(), archive.getArchiveId(),
+				hash, archive.getCrc());
+			throw new RuntimeException("crc mismatch");
+		}
+
+		return data;
+	}
+
+	private static boolean decompress(FileResult fr)
+	{
+		try
+		{
+			fr.decompress(null);
+			return fr.getContents() != null;
+		}
+		catch (IOException | RuntimeException ex)
+		{
+			// encrypted archives can't be decompressed without their keys
+			logger.debug("unable to decompress archive {}/{}", fr.getIndex(), fr.getFileId(), ex);
+			return false;
+		}
+	}
+
+	private void write()
+	{
+		List<ArchiveWrite> batch = new ArrayList<>(MAX_BATCH);
+
+		for (;;)
+		{
+			try
+			{
+				batch.add(writeQueue.take());
+			}
+			catch (InterruptedException ex)
+			{
+				logger.warn("interrupted while waiting for archives", ex);
+				return;
+			}
+
+			writeQueue.drainTo(batch, MAX_BATCH - 1);
+
+			for (ArchiveWrite w : batch)
+			{
+				if (w == EOF)
+				{
+					flushManifest();
+					progress();
+					return;
+				}
+
+				write(w);
+			}
+
+			batch.clear();
+
+			flushManifest();
+
+			long now = System.nanoTime();
+			if (now - lastProgress >= PROGRESS_INTERVAL)
+			{
+				lastProgress = now;
+				progress();
+			}
+		}
+	}
+
+	private void write(ArchiveWrite w)
+	{
+		try
+		{
+			if (watcher != null)
+			{
+				watcher.downloadComplete(w.archive, w.data);
+			}
+			else
+			{
+				storage.saveArchive(w.archive, w.data);
+			}
+		}
+		catch (IOException | RuntimeException ex)
+		{
+			logger.warn("unable to save archive {}/{}", w.archive.getIndex().getId(), w.archive.getArchiveId(), ex);
+			w.future.completeExceptionally(ex);
+			return;
+		}
+
+		if (manifest != null)
+		{
+			try
+			{
+				int index = w.archive.getIndex().getId();
+				int archive = w.archive.getArchiveId();
+				manifest.complete(index, archive, w.archive.getCrc(), w.archive.getRevision(),
+					SyncManifest.archiveOffset(storage, index, archive));
+			}
+			catch (IOException ex)
+			{
+				logger.warn("unable to update manifest", ex);
+			}
+		}
+
+		archives.increment();
+		bytes.add(w.data.length);
+
+		w.future.complete(null);
+	}
+
+	private void flushManifest()
+	{
+		if (manifest == null)
+		{
+			return;
+		}
+
+		try
+		{
+			manifest.flush();
+		}
+		catch (IOException ex)
+		{
+			logger.warn("unable to flush manifest", ex);
+		}
+	}
+
+	private void progress()
+	{
+		if (watcher != null)
+		{
+			watcher.downloadProgress(getMetrics());
+		}
+	}
+
+	DownloadMetrics getMetrics()
+	{
+		return new DownloadMetrics(archives.sum(), bytes.sum(), System.nanoTime() - start);
+	}
+
+	/**
+	 * Stop the pipeline once all submitted archives have been written
+	 */
+	@Override
+	public void close()
+	{
+		workers.shutdown();
+
+		try
+		{
+			while (!workers.awaitTermination(1, TimeUnit.SECONDS))
+			{
+				logger.debug("Waiting for download workers to finish...");
+			}
+
+			writeQueue.put(EOF);
+			writer.join();
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			writer.interrupt();
+		}
+	}
+
+	private static class ArchiveWrite
+	{
+		private final Archive archive;
+		private final byte[] data;
+		private final CompletableFuture<Void> future;
+
+		ArchiveWrite(Archive archive, byte[] data, CompletableFuture<Void> future)
+		{
+			this.archive = archive;
+			this.data = data;
+			this.future = future;
+		}
+	}
+}
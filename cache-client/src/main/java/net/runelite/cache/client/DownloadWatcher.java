@@ -29,5 +29,23 @@ import net.runelite.cache.fs.Archive;
 @FunctionalInterface
 public interface DownloadWatcher
 {
+	/**
+	 * Called from the writer thread once an archive has been downloaded
+	 * and verified. If a watcher is set archives are not written to the
+	 * store's storage by the client.
+	 *
+	 * @param archive
+	 * @param data compressed archive data
+	 */
 	void downloadComplete(Archive archive, byte[] data);
+
+	/**
+	 * Called from the writer thread periodically during a download, and
+	 * once when it finishes
+	 *
+	 * @param metrics
+	 */
+	default void downloadProgress(DownloadMetrics metrics)
+	{
+	}
 }
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.client;
+
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import net.runelite.cache.fs.Storage;
+import net.runelite.cache.fs.jagex.DiskStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent record of the archives which have been downloaded and
+ * written to a store, used to resume an interrupted download and to skip
+ * indexes which have not changed since the last download.
+ * <p>
+ * The manifest is an append only log of (index, archive, crc, revision,
+ * offset) records. The offset is where the archive starts in the data file
+ * of the store, so an archive whose index entry no longer points at the
+ * data which was written is downloaded again, or -1 if the store has no
+ * data file. Reference tables are recorded as archives of index 255, and
+ * are only recorded once every archive in the index has been written.
+ */
+public class SyncManifest implements Closeable
+{
+	private static final Logger logger = LoggerFactory.getLogger(SyncManifest.class);
+
+	public static final String FILE_NAME = "sync.manifest";
+
+	private static final int RECORD_SIZE = 24;
+
+	private final File file;
+	private final IntObjectMap<Entry> entries = new IntObjectHashMap<>();
+	private DataOutputStream out;
+	private int records;
+
+	public SyncManifest(File file) throws IOException
+	{
+		this.file = file;
+
+		if (file.exists())
+		{
+			load();
+		}
+
+		if (file.exists() && file.length() != (long) records * RECORD_SIZE)
+		{
+			// partially written record from an interrupted download
+			logger.warn("Manifest {} is truncated, rewriting", file);
+			compact();
+		}
+
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+	}
+
+	/**
+	 * Open the manifest for a store in the given folder
+	 *
+	 * @param folder store folder
+	 * @return
+	 * @throws IOException
+	 */
+	public static SyncManifest forStore(File folder) throws IOException
+	{
+		return new SyncManifest(new File(folder, FILE_NAME));
+	}
+
+	private void load() throws IOException
+	{
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+		{
+			for (;;)
+			{
+				int index = in.readInt();
+				int archive = in.readInt();
+				int crc = in.readInt();
+				int revision = in.readInt();
+				long offset = in.readLong();
+
+				entries.put(key(index, archive), new Entry(crc, revision, offset));
+				++records;
+			}
+		}
+		catch (EOFException ex)
+		{
+			// end of manifest
+		}
+
+		logger.debug("Loaded {} manifest entries from {} records", entries.size(), records);
+	}
+
+	/**
+	 * Find where an archive is stored in the data file of a storage
+	 *
+	 * @param storage
+	 * @param index
+	 * @param archive
+	 * @return the offset of the archive, or -1 if the storage has no data file
+	 * @throws IOException
+	 */
+	static long archiveOffset(Storage storage, int index, int archive) throws IOException
+	{
+		if (storage instanceof DiskStorage)
+		{
+			return ((DiskStorage) storage).getArchiveOffset(index, archive);
+		}
+
+		return -1L;
+	}
+
+	private static int key(int index, int archive)
+	{
+		return index << 24 | archive;
+	}
+
+	/**
+	 * Check if an archive has been written with the given crc and revision
+	 * to the given offset of the data file
+	 *
+	 * @param index
+	 * @param archive
+	 * @param crc
+	 * @param revision
+	 * @param offset
+	 * @return
+	 */
+	public synchronized boolean isComplete(int index, int archive, int crc, int revision, long offset)
+	{
+		Entry entry = entries.get(key(index, archive));
+		return entry != null && entry.crc == crc && entry.revision == revision && entry.offset == offset;
+	}
+
+	/**
+	 * Record an archive as having been written
+	 *
+	 * @param index
+	 * @param archive
+	 * @param crc
+	 * @param revision
+	 * @param offset offset of the archive in the data file, or -1
+	 * @throws IOException
+	 */
+	public synchronized void complete(int index, int archive, int crc, int revision, long offset) throws IOException
+	{
+		entries.put(key(index, archive), new Entry(crc, revision, offset));
+
+		out.writeInt(index);
+		out.writeInt(archive);
+		out.writeInt(crc);
+		out.writeInt(revision);
+		out.writeLong(offset);
+		++records;
+	}
+
+	/**
+	 * Check if every archive of an index has been written for the
+	 * reference table with the given crc and revision
+	 *
+	 * @param index
+	 * @param crc
+	 * @param revision
+	 * @return
+	 */
+	public boolean isIndexComplete(int index, int crc, int revision)
+	{
+		return isComplete(255, index, crc, revision, -1L);
+	}
+
+	public void indexComplete(int index, int crc, int revision) throws IOException
+	{
+		complete(255, index, crc, revision, -1L);
+		flush();
+	}
+
+	public synchronized void flush() throws IOException
+	{
+		out.flush();
+	}
+
+	@Override
+	public synchronized void close() throws IOException
+	{
+		out.close();
+
+		if (records > entries.size())
+		{
+			compact();
+		}
+	}
+
+	/**
+	 * Rewrite the manifest with only the latest record for each archive
+	 *
+	 * @throws IOException
+	 */
+	private void compact() throws IOException
+	{
+		File tmp = new File(file.getPath() + ".tmp");
+
+		try (DataOutputStream tmpOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))))
+		{
+			for (IntObjectMap.PrimitiveEntry<Entry> e : entries.entries())
+			{
+				int key = e.key();
+				tmpOut.writeInt(key >>> 24);
+				tmpOut.writeInt(key & 0xFFFFFF);
+				tmpOut.writeInt(e.value().crc);
+				tmpOut.writeInt(e.value().revision);
+				tmpOut.writeLong(e.value().offset);
+			}
+		}
+
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		records = entries.size();
+	}
+
+	private static class Entry
+	{
+		private final int crc;
+		private final int revision;
+		private final long offset;
+
+		Entry(int crc, int revision, long offset)
+		{
+			this.crc = crc;
+			this.revision = revision;
+			this.offset = offset;
+		}
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.client;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.util.Crc32;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class DownloadPipelineTest
+{
+	private static final int DEPTH = 4;
+
+	@Test
+	public void testBackPressure() throws Exception
+	{
+		EmbeddedChannel channel = new EmbeddedChannel();
+		CountDownLatch writable = new CountDownLatch(1);
+
+		DownloadWatcher watcher = (archive, data) ->
+		{
+			try
+			{
+				writable.await();
+			}
+			catch (InterruptedException ex)
+			{
+				throw new RuntimeException(ex);
+			}
+		};
+
+		try (DownloadPipeline pipeline = new DownloadPipeline(channel, null, watcher, null, 2, DEPTH, false))
+		{
+			Index index = new Index(0);
+			Random random = new Random(42L);
+			List<CompletableFuture<Void>> written = new ArrayList<>();
+
+			for (int i = 0; i < DEPTH; ++i)
+			{
+				assertTrue(channel.config().isAutoRead());
+
+				byte[] data = new byte[64];
+				random.nextBytes(data);
+
+				Crc32 crc32 = new Crc32();
+				crc32.update(data, 0, data.length);
+
+				Archive archive = index.addArchive(i);
+				archive.setCrc(crc32.getHash());
+
+				written.add(pipeline.submit(archive, CompletableFuture.completedFuture(new FileResult(0, i, data))));
+			}
+
+			// the writer is stuck, so reads are paused rather than blocking the event loop
+			assertFalse(channel.config().isAutoRead());
+
+			writable.countDown();
+			for (CompletableFuture<Void> future : written)
+			{
+				future.get(10, TimeUnit.SECONDS);
+			}
+
+			// reads are resumed by the writer thread once the archives are written
+			long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+			while (!channel.config().isAutoRead() && System.nanoTime() < end)
+			{
+				Thread.sleep(10);
+			}
+			assertTrue(channel.config().isAutoRead());
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.client;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SyncManifestTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testManifest() throws IOException
+	{
+		File file = folder.newFile();
+
+		try (SyncManifest manifest = new SyncManifest(file))
+		{
+			manifest.complete(0, 1, 42, 1, 520L);
+			manifest.complete(0, 1, 43, 2, 1040L);
+			manifest.indexComplete(0, 7, 1);
+		}
+
+		// rewritten with only the latest record for each archive
+		assertEquals(48, file.length());
+
+		try (SyncManifest manifest = new SyncManifest(file))
+		{
+			assertFalse(manifest.isComplete(0, 1, 42, 1, 520L));
+			assertTrue(manifest.isComplete(0, 1, 43, 2, 1040L));
+			// the index entry points somewhere else now
+			assertFalse(manifest.isComplete(0, 1, 43, 2, 520L));
+			assertFalse(manifest.isComplete(0, 1, 43, 2, -1L));
+			assertTrue(manifest.isIndexComplete(0, 7, 1));
+			assertFalse(manifest.isIndexComplete(1, 7, 1));
+		}
+	}
+
+	@Test
+	public void testTruncated() throws IOException
+	{
+		File file = folder.newFile();
+
+		try (SyncManifest manifest = new SyncManifest(file))
+		{
+			manifest.complete(0, 1, 42, 1, 520L);
+		}
+
+		// partially written record
+		try (FileOutputStream out = new FileOutputStream(file, true))
+		{
+			out.write(new byte[] { 0, 0, 0, 0, 0, 0 });
+		}
+
+		try (SyncManifest manifest = new SyncManifest(file))
+		{
+			assertEquals(24, file.length());
+			assertTrue(manifest.isComplete(0, 1, 42, 1, 520L));
+
+			manifest.complete(0, 2, 43, 1, -1L);
+		}
+
+		try (SyncManifest manifest = new SyncManifest(file))
+		{
+			assertTrue(manifest.isComplete(0, 2, 43, 1, -1L));
+		}
+	}
+}
@@ -24,21 +24,10 @@
  */
 package net.runelite.cache.server;
 
-import com.google.common.primitives.Ints;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
-import java.io.IOException;
-import java.util.Arrays;
-import net.runelite.cache.fs.Archive;
-import net.runelite.cache.fs.Container;
-import net.runelite.cache.fs.Index;
-import net.runelite.cache.fs.Storage;
-import net.runelite.cache.fs.Store;
-import net.runelite.cache.fs.jagex.CompressionType;
-import net.runelite.cache.fs.jagex.DiskStorage;
 import net.runelite.protocol.api.update.ArchiveRequestPacket;
-import net.runelite.protocol.api.update.ArchiveResponsePacket;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,113 +35,33 @@ public class ArchiveRequestHandler extends SimpleChannelInboundHandler<ArchiveRe
 {
 	private static final Logger logger = LoggerFactory.getLogger(ArchiveRequestHandler.class);
 
-	private final Store store;
+	private final ArchiveResponseCache responseCache;
+	private final StorageQueue storageQueue;
 
-	public ArchiveRequestHandler(Store store)
+	public ArchiveRequestHandler(ArchiveResponseCache responseCache, StorageQueue storageQueue)
 	{
-		this.store = store;
+		this.responseCache = responseCache;
+		this.storageQueue = storageQueue;
 	}
 
 	@Override
 	protected void channelRead0(ChannelHandlerContext ctx, ArchiveRequestPacket archiveRequest) throws Exception
 	{
-		if (archiveRequest.getIndex() == 255)
-		{
-			handleRequest255(ctx, archiveRequest.getIndex(),
-				archiveRequest.getArchive());
-		}
-		else
-		{
-			handleRequest(ctx, archiveRequest.getIndex(),
-				archiveRequest.getArchive());
-		}
-	}
-
-	private void handleRequest255(ChannelHandlerContext ctx, int index, int archiveId) throws IOException
-	{
-		logger.info("Client {} requests 255: index {}, archive {}", ctx.channel().remoteAddress(), index, archiveId);
-
-		byte[] compressed;
-		if (archiveId == 255)
-		{
-			// index 255 data, for each index:
-			// 4 byte crc
-			// 4 byte revision
-			ByteBuf buffer = ctx.alloc().heapBuffer(store.getIndexes().size() * 8);
-			for (Index i : store.getIndexes())
-			{
-				buffer.writeInt(i.getCrc());
-				buffer.writeInt(i.getRevision());
-			}
-
-			compressed = compress(CompressionType.NONE, Arrays.copyOf(buffer.array(), buffer.readableBytes()));
-			buffer.release();
-		}
-		else
-		{
-			// Requires disk storage. Use packed index data from
-			// store as its crc matches
-			DiskStorage storage = (DiskStorage) store.getStorage();
-			compressed = storage.readIndex(archiveId);
-		}
-
-		ArchiveResponsePacket response = new ArchiveResponsePacket();
-		response.setIndex(index);
-		response.setArchive(archiveId);
-		response.setData(compressed);
+		int index = archiveRequest.getIndex();
+		int archiveId = archiveRequest.getArchive();
 
-		ctx.writeAndFlush(response);
-	}
-
-	private void handleRequest(ChannelHandlerContext ctx, int index, int archiveId) throws IOException
-	{
-		logger.info("Client {} requests index {} archive {}", ctx.channel().remoteAddress(), index, archiveId);
-
-		Index i = store.findIndex(index);
-		assert i != null;
-
-		Archive archive = i.getArchive(archiveId);
-		assert archive != null;
-
-		Storage storage = store.getStorage();
-		byte[] packed = storage.loadArchive(archive); // is compressed, includes length and type
-
-		if (packed == null)
-		{
-			logger.warn("Missing archive {}/{}", index, archiveId);
-			return; // is it possible to notify the client of an error with this?
-		}
+		logger.debug("Client {} requests index {} archive {}, priority {}", ctx.channel().remoteAddress(),
+			index, archiveId, archiveRequest.isPriority());
 
-		byte compression = packed[0];
-		int compressedSize = Ints.fromBytes(packed[1], packed[2],
-			packed[3], packed[4]);
-
-		// size the client expects the data to be
-		int expectedSize = 1 // compression type
-			+ 4 // compressed size
-			+ compressedSize
-			+ (compression != CompressionType.NONE ? 4 : 0);
-		if (packed.length != expectedSize)
+		// the response is already encoded, so it skips the archive response encoder
+		ByteBuf response = responseCache.getCachedResponse(index, archiveId);
+		if (response != null)
 		{
-			// It may have the archive revision appended at the end.
-			// The data the client writes will have it, but the data fetched from
-			// the update server will never have it
-			assert packed.length - expectedSize == 2 : "packed length != expected size";
-			packed = Arrays.copyOf(packed, packed.length - 2);
+			ctx.writeAndFlush(response);
+			return;
 		}
 
-		ArchiveResponsePacket response = new ArchiveResponsePacket();
-		response.setIndex(index);
-		response.setArchive(archiveId);
-		response.setData(packed);
-
-		ctx.writeAndFlush(response);
-	}
-
-	private byte[] compress(int compression, byte[] data) throws IOException
-	{
-		Container container = new Container(compression, -1);
-		container.compress(data, null);
-		return container.data;
+		// load it from storage without blocking the event loop
+		storageQueue.submit(ctx.channel(), new ArchiveRequestTask(ctx, responseCache, archiveRequest));
 	}
 }
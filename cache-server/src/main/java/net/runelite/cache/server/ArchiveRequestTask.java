@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import net.runelite.protocol.api.update.ArchiveRequestPacket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A request for an archive which is not in the response cache, and so has
+ * to be loaded from storage. Priority requests are ordered ahead of
+ * prefetch requests, and otherwise requests are served in the order they
+ * were received.
+ */
+public class ArchiveRequestTask implements Runnable, Comparable<ArchiveRequestTask>
+{
+	private static final Logger logger = LoggerFactory.getLogger(ArchiveRequestTask.class);
+
+	private static final AtomicLong SEQUENCE = new AtomicLong();
+
+	private final ChannelHandlerContext ctx;
+	private final ArchiveResponseCache responseCache;
+	private final ArchiveRequestPacket request;
+	private final long sequence = SEQUENCE.getAndIncrement();
+
+	public ArchiveRequestTask(ChannelHandlerContext ctx, ArchiveResponseCache responseCache, ArchiveRequestPacket request)
+	{
+		this.ctx = ctx;
+		this.responseCache = responseCache;
+		this.request = request;
+	}
+
+	@Override
+	public void run()
+	{
+		if (!ctx.channel().isActive())
+		{
+			return;
+		}
+
+		try
+		{
+			ByteBuf response = responseCache.getResponse(request.getIndex(), request.getArchive());
+			if (response != null)
+			{
+				ctx.writeAndFlush(response);
+			}
+		}
+		catch (IOException ex)
+		{
+			logger.warn("Unable to load archive {}/{}", request.getIndex(), request.getArchive(), ex);
+			ctx.close();
+		}
+	}
+
+	@Override
+	public int compareTo(ArchiveRequestTask other)
+	{
+		if (request.isPriority() != other.request.isPriority())
+		{
+			return request.isPriority() ? -1 : 1;
+		}
+
+		return Long.compare(sequence, other.sequence);
+	}
+}
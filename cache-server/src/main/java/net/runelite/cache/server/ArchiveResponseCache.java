@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.server;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.primitives.Ints;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.IllegalReferenceCountException;
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Container;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.fs.jagex.CompressionType;
+import net.runelite.cache.fs.jagex.DiskStorage;
+import net.runelite.protocol.update.encoders.ArchiveResponseEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of encoded archive responses, ready to be written to a client.
+ * Responses are shared between clients with retained duplicates, so
+ * serving a cached archive does not copy it.
+ * <p>
+ * The responses are unpooled. A response can be evicted and released
+ * between looking it up and retaining it. A pooled buffer could then
+ * already be reused for another response, and the retain would succeed
+ * on it, but an unpooled buffer is never reused so the retain fails.
+ */
+public class ArchiveResponseCache
+{
+	private static final Logger logger = LoggerFactory.getLogger(ArchiveResponseCache.class);
+
+	private final Store store;
+	private final Cache<Integer, ByteBuf> responses;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder bytesServed = new LongAdder();
+
+	/**
+	 * @param store store to load archives from
+	 * @param maximumSize maximum total size of the cached responses, in bytes
+	 */
+	public ArchiveResponseCache(Store store, long maximumSize)
+	{
+		this.store = store;
+		this.responses = CacheBuilder.newBuilder()
+			.maximumWeight(maximumSize)
+			.weigher((Integer key, ByteBuf value) -> value.capacity())
+			.removalListener((RemovalNotification<Integer, ByteBuf> notification) -> notification.getValue().release())
+			.build();
+	}
+
+	/**
+	 * Get the encoded response for an archive. The returned buffer must be
+	 * released by the caller, which writing it to a channel does.
+	 *
+	 * @param index index id
+	 * @param archiveId archive id
+	 * @return the response, or null if the archive does not exist
+	 * @throws IOException
+	 */
+	public ByteBuf getResponse(int index, int archiveId) throws IOException
+	{
+		int key = index << 16 | archiveId;
+
+		ByteBuf response = getCachedResponse(index, archiveId);
+		if (response != null)
+		{
+			return response;
+		}
+
+		misses.increment();
+
+		response = encode(index, archiveId);
+		if (response == null)
+		{
+			return null;
+		}
+
+		// retain for the caller before the cache takes ownership,
+		// as it may be evicted right away
+		ByteBuf duplicate = response.retainedDuplicate();
+		responses.put(key, response);
+		return duplicate;
+	}
+
+	/**
+	 * Get the encoded response for an archive if it is cached, without
+	 * going to storage. The returned buffer must be released by the caller.
+	 *
+	 * @param index index id
+	 * @param archiveId archive id
+	 * @return the response, or null if it is not cached
+	 */
+	public ByteBuf getCachedResponse(int index, int archiveId)
+	{
+		ByteBuf response = responses.getIfPresent(index << 16 | archiveId);
+		if (response == null)
+		{
+			return null;
+		}
+
+		try
+		{
+			ByteBuf duplicate = response.retainedDuplicate();
+			hits.increment();
+			bytesServed.add(duplicate.readableBytes());
+			return duplicate;
+		}
+		catch (IllegalReferenceCountException ex)
+		{
+			// evicted and released between the lookup and the retain. as
+			// the response is unpooled, it can't have been reused
+			return null;
+		}
+	}
+
+	/**
+	 * Load the responses for all of the archives of an index into the cache
+	 *
+	 * @param index index id, or 255 for the reference tables
+	 * @throws IOException
+	 */
+	public void warm(int index) throws IOException
+	{
+		int count = 0;
+
+		if (index == 255)
+		{
+			warm(255, 255);
+			for (Index i : store.getIndexes())
+			{
+				warm(255, i.getId());
+				++count;
+			}
+		}
+		else
+		{
+			Index i = store.findIndex(index);
+			if (i == null)
+			{
+				return;
+			}
+
+			for (Archive archive : i.getArchives())
+			{
+				warm(index, archive.getArchiveId());
+				++count;
+			}
+		}
+
+		logger.debug("Warmed {} archives from index {}, cache size {}", count, index, responses.size());
+	}
+
+	private void warm(int index, int archiveId) throws IOException
+	{
+		int key = index << 16 | archiveId;
+		if (responses.getIfPresent(key) != null)
+		{
+			return;
+		}
+
+		ByteBuf response = encode(index, archiveId);
+		if (response != null)
+		{
+			responses.put(key, response);
+		}
+	}
+
+	public void clear()
+	{
+		responses.invalidateAll();
+	}
+
+	public long getHits()
+	{
+		return hits.sum();
+	}
+
+	public long getMisses()
+	{
+		return misses.sum();
+	}
+
+	public double getHitRate()
+	{
+		long hits = getHits();
+		long requests = hits + getMisses();
+		return requests == 0 ? 1.0 : (double) hits / requests;
+	}
+
+	/**
+	 * @return the number of bytes of responses served from the cache
+	 */
+	public long getBytesServed()
+	{
+		return bytesServed.sum();
+	}
+
+	private ByteBuf encode(int index, int archiveId) throws IOException
+	{
+		ByteBuf data;
+		if (index == 255)
+		{
+			data = load255(archiveId);
+		}
+		else
+		{
+			data = loadArchive(index, archiveId);
+		}
+
+		if (data == null)
+		{
+			return null;
+		}
+
+		ByteBuf response = Unpooled.directBuffer(ArchiveResponseEncoder.getEncodedLength(data.readableBytes()));
+		ArchiveResponseEncoder.encode(index, archiveId, data, response);
+		return response;
+	}
+
+	private ByteBuf load255(int archiveId) throws IOException
+	{
+		byte[] compressed;
+		if (archiveId == 255)
+		{
+			// index 255 data, for each index:
+			// 4 byte crc
+			// 4 byte revision
+			ByteBuf buffer = Unpooled.buffer(store.getIndexes().size() * 8);
+			for (Index i : store.getIndexes())
+			{
+				buffer.writeInt(i.getCrc());
+				buffer.writeInt(i.getRevision());
+			}
+
+			Container container = new Container(CompressionType.NONE, -1);
+			container.compress(buffer.array(), null);
+			compressed = container.data;
+		}
+		else
+		{
+			// Requires disk storage. Use packed index data from
+			// store as its crc matches
+			DiskStorage storage = (DiskStorage) store.getStorage();
+			compressed = storage.readIndex(archiveId);
+		}
+
+		return Unpooled.wrappedBuffer(compressed);
+	}
+
+	private ByteBuf loadArchive(int index, int archiveId) throws IOException
+	{
+		Index i = store.findIndex(index);
+		assert i != null;
+
+		Archive archive = i.getArchive(archiveId);
+		assert archive != null;
+
+		byte[] packed = store.getStorage().loadArchive(archive); // is compressed, includes length and type
+
+		if (packed == null)
+		{
+			logger.warn("Missing archive {}/{}", index, archiveId);
+			return null;
+		}
+
+		byte compression = packed[0];
+		int compressedSize = Ints.fromBytes(packed[1], packed[2],
+			packed[3], packed[4]);
+
+		// size the client expects the data to be
+		int expectedSize = 1 // compression type
+			+ 4 // compressed size
+			+ compressedSize
+			+ (compression != CompressionType.NONE ? 4 : 0);
+		if (packed.length != expectedSize)
+		{
+			// It may have the archive revision appended at the end.
+			// The data the client writes will have it, but the data fetched from
+			// the update server will never have it
+			assert packed.length - expectedSize == 2 : "packed length != expected size";
+		}
+
+		return Unpooled.wrappedBuffer(packed, 0, expectedSize);
+	}
+}
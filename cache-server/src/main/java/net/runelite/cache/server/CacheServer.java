@@ -29,8 +29,13 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
+import java.io.IOException;
 import net.runelite.cache.fs.Store;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,31 +46,121 @@ public class CacheServer implements AutoCloseable
 
 	private static final int PORT = 43594;
 
-	private final EventLoopGroup group = new NioEventLoopGroup(1);
+	private static final long RESPONSE_CACHE_SIZE = 64L * 1024L * 1024L;
+
+	private int bossThreads = 1;
+	private int workerThreads; // 0 uses the netty default
+	private int storageThreads = Runtime.getRuntime().availableProcessors();
+	private int storageQueueSize = 1024;
+
+	private EventLoopGroup bossGroup;
+	private EventLoopGroup workerGroup;
+	private StorageQueue storageQueue;
 
 	private Channel channel;
 
 	private final Store store;
 	private final int revision;
+	private final ArchiveResponseCache responseCache;
+
+	private int[] hotIndexes = new int[0];
 
 	public CacheServer(Store store, int revision)
+	{
+		this(store, revision, RESPONSE_CACHE_SIZE);
+	}
+
+	/**
+	 * @param store store to serve
+	 * @param revision revision clients must have
+	 * @param responseCacheSize maximum size of the archive response cache, in bytes
+	 */
+	public CacheServer(Store store, int revision, long responseCacheSize)
 	{
 		this.store = store;
 		this.revision = revision;
+		this.responseCache = new ArchiveResponseCache(store, responseCacheSize);
+	}
+
+	/**
+	 * Set the indexes to load into the response cache when the server
+	 * starts, in addition to the reference tables
+	 *
+	 * @param hotIndexes
+	 */
+	public void setHotIndexes(int... hotIndexes)
+	{
+		this.hotIndexes = hotIndexes;
+	}
+
+	public void setBossThreads(int bossThreads)
+	{
+		this.bossThreads = bossThreads;
 	}
 
-	public void start()
+	/**
+	 * @param workerThreads number of event loop threads for client
+	 * connections, or 0 for the netty default
+	 */
+	public void setWorkerThreads(int workerThreads)
 	{
+		this.workerThreads = workerThreads;
+	}
+
+	/**
+	 * @param storageThreads number of threads loading archives from storage
+	 */
+	public void setStorageThreads(int storageThreads)
+	{
+		this.storageThreads = storageThreads;
+	}
+
+	/**
+	 * Set the number of requests waiting on storage at which reads are
+	 * paused on the connections making more requests, until storage has
+	 * caught up.
+	 *
+	 * @param storageQueueSize
+	 */
+	public void setStorageQueueSize(int storageQueueSize)
+	{
+		this.storageQueueSize = storageQueueSize;
+	}
+
+	public void start() throws IOException
+	{
+		responseCache.warm(255);
+		for (int index : hotIndexes)
+		{
+			responseCache.warm(index);
+		}
+
+		storageQueue = new StorageQueue(storageThreads, storageQueueSize);
+
+		Class<? extends ServerChannel> channelClass;
+		if (Epoll.isAvailable())
+		{
+			bossGroup = new EpollEventLoopGroup(bossThreads);
+			workerGroup = new EpollEventLoopGroup(workerThreads);
+			channelClass = EpollServerSocketChannel.class;
+		}
+		else
+		{
+			bossGroup = new NioEventLoopGroup(bossThreads);
+			workerGroup = new NioEventLoopGroup(workerThreads);
+			channelClass = NioServerSocketChannel.class;
+		}
+
 		ServerBootstrap b = new ServerBootstrap();
-		b.group(group)
-			.channel(NioServerSocketChannel.class)
-			.option(ChannelOption.TCP_NODELAY, true)
+		b.group(bossGroup, workerGroup)
+			.channel(channelClass)
+			.childOption(ChannelOption.TCP_NODELAY, true)
 			.childHandler(new CacheServerInitializer(this));
 
 		ChannelFuture f = b.bind(PORT).syncUninterruptibly();
 		channel = f.channel();
 
-		logger.info("Server is now listening on {}", PORT);
+		logger.info("Server is now listening on {} using {}", PORT, channelClass.getSimpleName());
 	}
 
 	public void waitForClose()
@@ -77,7 +172,13 @@ public class CacheServer implements AutoCloseable
 	public void close()
 	{
 		channel.close().syncUninterruptibly();
-		group.shutdownGracefully();
+		bossGroup.shutdownGracefully();
+		workerGroup.shutdownGracefully();
+		storageQueue.shutdown();
+
+		logger.info("Response cache hit rate {}, served {} bytes from memory",
+			responseCache.getHitRate(), responseCache.getBytesServed());
+		responseCache.clear();
 	}
 
 	public int getRevision()
@@ -89,4 +190,14 @@ public class CacheServer implements AutoCloseable
 	{
 		return store;
 	}
+
+	public ArchiveResponseCache getResponseCache()
+	{
+		return responseCache;
+	}
+
+	public StorageQueue getStorageQueue()
+	{
+		return storageQueue;
+	}
 }
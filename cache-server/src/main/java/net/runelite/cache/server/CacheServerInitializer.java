@@ -62,7 +62,7 @@ public class CacheServerInitializer extends ChannelInitializer<SocketChannel>
 		);
 
 		p.addLast(
-			new ArchiveRequestHandler(server.getStore()),
+			new ArchiveRequestHandler(server.getResponseCache(), server.getStorageQueue()),
 			new EncryptionHandler(),
 			new HandshakeHandler(server)
 		);
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.server;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.netty.channel.Channel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Loads archives which are not in the response cache on the storage
+ * threads. Once the number of queued requests reaches the limit, reads are
+ * paused on each channel which submits another, and resumed once the queue
+ * has drained to half the limit. The event loops never wait on storage.
+ */
+public class StorageQueue
+{
+	private final int limit;
+	private final ThreadPoolExecutor executor;
+	private final Set<Channel> paused = ConcurrentHashMap.newKeySet();
+	private final LongAdder pauses = new LongAdder();
+
+	/**
+	 * @param threads number of threads loading archives from storage
+	 * @param limit number of queued requests at which reads are paused
+	 */
+	public StorageQueue(int threads, int limit)
+	{
+		this.limit = limit;
+		this.executor = new ThreadPoolExecutor(threads, threads,
+			0L, TimeUnit.MILLISECONDS,
+			new PriorityBlockingQueue<>(),
+			new ThreadFactoryBuilder().setNameFormat("cache-server-storage-%d").setDaemon(true).build())
+		{
+			@Override
+			protected void afterExecute(Runnable r, Throwable t)
+			{
+				drained();
+			}
+		};
+	}
+
+	/**
+	 * Queue a request to be loaded from storage, pausing reads on its
+	 * channel if the queue is full
+	 *
+	 * @param channel channel the request was read from
+	 * @param task request
+	 */
+	public void submit(Channel channel, ArchiveRequestTask task)
+	{
+		executor.execute(task);
+
+		if (executor.getQueue().size() >= limit)
+		{
+			channel.config().setAutoRead(false);
+			paused.add(channel);
+			pauses.increment();
+
+			// the queue may have drained before the channel was added
+			drained();
+		}
+	}
+
+	private void drained()
+	{
+		if (paused.isEmpty() || executor.getQueue().size() > limit / 2)
+		{
+			return;
+		}
+
+		for (Channel channel : paused)
+		{
+			if (paused.remove(channel))
+			{
+				channel.config().setAutoRead(true);
+			}
+		}
+	}
+
+	public void shutdown()
+	{
+		executor.shutdown();
+	}
+
+	public ThreadPoolExecutor getExecutor()
+	{
+		return executor;
+	}
+
+	/**
+	 * Get the number of times reads have been paused on a channel because
+	 * the queue was full
+	 *
+	 * @return
+	 */
+	public long getPauses()
+	{
+		return pauses.sum();
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.server;
+
+import io.netty.buffer.ByteBuf;
+import java.util.ArrayList;
+import java.util.List;
+import net.runelite.cache.StoreLocation;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Container;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.index.FileData;
+import net.runelite.protocol.api.update.ArchiveResponsePacket;
+import net.runelite.protocol.update.decoders.ArchiveResponseDecoder;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ArchiveResponseCacheTest
+{
+	@Rule
+	public TemporaryFolder folder = StoreLocation.getTemporaryFolder();
+
+	@Test
+	public void testGetResponse() throws Exception
+	{
+		try (Store store = new Store(folder.newFolder()))
+		{
+			byte[] data = new byte[2048];
+			byte[] packed = addArchive(store, data);
+
+			ArchiveResponseCache cache = new ArchiveResponseCache(store, 1024L * 1024L);
+
+			ByteBuf response = cache.getResponse(0, 0);
+			assertArrayEquals(packed, decode(response).getData());
+			assertEquals(0, cache.getHits());
+			assertEquals(1, cache.getMisses());
+
+			response = cache.getResponse(0, 0);
+			int length = response.readableBytes();
+			assertArrayEquals(packed, decode(response).getData());
+			assertEquals(1, cache.getHits());
+			assertEquals(1, cache.getMisses());
+			assertEquals(length, cache.getBytesServed());
+
+			cache.clear();
+		}
+	}
+
+	@Test
+	public void testEviction() throws Exception
+	{
+		try (Store store = new Store(folder.newFolder()))
+		{
+			byte[] packed = addArchive(store, new byte[4096]);
+
+			// too small to hold the response
+			ArchiveResponseCache cache = new ArchiveResponseCache(store, 1024L);
+
+			for (int i = 0; i < 2; ++i)
+			{
+				ByteBuf response = cache.getResponse(0, 0);
+				assertNotNull(response);
+				assertArrayEquals(packed, decode(response).getData());
+			}
+
+			assertEquals(0, cache.getHits());
+			assertEquals(2, cache.getMisses());
+		}
+	}
+
+	@Test
+	public void testReleasedResponse() throws Exception
+	{
+		try (Store store = new Store(folder.newFolder()))
+		{
+			byte[] packed = addArchive(store, new byte[2048]);
+
+			ArchiveResponseCache cache = new ArchiveResponseCache(store, 1024L * 1024L);
+			ByteBuf response = cache.getResponse(0, 0);
+
+			// released buffers of a pool are reused, and would be served
+			// for the wrong archive if evicted while being retained
+			assertFalse(response.alloc().isDirectBufferPooled());
+
+			// the served response outlives its eviction
+			cache.clear();
+			assertNull(cache.getCachedResponse(0, 0));
+			assertArrayEquals(packed, decode(response).getData());
+		}
+	}
+
+	private static byte[] addArchive(Store store, byte[] data) throws Exception
+	{
+		Index index = store.addIndex(0);
+		Archive archive = index.addArchive(0);
+		archive.setFileData(new FileData[]
+		{
+			new FileData()
+		});
+
+		// with the revision appended, as the client stores it
+		Container container = new Container(archive.getCompression(), 42);
+		container.compress(data, null);
+		store.getStorage().saveArchive(archive, container.data);
+
+		container = new Container(archive.getCompression(), -1);
+		container.compress(data, null);
+		return container.data;
+	}
+
+	private static ArchiveResponsePacket decode(ByteBuf response) throws Exception
+	{
+		try
+		{
+			List<Object> out = new ArrayList<>();
+			new ArchiveResponseDecoder().decode(null, response, out);
+			assertEquals(1, out.size());
+			return (ArchiveResponsePacket) out.get(0);
+		}
+		finally
+		{
+			response.release();
+		}
+	}
+}
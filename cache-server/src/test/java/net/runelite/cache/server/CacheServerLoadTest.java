@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.server;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import net.runelite.cache.StoreLocation;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import net.runelite.protocol.api.handshake.HandshakeResponsePacket;
+import net.runelite.protocol.api.handshake.UpdateHandshakePacket;
+import net.runelite.protocol.api.login.HandshakeResponseType;
+import net.runelite.protocol.api.update.ArchiveRequestPacket;
+import net.runelite.protocol.api.update.ArchiveResponsePacket;
+import net.runelite.protocol.api.update.EncryptionPacket;
+import net.runelite.protocol.handshake.UpdateHandshakeEncoder;
+import net.runelite.protocol.update.decoders.ArchiveResponseDecoder;
+import net.runelite.protocol.update.decoders.HandshakeResponseDecoder;
+import net.runelite.protocol.update.encoders.ArchiveRequestEncoder;
+import net.runelite.protocol.update.encoders.EncryptionEncoder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Load generator for the cache server. Opens many client connections to a
+ * local server with an empty response cache, so that every request is
+ * loaded from storage, and reports request latency. Each client sends its
+ * requests in one burst, some of them priority, which fills the storage
+ * queue so requests are also loaded on the event loops.
+ */
+public class CacheServerLoadTest
+{
+	private static final Logger logger = LoggerFactory.getLogger(CacheServerLoadTest.class);
+
+	private static final String HOST = "localhost";
+	private static final int PORT = 43594;
+	private static final int REVISION = 154;
+
+	private static final int CLIENTS = 250;
+	private static final int REQUESTS = 50;
+	// one in this many requests is a priority request
+	private static final int PRIORITY_INTERVAL = 8;
+	private static final int STORAGE_QUEUE_SIZE = 256;
+
+	@Test
+	@Ignore
+	public void testLoad() throws Exception
+	{
+		try (Store store = new Store(StoreLocation.LOCATION);
+			CacheServer server = new CacheServer(store, REVISION, 0L))
+		{
+			store.load();
+
+			server.setStorageQueueSize(STORAGE_QUEUE_SIZE);
+			server.start();
+
+			List<Integer> archives = new ArrayList<>();
+			for (Index index : store.getIndexes())
+			{
+				for (Archive archive : index.getArchives())
+				{
+					archives.add(index.getId() << 16 | archive.getArchiveId());
+				}
+			}
+
+			Queue<Long> priorityLatencies = new ConcurrentLinkedQueue<>();
+			Queue<Long> prefetchLatencies = new ConcurrentLinkedQueue<>();
+			CountDownLatch done = new CountDownLatch(CLIENTS * REQUESTS);
+
+			EventLoopGroup group = new NioEventLoopGroup();
+			List<Channel> channels = new ArrayList<>();
+			try
+			{
+				for (int i = 0; i < CLIENTS; ++i)
+				{
+					LoadClient client = new LoadClient(priorityLatencies, prefetchLatencies, done);
+					channels.add(client.connect(group));
+					assertEquals(HandshakeResponseType.RESPONSE_OK, client.handshake.get());
+				}
+
+				Random random = new Random(42L);
+				for (Channel channel : channels)
+				{
+					LoadClient client = channel.pipeline().get(LoadClient.class);
+
+					Collections.shuffle(archives, random);
+					for (int i = 0; i < REQUESTS; ++i)
+					{
+						int key = archives.get(i);
+						client.request(channel, key >>> 16, key & 0xFFFF, i % PRIORITY_INTERVAL == 0);
+					}
+					channel.flush();
+				}
+
+				assertTrue(done.await(5, TimeUnit.MINUTES));
+
+				log("priority", priorityLatencies);
+				log("prefetch", prefetchLatencies);
+
+				// reads are paused on connections while the storage queue is full
+				StorageQueue storageQueue = server.getStorageQueue();
+				logger.info("{} requests loaded from storage, {} by the storage threads, reads paused {} times",
+					server.getResponseCache().getMisses(), storageQueue.getExecutor().getCompletedTaskCount(),
+					storageQueue.getPauses());
+			}
+			finally
+			{
+				for (Channel channel : channels)
+				{
+					channel.close();
+				}
+				group.shutdownGracefully();
+			}
+		}
+	}
+
+	private static void log(String name, Queue<Long> latencies)
+	{
+		List<Long> sorted = new ArrayList<>(latencies);
+		Collections.sort(sorted);
+
+		logger.info("{} {} requests from {} clients, p50 {} us, p99 {} us, max {} us",
+			sorted.size(), name, CLIENTS,
+			percentile(sorted, 0.50) / 1000L,
+			percentile(sorted, 0.99) / 1000L,
+			sorted.get(sorted.size() - 1) / 1000L);
+	}
+
+	private static long percentile(List<Long> sorted, double percentile)
+	{
+		int idx = (int) Math.ceil(percentile * sorted.size()) - 1;
+		return sorted.get(Math.max(idx, 0));
+	}
+
+	/**
+	 * A client speaking the update protocol directly, as CacheClient only
+	 * sends prefetch requests
+	 */
+	private static class LoadClient extends SimpleChannelInboundHandler<Object>
+	{
+		private final Queue<Long> priorityLatencies;
+		private final Queue<Long> prefetchLatencies;
+		private final CountDownLatch done;
+
+		private final CompletableFuture<HandshakeResponseType> handshake = new CompletableFuture<>();
+		// send time and priority of each request, by index and archive
+		private final Map<Integer, long[]> requests = new ConcurrentHashMap<>();
+
+		LoadClient(Queue<Long> priorityLatencies, Queue<Long> prefetchLatencies, CountDownLatch done)
+		{
+			this.priorityLatencies = priorityLatencies;
+			this.prefetchLatencies = prefetchLatencies;
+			this.done = done;
+		}
+
+		Channel connect(EventLoopGroup group)
+		{
+			Bootstrap b = new Bootstrap();
+			b.group(group)
+				.channel(NioSocketChannel.class)
+				.option(ChannelOption.TCP_NODELAY, true)
+				.handler(new ChannelInitializer<SocketChannel>()
+				{
+					@Override
+					public void initChannel(SocketChannel ch)
+					{
+						ch.pipeline().addLast("decoder", new HandshakeResponseDecoder());
+						ch.pipeline().addLast(LoadClient.this);
+						ch.pipeline().addLast(
+							new UpdateHandshakeEncoder(),
+							new EncryptionEncoder(),
+							new ArchiveRequestEncoder()
+						);
+					}
+				});
+
+			Channel channel = b.connect(HOST, PORT).syncUninterruptibly().channel();
+
+			UpdateHandshakePacket handshakePacket = new UpdateHandshakePacket();
+			handshakePacket.setRevision(REVISION);
+			channel.writeAndFlush(handshakePacket);
+			return channel;
+		}
+
+		void request(Channel channel, int index, int archive, boolean priority)
+		{
+			requests.put(index << 16 | archive, new long[]
+			{
+				System.nanoTime(), priority ? 1 : 0
+			});
+
+			ArchiveRequestPacket request = new ArchiveRequestPacket();
+			request.setPriority(priority);
+			request.setIndex(index);
+			request.setArchive(archive);
+			channel.write(request);
+		}
+
+		@Override
+		protected void channelRead0(ChannelHandlerContext ctx, Object msg)
+		{
+			if (msg instanceof HandshakeResponsePacket)
+			{
+				HandshakeResponseType response = ((HandshakeResponsePacket) msg).getResponse();
+				if (response == HandshakeResponseType.RESPONSE_OK)
+				{
+					EncryptionPacket encryptionPacket = new EncryptionPacket();
+					encryptionPacket.setKey((byte) 0);
+					ctx.writeAndFlush(encryptionPacket);
+
+					ctx.pipeline().replace("decoder", "decoder", new ArchiveResponseDecoder());
+				}
+				handshake.complete(response);
+				return;
+			}
+
+			ArchiveResponsePacket response = (ArchiveResponsePacket) msg;
+			long[] request = requests.remove(response.getIndex() << 16 | response.getArchive());
+			if (request == null)
+			{
+				return;
+			}
+
+			long latency = System.nanoTime() - request[0];
+			(request[1] != 0 ? priorityLatencies : prefetchLatencies).add(latency);
+			done.countDown();
+		}
+	}
+}
@@ -24,10 +24,19 @@
  */
 package net.runelite.cache.server;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import net.runelite.cache.StoreLocation;
 import net.runelite.cache.client.CacheClient;
+import net.runelite.cache.client.DownloadMetrics;
+import net.runelite.cache.client.DownloadWatcher;
 import net.runelite.cache.fs.Archive;
 import net.runelite.cache.fs.Container;
 import net.runelite.cache.fs.Index;
@@ -36,6 +45,8 @@ import net.runelite.cache.fs.Store;
 import net.runelite.cache.index.FileData;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import org.junit.Ignore;
 import org.junit.Rule;
 import org.junit.Test;
@@ -104,6 +115,235 @@ public class CacheServerTest
 		}
 	}
 
+	@Test
+	public void testServerManyArchives() throws Exception
+	{
+		try (Store store = new Store(folder.newFolder());
+			CacheServer server = new CacheServer(store, REVISION))
+		{
+			// more archives than the client will request at once
+			for (int i = 0; i < 3; ++i)
+			{
+				Index index = store.addIndex(i);
+				for (int j = 0; j < 100; ++j)
+				{
+					addArchive(store, index, j, ("test" + i + "/" + j).getBytes());
+				}
+			}
+
+			store.save();
+
+			server.start();
+
+			try (Store store2 = new Store(folder.newFolder());
+				CacheClient client = new CacheClient(store2, HOST, REVISION))
+			{
+				client.connect();
+				client.handshake().get();
+				client.download();
+
+				for (int i = 0; i < 3; ++i)
+				{
+					Index index = store2.findIndex(i);
+					assertEquals(100, index.getArchives().size());
+
+					for (Archive archive : index.getArchives())
+					{
+						byte[] data = store2.getStorage().loadArchive(archive);
+						data = archive.decompress(data);
+						assertArrayEquals(("test" + i + "/" + archive.getArchiveId()).getBytes(), data);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testServerPipeline() throws Exception
+	{
+		try (Store store = new Store(folder.newFolder());
+			CacheServer server = new CacheServer(store, REVISION))
+		{
+			Index index = store.addIndex(0);
+			for (int j = 0; j < 100; ++j)
+			{
+				addArchive(store, index, j, ("test" + j).getBytes());
+			}
+
+			store.save();
+
+			server.start();
+
+			Set<Integer> downloaded = ConcurrentHashMap.newKeySet();
+			AtomicReference<DownloadMetrics> metrics = new AtomicReference<>();
+
+			DownloadWatcher watcher = new DownloadWatcher()
+			{
+				@Override
+				public void downloadComplete(Archive archive, byte[] data)
+				{
+					downloaded.add(archive.getArchiveId());
+				}
+
+				@Override
+				public void downloadProgress(DownloadMetrics m)
+				{
+					metrics.set(m);
+				}
+			};
+
+			try (Store store2 = new Store(folder.newFolder());
+				CacheClient client = new CacheClient(store2, HOST, REVISION, watcher))
+			{
+				// small depth to exercise back pressure
+				client.setWorkerThreads(2);
+				client.setPipelineDepth(4);
+				client.setDecompress(true);
+
+				client.connect();
+				client.handshake().get();
+				client.download();
+			}
+
+			assertEquals(100, downloaded.size());
+			assertEquals(100, metrics.get().getArchives());
+		}
+	}
+
+	@Test
+	public void testResumeDownload() throws Exception
+	{
+		try (Store store = new Store(folder.newFolder());
+			CacheServer server = new CacheServer(store, REVISION))
+		{
+			for (int i = 0; i < 3; ++i)
+			{
+				Index index = store.addIndex(i);
+				for (int j = 0; j < 100; ++j)
+				{
+					addArchive(store, index, j, ("test" + i + "/" + j).getBytes());
+				}
+			}
+
+			store.save();
+
+			server.start();
+
+			File clientFolder = folder.newFolder();
+
+			// interrupt the first download part way through, the client
+			// records its progress in the manifest kept in the store folder
+			AtomicInteger downloaded1 = new AtomicInteger();
+			CacheClient[] client1 = new CacheClient[1];
+
+			try (Store store2 = new Store(clientFolder);
+				CacheClient client = new CacheClient(store2, HOST, REVISION, (archive, data) ->
+				{
+					saveArchive(store2, archive, data);
+					if (downloaded1.incrementAndGet() == 50)
+					{
+						ForkJoinPool.commonPool().execute(client1[0]::close);
+					}
+				}))
+			{
+				client1[0] = client;
+				client.setWorkerThreads(1);
+				client.setPipelineDepth(4);
+
+				client.connect();
+				client.handshake().get();
+
+				try
+				{
+					client.download();
+					fail("download should have been interrupted");
+				}
+				catch (IOException ex)
+				{
+					// expected
+				}
+			}
+
+			assertTrue(downloaded1.get() < 300);
+
+			// resume, without the store having been saved
+			AtomicInteger downloaded2 = new AtomicInteger();
+
+			try (Store store2 = new Store(clientFolder);
+				CacheClient client = new CacheClient(store2, HOST, REVISION, (archive, data) ->
+				{
+					saveArchive(store2, archive, data);
+					downloaded2.incrementAndGet();
+				}))
+			{
+				store2.load();
+
+				client.connect();
+				client.handshake().get();
+				client.download();
+
+				store2.save();
+			}
+
+			assertEquals(300, downloaded1.get() + downloaded2.get());
+
+			// nothing has changed, so only the index list is requested
+			AtomicInteger downloaded3 = new AtomicInteger();
+			ArchiveResponseCache responseCache = server.getResponseCache();
+			long requests = responseCache.getHits() + responseCache.getMisses();
+
+			try (Store store2 = new Store(clientFolder);
+				CacheClient client = new CacheClient(store2, HOST, REVISION, (archive, data) -> downloaded3.incrementAndGet()))
+			{
+				store2.load();
+
+				client.connect();
+				client.handshake().get();
+				client.download();
+
+				assertEquals(0, downloaded3.get());
+				assertEquals(1, responseCache.getHits() + responseCache.getMisses() - requests);
+
+				for (int i = 0; i < 3; ++i)
+				{
+					Index index = store2.findIndex(i);
+					assertEquals(100, index.getArchives().size());
+
+					for (Archive archive : index.getArchives())
+					{
+						byte[] data = store2.getStorage().loadArchive(archive);
+						data = archive.decompress(data);
+						assertArrayEquals(("test" + i + "/" + archive.getArchiveId()).getBytes(), data);
+					}
+				}
+			}
+		}
+	}
+
+	private static void saveArchive(Store store, Archive archive, byte[] data)
+	{
+		try
+		{
+			store.getStorage().saveArchive(archive, data);
+		}
+		catch (IOException ex)
+		{
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	private void addArchive(Store store, Index index, int archiveId, byte[] data) throws IOException
+	{
+		Archive archive = index.addArchive(archiveId);
+		FileData[] files = new FileData[1];
+		archive.setFileData(files);
+		files[0] = new FileData();
+
+		Container container = new Container(archive.getCompression(), -1);
+		container.compress(data, null);
+		store.getStorage().saveArchive(archive, container.data);
+	}
+
 	private void addInitialFilesToStore(Store store) throws FileNotFoundException, IOException
 	{
 		Storage storage = store.getStorage();
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.concurrent.CountDownLatch;
+import net.runelite.cache.StoreLocation;
+import net.runelite.cache.fs.Store;
+import net.runelite.protocol.api.update.ArchiveRequestPacket;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class StorageQueueTest
+{
+	@Rule
+	public TemporaryFolder folder = StoreLocation.getTemporaryFolder();
+
+	@Test
+	public void testPauseReads() throws Exception
+	{
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		try (Store store = new Store(folder.newFolder()))
+		{
+			// storage which doesn't respond until released
+			ArchiveResponseCache responseCache = new ArchiveResponseCache(store, 0L)
+			{
+				@Override
+				public ByteBuf getResponse(int index, int archiveId)
+				{
+					started.countDown();
+					try
+					{
+						release.await();
+					}
+					catch (InterruptedException ex)
+					{
+						Thread.currentThread().interrupt();
+					}
+					return null;
+				}
+			};
+
+			EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+			ChannelHandlerContext ctx = channel.pipeline().firstContext();
+
+			StorageQueue queue = new StorageQueue(1, 4);
+			try
+			{
+				queue.submit(channel, task(ctx, responseCache, 0));
+				started.await();
+
+				for (int i = 1; i < 4; ++i)
+				{
+					queue.submit(channel, task(ctx, responseCache, i));
+					assertTrue(channel.config().isAutoRead());
+				}
+
+				// the queue is full, so the channel stops reading requests
+				// rather than the event loop waiting on storage
+				queue.submit(channel, task(ctx, responseCache, 4));
+				assertFalse(channel.config().isAutoRead());
+				assertEquals(1, queue.getPauses());
+
+				release.countDown();
+				for (int i = 0; i < 1000 && !channel.config().isAutoRead(); ++i)
+				{
+					Thread.sleep(10L);
+				}
+				assertTrue(channel.config().isAutoRead());
+			}
+			finally
+			{
+				queue.shutdown();
+			}
+		}
+	}
+
+	private static ArchiveRequestTask task(ChannelHandlerContext ctx, ArchiveResponseCache responseCache, int archive)
+	{
+		ArchiveRequestPacket request = new ArchiveRequestPacket();
+		request.setIndex(0);
+		request.setArchive(archive);
+		return new ArchiveRequestTask(ctx, responseCache, request);
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.updater;
+
+import com.google.common.hash.HashCode;
+import com.google.common.io.BaseEncoding;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A store of blobs addressed by the SHA-256 hash of their contents
+ */
+public interface BlobStore
+{
+	boolean exists(HashCode hash) throws IOException;
+
+	/**
+	 * Check which of a set of blobs exist
+	 *
+	 * @param hashes
+	 * @return the hashes which exist in the store
+	 * @throws IOException
+	 */
+	default Set<HashCode> exists(Collection<HashCode> hashes) throws IOException
+	{
+		Set<HashCode> existing = new HashSet<>();
+		for (HashCode hash : hashes)
+		{
+			if (exists(hash))
+			{
+				existing.add(hash);
+			}
+		}
+		return existing;
+	}
+
+	void put(HashCode hash, byte[] data) throws IOException;
+
+	/**
+	 * Get the path of a blob within the store, which is the hex encoded
+	 * hash with the first byte as a directory
+	 *
+	 * @param hash
+	 * @return
+	 */
+	static String getPath(HashCode hash)
+	{
+		String hashStr = BaseEncoding.base16().encode(hash.asBytes());
+		return new StringBuilder()
+			.append(hashStr.substring(0, 2))
+			.append('/')
+			.append(hashStr.substring(2))
+			.toString();
+	}
+}
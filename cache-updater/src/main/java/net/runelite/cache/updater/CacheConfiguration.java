@@ -24,12 +24,15 @@
  */
 package net.runelite.cache.updater;
 
+import com.google.common.base.Strings;
 import io.minio.MinioClient;
 import io.minio.errors.InvalidEndpointException;
 import io.minio.errors.InvalidPortException;
+import java.io.File;
 import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Properties;
 import javax.sql.DataSource;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
@@ -61,6 +64,12 @@ public class CacheConfiguration
 	@Value("${minio.secretkey}")
 	private String minioSecretKey;
 
+	@Value("${minio.bucket}")
+	private String minioBucket;
+
+	@Value("${blobstore.path:}")
+	private String blobStorePath;
+
 	@Bean
 	public DataSource dataSource()
 	{
@@ -68,6 +77,11 @@ public class CacheConfiguration
 		dataSource.setUrl(jdbcUrl);
 		dataSource.setUsername(jdbcUsername);
 		dataSource.setPassword(jdbcPassword);
+
+		Properties properties = new Properties();
+		// send batched inserts to MySQL as multi-row inserts
+		properties.setProperty("rewriteBatchedStatements", "true");
+		dataSource.setConnectionProperties(properties);
 		return dataSource;
 	}
 
@@ -85,4 +99,15 @@ public class CacheConfiguration
 	{
 		return new MinioClient(minioUrl, minioAccessKey, minioSecretKey);
 	}
+
+	@Bean
+	public BlobStore blobStore(MinioClient minioClient)
+	{
+		if (!Strings.isNullOrEmpty(blobStorePath))
+		{
+			return new FileBlobStore(new File(blobStorePath));
+		}
+
+		return new MinioBlobStore(minioClient, minioBucket);
+	}
 }
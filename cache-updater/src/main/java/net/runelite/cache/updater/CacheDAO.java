@@ -28,6 +28,7 @@ import java.time.Instant;
 import java.util.List;
 import net.runelite.cache.updater.beans.ArchiveEntry;
 import net.runelite.cache.updater.beans.CacheEntry;
+import net.runelite.cache.updater.beans.FileEntry;
 import net.runelite.cache.updater.beans.IndexEntry;
 import org.sql2o.Connection;
 import org.sql2o.Query;
@@ -35,10 +36,8 @@ import org.sql2o.ResultSetIterable;
 
 class CacheDAO
 {
-	// cache prepared statements for high volume queries
-	private Query associateArchive;
-	private Query findArchive, insertArchive;
-	private Query associateFile;
+	// maximum number of rows inserted per batch
+	private static final int BATCH_SIZE = 1000;
 
 	public CacheEntry findMostRecent(Connection con)
 	{
@@ -63,6 +62,12 @@ class CacheDAO
 			.executeAndFetchLazy(ArchiveEntry.class);
 	}
 
+	public ResultSetIterable<ArchiveEntry> findArchiveHashes(Connection con)
+	{
+		return con.createQuery("select distinct hash from archive where hash is not null")
+			.executeAndFetchLazy(ArchiveEntry.class);
+	}
+
 	public CacheEntry createCache(Connection con, int revision, Instant date)
 	{
 		int cacheId = con.createQuery("insert into cache (revision, date) values (:revision, :date)")
@@ -96,82 +101,87 @@ class CacheDAO
 		return entry;
 	}
 
-	public void associateArchiveToIndex(Connection con, ArchiveEntry archive, IndexEntry index)
+	/**
+	 * Insert archives, setting the id of each entry to its generated key
+	 *
+	 * @param con
+	 * @param archives
+	 */
+	public void createArchives(Connection con, List<ArchiveEntry> archives)
 	{
-		if (associateArchive == null)
-		{
-			associateArchive = con.createQuery("insert into index_archive (`index`, archive) values (:index, :archive)");
-		}
-		associateArchive
-			.addParameter("index", index.getId())
-			.addParameter("archive", archive.getId())
-			.executeUpdate();
-	}
+		Query insertArchive = con.createQuery("insert into archive (archiveId, nameHash, crc, revision, hash) values "
+			+ "(:archiveId, :nameHash, :crc, :revision, :hash)", true);
 
-	public ArchiveEntry findArchive(Connection con, IndexEntry index,
-		int archiveId, int nameHash, int crc, int revision)
-	{
-		if (findArchive == null)
+		for (int i = 0; i < archives.size(); i += BATCH_SIZE)
 		{
-			findArchive = con.createQuery("select distinct archive.id, archive.archiveId, archive.nameHash,"
-				+ " archive.crc, archive.revision, archive.hash from archive "
-				+ " join index_archive on index_archive.archive = archive.id"
-				+ " join `index` on index.id = index_archive.index"
-				+ " where archive.archiveId = :archiveId"
-				+ " and archive.nameHash = :nameHash"
-				+ " and archive.crc = :crc"
-				+ " and archive.revision = :revision"
-				+ " and index.indexId = :indexId");
+			List<ArchiveEntry> batch = archives.subList(i, Math.min(i + BATCH_SIZE, archives.size()));
+
+			for (ArchiveEntry entry : batch)
+			{
+				insertArchive
+					.addParameter("archiveId", entry.getArchiveId())
+					.addParameter("nameHash", entry.getNameHash())
+					.addParameter("crc", entry.getCrc())
+					.addParameter("revision", entry.getRevision())
+					.addParameter("hash", entry.getHash())
+					.addToBatch();
+			}
+
+			List<Integer> keys = insertArchive.executeBatch().getKeys(Integer.class);
+			if (keys.size() != batch.size())
+			{
+				throw new IllegalStateException("Expected " + batch.size() + " keys, got " + keys.size());
+			}
+
+			for (int j = 0; j < batch.size(); ++j)
+			{
+				batch.get(j).setId(keys.get(j));
+			}
 		}
-
-		ArchiveEntry entry = findArchive
-			.addParameter("archiveId", archiveId)
-			.addParameter("nameHash", nameHash)
-			.addParameter("crc", crc)
-			.addParameter("revision", revision)
-			.addParameter("indexId", index.getIndexId())
-			.executeAndFetchFirst(ArchiveEntry.class);
-		return entry;
 	}
 
-	public ArchiveEntry createArchive(Connection con, IndexEntry index,
-		int archiveId, int nameHash, int crc, int revision, byte[] hash)
+	/**
+	 * Insert files. The archive id of each file is the id of the archive
+	 * entry it belongs to.
+	 *
+	 * @param con
+	 * @param files
+	 */
+	public void createFiles(Connection con, List<FileEntry> files)
 	{
-		if (insertArchive == null)
+		Query associateFile = con.createQuery("insert into file (archive, fileId, nameHash) values (:archive, :fileId, :nameHash)", false);
+
+		for (int i = 0; i < files.size(); ++i)
 		{
-			insertArchive = con.createQuery("insert into archive (archiveId, nameHash, crc, revision, hash) values "
-				+ "(:archiveId, :nameHash, :crc, :revision, :hash)");
+			FileEntry file = files.get(i);
+			associateFile
+				.addParameter("archive", file.getArchiveId())
+				.addParameter("fileId", file.getFileId())
+				.addParameter("nameHash", file.getNameHash())
+				.addToBatch();
+
+			if ((i + 1) % BATCH_SIZE == 0 || i == files.size() - 1)
+			{
+				associateFile.executeBatch();
+			}
 		}
-
-		int id = insertArchive
-			.addParameter("archiveId", archiveId)
-			.addParameter("nameHash", nameHash)
-			.addParameter("crc", crc)
-			.addParameter("revision", revision)
-			.addParameter("hash", hash)
-			.executeUpdate()
-			.getKey(int.class);
-
-		ArchiveEntry entry = new ArchiveEntry();
-		entry.setId(id);
-		entry.setArchiveId(archiveId);
-		entry.setNameHash(nameHash);
-		entry.setCrc(crc);
-		entry.setRevision(revision);
-		entry.setHash(hash);
-		return entry;
 	}
 
-	public void associateFileToArchive(Connection con, ArchiveEntry archive, int fileId, int nameHash)
+	public void associateArchivesToIndex(Connection con, List<ArchiveEntry> archives, IndexEntry index)
 	{
-		if (associateFile == null)
+		Query associateArchive = con.createQuery("insert into index_archive (`index`, archive) values (:index, :archive)", false);
+
+		for (int i = 0; i < archives.size(); ++i)
 		{
-			associateFile = con.createQuery("insert into file (archive, fileId, nameHash) values (:archive, :fileId, :nameHash)");
+			associateArchive
+				.addParameter("index", index.getId())
+				.addParameter("archive", archives.get(i).getId())
+				.addToBatch();
+
+			if ((i + 1) % BATCH_SIZE == 0 || i == archives.size() - 1)
+			{
+				associateArchive.executeBatch();
+			}
 		}
-		associateFile
-			.addParameter("archive", archive.getId())
-			.addParameter("fileId", fileId)
-			.addParameter("nameHash", nameHash)
-			.executeUpdate();
 	}
 }
@@ -25,7 +25,12 @@
 package net.runelite.cache.updater;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.cache.fs.Archive;
 import net.runelite.cache.fs.Index;
@@ -34,6 +39,7 @@ import net.runelite.cache.fs.Store;
 import net.runelite.cache.index.FileData;
 import net.runelite.cache.updater.beans.ArchiveEntry;
 import net.runelite.cache.updater.beans.CacheEntry;
+import net.runelite.cache.updater.beans.FileEntry;
 import net.runelite.cache.updater.beans.IndexEntry;
 import org.sql2o.Connection;
 import org.sql2o.ResultSetIterable;
@@ -45,6 +51,10 @@ public class CacheStorage implements Storage
 	private final CacheDAO cacheDao;
 	private final Connection con;
 
+	// archives of the cache last loaded or saved, by index id. archives
+	// which haven't changed since are found here when saving
+	private final Map<Integer, Map<ArchiveKey, ArchiveEntry>> archives = new HashMap<>();
+
 	public CacheStorage(CacheEntry cacheEntry, CacheDAO cacheDao, Connection con)
 	{
 		this.cacheEntry = cacheEntry;
@@ -82,6 +92,7 @@ public class CacheStorage implements Storage
 			index.setCrc(indexEntry.getCrc());
 			index.setRevision(indexEntry.getRevision());
 
+			Map<ArchiveKey, ArchiveEntry> indexArchives = new HashMap<>();
 			try (ResultSetIterable<ArchiveEntry> archives = cacheDao.findArchivesForIndex(con, indexEntry))
 			{
 				for (ArchiveEntry archiveEntry : archives)
@@ -98,8 +109,12 @@ public class CacheStorage implements Storage
 					archive.setHash(archiveEntry.getHash());
 
 					// File data is not necessary for cache updating
+
+					indexArchives.put(key(archive), archiveEntry);
 				}
 			}
+
+			archives.put(index.getId(), indexArchives);
 		}
 	}
 
@@ -110,24 +125,56 @@ public class CacheStorage implements Storage
 		{
 			IndexEntry entry = cacheDao.createIndex(con, cacheEntry, index.getId(), index.getCrc(), index.getRevision());
 
+			// archives which are unchanged since the previous cache
+			Map<ArchiveKey, ArchiveEntry> existing = archives.getOrDefault(index.getId(), Collections.emptyMap());
+			Map<ArchiveKey, ArchiveEntry> saved = new HashMap<>(existing.size());
+
+			List<ArchiveEntry> indexArchives = new ArrayList<>(index.getArchives().size());
+			List<ArchiveEntry> newArchives = new ArrayList<>();
+			List<FileData[]> newFiles = new ArrayList<>();
+
 			for (Archive archive : index.getArchives())
 			{
-				ArchiveEntry archiveEntry = cacheDao.findArchive(con, entry, archive.getArchiveId(),
-					archive.getNameHash(), archive.getCrc(), archive.getRevision());
+				ArchiveKey key = key(archive);
+				ArchiveEntry archiveEntry = existing.get(key);
 				if (archiveEntry == null)
 				{
-					byte[] hash = archive.getHash();
-					archiveEntry = cacheDao.createArchive(con, entry, archive.getArchiveId(),
-						archive.getNameHash(), archive.getCrc(), archive.getRevision(), hash);
-
-					for (FileData file : archive.getFileData())
-					{
-						cacheDao.associateFileToArchive(con, archiveEntry, file.getId(), file.getNameHash());
-					}
+					archiveEntry = new ArchiveEntry();
+					archiveEntry.setArchiveId(archive.getArchiveId());
+					archiveEntry.setNameHash(archive.getNameHash());
+					archiveEntry.setCrc(archive.getCrc());
+					archiveEntry.setRevision(archive.getRevision());
+					archiveEntry.setHash(archive.getHash());
+
+					newArchives.add(archiveEntry);
+					newFiles.add(archive.getFileData());
 				}
 
-				cacheDao.associateArchiveToIndex(con, archiveEntry, entry);
+				indexArchives.add(archiveEntry);
+				saved.put(key, archiveEntry);
 			}
+
+			cacheDao.createArchives(con, newArchives);
+
+			List<FileEntry> files = new ArrayList<>();
+			for (int i = 0; i < newArchives.size(); ++i)
+			{
+				for (FileData file : newFiles.get(i))
+				{
+					FileEntry fileEntry = new FileEntry();
+					fileEntry.setArchiveId(newArchives.get(i).getId());
+					fileEntry.setFileId(file.getId());
+					fileEntry.setNameHash(file.getNameHash());
+					files.add(fileEntry);
+				}
+			}
+
+			cacheDao.createFiles(con, files);
+			cacheDao.associateArchivesToIndex(con, indexArchives, entry);
+			archives.put(index.getId(), saved);
+
+			log.debug("Saved index {}: {} archives, {} new, {} new files",
+				index.getId(), indexArchives.size(), newArchives.size(), files.size());
 		}
 	}
 
@@ -143,4 +190,17 @@ public class CacheStorage implements Storage
 		throw new UnsupportedOperationException();
 	}
 
+	private static ArchiveKey key(Archive archive)
+	{
+		return new ArchiveKey(archive.getArchiveId(), archive.getNameHash(), archive.getCrc(), archive.getRevision());
+	}
+
+	@Value
+	private static class ArchiveKey
+	{
+		int archiveId;
+		int nameHash;
+		int crc;
+		int revision;
+	}
 }
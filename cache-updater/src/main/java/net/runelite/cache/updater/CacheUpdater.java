@@ -24,19 +24,20 @@
  */
 package net.runelite.cache.updater;
 
-import io.minio.MinioClient;
-import io.minio.errors.InvalidEndpointException;
-import io.minio.errors.InvalidPortException;
+import com.google.common.base.Stopwatch;
+import com.google.common.hash.HashCode;
 import java.io.IOException;
 import java.time.Instant;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import net.runelite.cache.client.CacheClient;
 import net.runelite.cache.client.IndexInfo;
-import net.runelite.cache.fs.Archive;
 import net.runelite.cache.fs.Store;
+import net.runelite.cache.updater.beans.ArchiveEntry;
 import net.runelite.cache.updater.beans.CacheEntry;
 import net.runelite.cache.updater.beans.IndexEntry;
 import net.runelite.http.api.RuneLiteAPI;
@@ -45,11 +46,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.sql2o.Connection;
+import org.sql2o.ResultSetIterable;
 import org.sql2o.Sql2o;
 
 @SpringBootApplication
@@ -58,22 +59,19 @@ public class CacheUpdater implements CommandLineRunner
 	private static final Logger logger = LoggerFactory.getLogger(CacheUpdater.class);
 
 	private final Sql2o sql2o;
-	private final MinioClient minioClient;
-
-	@Value("${minio.bucket}")
-	private String minioBucket;
+	private final BlobStore blobStore;
 
 	@Autowired
 	public CacheUpdater(
 		@Qualifier("Runelite Cache SQL2O") Sql2o sql2o,
-		MinioClient minioClient
+		BlobStore blobStore
 	)
 	{
 		this.sql2o = sql2o;
-		this.minioClient = minioClient;
+		this.blobStore = blobStore;
 	}
 
-	public void update() throws IOException, InvalidEndpointException, InvalidPortException, InterruptedException
+	public void update() throws IOException, InterruptedException
 	{
 		int rsVersion = RuneLiteAPI.getRsVersion();
 
@@ -94,8 +92,10 @@ public class CacheUpdater implements CommandLineRunner
 
 			ExecutorService executor = Executors.newSingleThreadExecutor();
 
-			CacheClient client = new CacheClient(store, rsVersion,
-				(Archive archive, byte[] data) -> executor.submit(new CacheUploader(minioClient, minioBucket, archive, data)));
+			Set<HashCode> knownHashes = ConcurrentHashMap.newKeySet();
+			CacheUploader uploader = new CacheUploader(blobStore, knownHashes, executor);
+
+			CacheClient client = new CacheClient(store, rsVersion, uploader::upload);
 
 			client.connect();
 			HandshakeResponseType result = client.handshake().join();
@@ -115,7 +115,19 @@ public class CacheUpdater implements CommandLineRunner
 				return;
 			}
 
+			// data of archives already in the database is known to be in the blob store
+			Stopwatch stopwatch = Stopwatch.createStarted();
+			try (ResultSetIterable<ArchiveEntry> archives = cacheDao.findArchiveHashes(con))
+			{
+				for (ArchiveEntry archive : archives)
+				{
+					knownHashes.add(HashCode.fromBytes(archive.getHash()));
+				}
+			}
+			logger.info("Loaded {} known archive hashes in {}", knownHashes.size(), stopwatch);
+
 			client.download();
+			uploader.flush();
 
 			CacheEntry newCache = created ? cache : cacheDao.createCache(con, rsVersion, Instant.now());
 
@@ -130,6 +142,8 @@ public class CacheUpdater implements CommandLineRunner
 				logger.debug("Waiting for termination of executor...");
 			}
 
+			logger.info("Uploaded archives: {}", uploader);
+
 			// commit database
 			con.commit();
 		}
@@ -24,73 +24,201 @@
  */
 package net.runelite.cache.updater;
 
+import com.google.common.hash.HashCode;
 import com.google.common.hash.Hashing;
-import com.google.common.io.BaseEncoding;
-import io.minio.MinioClient;
-import io.minio.errors.ErrorResponseException;
-import io.minio.errors.InsufficientDataException;
-import io.minio.errors.InternalException;
-import io.minio.errors.InvalidArgumentException;
-import io.minio.errors.InvalidBucketNameException;
-import io.minio.errors.NoResponseException;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 import net.runelite.cache.fs.Archive;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xmlpull.v1.XmlPullParserException;
 
-public class CacheUploader implements Runnable
+/**
+ * Uploads archive data to a {@link BlobStore}. Archives whose hash is
+ * already known, from a previous cache or earlier in this run, are not
+ * sent to the store at all. The remaining archives are checked for
+ * existence and uploaded in batches.
+ */
+public class CacheUploader
 {
 	private static final Logger logger = LoggerFactory.getLogger(CacheUploader.class);
 
-	private final MinioClient minioClient;
-	private final String minioBucket;
-	private final Archive archive;
-	private final byte[] data;
+	private static final int BATCH_SIZE = 64;
+
+	private final BlobStore blobStore;
+	private final Set<HashCode> knownHashes;
+	private final Executor executor;
+
+	private List<Blob> batch = new ArrayList<>(BATCH_SIZE);
+
+	private final AtomicInteger known = new AtomicInteger();
+	private final AtomicInteger existing = new AtomicInteger();
+	private final AtomicInteger uploaded = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
 
-	public CacheUploader(MinioClient minioClient, String minioBucket, Archive archive, byte[] data)
+	/**
+	 * @param blobStore store to upload to
+	 * @param knownHashes hashes which are known to be in the store, this
+	 * must be safe for concurrent use and is updated as archives are uploaded
+	 * @param executor executor to check for and upload blobs on
+	 */
+	public CacheUploader(BlobStore blobStore, Set<HashCode> knownHashes, Executor executor)
 	{
-		this.minioClient = minioClient;
-		this.minioBucket = minioBucket;
-		this.archive = archive;
-		this.data = data;
+		this.blobStore = blobStore;
+		this.knownHashes = knownHashes;
+		this.executor = executor;
 	}
 
-	@Override
-	public void run()
+	/**
+	 * Set the hash of an archive and queue its data to be uploaded
+	 *
+	 * @param archive
+	 * @param data
+	 */
+	public void upload(Archive archive, byte[] data)
 	{
-		byte[] hash = Hashing.sha256().hashBytes(data).asBytes();
-		String hashStr = BaseEncoding.base16().encode(hash);
+		HashCode hash = Hashing.sha256().hashBytes(data);
+		archive.setHash(hash.asBytes());
 
-		archive.setHash(hash);
+		if (!knownHashes.add(hash))
+		{
+			known.incrementAndGet();
+			return;
+		}
 
-		String path = new StringBuilder()
-			.append(hashStr.substring(0, 2))
-			.append('/')
-			.append(hashStr.substring(2))
-			.toString();
+		List<Blob> toUpload = null;
 
-		try
+		synchronized (this)
 		{
-			try (InputStream in = minioClient.getObject(minioBucket, path))
+			batch.add(new Blob(hash, data));
+
+			if (batch.size() >= BATCH_SIZE)
 			{
-				return; // already exists
+				toUpload = batch;
+				batch = new ArrayList<>(BATCH_SIZE);
 			}
-			catch (ErrorResponseException ex)
+		}
+
+		if (toUpload != null)
+		{
+			submit(toUpload);
+		}
+	}
+
+	/**
+	 * Submit any partially filled batch
+	 */
+	public void flush()
+	{
+		List<Blob> toUpload;
+
+		synchronized (this)
+		{
+			if (batch.isEmpty())
 			{
-				// doesn't exist
+				return;
 			}
 
-			minioClient.putObject(minioBucket, path, new ByteArrayInputStream(data), data.length, "binary/octet-stream");
+			toUpload = batch;
+			batch = new ArrayList<>(BATCH_SIZE);
+		}
+
+		submit(toUpload);
+	}
+
+	private void submit(List<Blob> blobs)
+	{
+		executor.execute(() -> upload(blobs));
+	}
+
+	private void upload(List<Blob> blobs)
+	{
+		List<HashCode> hashes = new ArrayList<>(blobs.size());
+		for (Blob blob : blobs)
+		{
+			hashes.add(blob.hash);
+		}
+
+		Set<HashCode> exists;
+		try
+		{
+			exists = blobStore.exists(hashes);
 		}
-		catch (ErrorResponseException | InsufficientDataException | InternalException | InvalidArgumentException | InvalidBucketNameException | NoResponseException | IOException | InvalidKeyException | NoSuchAlgorithmException | XmlPullParserException ex)
+		catch (IOException ex)
 		{
-			logger.warn("unable to upload data to store", ex);
+			logger.warn("unable to check for existing data in store", ex);
+			failed.addAndGet(blobs.size());
+			knownHashes.removeAll(hashes);
+			return;
 		}
+
+		existing.addAndGet(exists.size());
+
+		for (Blob blob : blobs)
+		{
+			if (exists.contains(blob.hash))
+			{
+				continue;
+			}
+
+			try
+			{
+				blobStore.put(blob.hash, blob.data);
+				uploaded.incrementAndGet();
+			}
+			catch (IOException ex)
+			{
+				logger.warn("unable to upload data to store", ex);
+				failed.incrementAndGet();
+				knownHashes.remove(blob.hash);
+			}
+		}
+	}
+
+	/**
+	 * @return number of archives skipped because their hash was already known
+	 */
+	public int getKnown()
+	{
+		return known.get();
+	}
+
+	/**
+	 * @return number of archives skipped because they were found in the store
+	 */
+	public int getExisting()
+	{
+		return existing.get();
 	}
 
+	public int getUploaded()
+	{
+		return uploaded.get();
+	}
+
+	public int getFailed()
+	{
+		return failed.get();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "CacheUploader{" + "known=" + known + ", existing=" + existing + ", uploaded=" + uploaded + ", failed=" + failed + '}';
+	}
+
+	private static class Blob
+	{
+		private final HashCode hash;
+		private final byte[] data;
+
+		Blob(HashCode hash, byte[] data)
+		{
+			this.hash = hash;
+			this.data = data;
+		}
+	}
 }
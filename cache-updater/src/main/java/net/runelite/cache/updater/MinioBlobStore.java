@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.updater;
+
+import com.google.common.hash.HashCode;
+import io.minio.MinioClient;
+import io.minio.Result;
+import io.minio.errors.ErrorResponseException;
+import io.minio.errors.InsufficientDataException;
+import io.minio.errors.InternalException;
+import io.minio.errors.InvalidArgumentException;
+import io.minio.errors.InvalidBucketNameException;
+import io.minio.errors.NoResponseException;
+import io.minio.messages.Item;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.xmlpull.v1.XmlPullParserException;
+
+/**
+ * A blob store in a MinIO bucket
+ */
+public class MinioBlobStore implements BlobStore
+{
+	// list a directory rather than stat each object when checking at least this many blobs in it
+	private static final int LIST_THRESHOLD = 8;
+
+	private final MinioClient minioClient;
+	private final String minioBucket;
+
+	public MinioBlobStore(MinioClient minioClient, String minioBucket)
+	{
+		this.minioClient = minioClient;
+		this.minioBucket = minioBucket;
+	}
+
+	@Override
+	public boolean exists(HashCode hash) throws IOException
+	{
+		try
+		{
+			minioClient.statObject(minioBucket, BlobStore.getPath(hash));
+			return true;
+		}
+		catch (ErrorResponseException ex)
+		{
+			// doesn't exist
+			return false;
+		}
+		catch (InsufficientDataException | InternalException | InvalidBucketNameException | NoResponseException | InvalidKeyException | NoSuchAlgorithmException | XmlPullParserException ex)
+		{
+			throw new IOException(ex);
+		}
+	}
+
+	@Override
+	public Set<HashCode> exists(Collection<HashCode> hashes) throws IOException
+	{
+		// group by directory, so blobs sharing a directory can be checked with one listing
+		Map<String, List<HashCode>> directories = new HashMap<>();
+		for (HashCode hash : hashes)
+		{
+			String path = BlobStore.getPath(hash);
+			directories.computeIfAbsent(path.substring(0, path.indexOf('/') + 1), k -> new ArrayList<>())
+				.add(hash);
+		}
+
+		Set<HashCode> existing = new HashSet<>();
+		for (Map.Entry<String, List<HashCode>> entry : directories.entrySet())
+		{
+			List<HashCode> directoryHashes = entry.getValue();
+
+			if (directoryHashes.size() < LIST_THRESHOLD)
+			{
+				for (HashCode hash : directoryHashes)
+				{
+					if (exists(hash))
+					{
+						existing.add(hash);
+					}
+				}
+				continue;
+			}
+
+			Set<String> objects = list(entry.getKey());
+			for (HashCode hash : directoryHashes)
+			{
+				if (objects.contains(BlobStore.getPath(hash)))
+				{
+					existing.add(hash);
+				}
+			}
+		}
+		return existing;
+	}
+
+	private Set<String> list(String prefix) throws IOException
+	{
+		Set<String> objects = new HashSet<>();
+		try
+		{
+			for (Result<Item> result : minioClient.listObjects(minioBucket, prefix))
+			{
+				objects.add(result.get().objectName());
+			}
+		}
+		catch (ErrorResponseException | InsufficientDataException | InternalException | InvalidBucketNameException | NoResponseException | InvalidKeyException | NoSuchAlgorithmException | XmlPullParserException ex)
+		{
+			throw new IOException(ex);
+		}
+		return objects;
+	}
+
+	@Override
+	public void put(HashCode hash, byte[] data) throws IOException
+	{
+		try
+		{
+			minioClient.putObject(minioBucket, BlobStore.getPath(hash), new ByteArrayInputStream(data), data.length, "binary/octet-stream");
+		}
+		catch (ErrorResponseException | InsufficientDataException | InternalException | InvalidArgumentException | InvalidBucketNameException | NoResponseException | InvalidKeyException | NoSuchAlgorithmException | XmlPullParserException ex)
+		{
+			throw new IOException(ex);
+		}
+	}
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.updater;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.index.FileData;
+import net.runelite.cache.updater.beans.CacheEntry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sql2o.Connection;
+import org.sql2o.Sql2o;
+import org.sql2o.converters.Converter;
+import org.sql2o.quirks.NoQuirks;
+
+/**
+ * Measures the statements issued and time taken to save a cache with
+ * {@link CacheStorage} to an embedded H2 database. The first save inserts
+ * every archive, and the second save of the cache loaded back finds them all.
+ */
+public class CacheStorageBenchmark
+{
+	private static final Logger logger = LoggerFactory.getLogger(CacheStorageBenchmark.class);
+
+	private static final int INDEXES = 20;
+	private static final int ARCHIVES = 1000;
+	private static final int FILES = 4;
+
+	private static final String[] SCHEMA =
+	{
+		"create table archive (id int auto_increment primary key, archiveId int not null, nameHash int not null,"
+			+ " crc int not null, revision int not null, hash binary(32) not null)",
+		"create index archive_revision on archive (archiveId, revision)",
+		"create table cache (id int auto_increment primary key, revision int not null, date timestamp not null)",
+		"create table file (id int auto_increment primary key, archive int not null, fileId int not null,"
+			+ " nameHash int not null, foreign key (archive) references archive (id))",
+		"create table `index` (id int auto_increment primary key, cache int not null, indexId int not null,"
+			+ " crc int not null, revision int not null, foreign key (cache) references cache (id))",
+		"create table index_archive (id int auto_increment primary key, `index` int not null, archive int not null,"
+			+ " foreign key (`index`) references `index` (id), foreign key (archive) references archive (id))",
+		"create unique index idx_index_archive on index_archive (`index`, archive)",
+		"create index index_archive_archive on index_archive (archive)"
+	};
+
+	private final AtomicInteger statements = new AtomicInteger();
+
+	@Test
+	public void benchmark() throws IOException
+	{
+		JdbcDataSource h2 = new JdbcDataSource();
+		h2.setURL("jdbc:h2:mem:cache;MODE=MySQL;DB_CLOSE_DELAY=-1");
+
+		Map<Class, Converter> converters = new HashMap<>();
+		converters.put(Instant.class, new InstantConverter());
+		Sql2o sql2o = new Sql2o(countStatements(h2), new NoQuirks(converters));
+
+		try (Connection con = sql2o.beginTransaction())
+		{
+			for (String sql : SCHEMA)
+			{
+				con.createQuery(sql).executeUpdate();
+			}
+			con.commit();
+		}
+
+		CacheEntry previous = null;
+		for (int run = 0; run < 2; ++run)
+		{
+			try (Connection con = sql2o.beginTransaction())
+			{
+				CacheDAO cacheDao = new CacheDAO();
+				CacheStorage storage = new CacheStorage(previous, cacheDao, con);
+
+				try (Store store = new Store(storage))
+				{
+					// as the updater does, the previous cache is loaded and saved as the new cache
+					if (previous == null)
+					{
+						populate(store);
+					}
+					else
+					{
+						store.load();
+					}
+
+					CacheEntry cache = cacheDao.createCache(con, 1, Instant.now());
+					storage.setCacheEntry(cache);
+
+					statements.set(0);
+					long start = System.nanoTime();
+
+					store.save();
+					con.commit();
+
+					long end = System.nanoTime();
+
+					logger.info("{} save: {} statements in {} ms",
+						run == 0 ? "Initial" : "Unchanged", statements.get(), (end - start) / 1_000_000L);
+
+					previous = cache;
+				}
+			}
+		}
+
+		try (Connection con = sql2o.open())
+		{
+			Assert.assertEquals(INDEXES * ARCHIVES, (int) con.createQuery("select count(*) from archive")
+				.executeScalar(Integer.class));
+			Assert.assertEquals(INDEXES * ARCHIVES * FILES, (int) con.createQuery("select count(*) from file")
+				.executeScalar(Integer.class));
+			Assert.assertEquals(2 * INDEXES * ARCHIVES, (int) con.createQuery("select count(*) from index_archive")
+				.executeScalar(Integer.class));
+		}
+	}
+
+	private static void populate(Store store) throws IOException
+	{
+		for (int i = 0; i < INDEXES; ++i)
+		{
+			Index index = store.addIndex(i);
+			index.setCrc(i);
+			index.setRevision(1);
+
+			for (int j = 0; j < ARCHIVES; ++j)
+			{
+				Archive archive = index.addArchive(j);
+				archive.setNameHash(j);
+				archive.setCrc(i * ARCHIVES + j);
+				archive.setRevision(1);
+				archive.setHash(new byte[32]);
+
+				FileData[] files = new FileData[FILES];
+				for (int k = 0; k < FILES; ++k)
+				{
+					files[k] = new FileData();
+					files[k].setId(k);
+					files[k].setNameHash(k);
+				}
+				archive.setFileData(files);
+			}
+		}
+	}
+
+	/**
+	 * Wrap a data source to count the statements executed through it
+	 */
+	private DataSource countStatements(DataSource dataSource)
+	{
+		return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]
+		{
+			DataSource.class
+		}, forward(dataSource, (method, result) ->
+		{
+			if (result instanceof java.sql.Connection)
+			{
+				return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]
+				{
+					java.sql.Connection.class
+				}, forward(result, (m, r) -> r instanceof Statement ? countExecutions((Statement) r) : r));
+			}
+			return result;
+		}));
+	}
+
+	private Object countExecutions(Statement statement)
+	{
+		Class<?> type = statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+		return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]
+		{
+			type
+		}, forward(statement, (method, result) ->
+		{
+			if (method.getName().startsWith("execute"))
+			{
+				statements.incrementAndGet();
+			}
+			return result;
+		}));
+	}
+
+	private static InvocationHandler forward(Object target, ResultMapper mapper)
+	{
+		return (proxy, method, args) ->
+		{
+			try
+			{
+				return mapper.map(method, method.invoke(target, args));
+			}
+			catch (InvocationTargetException ex)
+			{
+				throw ex.getCause();
+			}
+		};
+	}
+
+	@FunctionalInterface
+	private interface ResultMapper
+	{
+		Object map(java.lang.reflect.Method method, Object result) throws SQLException;
+	}
+}
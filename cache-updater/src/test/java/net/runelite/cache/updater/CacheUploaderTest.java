@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.updater;
+
+import com.google.common.hash.HashCode;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Index;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class CacheUploaderTest
+{
+	private static final Logger logger = LoggerFactory.getLogger(CacheUploaderTest.class);
+
+	private static final int ARCHIVES = 200;
+	// simulated round trip to the object store
+	private static final long LATENCY = 1;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final AtomicInteger requests = new AtomicInteger();
+
+	@Test
+	public void testUpload() throws Exception
+	{
+		BlobStore blobStore = countRequests(new FileBlobStore(folder.newFolder()));
+		List<byte[]> data = new ArrayList<>();
+		for (int i = 0; i < ARCHIVES; ++i)
+		{
+			data.add(("archive " + i).getBytes());
+		}
+
+		// everything is new
+		Set<HashCode> knownHashes = ConcurrentHashMap.newKeySet();
+		CacheUploader uploader = upload(blobStore, knownHashes, data);
+		assertEquals(ARCHIVES, uploader.getUploaded());
+		assertTrue(requests.get() < ARCHIVES * 2);
+
+		// nothing has changed and the hashes are known from the database
+		requests.set(0);
+		long start = System.nanoTime();
+		uploader = upload(blobStore, knownHashes, data);
+		long known = System.nanoTime() - start;
+
+		assertEquals(ARCHIVES, uploader.getKnown());
+		assertEquals(0, uploader.getUploaded());
+		assertEquals(0, requests.get());
+
+		// nothing has changed but the hashes aren't known, so existence is checked in batches
+		requests.set(0);
+		start = System.nanoTime();
+		uploader = upload(blobStore, ConcurrentHashMap.newKeySet(), data);
+		long unknown = System.nanoTime() - start;
+
+		assertEquals(ARCHIVES, uploader.getExisting());
+		assertEquals(0, uploader.getUploaded());
+		int batchedRequests = requests.get();
+		assertTrue(batchedRequests < ARCHIVES);
+
+		logger.info("Unchanged cache: {} uploads skipped with known hashes in {} us (0 requests), "
+			+ "{} us with {} batched existence checks, vs {} requests checking each archive",
+			uploader.getExisting(), known / 1000, unknown / 1000, batchedRequests, ARCHIVES);
+	}
+
+	@Test
+	public void testDuplicateData() throws Exception
+	{
+		BlobStore blobStore = countRequests(new FileBlobStore(folder.newFolder()));
+		List<byte[]> data = new ArrayList<>();
+		for (int i = 0; i < ARCHIVES; ++i)
+		{
+			data.add("same".getBytes());
+		}
+
+		CacheUploader uploader = upload(blobStore, ConcurrentHashMap.newKeySet(), data);
+		assertEquals(1, uploader.getUploaded());
+		assertEquals(ARCHIVES - 1, uploader.getKnown());
+	}
+
+	private static CacheUploader upload(BlobStore blobStore, Set<HashCode> knownHashes, List<byte[]> data) throws IOException
+	{
+		CacheUploader uploader = new CacheUploader(blobStore, knownHashes, MoreExecutors.directExecutor());
+		Index index = new Index(0);
+
+		for (int i = 0; i < data.size(); ++i)
+		{
+			Archive archive = index.addArchive(i);
+			uploader.upload(archive, data.get(i));
+			assertEquals(32, archive.getHash().length);
+		}
+
+		uploader.flush();
+		return uploader;
+	}
+
+	private BlobStore countRequests(BlobStore blobStore)
+	{
+		return new BlobStore()
+		{
+			@Override
+			public boolean exists(HashCode hash) throws IOException
+			{
+				request();
+				return blobStore.exists(hash);
+			}
+
+			@Override
+			public Set<HashCode> exists(Collection<HashCode> hashes) throws IOException
+			{
+				// one request for the whole batch
+				request();
+				return blobStore.exists(hashes);
+			}
+
+			@Override
+			public void put(HashCode hash, byte[] data) throws IOException
+			{
+				request();
+				blobStore.put(hash, data);
+			}
+		};
+	}
+
+	private void request()
+	{
+		requests.incrementAndGet();
+		try
+		{
+			Thread.sleep(LATENCY);
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+}
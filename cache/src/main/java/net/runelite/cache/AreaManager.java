@@ -24,12 +24,14 @@
  */
 package net.runelite.cache;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import net.runelite.cache.definitions.AreaDefinition;
+import net.runelite.cache.definitions.exporters.AreaExporter;
 import net.runelite.cache.definitions.loaders.AreaLoader;
 import net.runelite.cache.fs.Archive;
 import net.runelite.cache.fs.ArchiveFiles;
@@ -65,6 +67,19 @@ public class AreaManager
 		}
 	}
 
+	public void export(File out) throws IOException
+	{
+		out.mkdirs();
+
+		for (AreaDefinition def : areas.values())
+		{
+			AreaExporter exporter = new AreaExporter(def);
+
+			File targ = new File(out, def.id + ".json");
+			exporter.exportTo(targ);
+		}
+	}
+
 	public Collection<AreaDefinition> getAreas()
 	{
 		return Collections.unmodifiableCollection(areas.values());
@@ -26,7 +26,10 @@ package net.runelite.cache;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
 import net.runelite.cache.fs.Store;
+import net.runelite.cache.fs.jagex.CompactionResult;
+import net.runelite.cache.fs.jagex.DiskStorage;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -41,10 +44,14 @@ public class Cache
 
 		options.addOption("c", "cache", true, "cache base");
 
+		options.addOption(null, "compact", false, "compact the cache data file");
+
 		options.addOption(null, "items", true, "directory to dump items to");
 		options.addOption(null, "npcs", true, "directory to dump npcs to");
 		options.addOption(null, "objects", true, "directory to dump objects to");
 		options.addOption(null, "sprites", true, "directory to dump sprites to");
+		options.addOption(null, "export", true, "directory to export items, npcs, objects, inventories, areas, interfaces, sprites and textures to, in parallel");
+		options.addOption(null, "threads", true, "number of threads to export with");
 
 		CommandLineParser parser = new DefaultParser();
 		CommandLine cmd;
@@ -61,6 +68,15 @@ public class Cache
 
 		String cache = cmd.getOptionValue("cache");
 
+		if (cmd.hasOption("compact"))
+		{
+			System.out.println("Compacting " + cache);
+			CompactionResult result = DiskStorage.compact(new File(cache));
+			System.out.println("Compacted " + result.archives + " archives in " + result.time + "ms, reclaimed "
+				+ result.getReclaimed() + " bytes");
+			return;
+		}
+
 		Store store = loadStore(cache);
 
 		if (cmd.hasOption("items"))
@@ -115,6 +131,23 @@ public class Cache
 			System.out.println("Dumping sprites to " + spritedir);
 			dumpSprites(store, new File(spritedir));
 		}
+		else if (cmd.hasOption("export"))
+		{
+			String exportdir = cmd.getOptionValue("export");
+
+			if (exportdir == null)
+			{
+				System.err.println("Export directory must be specified");
+				return;
+			}
+
+			int threads = cmd.hasOption("threads")
+				? Integer.parseInt(cmd.getOptionValue("threads"))
+				: Runtime.getRuntime().availableProcessors();
+
+			System.out.println("Exporting to " + exportdir + " with " + threads + " threads");
+			export(store, new File(exportdir), threads);
+		}
 		else
 		{
 			System.err.println("Nothing to do");
@@ -128,6 +161,21 @@ public class Cache
 		return store;
 	}
 
+	private static void export(Store store, File exportdir, int threads) throws IOException
+	{
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try
+		{
+			CacheExporter exporter = new CacheExporter(store, pool);
+			exporter.exportAll(exportdir);
+			exporter.getTimings().forEach((name, time) -> System.out.println(name + ": " + time + "ms"));
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
 	private static void dumpItems(Store store, File itemdir) throws IOException
 	{
 		ItemManager dumper = new ItemManager(store);
@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import net.runelite.cache.definitions.AreaDefinition;
+import net.runelite.cache.definitions.InterfaceDefinition;
+import net.runelite.cache.definitions.InventoryDefinition;
+import net.runelite.cache.definitions.ItemDefinition;
+import net.runelite.cache.definitions.NpcDefinition;
+import net.runelite.cache.definitions.ObjectDefinition;
+import net.runelite.cache.definitions.SpriteDefinition;
+import net.runelite.cache.definitions.TextureDefinition;
+import net.runelite.cache.definitions.exporters.AreaExporter;
+import net.runelite.cache.definitions.exporters.InterfaceExporter;
+import net.runelite.cache.definitions.exporters.InventoryExporter;
+import net.runelite.cache.definitions.exporters.ItemExporter;
+import net.runelite.cache.definitions.exporters.NpcExporter;
+import net.runelite.cache.definitions.exporters.ObjectExporter;
+import net.runelite.cache.definitions.exporters.SpriteExporter;
+import net.runelite.cache.definitions.exporters.TextureExporter;
+import net.runelite.cache.definitions.loaders.AreaLoader;
+import net.runelite.cache.definitions.loaders.InterfaceLoader;
+import net.runelite.cache.definitions.loaders.InventoryLoader;
+import net.runelite.cache.definitions.loaders.ItemLoader;
+import net.runelite.cache.definitions.loaders.NpcLoader;
+import net.runelite.cache.definitions.loaders.ObjectLoader;
+import net.runelite.cache.definitions.loaders.SpriteLoader;
+import net.runelite.cache.definitions.loaders.TextureLoader;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.ArchiveFiles;
+import net.runelite.cache.fs.FSFile;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Storage;
+import net.runelite.cache.fs.Store;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decodes and exports the items, npcs, objects, inventories, areas,
+ * interfaces, sprites and textures of a store on a fork join pool.
+ * Archives are loaded, decompressed, decoded and written by the pool one
+ * archive, or one range of a config archive's files, per task, so at most
+ * as many archives as the pool has threads are held in memory at once. The
+ * files written are the same as those written by the export methods of the
+ * managers.
+ */
+public class CacheExporter
+{
+	private static final Logger logger = LoggerFactory.getLogger(CacheExporter.class);
+
+	// number of config or texture files decoded and written per task
+	private static final int FILES_PER_TASK = 256;
+
+	private final Store store;
+	private final ForkJoinPool pool;
+	private final Map<String, Long> timings = Collections.synchronizedMap(new LinkedHashMap<>());
+
+	public CacheExporter(Store store, ForkJoinPool pool)
+	{
+		this.store = store;
+		this.pool = pool;
+	}
+
+	public void exportAll(File out) throws IOException
+	{
+		exportItems(new File(out, "items"));
+		exportNpcs(new File(out, "npcs"));
+		exportObjects(new File(out, "objects"));
+		exportInventories(new File(out, "inventories"));
+		exportAreas(new File(out, "areas"));
+		exportInterfaces(new File(out, "interfaces"));
+		exportSprites(new File(out, "sprites"));
+		exportTextures(new File(out, "textures"));
+	}
+
+	public void exportItems(File out) throws IOException
+	{
+		ItemLoader loader = new ItemLoader();
+		exportConfigs("items", ConfigType.ITEM, out, file ->
+		{
+			ItemDefinition def = loader.load(file.getFileId(), file.getContents());
+			new ItemExporter(def).exportTo(new File(out, def.id + ".json"));
+		});
+	}
+
+	public void exportNpcs(File out) throws IOException
+	{
+		NpcLoader loader = new NpcLoader();
+		exportConfigs("npcs", ConfigType.NPC, out, file ->
+		{
+			NpcDefinition def = loader.load(file.getFileId(), file.getContents());
+			new NpcExporter(def).exportTo(new File(out, def.id + ".json"));
+		});
+	}
+
+	public void exportObjects(File out) throws IOException
+	{
+		ObjectLoader loader = new ObjectLoader();
+		exportConfigs("objects", ConfigType.OBJECT, out, file ->
+		{
+			ObjectDefinition def = loader.load(file.getFileId(), file.getContents());
+			new ObjectExporter(def).exportTo(new File(out, def.getId() + ".json"));
+		});
+	}
+
+	public void exportInventories(File out) throws IOException
+	{
+		InventoryLoader loader = new InventoryLoader();
+		exportConfigs("inventories", ConfigType.INV, out, file ->
+		{
+			InventoryDefinition def = loader.load(file.getFileId(), file.getContents());
+			new InventoryExporter(def).exportTo(new File(out, def.id + ".json"));
+		});
+	}
+
+	public void exportAreas(File out) throws IOException
+	{
+		AreaLoader loader = new AreaLoader();
+		exportConfigs("areas", ConfigType.AREA, out, file ->
+		{
+			AreaDefinition def = loader.load(file.getContents(), file.getFileId());
+			new AreaExporter(def).exportTo(new File(out, def.id + ".json"));
+		});
+	}
+
+	public void exportInterfaces(File out) throws IOException
+	{
+		long start = System.nanoTime();
+		out.mkdirs();
+
+		InterfaceLoader loader = new InterfaceLoader();
+		Storage storage = store.getStorage();
+		List<Archive> archives = store.getIndex(IndexType.INTERFACES).getArchives();
+
+		invoke(archives.size(), 1, i ->
+		{
+			Archive archive = archives.get(i);
+			ArchiveFiles files = archive.getFiles(storage.loadArchive(archive));
+
+			for (FSFile file : files.getFiles())
+			{
+				int widgetId = (archive.getArchiveId() << 16) + file.getFileId();
+				InterfaceDefinition def = loader.load(widgetId, file.getContents());
+
+				File folder = new File(out, "" + (def.id >>> 16));
+				folder.mkdirs();
+
+				new InterfaceExporter(def).exportTo(new File(folder, (def.id & 0xffff) + ".json"));
+			}
+		});
+
+		time("interfaces", start, archives.size() + " archives");
+	}
+
+	public void exportSprites(File out) throws IOException
+	{
+		long start = System.nanoTime();
+		out.mkdirs();
+
+		SpriteLoader loader = new SpriteLoader();
+		Storage storage = store.getStorage();
+		List<Archive> archives = store.getIndex(IndexType.SPRITES).getArchives();
+
+		invoke(archives.size(), 1, i ->
+		{
+			Archive archive = archives.get(i);
+			byte[] contents = archive.decompress(storage.loadArchive(archive));
+
+			for (SpriteDefinition sprite : loader.load(archive.getArchiveId(), contents))
+			{
+				// as in SpriteManager, some sprites have no size
+				if (sprite.getHeight() <= 0 || sprite.getWidth() <= 0)
+				{
+					continue;
+				}
+
+				File png = new File(out, sprite.getId() + "-" + sprite.getFrame() + ".png");
+				new SpriteExporter(sprite).exportTo(png);
+			}
+		});
+
+		time("sprites", start, archives.size() + " archives");
+	}
+
+	public void exportTextures(File out) throws IOException
+	{
+		TextureLoader loader = new TextureLoader();
+		Archive archive = store.getIndex(IndexType.TEXTURES).getArchive(0);
+		exportFiles("textures", archive, out, file ->
+		{
+			TextureDefinition def = loader.load(file.getFileId(), file.getContents());
+			new TextureExporter(def).exportTo(new File(out, def.getId() + ".json"));
+		});
+	}
+
+	/**
+	 * Get the wall time, in milliseconds, of each export run so far
+	 *
+	 * @return export name to time taken
+	 */
+	public Map<String, Long> getTimings()
+	{
+		synchronized (timings)
+		{
+			return new LinkedHashMap<>(timings);
+		}
+	}
+
+	private void exportConfigs(String name, ConfigType type, File out, FileTask task) throws IOException
+	{
+		Index index = store.getIndex(IndexType.CONFIGS);
+		exportFiles(name, index.getArchive(type.getId()), out, task);
+	}
+
+	private void exportFiles(String name, Archive archive, File out, FileTask task) throws IOException
+	{
+		long start = System.nanoTime();
+		out.mkdirs();
+
+		// config and texture archives hold every definition of a type, so they
+		// are loaded once and their files are split up between tasks
+		ArchiveFiles files = archive.getFiles(store.getStorage().loadArchive(archive));
+		List<FSFile> list = files.getFiles();
+
+		invoke(list.size(), FILES_PER_TASK, i -> task.run(list.get(i)));
+
+		time(name, start, list.size() + " files");
+	}
+
+	private void invoke(int count, int perTask, IndexTask task) throws IOException
+	{
+		try
+		{
+			pool.invoke(new RangeTask(0, count, perTask, task));
+		}
+		catch (UncheckedIOException ex)
+		{
+			throw ex.getCause();
+		}
+	}
+
+	private void time(String name, long start, String from)
+	{
+		long time = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		timings.put(name, time);
+		logger.info("Exported {} from {} in {}ms", name, from, time);
+	}
+
+	@FunctionalInterface
+	private interface FileTask
+	{
+		void run(FSFile file) throws IOException;
+	}
+
+	@FunctionalInterface
+	private interface IndexTask
+	{
+		void run(int index) throws IOException;
+	}
+
+	/**
+	 * Runs a task over a range of indexes, splitting the range in half until
+	 * it is no larger than perTask
+	 */
+	private static class RangeTask extends RecursiveAction
+	{
+		private final int from;
+		private final int to;
+		private final int perTask;
+		private final IndexTask task;
+
+		RangeTask(int from, int to, int perTask, IndexTask task)
+		{
+			this.from = from;
+			this.to = to;
+			this.perTask = perTask;
+			this.task = task;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (to - from <= perTask)
+			{
+				for (int i = from; i < to; ++i)
+				{
+					try
+					{
+						task.run(i);
+					}
+					catch (IOException ex)
+					{
+						throw new UncheckedIOException(ex);
+					}
+				}
+				return;
+			}
+
+			int mid = (from + to) >>> 1;
+			invokeAll(new RangeTask(from, mid, perTask, task), new RangeTask(mid, to, perTask, task));
+		}
+	}
+}
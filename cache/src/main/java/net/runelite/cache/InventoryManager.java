@@ -24,11 +24,13 @@
  */
 package net.runelite.cache;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import net.runelite.cache.definitions.InventoryDefinition;
+import net.runelite.cache.definitions.exporters.InventoryExporter;
 import net.runelite.cache.definitions.loaders.InventoryLoader;
 import net.runelite.cache.fs.Archive;
 import net.runelite.cache.fs.ArchiveFiles;
@@ -65,6 +67,19 @@ public class InventoryManager
 		}
 	}
 
+	public void export(File out) throws IOException
+	{
+		out.mkdirs();
+
+		for (InventoryDefinition def : inventories)
+		{
+			InventoryExporter exporter = new InventoryExporter(def);
+
+			File targ = new File(out, def.id + ".json");
+			exporter.exportTo(targ);
+		}
+	}
+
 	public List<InventoryDefinition> getInventories()
 	{
 		return Collections.unmodifiableList(inventories);
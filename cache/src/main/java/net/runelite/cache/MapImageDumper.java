@@ -24,13 +24,34 @@
  */
 package net.runelite.cache;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
 import lombok.Getter;
 import lombok.Setter;
 import net.runelite.cache.definitions.AreaDefinition;
@@ -53,6 +74,7 @@ import net.runelite.cache.region.Location;
 import net.runelite.cache.region.Region;
 import net.runelite.cache.region.RegionLoader;
 import net.runelite.cache.util.Djb2;
+import net.runelite.cache.util.XteaKeyManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -65,6 +87,10 @@ public class MapImageDumper
 	private static final int MAPICON_MAX_HEIGHT = 6;
 	private static final int BLEND = 5; // number of surrounding tiles for ground blending
 
+	public static final int TILE_ZOOM = 8; // zoom level at which each map tile is one region
+	private static final int TILE_SIZE = Region.X * MAP_SCALE;
+	private static final int TILE_BLOCK_ZOOMS = 3; // tiles are drawn in blocks of 8x8 regions, which are scaled down in memory over this many zoom levels
+
 	private static int[] colorPalette = new ColorPalette(0.9d, 0, 512).getColorPalette();
 
 	private static int[][] TILE_SHAPE_2D = new int[][]{{0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0}, {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1}, {1, 0, 0, 0, 1, 1, 0, 0, 1, 1, 1, 0, 1, 1, 1, 1}, {1, 1, 0, 0, 1, 1, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0}, {0, 0, 1, 1, 0, 0, 1, 1, 0, 0, 0, 1, 0, 0, 0, 1}, {0, 1, 1, 1, 0, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1}, {1, 1, 1, 0, 1, 1, 1, 0, 1, 1, 1, 1, 1, 1, 1, 1}, {1, 1, 0, 0, 1, 1, 0, 0, 1, 1, 0, 0, 1, 1, 0, 0}, {0, 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0, 1, 1, 0, 0}, {1, 1, 1, 1, 1, 1, 1, 1, 0, 1, 1, 1, 0, 0, 1, 1}, {1, 1, 1, 1, 1, 1, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0}, {0, 0, 0, 0, 0, 0, 1, 1, 0, 1, 1, 1, 0, 1, 1, 1}, {0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 0, 1, 1, 1, 1}};
@@ -93,6 +119,17 @@ public class MapImageDumper
 	@Setter
 	private boolean outlineRegions;
 
+	@Getter
+	@Setter
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	/**
+	 * Keys of the regions' locations, loaded from the xtea service on first
+	 * use if not set
+	 */
+	@Setter
+	private XteaKeyManager keyManager;
+
 	public MapImageDumper(Store store)
 	{
 		this.store = store;
@@ -102,6 +139,18 @@ public class MapImageDumper
 	}
 
 	public void load() throws IOException
+	{
+		loadDefinitions();
+		loadRegions(store);
+	}
+
+	/**
+	 * Load everything needed to draw the map except for the regions, which
+	 * {@link #drawTiles(int, File)} loads as it needs them
+	 *
+	 * @throws IOException
+	 */
+	public void loadDefinitions() throws IOException
 	{
 		loadUnderlays(store);
 		loadOverlays(store);
@@ -111,7 +160,6 @@ public class MapImageDumper
 		textureManager.load();
 		rsTextureProvider = new RSTextureProvider(textureManager, sprites);
 
-		loadRegions(store);
 		areas.load();
 		sprites.load();
 		loadSprites();
@@ -151,23 +199,565 @@ public class MapImageDumper
 
 		BufferedImage image = new BufferedImage(pixelsX, pixelsY, BufferedImage.TYPE_INT_RGB);
 
-		drawMap(image, 0, 0, z, region);
+		drawMap(image, 0, 0, z, region, regionLoader::findRegionForWorldCoordinates);
 		drawObjects(image, 0, 0, region, z);
 		drawMapIcons(image, 0, 0, region, z);
 
 		return image;
 	}
 
-	private void drawMap(BufferedImage image, int drawBaseX, int drawBaseY, int z, Region region)
+	/**
+	 * Draw a plane of the map as 256px square tiles, written to
+	 * outDir/zoom/x/y.png as used by slippy maps. At {@link #TILE_ZOOM} each
+	 * tile is one region, with y increasing to the south, and each lower
+	 * zoom level is scaled down from the tiles of the level above it. The
+	 * regions are drawn in parallel on the pool in square blocks, which are
+	 * scaled down in memory to a single tile. Regions are loaded only as they
+	 * are needed to draw a block, and dropped after, so neither the whole map
+	 * nor all of the regions are held in memory.
+	 * <p>
+	 * A manifest of the archives and definitions each tile was drawn from is
+	 * kept in outDir. When the tiles have been drawn into outDir before, only
+	 * the tiles whose inputs have changed since, and the tiles of the lower
+	 * zoom levels they are in, are drawn again.
+	 *
+	 * @param z plane to draw
+	 * @param outDir directory to write the tiles to
+	 * @throws IOException
+	 */
+	public void drawTiles(int z, File outDir) throws IOException
+	{
+		long start = System.nanoTime();
+
+		RegionLoader loader = createRegionLoader();
+		Set<Integer> regionIds = new HashSet<>(loader.findRegionIds());
+
+		File manifestFile = new File(outDir, MapTileManifest.FILE_NAME);
+		MapTileManifest previous = MapTileManifest.load(manifestFile);
+		MapTileManifest manifest = createManifest(z);
+
+		Set<Integer> changed = findChangedRegions(outDir, previous, manifest, regionIds);
+		if (changed.isEmpty())
+		{
+			logger.info("No regions of plane {} have changed", z);
+			return;
+		}
+
+		List<Set<Integer>> tiles = new ArrayList<>(TILE_ZOOM + 1);
+		for (int zoom = 0; zoom <= TILE_ZOOM; ++zoom)
+		{
+			Set<Integer> zoomTiles = new HashSet<>();
+			for (int regionId : regionIds)
+			{
+				zoomTiles.add(regionTile(regionId, zoom));
+			}
+			tiles.add(zoomTiles);
+		}
+
+		// group the regions into blocks, each drawn by one task, so that the
+		// neighbours of most regions are loaded by the same task
+		Map<Integer, List<Integer>> blocks = new HashMap<>();
+		for (int regionId : changed)
+		{
+			blocks.computeIfAbsent(regionTile(regionId, TILE_ZOOM - TILE_BLOCK_ZOOMS), k -> new ArrayList<>())
+				.add(regionId);
+		}
+
+		Map<Integer, MapTileManifest.TileInputs> drawn = new ConcurrentHashMap<>();
+		Map<Integer, int[]> blockTiles = new ConcurrentHashMap<>();
+		List<Callable<Void>> tasks = new ArrayList<>(blocks.size());
+		for (Map.Entry<Integer, List<Integer>> block : blocks.entrySet())
+		{
+			tasks.add(() ->
+			{
+				RegionCache regions = new RegionCache(loader, regionIds);
+				blockTiles.put(block.getKey(), drawBlock(z, outDir, block.getValue(), regionIds, tiles, regions, drawn));
+				return null;
+			});
+		}
+		invokeAll(tasks);
+
+		// the zoom levels below the blocks have few tiles, so are drawn here
+		Map<Integer, int[]> zoomTiles = blockTiles;
+		for (int zoom = TILE_ZOOM - TILE_BLOCK_ZOOMS - 1; zoom >= 0; --zoom)
+		{
+			zoomTiles = scaleDown(outDir, zoom, tiles.get(zoom + 1), zoomTiles);
+		}
+
+		manifest.getTiles().putAll(drawn);
+		manifest.save(manifestFile);
+
+		logger.info("Drew {} of {} regions of plane {} into tiles in {}ms", changed.size(), regionIds.size(), z,
+			TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+	}
+
+	/**
+	 * Get the file a map tile is written to by {@link #drawTiles(int, File)}
+	 *
+	 * @param outDir directory the tiles are written to
+	 * @param zoom zoom level
+	 * @param x tile x
+	 * @param y tile y, increasing to the south
+	 * @return
+	 */
+	public static File getTileFile(File outDir, int zoom, int x, int y)
+	{
+		return new File(outDir, zoom + File.separator + x + File.separator + y + ".png");
+	}
+
+	private MapTileManifest createManifest(int z) throws IOException
+	{
+		MapTileManifest manifest = new MapTileManifest();
+
+		Map<String, Integer> shared = manifest.getShared();
+		shared.put("plane", z);
+		shared.put("labelRegions", labelRegions ? 1 : 0);
+		shared.put("outlineRegions", outlineRegions ? 1 : 0);
+		shared.put("textures", store.getIndex(IndexType.TEXTURES).getArchive(0).getCrc());
+		shared.put("areas", store.getIndex(IndexType.CONFIGS).getArchive(ConfigType.AREA.getId()).getCrc());
+
+		Hasher sprites = Hashing.crc32().newHasher();
+		for (Archive archive : store.getIndex(IndexType.SPRITES).getArchives())
+		{
+			sprites.putInt(archive.getArchiveId());
+			sprites.putInt(archive.getCrc());
+		}
+		shared.put("sprites", sprites.hash().asInt());
+
+		manifest.setUnderlays(findDefinitionCrcs(ConfigType.UNDERLAY));
+		manifest.setOverlays(findDefinitionCrcs(ConfigType.OVERLAY));
+		manifest.setObjects(findDefinitionCrcs(ConfigType.OBJECT));
+		return manifest;
+	}
+
+	private Map<Integer, Integer> findDefinitionCrcs(ConfigType type) throws IOException
+	{
+		Archive archive = store.getIndex(IndexType.CONFIGS).getArchive(type.getId());
+		ArchiveFiles files = archive.getFiles(store.getStorage().loadArchive(archive));
+
+		Map<Integer, Integer> crcs = new HashMap<>();
+		for (FSFile file : files.getFiles())
+		{
+			crcs.put(file.getFileId(), Hashing.crc32().hashBytes(file.getContents()).asInt());
+		}
+		return crcs;
+	}
+
+	/**
+	 * Find the regions whose tiles need to be drawn, and copy the inputs of
+	 * the others from the previous manifest
+	 */
+	private Set<Integer> findChangedRegions(File outDir, MapTileManifest previous, MapTileManifest manifest,
+		Set<Integer> regionIds) throws IOException
+	{
+		if (previous == null)
+		{
+			return regionIds;
+		}
+
+		if (!regionIds.containsAll(previous.getTiles().keySet()))
+		{
+			// the tiles of removed regions, and the lower zoom tiles they
+			// were in, would be left behind
+			logger.info("Regions have been removed, drawing all tiles in {} again", outDir);
+			for (int zoom = 0; zoom <= TILE_ZOOM; ++zoom)
+			{
+				deleteDirectory(new File(outDir, "" + zoom));
+			}
+			return regionIds;
+		}
+
+		if (!previous.getShared().equals(manifest.getShared()))
+		{
+			return regionIds;
+		}
+
+		Set<Integer> changed = new HashSet<>();
+		for (int regionId : regionIds)
+		{
+			MapTileManifest.TileInputs inputs = previous.getTiles().get(regionId);
+			if (inputs == null
+				|| !inputs.getArchives().equals(findArchives(regionId, regionIds))
+				|| previous.definitionsChanged(inputs, manifest))
+			{
+				changed.add(regionId);
+			}
+			else
+			{
+				manifest.getTiles().put(regionId, inputs);
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Find the crcs of the archives of a region and its neighbours, which
+	 * are blended into its ground and can have objects drawn over it, and
+	 * the keys of the locations which can be drawn over it. Locations are
+	 * only loaded once there are keys for them.
+	 */
+	private Map<String, Integer> findArchives(int regionId, Set<Integer> regionIds)
+	{
+		Index index = store.getIndex(IndexType.MAPS);
+		Map<String, Integer> archives = new HashMap<>();
+
+		for (int x = (regionId >> 8) - 1; x <= (regionId >> 8) + 1; ++x)
+		{
+			for (int y = (regionId & 0xFF) - 1; y <= (regionId & 0xFF) + 1; ++y)
+			{
+				if (!regionIds.contains(x << 8 | y) || x < 0 || y < 0 || y > 0xFF)
+				{
+					continue;
+				}
+
+				for (String name : new String[]
+				{
+					"m" + x + "_" + y, "l" + x + "_" + y
+				})
+				{
+					archives.put(name, index.findArchiveByName(name).getCrc());
+				}
+
+				// objects of the regions to the west, north west and north
+				// can be drawn over this one
+				if (x <= regionId >> 8 && y >= (regionId & 0xFF))
+				{
+					int[] keys = keyManager.getKeys(x << 8 | y);
+					archives.put("k" + x + "_" + y, keys == null ? 0 : Arrays.hashCode(keys));
+				}
+			}
+		}
+
+		return archives;
+	}
+
+	private MapTileManifest.TileInputs findInputs(Region region, RegionCache regions, Set<Integer> regionIds)
+	{
+		MapTileManifest.TileInputs inputs = new MapTileManifest.TileInputs();
+		inputs.setArchives(findArchives(region.getRegionID(), regionIds));
+
+		for (int dx = -1; dx <= 1; ++dx)
+		{
+			for (int dy = -1; dy <= 1; ++dy)
+			{
+				Region r = regions.get(region.getRegionX() + dx, region.getRegionY() + dy);
+				if (r == null)
+				{
+					continue;
+				}
+
+				// underlays are blended across the edges of regions, overlays are not
+				for (int z = 0; z < Region.Z; ++z)
+				{
+					for (int x = 0; x < Region.X; ++x)
+					{
+						for (int y = 0; y < Region.Y; ++y)
+						{
+							if (r.getUnderlayId(z, x, y) > 0)
+							{
+								inputs.getUnderlays().add(r.getUnderlayId(z, x, y) - 1);
+							}
+
+							if (r == region && r.getOverlayId(z, x, y) > 0)
+							{
+								inputs.getOverlays().add(r.getOverlayId(z, x, y) - 1);
+							}
+						}
+					}
+				}
+
+				// objects of the regions to the west, north west and north
+				// can be drawn over this one
+				if (dx <= 0 && dy >= 0)
+				{
+					for (Location location : r.getLocations())
+					{
+						inputs.getObjects().add(location.getId());
+					}
+				}
+			}
+		}
+
+		return inputs;
+	}
+
+	/**
+	 * Draw the changed tiles of a block of regions, and scale them down in
+	 * memory to the zoom level at which the block is one tile
+	 *
+	 * @return the tile of the block
+	 */
+	private int[] drawBlock(int z, File outDir, List<Integer> changed, Set<Integer> regionIds,
+		List<Set<Integer>> tiles, RegionCache regions, Map<Integer, MapTileManifest.TileInputs> drawn) throws IOException
+	{
+		Set<Integer> changedTiles = new HashSet<>();
+		for (int regionId : changed)
+		{
+			changedTiles.add(regionTile(regionId, TILE_ZOOM));
+		}
+
+		// each tile is scaled down into the tile of the zoom level below as
+		// soon as it is drawn, so only those are kept. they start with the
+		// tiles which haven't changed
+		Map<Integer, int[]> scaled = new HashMap<>();
+		for (int tile : changedTiles)
+		{
+			scaled.computeIfAbsent(parentTile(tile), k -> new int[TILE_SIZE * TILE_SIZE]);
+		}
+
+		for (Map.Entry<Integer, int[]> entry : scaled.entrySet())
+		{
+			scaleDownUnchanged(outDir, TILE_ZOOM - 1, entry.getKey(), entry.getValue(), tiles.get(TILE_ZOOM), changedTiles);
+		}
+
+		for (int regionId : changed)
+		{
+			Region region = regions.get(regionId);
+			int tile = regionTile(regionId, TILE_ZOOM);
+
+			int[] pixels = drawTile(z, region, regions);
+			writeTile(pixels, getTileFile(outDir, TILE_ZOOM, tileX(tile), tileY(tile)));
+			scaleDown(pixels, scaled.get(parentTile(tile)), tile);
+
+			drawn.put(regionId, findInputs(region, regions, regionIds));
+		}
+
+		for (Map.Entry<Integer, int[]> entry : scaled.entrySet())
+		{
+			writeTile(entry.getValue(), getTileFile(outDir, TILE_ZOOM - 1, tileX(entry.getKey()), tileY(entry.getKey())));
+		}
+
+		for (int zoom = TILE_ZOOM - 2; zoom >= TILE_ZOOM - TILE_BLOCK_ZOOMS; --zoom)
+		{
+			scaled = scaleDown(outDir, zoom, tiles.get(zoom + 1), scaled);
+		}
+
+		assert scaled.size() == 1;
+		return scaled.values().iterator().next();
+	}
+
+	private int[] drawTile(int z, Region region, RegionCache regions)
+	{
+		// the tile is the bottom right quarter of the image, the rest of which
+		// covers the regions to the west, north west and north, whose objects
+		// and icons can be drawn over the edges of this region
+		BufferedImage image = new BufferedImage(TILE_SIZE * 2, TILE_SIZE * 2, BufferedImage.TYPE_INT_RGB);
+
+		int regionX = region.getRegionX();
+		int regionY = region.getRegionY();
+		int lowestX = region.getBaseX() - Region.X;
+		int highestY = region.getBaseY() + Region.Y;
+
+		drawMap(image, Region.X, Region.Y, z, region, regions::find);
+
+		List<Region> overlapping = new ArrayList<>(4);
+		for (int dx = -1; dx <= 0; ++dx)
+		{
+			for (int dy = 1; dy >= 0; --dy)
+			{
+				Region r = regions.get(regionX + dx, regionY + dy);
+				if (r != null)
+				{
+					overlapping.add(r);
+				}
+			}
+		}
+
+		for (Region r : overlapping)
+		{
+			drawObjects(image, r.getBaseX() - lowestX, highestY - r.getBaseY(), r, z);
+		}
+
+		for (Region r : overlapping)
+		{
+			drawMapIcons(image, r.getBaseX() - lowestX, highestY - r.getBaseY(), r, z);
+		}
+
+		return image.getRGB(TILE_SIZE, TILE_SIZE, TILE_SIZE, TILE_SIZE, null, 0, TILE_SIZE);
+	}
+
+	/**
+	 * Scale tiles which have changed down into the tiles of the zoom level
+	 * below, and write those. The other tiles they are scaled down with are
+	 * read back from disk.
+	 *
+	 * @param outDir
+	 * @param zoom zoom level to draw
+	 * @param above all tiles of the zoom level above
+	 * @param changed the tiles of the zoom level above which have changed
+	 * @return the tiles drawn
+	 * @throws IOException
+	 */
+	private static Map<Integer, int[]> scaleDown(File outDir, int zoom, Set<Integer> above, Map<Integer, int[]> changed) throws IOException
+	{
+		Map<Integer, int[]> scaled = new HashMap<>();
+		for (Map.Entry<Integer, int[]> entry : changed.entrySet())
+		{
+			int[] pixels = scaled.computeIfAbsent(parentTile(entry.getKey()), k -> new int[TILE_SIZE * TILE_SIZE]);
+			scaleDown(entry.getValue(), pixels, entry.getKey());
+		}
+
+		for (Map.Entry<Integer, int[]> entry : scaled.entrySet())
+		{
+			scaleDownUnchanged(outDir, zoom, entry.getKey(), entry.getValue(), above, changed.keySet());
+			writeTile(entry.getValue(), getTileFile(outDir, zoom, tileX(entry.getKey()), tileY(entry.getKey())));
+		}
+
+		return scaled;
+	}
+
+	/**
+	 * Scale the tiles in a tile which haven't changed down into it, from the
+	 * tiles written before
+	 */
+	private static void scaleDownUnchanged(File outDir, int zoom, int tile, int[] pixels, Set<Integer> above, Set<Integer> changed) throws IOException
+	{
+		for (int dx = 0; dx < 2; ++dx)
+		{
+			for (int dy = 0; dy < 2; ++dy)
+			{
+				int child = packTile(tileX(tile) << 1 | dx, tileY(tile) << 1 | dy);
+				if (above.contains(child) && !changed.contains(child))
+				{
+					scaleDown(readTile(getTileFile(outDir, zoom + 1, tileX(child), tileY(child))), pixels, child);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Scale a tile down to half its size, averaging each 2x2 square of
+	 * pixels, into its quarter of the tile of the zoom level below
+	 */
+	private static void scaleDown(int[] from, int[] to, int tile)
+	{
+		int toX = (tileX(tile) & 1) * TILE_SIZE / 2;
+		int toY = (tileY(tile) & 1) * TILE_SIZE / 2;
+
+		for (int y = 0; y < TILE_SIZE / 2; ++y)
+		{
+			for (int x = 0; x < TILE_SIZE / 2; ++x)
+			{
+				int i = (y * 2) * TILE_SIZE + x * 2;
+				int p1 = from[i], p2 = from[i + 1], p3 = from[i + TILE_SIZE], p4 = from[i + TILE_SIZE + 1];
+
+				int r = ((p1 >> 16 & 0xFF) + (p2 >> 16 & 0xFF) + (p3 >> 16 & 0xFF) + (p4 >> 16 & 0xFF)) >> 2;
+				int g = ((p1 >> 8 & 0xFF) + (p2 >> 8 & 0xFF) + (p3 >> 8 & 0xFF) + (p4 >> 8 & 0xFF)) >> 2;
+				int b = ((p1 & 0xFF) + (p2 & 0xFF) + (p3 & 0xFF) + (p4 & 0xFF)) >> 2;
+
+				to[(toY + y) * TILE_SIZE + toX + x] = r << 16 | g << 8 | b;
+			}
+		}
+	}
+
+	private static int[] readTile(File file) throws IOException
+	{
+		BufferedImage image = ImageIO.read(file);
+		if (image == null)
+		{
+			throw new IOException("Unable to read tile " + file);
+		}
+		return image.getRGB(0, 0, TILE_SIZE, TILE_SIZE, null, 0, TILE_SIZE);
+	}
+
+	private static void writeTile(int[] pixels, File file) throws IOException
+	{
+		BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+		image.setRGB(0, 0, TILE_SIZE, TILE_SIZE, pixels, 0, TILE_SIZE);
+
+		file.getParentFile().mkdirs();
+		ImageIO.write(image, "png", file);
+	}
+
+	private static void deleteDirectory(File dir) throws IOException
+	{
+		if (!dir.exists())
+		{
+			return;
+		}
+
+		try (Stream<Path> paths = Files.walk(dir.toPath()))
+		{
+			for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator)
+			{
+				Files.delete(path);
+			}
+		}
+	}
+
+	/**
+	 * Get the tile a region is in at a zoom level
+	 */
+	private static int regionTile(int regionId, int zoom)
+	{
+		int x = regionId >> 8;
+		int y = (1 << TILE_ZOOM) - 1 - (regionId & 0xFF);
+		return packTile(x >> (TILE_ZOOM - zoom), y >> (TILE_ZOOM - zoom));
+	}
+
+	private static int parentTile(int tile)
+	{
+		return packTile(tileX(tile) >> 1, tileY(tile) >> 1);
+	}
+
+	private static int packTile(int x, int y)
+	{
+		return x << 16 | y;
+	}
+
+	private static int tileX(int tile)
+	{
+		return tile >>> 16;
+	}
+
+	private static int tileY(int tile)
+	{
+		return tile & 0xFFFF;
+	}
+
+	private void invokeAll(List<Callable<Void>> tasks) throws IOException
+	{
+		for (Future<Void> future : pool.invokeAll(tasks))
+		{
+			try
+			{
+				future.get();
+			}
+			catch (InterruptedException ex)
+			{
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+			catch (ExecutionException ex)
+			{
+				Throwable cause = ex.getCause();
+				if (cause instanceof UncheckedIOException)
+				{
+					cause = cause.getCause();
+				}
+				if (cause instanceof IOException)
+				{
+					throw (IOException) cause;
+				}
+				if (cause instanceof RuntimeException)
+				{
+					throw (RuntimeException) cause;
+				}
+				throw new IOException(cause);
+			}
+		}
+	}
+
+	private void drawMap(BufferedImage image, int drawBaseX, int drawBaseY, int z, Region region, RegionLookup regions)
 	{
 		int[][] map = new int[Region.X * MAP_SCALE][Region.Y * MAP_SCALE];
-		drawMap(map, region, z);
+		drawMap(map, region, z, regions);
 
 		int[][] above = null;
 		if (z < 3)
 		{
 			above = new int[Region.X * MAP_SCALE][Region.Y * MAP_SCALE];
-			drawMap(above, region, z + 1);
+			drawMap(above, region, z + 1, regions);
 		}
 
 		for (int x = 0; x < Region.X; ++x)
@@ -204,7 +794,7 @@ public class MapImageDumper
 			// region has the greatest y, so invert
 			int drawBaseY = regionLoader.getHighestY().getBaseY() - baseY;
 
-			drawMap(image, drawBaseX, drawBaseY, z, region);
+			drawMap(image, drawBaseX, drawBaseY, z, region, regionLoader::findRegionForWorldCoordinates);
 		}
 	}
 
@@ -221,7 +811,7 @@ public class MapImageDumper
 		}
 	}
 
-	private void drawMap(int[][] pixels, Region region, int z)
+	private void drawMap(int[][] pixels, Region region, int z, RegionLookup regions)
 	{
 		int baseX = region.getBaseX();
 		int baseY = region.getBaseY();
@@ -233,10 +823,10 @@ public class MapImageDumper
 		int[] mul = new int[len];
 		int[] num = new int[len];
 
-		boolean hasLeftRegion = regionLoader.findRegionForWorldCoordinates(baseX - 1, baseY) != null;
-		boolean hasRightRegion = regionLoader.findRegionForWorldCoordinates(baseX + Region.X, baseY) != null;
-		boolean hasUpRegion = regionLoader.findRegionForWorldCoordinates(baseX, baseY + Region.Y) != null;
-		boolean hasDownRegion = regionLoader.findRegionForWorldCoordinates(baseX, baseY - 1) != null;
+		boolean hasLeftRegion = regions.find(baseX - 1, baseY) != null;
+		boolean hasRightRegion = regions.find(baseX + Region.X, baseY) != null;
+		boolean hasUpRegion = regions.find(baseX, baseY + Region.Y) != null;
+		boolean hasDownRegion = regions.find(baseX, baseY - 1) != null;
 
 		for (int xi = (hasLeftRegion ? -BLEND * 2 : -BLEND); xi < Region.X + (hasRightRegion ? BLEND * 2 : BLEND); ++xi)
 		{
@@ -245,7 +835,7 @@ public class MapImageDumper
 				int xr = xi + BLEND;
 				if (xr >= (hasLeftRegion ? -BLEND : 0) && xr < Region.X + (hasRightRegion ? BLEND : 0))
 				{
-					Region r = regionLoader.findRegionForWorldCoordinates(baseX + xr, baseY + yi);
+					Region r = regions.find(baseX + xr, baseY + yi);
 					if (r != null)
 					{
 						int underlayId = r.getUnderlayId(z, convert(xr), convert(yi));
@@ -264,7 +854,7 @@ public class MapImageDumper
 				int xl = xi - BLEND;
 				if (xl >= (hasLeftRegion ? -BLEND : 0) && xl < Region.X + (hasRightRegion ? BLEND : 0))
 				{
-					Region r = regionLoader.findRegionForWorldCoordinates(baseX + xl, baseY + yi);
+					Region r = regions.find(baseX + xl, baseY + yi);
 					if (r != null)
 					{
 						int underlayId = r.getUnderlayId(z, convert(xl), convert(yi));
@@ -313,7 +903,7 @@ public class MapImageDumper
 
 					if (yi >= 0 && yi < Region.Y)
 					{
-						Region r = regionLoader.findRegionForWorldCoordinates(baseX + xi, baseY + yi);
+						Region r = regions.find(baseX + xi, baseY + yi);
 						if (r != null)
 						{
 							int underlayId = r.getUnderlayId(z, convert(xi), convert(yi));
@@ -893,7 +1483,7 @@ public class MapImageDumper
 
 	private void loadRegions(Store store) throws IOException
 	{
-		regionLoader = new RegionLoader(store);
+		regionLoader = createRegionLoader();
 		regionLoader.loadRegions();
 		regionLoader.calculateBounds();
 
@@ -903,6 +1493,16 @@ public class MapImageDumper
 		logger.info("East most region:  {}", regionLoader.getHighestX().getBaseX());
 	}
 
+	private RegionLoader createRegionLoader()
+	{
+		if (keyManager == null)
+		{
+			keyManager = new XteaKeyManager();
+			keyManager.loadKeys();
+		}
+		return new RegionLoader(store, keyManager);
+	}
+
 	private void loadUnderlays(Store store) throws IOException
 	{
 		Storage storage = store.getStorage();
@@ -974,8 +1574,12 @@ public class MapImageDumper
 					BufferedImage spriteImage = new BufferedImage(sprite.getWidth(), sprite.getHeight(), BufferedImage.TYPE_INT_ARGB);
 					spriteImage.setRGB(0, 0, sprite.getWidth(), sprite.getHeight(), sprite.getPixels(), 0, sprite.getWidth());
 
-					// scale image down so it fits
-					Image scaledImage = spriteImage.getScaledInstance(MAPICON_MAX_WIDTH, MAPICON_MAX_HEIGHT, 0);
+					// scale image down so it fits. this is drawn into a
+					// BufferedImage so it is ready to be drawn from any thread
+					BufferedImage scaledImage = new BufferedImage(MAPICON_MAX_WIDTH, MAPICON_MAX_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+					Graphics2D graphics = scaledImage.createGraphics();
+					graphics.drawImage(spriteImage, 0, 0, MAPICON_MAX_WIDTH, MAPICON_MAX_HEIGHT, null);
+					graphics.dispose();
 
 					assert scaledMapIcons.containsKey(sprite.getFrame()) == false;
 					scaledMapIcons.put(sprite.getFrame(), scaledImage);
@@ -984,4 +1588,67 @@ public class MapImageDumper
 		}
 	}
 
+	@FunctionalInterface
+	private interface RegionLookup
+	{
+		Region find(int x, int y);
+	}
+
+	/**
+	 * Regions loaded to draw a block of tiles
+	 */
+	private static class RegionCache
+	{
+		private final RegionLoader loader;
+		private final Set<Integer> regionIds;
+		private final Map<Integer, Region> regions = new HashMap<>();
+
+		RegionCache(RegionLoader loader, Set<Integer> regionIds)
+		{
+			this.loader = loader;
+			this.regionIds = regionIds;
+		}
+
+		Region find(int x, int y)
+		{
+			if (x < 0 || y < 0)
+			{
+				return null;
+			}
+
+			return get(x >>> 6, y >>> 6);
+		}
+
+		Region get(int regionX, int regionY)
+		{
+			if (regionX < 0 || regionX > 0xFF || regionY < 0 || regionY > 0xFF)
+			{
+				return null;
+			}
+
+			return get(regionX << 8 | regionY);
+		}
+
+		Region get(int regionId)
+		{
+			if (!regionIds.contains(regionId))
+			{
+				return null;
+			}
+
+			if (!regions.containsKey(regionId))
+			{
+				try
+				{
+					regions.put(regionId, loader.loadRegionFromArchive(regionId));
+				}
+				catch (IOException ex)
+				{
+					throw new UncheckedIOException(ex);
+				}
+			}
+
+			return regions.get(regionId);
+		}
+	}
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache;
+
+import com.google.gson.Gson;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import lombok.Data;
+
+/**
+ * Records what the map tiles drawn by {@link MapImageDumper#drawTiles(int, File)}
+ * were drawn from, so that for a new cache only the tiles whose inputs have
+ * changed are drawn again
+ */
+@Data
+class MapTileManifest
+{
+	static final String FILE_NAME = "manifest.json";
+
+	private static final Gson GSON = new Gson();
+
+	/**
+	 * crcs of the inputs of every tile, such as the textures and sprites
+	 */
+	private Map<String, Integer> shared = new HashMap<>();
+
+	/**
+	 * crcs of the underlay, overlay and object definitions, by id
+	 */
+	private Map<Integer, Integer> underlays = new HashMap<>();
+	private Map<Integer, Integer> overlays = new HashMap<>();
+	private Map<Integer, Integer> objects = new HashMap<>();
+
+	/**
+	 * inputs of the tile of each region, by region id
+	 */
+	private Map<Integer, TileInputs> tiles = new HashMap<>();
+
+	@Data
+	static class TileInputs
+	{
+		/**
+		 * crcs of the map and location archives of the region and its
+		 * neighbours, by name
+		 */
+		private Map<String, Integer> archives = new HashMap<>();
+
+		/**
+		 * ids of the definitions the tile was drawn with
+		 */
+		private Set<Integer> underlays = new HashSet<>();
+		private Set<Integer> overlays = new HashSet<>();
+		private Set<Integer> objects = new HashSet<>();
+	}
+
+	/**
+	 * Check if any of the definitions a tile was drawn with have changed
+	 *
+	 * @param tile tile, from this manifest
+	 * @param other manifest of the definitions now
+	 * @return
+	 */
+	boolean definitionsChanged(TileInputs tile, MapTileManifest other)
+	{
+		return changed(tile.getUnderlays(), underlays, other.getUnderlays())
+			|| changed(tile.getOverlays(), overlays, other.getOverlays())
+			|| changed(tile.getObjects(), objects, other.getObjects());
+	}
+
+	private static boolean changed(Set<Integer> ids, Map<Integer, Integer> crcs, Map<Integer, Integer> otherCrcs)
+	{
+		for (int id : ids)
+		{
+			Integer crc = crcs.get(id);
+			if (crc == null || !crc.equals(otherCrcs.get(id)))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static MapTileManifest load(File file) throws IOException
+	{
+		if (!file.exists())
+		{
+			return null;
+		}
+
+		try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8))
+		{
+			return GSON.fromJson(reader, MapTileManifest.class);
+		}
+	}
+
+	void save(File file) throws IOException
+	{
+		// written to a temporary file first, so that the manifest is never
+		// left half written
+		File tmp = new File(file.getPath() + ".tmp");
+		try (Writer writer = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8))
+		{
+			GSON.toJson(this, writer);
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
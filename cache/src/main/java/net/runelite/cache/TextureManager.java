@@ -24,10 +24,12 @@
  */
 package net.runelite.cache;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import net.runelite.cache.definitions.TextureDefinition;
+import net.runelite.cache.definitions.exporters.TextureExporter;
 import net.runelite.cache.definitions.loaders.TextureLoader;
 import net.runelite.cache.definitions.providers.TextureProvider;
 import net.runelite.cache.fs.Archive;
@@ -65,6 +67,19 @@ public class TextureManager implements TextureProvider
 		}
 	}
 
+	public void export(File out) throws IOException
+	{
+		out.mkdirs();
+
+		for (TextureDefinition texture : textures)
+		{
+			TextureExporter exporter = new TextureExporter(texture);
+
+			File targ = new File(out, texture.getId() + ".json");
+			exporter.exportTo(targ);
+		}
+	}
+
 	public List<TextureDefinition> getTextures()
 	{
 		return textures;
@@ -169,7 +169,14 @@ public class Archive
 
 	public void setNameHash(int nameHash)
 	{
-		this.nameHash = nameHash;
+		if (this.nameHash != nameHash)
+		{
+			this.nameHash = nameHash;
+			if (index != null)
+			{
+				index.nameHashChanged();
+			}
+		}
 	}
 
 	public int getCrc()
@@ -27,8 +27,8 @@ package net.runelite.cache.fs;
 import static com.google.common.primitives.Bytes.concat;
 import com.google.common.primitives.Ints;
 import java.io.IOException;
+import java.util.Arrays;
 import net.runelite.cache.fs.jagex.CompressionType;
-import net.runelite.cache.io.InputStream;
 import net.runelite.cache.io.OutputStream;
 import net.runelite.cache.util.BZip2;
 import net.runelite.cache.util.Crc32;
@@ -41,6 +41,8 @@ public class Container
 {
 	private static final Logger logger = LoggerFactory.getLogger(Container.class);
 
+	private static final int MAX_DECOMPRESSED_LENGTH = 64 * 1024 * 1024;
+
 	public byte[] data;
 	public int compression; // compression
 	public int revision;
@@ -92,94 +94,67 @@ public class Container
 
 	public static Container decompress(byte[] b, int[] keys) throws IOException
 	{
-		InputStream stream = new InputStream(b);
-
-		int compression = stream.readUnsignedByte();
-		int compressedLength = stream.readInt();
+		int compression = b[0] & 0xFF;
+		int compressedLength = Ints.fromBytes(b[1], b[2], b[3], b[4]);
 		if (compressedLength < 0 || compressedLength > 1000000)
 		{
-			throw new RuntimeException("Invalid data");
+			throw new IOException("Invalid data");
+		}
+
+		// compressed data is preceded by its decompressed length
+		int length = compression == CompressionType.NONE ? compressedLength : compressedLength + 4;
+		int end = 5 + length;
+		if (end > b.length)
+		{
+			throw new IOException("Invalid data");
 		}
 
 		Crc32 crc32 = new Crc32();
-		crc32.update(b, 0, 5); // compression + length
+		crc32.update(b, 0, end); // compression + length + encrypted data
 
-		byte[] data;
 		int revision = -1;
-		switch (compression)
+		if (b.length - end >= 2)
 		{
-			case CompressionType.NONE:
-			{
-				byte[] encryptedData = new byte[compressedLength];
-				stream.readBytes(encryptedData, 0, compressedLength);
-
-				crc32.update(encryptedData, 0, compressedLength);
-				byte[] decryptedData = decrypt(encryptedData, encryptedData.length, keys);
-
-				if (stream.remaining() >= 2)
-				{
-					revision = stream.readUnsignedShort();
-					assert revision != -1;
-				}
+			revision = (b[end] & 0xFF) << 8 | b[end + 1] & 0xFF;
+		}
 
-				data = decryptedData;
+		// decrypt a copy of the data in place, as the container is left unmodified
+		byte[] payload = b;
+		int offset = 5;
+		if (keys != null)
+		{
+			payload = Arrays.copyOfRange(b, 5, end);
+			offset = 0;
+			new Xtea(keys).decrypt(payload, 0, length);
+		}
 
+		byte[] data;
+		switch (compression)
+		{
+			case CompressionType.NONE:
+				data = payload != b ? payload : Arrays.copyOfRange(b, 5, end);
 				break;
-			}
 			case CompressionType.BZ2:
+			case CompressionType.GZ:
 			{
-				byte[] encryptedData = new byte[compressedLength + 4];
-				stream.readBytes(encryptedData);
-
-				crc32.update(encryptedData, 0, encryptedData.length);
-				byte[] decryptedData = decrypt(encryptedData, encryptedData.length, keys);
-
-				if (stream.remaining() >= 2)
-				{
-					revision = stream.readUnsignedShort();
-					assert revision != -1;
-				}
-
-				stream = new InputStream(decryptedData);
-
-				int decompressedLength = stream.readInt();
-				data = BZip2.decompress(stream.getRemaining(), compressedLength);
-
-				if (data == null)
+				// with the wrong keys the decompressed length is garbage, so
+				// it is bounded and the data checked by the decompressor
+				// before the buffer is allocated
+				int decompressedLength = Ints.fromBytes(payload[offset], payload[offset + 1], payload[offset + 2], payload[offset + 3]);
+				if (decompressedLength < 0 || decompressedLength > MAX_DECOMPRESSED_LENGTH)
 				{
-					return null;
+					throw new IOException("Invalid data");
 				}
 
-				assert data.length == decompressedLength;
-
-				break;
-			}
-			case CompressionType.GZ:
-			{
-				byte[] encryptedData = new byte[compressedLength + 4];
-				stream.readBytes(encryptedData);
-
-				crc32.update(encryptedData, 0, encryptedData.length);
-				byte[] decryptedData = decrypt(encryptedData, encryptedData.length, keys);
-
-				if (stream.remaining() >= 2)
+				// the decompressed length is known, so decompress directly into the result
+				if (compression == CompressionType.BZ2)
 				{
-					revision = stream.readUnsignedShort();
-					assert revision != -1;
+					data = BZip2.decompress(payload, offset + 4, compressedLength, decompressedLength);
 				}
-
-				stream = new InputStream(decryptedData);
-
-				int decompressedLength = stream.readInt();
-				data = GZip.decompress(stream.getRemaining(), compressedLength);
-
-				if (data == null)
+				else
 				{
-					return null;
+					data = GZip.decompress(payload, offset + 4, compressedLength, decompressedLength);
 				}
-
-				assert data.length == decompressedLength;
-
 				break;
 			}
 			default:
@@ -192,17 +167,6 @@ public class Container
 		return container;
 	}
 
-	private static byte[] decrypt(byte[] data, int length, int[] keys)
-	{
-		if (keys == null)
-		{
-			return data;
-		}
-
-		Xtea xtea = new Xtea(keys);
-		return xtea.decrypt(data, length);
-	}
-
 	private static byte[] encrypt(byte[] data, int length, int[] keys)
 	{
 		if (keys == null)
@@ -24,7 +24,10 @@
  */
 package net.runelite.cache.fs;
 
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import net.runelite.cache.index.ArchiveData;
@@ -47,6 +50,11 @@ public class Index
 	private int compression; // compression method of this index's data in 255
 
 	private final List<Archive> archives = new ArrayList<>();
+	// first archive with each id, the same archive a scan of archives finds
+	private final IntObjectMap<Archive> archivesById = new IntObjectHashMap<>();
+	// first archive with each name hash, built on first use as name hashes
+	// are usually set after the archive is added
+	private volatile IntObjectMap<Archive> archivesByName;
 
 	public Index(int id)
 	{
@@ -147,39 +155,80 @@ public class Index
 
 	public List<Archive> getArchives()
 	{
-		return archives;
+		return Collections.unmodifiableList(archives);
 	}
 
 	public Archive addArchive(int id)
 	{
 		Archive archive = new Archive(this, id);
 		this.archives.add(archive);
+		if (!archivesById.containsKey(id))
+		{
+			archivesById.put(id, archive);
+		}
+		archivesByName = null;
 		return archive;
 	}
 
-	public Archive getArchive(int id)
+	public void removeArchive(Archive archive)
 	{
-		for (Archive a : archives)
+		if (!archives.remove(archive))
 		{
-			if (a.getArchiveId() == id)
+			return;
+		}
+
+		if (archivesById.get(archive.getArchiveId()) == archive)
+		{
+			archivesById.remove(archive.getArchiveId());
+
+			// another archive may have the same id
+			for (Archive a : archives)
 			{
-				return a;
+				if (a.getArchiveId() == archive.getArchiveId())
+				{
+					archivesById.put(a.getArchiveId(), a);
+					break;
+				}
 			}
 		}
-		return null;
+		archivesByName = null;
+	}
+
+	public Archive getArchive(int id)
+	{
+		return archivesById.get(id);
 	}
 
 	public Archive findArchiveByName(String name)
 	{
 		int hash = Djb2.hash(name);
-		for (Archive a : archives)
+		return getArchivesByName().get(hash);
+	}
+
+	private IntObjectMap<Archive> getArchivesByName()
+	{
+		IntObjectMap<Archive> byName = archivesByName;
+		if (byName == null)
 		{
-			if (a.getNameHash() == hash)
+			byName = new IntObjectHashMap<>(Math.max(archives.size(), 1));
+			for (Archive a : archives)
 			{
-				return a;
+				if (!byName.containsKey(a.getNameHash()))
+				{
+					byName.put(a.getNameHash(), a);
+				}
 			}
+			archivesByName = byName;
 		}
-		return null;
+		return byName;
+	}
+
+	/**
+	 * Called when the name hash of an archive of this index changes
+	 */
+	void nameHashChanged()
+	{
+		archivesByName = null;
 	}
 
 	public IndexData toIndexData()
@@ -24,11 +24,14 @@
  */
 package net.runelite.cache.fs;
 
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import net.runelite.cache.IndexType;
@@ -42,6 +45,7 @@ public final class Store implements Closeable
 
 	private final Storage storage;
 	private final List<Index> indexes = new ArrayList<>();
+	private final IntObjectMap<Index> indexesById = new IntObjectHashMap<>();
 
 	public Store(File folder) throws IOException
 	{
@@ -96,16 +100,14 @@ public final class Store implements Closeable
 
 	public final Index addIndex(int id) throws FileNotFoundException
 	{
-		for (Index i : indexes)
+		if (indexesById.containsKey(id))
 		{
-			if (i.getId() == id)
-			{
-				throw new IllegalArgumentException("index " + id + " already exists");
-			}
+			throw new IllegalArgumentException("index " + id + " already exists");
 		}
 
 		Index index = new Index(id);
 		this.indexes.add(index);
+		indexesById.put(id, index);
 
 		return index;
 	}
@@ -114,6 +116,7 @@ public final class Store implements Closeable
 	{
 		assert indexes.contains(index);
 		indexes.remove(index);
+		indexesById.remove(index.getId());
 	}
 
 	public void load() throws IOException
@@ -128,7 +131,7 @@ public final class Store implements Closeable
 
 	public List<Index> getIndexes()
 	{
-		return indexes;
+		return Collections.unmodifiableList(indexes);
 	}
 
 	public Index getIndex(IndexType type)
@@ -138,13 +141,6 @@ public final class Store implements Closeable
 
 	public Index findIndex(int id)
 	{
-		for (Index i : indexes)
-		{
-			if (i.getId() == id)
-			{
-				return i;
-			}
-		}
-		return null;
+		return indexesById.get(id);
 	}
 }
@@ -30,6 +30,10 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,7 +41,7 @@ public class DataFile implements Closeable
 {
 	private static final Logger logger = LoggerFactory.getLogger(DataFile.class);
 
-	private static final int SECTOR_SIZE = 520;
+	static final int SECTOR_SIZE = 520;
 
 	private final RandomAccessFile dat;
 
@@ -52,11 +56,16 @@ public class DataFile implements Closeable
 		dat.close();
 	}
 
-	public void clear() throws IOException
+	public synchronized void clear() throws IOException
 	{
 		dat.setLength(0L);
 	}
 
+	FileChannel getChannel()
+	{
+		return dat.getChannel();
+	}
+
 	/**
 	 *
 	 * @param indexId expected index of archive of contents being read
@@ -68,9 +77,14 @@ public class DataFile implements Closeable
 	 */
 	public byte[] read(int indexId, int archiveId, int sector, int size) throws IOException
 	{
-		if (sector <= 0L || dat.length() / SECTOR_SIZE < (long) sector)
+		// reads are positional and do not use the file pointer, so
+		// they are safe to do concurrently
+		FileChannel channel = dat.getChannel();
+		long length = channel.size();
+
+		if (sector <= 0L || length / SECTOR_SIZE < (long) sector)
 		{
-			logger.warn("bad read, dat length {}, requested sector {}", dat.length(), sector);
+			logger.warn("bad read, dat length {}, requested sector {}", length, sector);
 			return null;
 		}
 
@@ -87,7 +101,7 @@ public class DataFile implements Closeable
 				return null;
 			}
 
-			dat.seek(SECTOR_SIZE * sector);
+			long position = (long) SECTOR_SIZE * sector;
 
 			int dataBlockSize = size - readBytesCount;
 			byte headerSize;
@@ -102,7 +116,7 @@ public class DataFile implements Closeable
 					dataBlockSize = SECTOR_SIZE - headerSize;
 				}
 
-				int i = dat.read(readBuffer, 0, headerSize + dataBlockSize);
+				int i = readFully(channel, position, readBuffer, headerSize + dataBlockSize);
 				if (i != headerSize + dataBlockSize)
 				{
 					logger.warn("Short read when reading file data for {}/{}", indexId, archiveId);
@@ -127,7 +141,7 @@ public class DataFile implements Closeable
 					dataBlockSize = SECTOR_SIZE - headerSize;
 				}
 
-				int i = dat.read(readBuffer, 0, headerSize + dataBlockSize);
+				int i = readFully(channel, position, readBuffer, headerSize + dataBlockSize);
 				if (i != headerSize + dataBlockSize)
 				{
 					logger.warn("short read");
@@ -153,7 +167,7 @@ public class DataFile implements Closeable
 				return null;
 			}
 
-			if (nextSector < 0 || dat.length() / SECTOR_SIZE < (long) nextSector)
+			if (nextSector < 0 || length / SECTOR_SIZE < (long) nextSector)
 			{
 				logger.warn("Invalid next sector");
 				return null;
@@ -169,18 +183,84 @@ public class DataFile implements Closeable
 		return buffer.array();
 	}
 
+	private static int readFully(FileChannel channel, long position, byte[] b, int len) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.wrap(b, 0, len);
+		while (buffer.hasRemaining())
+		{
+			int i = channel.read(buffer, position + buffer.position());
+			if (i == -1)
+			{
+				break;
+			}
+		}
+		return buffer.position();
+	}
+
 	public DataFileWriteResult write(int indexId, int archiveId, byte[] compressedData) throws IOException
 	{
-		int sector;
+		return write(indexId, archiveId, compressedData, 0);
+	}
+
+	/**
+	 * Write an archive, reusing the sector chain of its existing data if
+	 * there is one. Once the existing chain runs out the remaining data is
+	 * appended to the end of the file. The existing chain is checked before
+	 * any of it is overwritten, and if it is not valid for the archive the
+	 * whole archive is appended instead.
+	 *
+	 * @param indexId index of the archive
+	 * @param archiveId archive id
+	 * @param compressedData data to write
+	 * @param existingSector first sector of the archive's existing data, or
+	 * 0 to append
+	 * @return
+	 * @throws IOException
+	 */
+	public synchronized DataFileWriteResult write(int indexId, int archiveId, byte[] compressedData, int existingSector) throws IOException
+	{
+		if (existingSector > 0)
+		{
+			DataFileWriteResult res = write(indexId, archiveId, compressedData, existingSector, true);
+			if (res != null)
+			{
+				return res;
+			}
+
+			logger.debug("Unable to overwrite {}/{} at sector {}, appending instead",
+				indexId, archiveId, existingSector);
+		}
+
+		return write(indexId, archiveId, compressedData, 0, false);
+	}
+
+	private DataFileWriteResult write(int indexId, int archiveId, byte[] compressedData, int sector, boolean overwrite) throws IOException
+	{
 		int startSector;
 
 		byte[] writeBuffer = new byte[SECTOR_SIZE];
 		ByteBuffer data = ByteBuffer.wrap(compressedData);
 
-		sector = (int) ((dat.length() + (long) (SECTOR_SIZE - 1)) / (long) SECTOR_SIZE);
-		if (sector == 0)
+		// sectors of the existing chain which are overwritten
+		int[] chain = null;
+		if (overwrite)
 		{
-			sector = 1;
+			int dataSize = archiveId > 0xFFFF ? 510 : 512;
+			int parts = Math.max(1, (compressedData.length + dataSize - 1) / dataSize);
+
+			chain = readChain(indexId, archiveId, sector, parts);
+			if (chain == null)
+			{
+				return null;
+			}
+		}
+		else
+		{
+			sector = (int) ((dat.length() + (long) (SECTOR_SIZE - 1)) / (long) SECTOR_SIZE);
+			if (sector == 0)
+			{
+				sector = 1;
+			}
 		}
 		startSector = sector;
 
@@ -189,8 +269,14 @@ public class DataFile implements Closeable
 			int nextSector = 0;
 			int dataToWrite;
 
-			if (nextSector == 0)
+			if (chain != null && part + 1 < chain.length)
+			{
+				// follow the existing chain
+				nextSector = chain[part + 1];
+			}
+			else
 			{
+				// end of the existing chain, if any, so append from here on
 				nextSector = (int) ((dat.length() + (long) (SECTOR_SIZE - 1)) / (long) SECTOR_SIZE);
 				if (nextSector == 0)
 				{
@@ -220,7 +306,7 @@ public class DataFile implements Closeable
 				writeBuffer[7] = (byte) (nextSector >> 8);
 				writeBuffer[8] = (byte) nextSector;
 				writeBuffer[9] = (byte) indexId;
-				dat.seek(SECTOR_SIZE * sector);
+				dat.seek((long) SECTOR_SIZE * sector);
 				dat.write(writeBuffer, 0, 10);
 
 				dataToWrite = data.remaining();
@@ -244,7 +330,7 @@ public class DataFile implements Closeable
 				writeBuffer[5] = (byte) (nextSector >> 8);
 				writeBuffer[6] = (byte) nextSector;
 				writeBuffer[7] = (byte) indexId;
-				dat.seek(SECTOR_SIZE * sector);
+				dat.seek((long) SECTOR_SIZE * sector);
 				dat.write(writeBuffer, 0, 8);
 
 				dataToWrite = data.remaining();
@@ -264,4 +350,109 @@ public class DataFile implements Closeable
 		res.compressedLength = compressedData.length;
 		return res;
 	}
+
+	/**
+	 * Read the existing sector chain of an archive, up to the given number
+	 * of parts
+	 *
+	 * @return the sectors of the chain, which may be fewer than the number
+	 * of parts if the chain ends first, or null if any sector of the chain
+	 * does not belong to the archive
+	 * @throws IOException
+	 */
+	private int[] readChain(int indexId, int archiveId, int sector, int parts) throws IOException
+	{
+		if (sector <= 0 || dat.length() / SECTOR_SIZE < (long) sector)
+		{
+			return null;
+		}
+
+		int[] chain = new int[parts];
+		Set<Integer> seen = new HashSet<>();
+		int length = 0;
+		while (length < parts)
+		{
+			if (!seen.add(sector))
+			{
+				// the chain loops back on itself
+				return null;
+			}
+
+			chain[length++] = sector;
+
+			int nextSector = readNextSector(indexId, archiveId, length - 1, sector);
+			if (nextSector < 0)
+			{
+				return null;
+			}
+
+			if (nextSector == 0)
+			{
+				break;
+			}
+
+			sector = nextSector;
+		}
+
+		return Arrays.copyOf(chain, length);
+	}
+
+	/**
+	 * Read the header of an existing sector of an archive
+	 *
+	 * @return the next sector in the chain, 0 if it is the last sector,
+	 * or -1 if the sector does not belong to the archive
+	 * @throws IOException
+	 */
+	private int readNextSector(int indexId, int archiveId, int part, int sector) throws IOException
+	{
+		FileChannel channel = dat.getChannel();
+		int headerSize = archiveId > 0xFFFF ? 10 : 8;
+		byte[] header = new byte[headerSize];
+
+		if (readFully(channel, (long) SECTOR_SIZE * sector, header, headerSize) != headerSize)
+		{
+			return -1;
+		}
+
+		int currentIndex;
+		int currentPart;
+		int currentArchive;
+		int nextSector;
+		if (headerSize == 10)
+		{
+			currentArchive = ((header[0] & 0xFF) << 24)
+				| ((header[1] & 0xFF) << 16)
+				| ((header[2] & 0xFF) << 8)
+				| (header[3] & 0xFF);
+			currentPart = ((header[4] & 0xFF) << 8) + (header[5] & 0xFF);
+			nextSector = ((header[6] & 0xFF) << 16)
+				| ((header[7] & 0xFF) << 8)
+				| (header[8] & 0xFF);
+			currentIndex = header[9] & 0xFF;
+		}
+		else
+		{
+			currentArchive = ((header[0] & 0xFF) << 8)
+				| (header[1] & 0xFF);
+			currentPart = ((header[2] & 0xFF) << 8)
+				| (header[3] & 0xFF);
+			nextSector = ((header[4] & 0xFF) << 16)
+				| ((header[5] & 0xFF) << 8)
+				| (header[6] & 0xFF);
+			currentIndex = header[7] & 0xFF;
+		}
+
+		if (archiveId != currentArchive || currentPart != part || indexId != currentIndex)
+		{
+			return -1;
+		}
+
+		if (channel.size() / SECTOR_SIZE < (long) nextSector)
+		{
+			return -1;
+		}
+
+		return nextSector;
+	}
 }
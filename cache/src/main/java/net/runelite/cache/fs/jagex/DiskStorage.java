@@ -28,8 +28,11 @@ import com.google.common.primitives.Ints;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import net.runelite.cache.fs.Archive;
 import net.runelite.cache.fs.Container;
 import net.runelite.cache.fs.Index;
@@ -48,30 +51,48 @@ public class DiskStorage implements Storage
 	private static final String MAIN_FILE_CACHE_DAT = "main_file_cache.dat2";
 	private static final String MAIN_FILE_CACHE_IDX = "main_file_cache.idx";
 
+	private static final String TMP_SUFFIX = ".tmp";
+
+	private static final int MAX_INDEXES = 255;
+
 	private final File folder;
 
 	private final DataFile data;
 	private final IndexFile index255;
-	private final List<IndexFile> indexFiles = new ArrayList<>();
+	private final AtomicReferenceArray<IndexFile> indexFiles = new AtomicReferenceArray<>(MAX_INDEXES);
+
+	private boolean overwrite;
 
 	public DiskStorage(File folder) throws IOException
+	{
+		this(folder, false);
+	}
+
+	/**
+	 * @param folder folder containing the cache
+	 * @param mapped whether to read the data file through memory mappings
+	 * instead of seeking the file for every sector
+	 * @throws IOException
+	 */
+	public DiskStorage(File folder, boolean mapped) throws IOException
 	{
 		this.folder = folder;
 
-		this.data = new DataFile(new File(folder, MAIN_FILE_CACHE_DAT));
+		File dataFile = new File(folder, MAIN_FILE_CACHE_DAT);
+		this.data = mapped ? new MappedDataFile(dataFile) : new DataFile(dataFile);
 		this.index255 = new IndexFile(255, new File(folder, MAIN_FILE_CACHE_IDX + "255"));
 	}
 
 	@Override
 	public void init(Store store) throws IOException
 	{
+		// open all of the index files up front so that reads
+		// never have to create them
 		for (int i = 0; i < index255.getIndexCount(); ++i)
 		{
 			store.addIndex(i);
 			getIndex(i);
 		}
-
-		assert store.getIndexes().size() == indexFiles.size();
 	}
 
 	@Override
@@ -79,25 +100,76 @@ public class DiskStorage implements Storage
 	{
 		data.close();
 		index255.close();
-		for (IndexFile indexFile : indexFiles)
+		for (int i = 0; i < indexFiles.length(); ++i)
 		{
-			indexFile.close();
+			IndexFile indexFile = indexFiles.get(i);
+			if (indexFile != null)
+			{
+				indexFile.close();
+			}
 		}
 	}
 
 	private IndexFile getIndex(int i) throws FileNotFoundException
 	{
-		for (IndexFile indexFile : indexFiles)
+		IndexFile indexFile = indexFiles.get(i);
+		if (indexFile != null)
+		{
+			return indexFile;
+		}
+
+		synchronized (indexFiles)
 		{
-			if (indexFile.getIndexFileId() == i)
+			indexFile = indexFiles.get(i);
+			if (indexFile == null)
 			{
-				return indexFile;
+				indexFile = new IndexFile(i, new File(folder, MAIN_FILE_CACHE_IDX + i));
+				indexFiles.set(i, indexFile);
 			}
+			return indexFile;
+		}
+	}
+
+	/**
+	 * Set whether saving an archive which already exists reuses the sectors
+	 * of its existing data, as the client does, instead of appending the new
+	 * data to the end of the data file.
+	 *
+	 * @param overwrite
+	 */
+	public void setOverwrite(boolean overwrite)
+	{
+		this.overwrite = overwrite;
+	}
+
+	public File getFolder()
+	{
+		return folder;
+	}
+
+	/**
+	 * Find the offset in the data file of the first sector of an archive
+	 *
+	 * @param index
+	 * @param archive
+	 * @return the offset, or -1 if the archive is not in the data file
+	 * @throws IOException
+	 */
+	public long getArchiveOffset(int index, int archive) throws IOException
+	{
+		IndexEntry entry = getIndex(index).read(archive);
+		if (entry == null)
+		{
+			return -1L;
 		}
 
-		IndexFile indexFile = new IndexFile(i, new File(folder, MAIN_FILE_CACHE_IDX + i));
-		indexFiles.add(indexFile);
-		return indexFile;
+		long offset = (long) entry.getSector() * DataFile.SECTOR_SIZE;
+		if (offset >= data.getChannel().size())
+		{
+			return -1L;
+		}
+
+		return offset;
 	}
 
 	@Override
@@ -147,6 +219,10 @@ public class DiskStorage implements Storage
 		assert res.revision == -1;
 	}
 
+	/**
+	 * Load the packed data of an archive. This may be called from
+	 * multiple threads concurrently.
+	 */
 	@Override
 	public byte[] loadArchive(Archive archive) throws IOException
 	{
@@ -190,7 +266,8 @@ public class DiskStorage implements Storage
 		Container container = new Container(index.getCompression(), -1); // index data revision is always -1
 		container.compress(data, null);
 		byte[] compressedData = container.data;
-		DataFileWriteResult res = this.data.write(index255.getIndexFileId(), index.getId(), compressedData);
+		DataFileWriteResult res = this.data.write(index255.getIndexFileId(), index.getId(), compressedData,
+			findExistingSector(index255, index.getId()));
 
 		index255.write(new IndexEntry(index255, index.getId(), res.sector, res.compressedLength));
 
@@ -206,7 +283,8 @@ public class DiskStorage implements Storage
 		IndexFile indexFile = getIndex(index.getId());
 		assert indexFile.getIndexFileId() == index.getId();
 
-		DataFileWriteResult res = data.write(index.getId(), a.getArchiveId(), archiveData);
+		DataFileWriteResult res = data.write(index.getId(), a.getArchiveId(), archiveData,
+			findExistingSector(indexFile, a.getArchiveId()));
 		indexFile.write(new IndexEntry(indexFile, a.getArchiveId(), res.sector, res.compressedLength));
 
 		byte compression = archiveData[0];
@@ -226,4 +304,107 @@ public class DiskStorage implements Storage
 		logger.trace("Saved archive {}/{} at sector {}, compressed length {}",
 			index.getId(), a.getArchiveId(), res.sector, res.compressedLength);
 	}
+
+	private int findExistingSector(IndexFile indexFile, int id) throws IOException
+	{
+		if (!overwrite)
+		{
+			return 0;
+		}
+
+		IndexEntry entry = indexFile.read(id);
+		return entry != null ? entry.getSector() : 0;
+	}
+
+	/**
+	 * Rewrite the data file of a cache so that it only contains the data
+	 * referenced by the index files, with the reference tables first and
+	 * then the archives of each index stored contiguously and in order.
+	 * The cache must not be in use while it is being compacted.
+	 *
+	 * @param folder folder containing the cache
+	 * @return
+	 * @throws IOException
+	 */
+	public static CompactionResult compact(File folder) throws IOException
+	{
+		long start = System.currentTimeMillis();
+
+		File dataFile = new File(folder, MAIN_FILE_CACHE_DAT);
+		File newDataFile = new File(folder, MAIN_FILE_CACHE_DAT + TMP_SUFFIX);
+		List<File> files = new ArrayList<>();
+
+		CompactionResult result = new CompactionResult();
+		result.oldLength = dataFile.length();
+
+		try (DataFile data = new DataFile(dataFile);
+			DataFile newData = new DataFile(newDataFile))
+		{
+			newData.clear();
+
+			files.add(new File(folder, MAIN_FILE_CACHE_IDX + "255"));
+			result.archives += compactIndex(data, newData, 255, folder);
+
+			int indexCount;
+			try (IndexFile index255 = new IndexFile(255, files.get(0)))
+			{
+				indexCount = index255.getIndexCount();
+			}
+
+			for (int i = 0; i < indexCount; ++i)
+			{
+				files.add(new File(folder, MAIN_FILE_CACHE_IDX + i));
+				result.archives += compactIndex(data, newData, i, folder);
+			}
+		}
+
+		files.add(dataFile);
+		for (File file : files)
+		{
+			File newFile = new File(folder, file.getName() + TMP_SUFFIX);
+			Files.move(newFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+
+		result.newLength = dataFile.length();
+		result.time = System.currentTimeMillis() - start;
+
+		logger.info("Compacted {} archives in {}ms, reclaimed {} bytes",
+			result.archives, result.time, result.getReclaimed());
+
+		return result;
+	}
+
+	private static int compactIndex(DataFile data, DataFile newData, int indexId, File folder) throws IOException
+	{
+		int count = 0;
+		File file = new File(folder, MAIN_FILE_CACHE_IDX + indexId);
+
+		try (IndexFile indexFile = new IndexFile(indexId, file);
+			IndexFile newIndexFile = new IndexFile(indexId, new File(folder, file.getName() + TMP_SUFFIX)))
+		{
+			newIndexFile.clear();
+
+			for (int id = 0; id < indexFile.getIndexCount(); ++id)
+			{
+				IndexEntry entry = indexFile.read(id);
+				if (entry == null)
+				{
+					continue;
+				}
+
+				byte[] archiveData = data.read(indexId, id, entry.getSector(), entry.getLength());
+				if (archiveData == null)
+				{
+					logger.warn("Unable to read archive {}/{}, dropping it", indexId, id);
+					continue;
+				}
+
+				DataFileWriteResult res = newData.write(indexId, id, archiveData);
+				newIndexFile.write(new IndexEntry(newIndexFile, id, res.sector, res.compressedLength));
+				++count;
+			}
+		}
+
+		return count;
+	}
 }
@@ -29,6 +29,8 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Objects;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,7 +59,7 @@ public class IndexFile implements Closeable
 		idx.close();
 	}
 
-	public void clear() throws IOException
+	public synchronized void clear() throws IOException
 	{
 		idx.setLength(0L);
 	}
@@ -96,7 +98,7 @@ public class IndexFile implements Closeable
 
 	public synchronized void write(IndexEntry entry) throws IOException
 	{
-		idx.seek(entry.getId() * INDEX_ENTRY_LEN);
+		idx.seek((long) entry.getId() * INDEX_ENTRY_LEN);
 
 		buffer[0] = (byte) (entry.getLength() >> 16);
 		buffer[1] = (byte) (entry.getLength() >> 8);
@@ -109,18 +111,31 @@ public class IndexFile implements Closeable
 		idx.write(buffer);
 	}
 
-	public synchronized IndexEntry read(int id) throws IOException
+	public IndexEntry read(int id) throws IOException
 	{
-		idx.seek(id * INDEX_ENTRY_LEN);
-		int i = idx.read(buffer);
+		// positional read into a local buffer so reads may happen concurrently
+		byte[] readBuffer = new byte[INDEX_ENTRY_LEN];
+		ByteBuffer buf = ByteBuffer.wrap(readBuffer);
+		FileChannel channel = idx.getChannel();
+		long position = (long) id * INDEX_ENTRY_LEN;
+
+		while (buf.hasRemaining())
+		{
+			if (channel.read(buf, position + buf.position()) == -1)
+			{
+				break;
+			}
+		}
+
+		int i = buf.position();
 		if (i != INDEX_ENTRY_LEN)
 		{
 			logger.debug("short read for id {} on index {}: {}", id, indexFileId, i);
 			return null;
 		}
 
-		int length = ((buffer[0] & 0xFF) << 16) | ((buffer[1] & 0xFF) << 8) | (buffer[2] & 0xFF);
-		int sector = ((buffer[3] & 0xFF) << 16) | ((buffer[4] & 0xFF) << 8) | (buffer[5] & 0xFF);
+		int length = ((readBuffer[0] & 0xFF) << 16) | ((readBuffer[1] & 0xFF) << 8) | (readBuffer[2] & 0xFF);
+		int sector = ((readBuffer[3] & 0xFF) << 16) | ((readBuffer[4] & 0xFF) << 8) | (readBuffer[5] & 0xFF);
 
 		if (length <= 0 || sector <= 0)
 		{
@@ -131,8 +146,8 @@ public class IndexFile implements Closeable
 		return new IndexEntry(this, id, sector, length);
 	}
 
-	public synchronized int getIndexCount() throws IOException
+	public int getIndexCount() throws IOException
 	{
-		return (int) (idx.length() / INDEX_ENTRY_LEN);
+		return (int) (idx.getChannel().size() / INDEX_ENTRY_LEN);
 	}
 }
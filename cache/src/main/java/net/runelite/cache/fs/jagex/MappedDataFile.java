@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs.jagex;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A data file which reads through memory mappings of the dat2 instead of
+ * seeking and reading the underlying file for every sector. Writes still
+ * go through the file, and the mappings are extended when a read reaches
+ * past what is currently mapped.
+ */
+public class MappedDataFile extends DataFile
+{
+	private static final Logger logger = LoggerFactory.getLogger(MappedDataFile.class);
+
+	/**
+	 * Each mapping covers a whole number of sectors, so a sector never
+	 * straddles two mappings. This is just over 1GB per mapping.
+	 */
+	private static final int SECTORS_PER_SEGMENT = 1 << 21;
+	private static final long SEGMENT_SIZE = (long) SECTORS_PER_SEGMENT * SECTOR_SIZE;
+
+	private static final Mapping EMPTY = new Mapping(new MappedByteBuffer[0], 0L);
+
+	/**
+	 * The current mappings of the file. This is replaced as a whole when
+	 * the file is remapped, so readers may use it without locking.
+	 */
+	private static class Mapping
+	{
+		private final MappedByteBuffer[] segments;
+		private final long length;
+
+		private Mapping(MappedByteBuffer[] segments, long length)
+		{
+			this.segments = segments;
+			this.length = length;
+		}
+	}
+
+	private final FileChannel channel;
+	private volatile Mapping mapping = EMPTY;
+
+	public MappedDataFile(File file) throws IOException
+	{
+		super(file);
+		this.channel = getChannel();
+		map();
+	}
+
+	@Override
+	public synchronized void clear() throws IOException
+	{
+		mapping = EMPTY;
+		super.clear();
+	}
+
+	private synchronized Mapping map() throws IOException
+	{
+		long length = channel.size();
+		if (length == mapping.length)
+		{
+			return mapping;
+		}
+
+		int count = (int) ((length + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+
+		MappedByteBuffer[] newSegments = Arrays.copyOf(mapping.segments, count);
+		for (int i = 0; i < count; ++i)
+		{
+			long position = i * SEGMENT_SIZE;
+			long size = Math.min(SEGMENT_SIZE, length - position);
+
+			// full segments never change, only the last one may have grown
+			if (newSegments[i] == null || newSegments[i].capacity() != size)
+			{
+				newSegments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+			}
+		}
+
+		mapping = new Mapping(newSegments, length);
+
+		logger.debug("Mapped {} bytes in {} segments", length, count);
+		return mapping;
+	}
+
+	@Override
+	public byte[] read(int indexId, int archiveId, int sector, int size) throws IOException
+	{
+		Mapping mapping = this.mapping;
+
+		if (sector > 0 && (long) sector * SECTOR_SIZE >= mapping.length)
+		{
+			mapping = map();
+		}
+
+		if (sector <= 0 || (long) sector * SECTOR_SIZE >= mapping.length)
+		{
+			logger.warn("bad read, dat length {}, requested sector {}", mapping.length, sector);
+			return null;
+		}
+
+		final int headerSize = archiveId > 0xFFFF ? 10 : 8;
+		final byte[] data = new byte[size];
+
+		for (int part = 0, readBytesCount = 0, nextSector;
+			size > readBytesCount;
+			sector = nextSector)
+		{
+			if (sector == 0)
+			{
+				logger.warn("Unexpected end of file");
+				return null;
+			}
+
+			int dataBlockSize = Math.min(size - readBytesCount, SECTOR_SIZE - headerSize);
+
+			long end = (long) sector * SECTOR_SIZE + headerSize + dataBlockSize;
+			if (end > mapping.length)
+			{
+				// the file may have been written to since it was last mapped
+				mapping = map();
+
+				if (end > mapping.length)
+				{
+					logger.warn("Short read when reading file data for {}/{}", indexId, archiveId);
+					return null;
+				}
+			}
+
+			ByteBuffer segment = mapping.segments[sector / SECTORS_PER_SEGMENT];
+			int offset = (sector % SECTORS_PER_SEGMENT) * SECTOR_SIZE;
+
+			int currentIndex;
+			int currentPart;
+			int currentArchive;
+			if (headerSize == 10)
+			{
+				currentArchive = segment.getInt(offset);
+				currentPart = segment.getShort(offset + 4) & 0xFFFF;
+				nextSector = readMedium(segment, offset + 6);
+				currentIndex = segment.get(offset + 9) & 0xFF;
+			}
+			else
+			{
+				currentArchive = segment.getShort(offset) & 0xFFFF;
+				currentPart = segment.getShort(offset + 2) & 0xFFFF;
+				nextSector = readMedium(segment, offset + 4);
+				currentIndex = segment.get(offset + 7) & 0xFF;
+			}
+
+			if (archiveId != currentArchive || currentPart != part || indexId != currentIndex)
+			{
+				logger.warn("data mismatch {} != {}, {} != {}, {} != {}",
+					archiveId, currentArchive,
+					part, currentPart,
+					indexId, currentIndex);
+				return null;
+			}
+
+			ByteBuffer src = segment.duplicate();
+			src.position(offset + headerSize);
+			src.get(data, readBytesCount, dataBlockSize);
+			readBytesCount += dataBlockSize;
+
+			++part;
+		}
+
+		return data;
+	}
+
+	private static int readMedium(ByteBuffer buffer, int offset)
+	{
+		return ((buffer.get(offset) & 0xFF) << 16)
+			| ((buffer.get(offset + 1) & 0xFF) << 8)
+			| (buffer.get(offset + 2) & 0xFF);
+	}
+}
@@ -24,6 +24,9 @@
  */
 package net.runelite.cache.item;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 class Graphics3D extends Rasterizer2D
 {
 	private static final double UNIT = Math.PI / 1024d; // How much of the circle each unit of SINE/COSINE is
@@ -34,6 +37,9 @@ class Graphics3D extends Rasterizer2D
 	private static int[] field1932 = new int[512];
 	static int[] field1933 = new int[2048];
 
+	// palettes only depend on the brightness, and are never modified once built
+	private static final Map<Double, int[]> colorPalettes = new ConcurrentHashMap<>();
+
 	static
 	{
 		for (int i = 0; i < 2048; ++i)
@@ -134,7 +140,7 @@ class Graphics3D extends Rasterizer2D
 
 	public final void setBrightness(double var0)
 	{
-		colorPalette = new ColorPalette(var0, 0, 512).getColorPalette();
+		colorPalette = colorPalettes.computeIfAbsent(var0, brightness -> new ColorPalette(brightness, 0, 512).getColorPalette());
 	}
 
 	final void rasterGouraud(int var0, int var1, int var2, int var3, int var4, int var5, int var6, int var7, int var8)
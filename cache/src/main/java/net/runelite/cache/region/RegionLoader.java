@@ -25,8 +25,10 @@
 package net.runelite.cache.region;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import net.runelite.cache.IndexType;
 import net.runelite.cache.definitions.LocationsDefinition;
@@ -57,12 +59,24 @@ public class RegionLoader
 
 	public RegionLoader(Store store)
 	{
-		this.store = store;
-		index = store.getIndex(IndexType.MAPS);
-		keyManager = new XteaKeyManager();
+		this(store, new XteaKeyManager());
 		keyManager.loadKeys();
 	}
 
+	/**
+	 * Create a region loader which decrypts locations with the keys of an
+	 * already loaded key manager
+	 *
+	 * @param store
+	 * @param keyManager
+	 */
+	public RegionLoader(Store store, XteaKeyManager keyManager)
+	{
+		this.store = store;
+		this.index = store.getIndex(IndexType.MAPS);
+		this.keyManager = keyManager;
+	}
+
 	public void loadRegions() throws IOException
 	{
 		for (int i = 0; i < MAX_REGION; ++i)
@@ -75,6 +89,28 @@ public class RegionLoader
 		}
 	}
 
+	/**
+	 * Find the ids of the regions in the cache, without loading them
+	 *
+	 * @return region ids
+	 */
+	public List<Integer> findRegionIds()
+	{
+		List<Integer> regionIds = new ArrayList<>();
+		for (int i = 0; i < MAX_REGION; ++i)
+		{
+			int x = i >> 8;
+			int y = i & 0xFF;
+
+			if (index.findArchiveByName("m" + x + "_" + y) != null
+				&& index.findArchiveByName("l" + x + "_" + y) != null)
+			{
+				regionIds.add(i);
+			}
+		}
+		return regionIds;
+	}
+
 	public Region loadRegionFromArchive(int i) throws IOException
 	{
 		int x = i >> 8;
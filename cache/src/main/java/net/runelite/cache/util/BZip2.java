@@ -29,6 +29,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.util.Arrays;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
@@ -47,6 +48,16 @@ public class BZip2
 		'1'       // block size
 	};
 
+	// the stream starts with a block, or the end of stream if it is empty
+	private static final byte[] BLOCK_MAGIC = new byte[]
+	{
+		0x31, 0x41, 0x59, 0x26, 0x53, 0x59
+	};
+	private static final byte[] END_OF_STREAM_MAGIC = new byte[]
+	{
+		0x17, 0x72, 0x45, 0x38, 0x50, (byte) 0x90
+	};
+
 	public static byte[] compress(byte[] bytes) throws IOException
 	{
 		InputStream is = new ByteArrayInputStream(bytes);
@@ -83,4 +94,71 @@ public class BZip2
 
 		return os.toByteArray();
 	}
+
+	/**
+	 * Decompress bzip2 data, without its header, when the length of the
+	 * decompressed data is known. The data is checked to start with a
+	 * block before the buffer is allocated, so a corrupt length fails
+	 * rather than allocating a huge buffer.
+	 *
+	 * @param in buffer containing the compressed data
+	 * @param off offset of the compressed data
+	 * @param len length of the compressed data
+	 * @param outLen length of the decompressed data
+	 * @return the decompressed data
+	 * @throws IOException if the data is invalid or is not outLen bytes
+	 */
+	public static byte[] decompress(byte[] in, int off, int len, int outLen) throws IOException
+	{
+		if (!startsWith(in, off, len, BLOCK_MAGIC) && !startsWith(in, off, len, END_OF_STREAM_MAGIC))
+		{
+			throw new IOException("Not in bzip2 format");
+		}
+
+		if (outLen < 0)
+		{
+			throw new IOException("Invalid decompressed length " + outLen);
+		}
+
+		byte[] out = new byte[outLen];
+		InputStream data = new SequenceInputStream(new ByteArrayInputStream(BZIP_HEADER), new ByteArrayInputStream(in, off, len));
+
+		try (InputStream is = new BZip2CompressorInputStream(data))
+		{
+			int n = 0;
+			while (n < outLen)
+			{
+				int read = is.read(out, n, outLen - n);
+				if (read == -1)
+				{
+					throw new IOException("Decompressed data is shorter than expected, " + n + " < " + outLen);
+				}
+				n += read;
+			}
+
+			if (is.read() != -1)
+			{
+				throw new IOException("Decompressed data is longer than expected");
+			}
+		}
+
+		return out;
+	}
+
+	private static boolean startsWith(byte[] in, int off, int len, byte[] magic)
+	{
+		if (len < magic.length)
+		{
+			return false;
+		}
+
+		for (int i = 0; i < magic.length; ++i)
+		{
+			if (in[off + i] != magic[i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
 }
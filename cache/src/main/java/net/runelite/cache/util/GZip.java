@@ -30,8 +30,11 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
 import org.apache.commons.compress.utils.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,6 +43,18 @@ public class GZip
 {
 	private static final Logger logger = LoggerFactory.getLogger(GZip.class);
 
+	private static final int FHCRC = 2;
+	private static final int FEXTRA = 4;
+	private static final int FNAME = 8;
+	private static final int FCOMMENT = 16;
+
+	// deflate can't expand data by more than this
+	private static final int MAX_DEFLATE_RATIO = 1032;
+
+	// inflaters hold native memory, so they are kept per thread rather than made per call
+	private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+	private static final ThreadLocal<CRC32> CRC = ThreadLocal.withInitial(CRC32::new);
+
 	public static byte[] compress(byte[] bytes) throws IOException
 	{
 		InputStream is = new ByteArrayInputStream(bytes);
@@ -64,4 +79,127 @@ public class GZip
 
 		return os.toByteArray();
 	}
+
+	/**
+	 * Decompress gzip data when the length of the decompressed data is
+	 * known. The length is checked against the header and the most deflate
+	 * can expand the data by before the buffer is allocated, so a corrupt
+	 * length fails rather than allocating a huge buffer.
+	 *
+	 * @param in buffer containing the gzip data
+	 * @param off offset of the gzip data
+	 * @param len length of the gzip data
+	 * @param outLen length of the decompressed data
+	 * @return the decompressed data
+	 * @throws IOException if the data is invalid or is not outLen bytes
+	 */
+	public static byte[] decompress(byte[] in, int off, int len, int outLen) throws IOException
+	{
+		int end = off + len;
+		int pos = skipHeader(in, off, end);
+
+		if (outLen < 0 || outLen > (long) (end - pos) * MAX_DEFLATE_RATIO)
+		{
+			throw new IOException("Invalid decompressed length " + outLen);
+		}
+
+		byte[] out = new byte[outLen];
+
+		Inflater inflater = INFLATER.get();
+		inflater.reset();
+		inflater.setInput(in, pos, end - pos);
+
+		try
+		{
+			int n = 0;
+			while (n < outLen)
+			{
+				int read = inflater.inflate(out, n, outLen - n);
+				if (read == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+				{
+					throw new IOException("Decompressed data is shorter than expected, " + n + " < " + outLen);
+				}
+				n += read;
+			}
+
+			// consume the end of the deflate stream, which may follow the last byte
+			if (!inflater.finished() && (inflater.inflate(new byte[1]) != 0 || !inflater.finished()))
+			{
+				throw new IOException("Decompressed data is longer than expected");
+			}
+		}
+		catch (DataFormatException ex)
+		{
+			throw new IOException(ex);
+		}
+
+		int trailer = end - inflater.getRemaining();
+		if (end - trailer < 8)
+		{
+			throw new IOException("Truncated gzip trailer");
+		}
+
+		CRC32 crc = CRC.get();
+		crc.reset();
+		crc.update(out, 0, outLen);
+		if (getIntLE(in, trailer) != (int) crc.getValue() || getIntLE(in, trailer + 4) != outLen)
+		{
+			throw new IOException("Corrupt gzip trailer");
+		}
+
+		return out;
+	}
+
+	private static int skipHeader(byte[] in, int pos, int end) throws IOException
+	{
+		if (end - pos < 10 || in[pos] != (byte) 0x1f || in[pos + 1] != (byte) 0x8b || in[pos + 2] != 8)
+		{
+			throw new IOException("Not in gzip format");
+		}
+
+		int flags = in[pos + 3];
+		pos += 10;
+
+		if ((flags & FEXTRA) != 0)
+		{
+			if (end - pos < 2)
+			{
+				throw new IOException("Truncated gzip header");
+			}
+			pos += 2 + ((in[pos] & 0xFF) | (in[pos + 1] & 0xFF) << 8);
+		}
+		if ((flags & FNAME) != 0)
+		{
+			pos = skipString(in, pos, end);
+		}
+		if ((flags & FCOMMENT) != 0)
+		{
+			pos = skipString(in, pos, end);
+		}
+		if ((flags & FHCRC) != 0)
+		{
+			pos += 2;
+		}
+
+		if (pos > end)
+		{
+			throw new IOException("Truncated gzip header");
+		}
+		return pos;
+	}
+
+	private static int skipString(byte[] in, int pos, int end)
+	{
+		// zero terminated
+		while (pos < end && in[pos] != 0)
+		{
+			++pos;
+		}
+		return pos + 1;
+	}
+
+	private static int getIntLE(byte[] in, int pos)
+	{
+		return (in[pos] & 0xFF) | (in[pos + 1] & 0xFF) << 8 | (in[pos + 2] & 0xFF) << 16 | (in[pos + 3] & 0xFF) << 24;
+	}
 }
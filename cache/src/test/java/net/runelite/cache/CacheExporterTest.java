@@ -0,0 +1,338 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import static net.runelite.cache.TestArchives.file;
+import static net.runelite.cache.TestArchives.saveArchive;
+import net.runelite.cache.definitions.InterfaceDefinition;
+import net.runelite.cache.definitions.ItemDefinition;
+import net.runelite.cache.definitions.NpcDefinition;
+import net.runelite.cache.definitions.ObjectDefinition;
+import net.runelite.cache.definitions.savers.InterfaceSaver;
+import net.runelite.cache.definitions.savers.ItemSaver;
+import net.runelite.cache.definitions.savers.NpcSaver;
+import net.runelite.cache.definitions.savers.ObjectSaver;
+import net.runelite.cache.fs.ArchiveFiles;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.fs.jagex.DiskStorage;
+import net.runelite.cache.io.OutputStream;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CacheExporterTest
+{
+	private static final int NUM_ITEMS = 2000;
+	private static final int NUM_NPCS = 500;
+	private static final int NUM_OBJECTS = 500;
+	private static final int NUM_INVENTORIES = 50;
+	private static final int NUM_AREAS = 100;
+	private static final int NUM_INTERFACE_GROUPS = 20;
+	private static final int NUM_INTERFACE_CHILDREN = 10;
+	private static final int NUM_SPRITES = 30;
+	private static final int NUM_TEXTURES = 60;
+
+	@Rule
+	public TemporaryFolder folder = StoreLocation.getTemporaryFolder();
+
+	@Test
+	public void testExportAll() throws IOException
+	{
+		try (Store store = new Store(new DiskStorage(folder.newFolder())))
+		{
+			createStore(store);
+
+			File serial = folder.newFolder();
+			exportSerial(store, serial);
+
+			File parallel = folder.newFolder();
+			ForkJoinPool pool = new ForkJoinPool(4);
+			try
+			{
+				CacheExporter exporter = new CacheExporter(store, pool);
+				exporter.exportAll(parallel);
+
+				assertEquals(8, exporter.getTimings().size());
+			}
+			finally
+			{
+				pool.shutdown();
+			}
+
+			Map<String, byte[]> expected = readFiles(serial.toPath());
+			Map<String, byte[]> actual = readFiles(parallel.toPath());
+
+			// 0 sized frames are skipped
+			assertEquals(NUM_ITEMS + NUM_NPCS + NUM_OBJECTS + NUM_INVENTORIES + NUM_AREAS
+				+ NUM_INTERFACE_GROUPS * NUM_INTERFACE_CHILDREN + NUM_SPRITES + NUM_TEXTURES, expected.size());
+			assertEquals(expected.keySet(), actual.keySet());
+			for (Map.Entry<String, byte[]> entry : expected.entrySet())
+			{
+				assertArrayEquals(entry.getKey(), entry.getValue(), actual.get(entry.getKey()));
+			}
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testExportFailure() throws IOException
+	{
+		try (Store store = new Store(new DiskStorage(folder.newFolder())))
+		{
+			createStore(store);
+
+			// items can't be written into a file
+			File out = folder.newFile();
+
+			ForkJoinPool pool = new ForkJoinPool(4);
+			try
+			{
+				new CacheExporter(store, pool).exportItems(out);
+			}
+			finally
+			{
+				pool.shutdown();
+			}
+		}
+	}
+
+	private static void exportSerial(Store store, File out) throws IOException
+	{
+		ItemManager items = new ItemManager(store);
+		items.load();
+		items.export(new File(out, "items"));
+
+		NpcManager npcs = new NpcManager(store);
+		npcs.load();
+		npcs.dump(new File(out, "npcs"));
+
+		ObjectManager objects = new ObjectManager(store);
+		objects.load();
+		objects.dump(new File(out, "objects"));
+
+		InventoryManager inventories = new InventoryManager(store);
+		inventories.load();
+		inventories.export(new File(out, "inventories"));
+
+		AreaManager areas = new AreaManager(store);
+		areas.load();
+		areas.export(new File(out, "areas"));
+
+		InterfaceManager interfaces = new InterfaceManager(store);
+		interfaces.load();
+		interfaces.export(new File(out, "interfaces"));
+
+		SpriteManager sprites = new SpriteManager(store);
+		sprites.load();
+		File spriteDir = new File(out, "sprites");
+		spriteDir.mkdirs();
+		sprites.export(spriteDir);
+
+		TextureManager textures = new TextureManager(store);
+		textures.load();
+		textures.export(new File(out, "textures"));
+	}
+
+	private static Map<String, byte[]> readFiles(Path root) throws IOException
+	{
+		Map<String, byte[]> files = new TreeMap<>();
+		try (Stream<Path> paths = Files.walk(root))
+		{
+			for (Path path : (Iterable<Path>) paths::iterator)
+			{
+				if (Files.isRegularFile(path))
+				{
+					files.put(root.relativize(path).toString(), Files.readAllBytes(path));
+				}
+			}
+		}
+		return files;
+	}
+
+	private static void createStore(Store store) throws IOException
+	{
+		for (int i = 0; i <= IndexType.TEXTURES.getNumber(); ++i)
+		{
+			store.addIndex(i);
+		}
+
+		Index configs = store.getIndex(IndexType.CONFIGS);
+
+		ItemSaver itemSaver = new ItemSaver();
+		ArchiveFiles items = new ArchiveFiles();
+		for (int i = 0; i < NUM_ITEMS; ++i)
+		{
+			ItemDefinition def = new ItemDefinition(i);
+			def.name = "Item " + i;
+			def.cost = i * 3;
+			items.addFile(file(i, itemSaver.save(def)));
+		}
+		saveArchive(store, configs.addArchive(ConfigType.ITEM.getId()), items);
+
+		NpcSaver npcSaver = new NpcSaver();
+		ArchiveFiles npcs = new ArchiveFiles();
+		for (int i = 0; i < NUM_NPCS; ++i)
+		{
+			NpcDefinition def = new NpcDefinition(i);
+			def.name = "Npc " + i;
+			def.combatLevel = i % 126;
+			npcs.addFile(file(i, npcSaver.save(def)));
+		}
+		saveArchive(store, configs.addArchive(ConfigType.NPC.getId()), npcs);
+
+		ObjectSaver objectSaver = new ObjectSaver();
+		ArchiveFiles objects = new ArchiveFiles();
+		for (int i = 0; i < NUM_OBJECTS; ++i)
+		{
+			ObjectDefinition def = new ObjectDefinition();
+			def.setId(i);
+			def.setName("Object " + i);
+			def.setSizeX(1 + i % 3);
+			objects.addFile(file(i, objectSaver.save(def)));
+		}
+		saveArchive(store, configs.addArchive(ConfigType.OBJECT.getId()), objects);
+
+		ArchiveFiles inventories = new ArchiveFiles();
+		for (int i = 0; i < NUM_INVENTORIES; ++i)
+		{
+			OutputStream out = new OutputStream();
+			out.writeByte(2);
+			out.writeShort(i % 30);
+			out.writeByte(0);
+			inventories.addFile(file(i, out.flip()));
+		}
+		saveArchive(store, configs.addArchive(ConfigType.INV.getId()), inventories);
+
+		ArchiveFiles areas = new ArchiveFiles();
+		for (int i = 0; i < NUM_AREAS; ++i)
+		{
+			OutputStream out = new OutputStream();
+			out.writeByte(3);
+			out.writeString("Area " + i);
+			out.writeByte(19);
+			out.writeShort(i * 7);
+			out.writeByte(0);
+			areas.addFile(file(i, out.flip()));
+		}
+		saveArchive(store, configs.addArchive(ConfigType.AREA.getId()), areas);
+
+		InterfaceSaver interfaceSaver = new InterfaceSaver();
+		Index interfaces = store.getIndex(IndexType.INTERFACES);
+		for (int i = 0; i < NUM_INTERFACE_GROUPS; ++i)
+		{
+			ArchiveFiles group = new ArchiveFiles();
+			for (int j = 0; j < NUM_INTERFACE_CHILDREN; ++j)
+			{
+				InterfaceDefinition def = new InterfaceDefinition();
+				def.hasScript = false;
+				def.originalX = j;
+				def.originalWidth = i;
+				group.addFile(file(j, interfaceSaver.save(def)));
+			}
+			saveArchive(store, interfaces.addArchive(i), group);
+		}
+
+		Index sprites = store.getIndex(IndexType.SPRITES);
+		for (int i = 0; i < NUM_SPRITES; ++i)
+		{
+			ArchiveFiles sprite = new ArchiveFiles();
+			sprite.addFile(file(0, sprite(i)));
+			saveArchive(store, sprites.addArchive(i), sprite);
+		}
+
+		ArchiveFiles textures = new ArchiveFiles();
+		for (int i = 0; i < NUM_TEXTURES; ++i)
+		{
+			textures.addFile(file(i, texture(i)));
+		}
+		saveArchive(store, store.getIndex(IndexType.TEXTURES).addArchive(0), textures);
+	}
+
+	/**
+	 * Encode a texture made of two sprites
+	 */
+	private static byte[] texture(int id)
+	{
+		OutputStream out = new OutputStream();
+		out.writeShort(id * 3);
+		out.writeByte(id & 1);
+		out.writeByte(2); // sprite count
+		out.writeShort(id % NUM_SPRITES);
+		out.writeShort((id + 1) % NUM_SPRITES);
+		out.writeByte(1);
+		out.writeByte(2);
+		out.writeInt(0);
+		out.writeInt(id);
+		out.writeByte(id % 4);
+		out.writeByte(1);
+		return out.flip();
+	}
+
+	/**
+	 * Encode a sprite with two frames, the second of which has no size
+	 */
+	private static byte[] sprite(int id)
+	{
+		int width = 2 + id % 5;
+		int height = 3;
+
+		OutputStream out = new OutputStream();
+		out.writeByte(0); // horizontal, no alpha
+		for (int i = 0; i < width * height; ++i)
+		{
+			out.writeByte(1 + (i + id) % 3);
+		}
+		out.writeByte(0); // second frame
+
+		// palette, after the transparent entry
+		out.write24BitInt(0xFF0000);
+		out.write24BitInt(0x00FF00 + id);
+		out.write24BitInt(0x0000FF);
+
+		out.writeShort(width);
+		out.writeShort(height);
+		out.writeByte(3); // palette length - 1
+		out.writeShort(0);
+		out.writeShort(0);
+		out.writeShort(0);
+		out.writeShort(0);
+		out.writeShort(width);
+		out.writeShort(0);
+		out.writeShort(height);
+		out.writeShort(0);
+		out.writeShort(2);
+		return out.flip();
+	}
+}
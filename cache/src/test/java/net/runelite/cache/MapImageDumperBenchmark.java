@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.fs.jagex.DiskStorage;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares drawing a plane of the map as one image against drawing it as
+ * tiles, on a store of generated regions, by wall time and peak heap. Each
+ * is run twice, once to time it, and once while the heap is collected and
+ * measured every SAMPLE_INTERVAL ms, so that the peak heap counts only what
+ * is reachable.
+ */
+public class MapImageDumperBenchmark
+{
+	private static final Logger logger = LoggerFactory.getLogger(MapImageDumperBenchmark.class);
+
+	// regions along each side of the map
+	private static final int SIZE = 30;
+	private static final long SAMPLE_INTERVAL = 200L;
+
+	@Rule
+	public TemporaryFolder folder = StoreLocation.getTemporaryFolder();
+
+	@Test
+	public void benchmark() throws Exception
+	{
+		try (Store store = new Store(new DiskStorage(folder.newFolder())))
+		{
+			MapTestStore.create(store);
+			for (int x = 0; x < SIZE; ++x)
+			{
+				for (int y = 0; y < SIZE; ++y)
+				{
+					MapTestStore.saveRegion(store, 40 + x, 40 + y, x << 8 | y);
+				}
+			}
+
+			long start = System.nanoTime();
+			drawImage(store);
+			long end = System.nanoTime();
+			logger.info("image: {} ms, peak heap {} MB drawing {} regions", (end - start) / 1_000_000L,
+				peakHeap(() -> drawImage(store)), SIZE * SIZE);
+
+			start = System.nanoTime();
+			drawTiles(store);
+			end = System.nanoTime();
+			logger.info("tiles: {} ms, peak heap {} MB drawing {} regions", (end - start) / 1_000_000L,
+				peakHeap(() -> drawTiles(store)), SIZE * SIZE);
+		}
+	}
+
+	private void drawImage(Store store) throws IOException
+	{
+		MapImageDumper dumper = new MapImageDumper(store);
+		dumper.load();
+		BufferedImage image = dumper.drawMap(0);
+		ImageIO.write(image, "png", folder.newFile());
+	}
+
+	private void drawTiles(Store store) throws IOException
+	{
+		MapImageDumper dumper = new MapImageDumper(store);
+		dumper.loadDefinitions();
+		dumper.drawTiles(0, folder.newFolder());
+	}
+
+	private static long peakHeap(Draw draw) throws Exception
+	{
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		AtomicLong peak = new AtomicLong();
+
+		ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+		executor.scheduleWithFixedDelay(() ->
+		{
+			System.gc();
+			peak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+		}, 0L, SAMPLE_INTERVAL, TimeUnit.MILLISECONDS);
+
+		try
+		{
+			draw.draw();
+		}
+		finally
+		{
+			executor.shutdown();
+			executor.awaitTermination(1L, TimeUnit.MINUTES);
+		}
+
+		return peak.get() / 1024L / 1024L;
+	}
+
+	@FunctionalInterface
+	private interface Draw
+	{
+		void draw() throws IOException;
+	}
+}
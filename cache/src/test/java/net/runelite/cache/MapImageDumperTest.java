@@ -27,10 +27,28 @@ package net.runelite.cache;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.imageio.ImageIO;
 import net.runelite.cache.fs.Store;
+import net.runelite.cache.fs.jagex.DiskStorage;
 import net.runelite.cache.region.Region;
 import net.runelite.cache.region.RegionLoader;
+import net.runelite.cache.util.XteaKeyManager;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import org.junit.Ignore;
 import org.junit.Rule;
 import org.junit.Test;
@@ -71,6 +89,243 @@ public class MapImageDumperTest
 		}
 	}
 
+	@Test
+	@Ignore
+	public void dumpTiles() throws IOException
+	{
+		File base = StoreLocation.LOCATION,
+			outDir = folder.newFolder();
+
+		try (Store store = new Store(base))
+		{
+			store.load();
+
+			MapImageDumper dumper = new MapImageDumper(store);
+			dumper.loadDefinitions();
+
+			for (int i = 0; i < Region.Z; ++i)
+			{
+				File planeDir = new File(outDir, "" + i);
+				dumper.drawTiles(i, planeDir);
+				logger.info("Wrote tiles to {}", planeDir);
+			}
+		}
+	}
+
+	@Test
+	public void testDrawTiles() throws IOException
+	{
+		try (Store store = new Store(new DiskStorage(folder.newFolder())))
+		{
+			MapTestStore.create(store);
+
+			// a 3x3 square of regions, less the north east corner
+			for (int x = 50; x < 53; ++x)
+			{
+				for (int y = 50; y < 53; ++y)
+				{
+					if (x != 52 || y != 52)
+					{
+						MapTestStore.saveRegion(store, x, y, x << 8 | y);
+					}
+				}
+			}
+
+			MapImageDumper dumper = new MapImageDumper(store);
+			dumper.load();
+
+			for (int z = 0; z < Region.Z; ++z)
+			{
+				BufferedImage map = dumper.drawMap(z);
+
+				File outDir = folder.newFolder();
+				dumper.drawTiles(z, outDir);
+
+				// each tile is the same as its region in the whole map
+				for (int x = 50; x < 53; ++x)
+				{
+					for (int y = 50; y < 53; ++y)
+					{
+						File tileFile = MapImageDumper.getTileFile(outDir, MapImageDumper.TILE_ZOOM, x, 255 - y);
+						if (x == 52 && y == 52)
+						{
+							assertFalse(tileFile.exists());
+							continue;
+						}
+
+						BufferedImage tile = ImageIO.read(tileFile);
+						int offsetX = (x - 50) * tile.getWidth();
+						int offsetY = (52 - y) * tile.getHeight();
+						for (int i = 0; i < tile.getWidth(); ++i)
+						{
+							for (int j = 0; j < tile.getHeight(); ++j)
+							{
+								assertEquals(map.getRGB(offsetX + i, offsetY + j), tile.getRGB(i, j));
+							}
+						}
+					}
+				}
+
+				// regions 50 and 51 are in the same tile at the next zoom level
+				// out, 52 is in the next
+				assertTrue(MapImageDumper.getTileFile(outDir, MapImageDumper.TILE_ZOOM - 1, 25, 102).exists());
+				assertTrue(MapImageDumper.getTileFile(outDir, MapImageDumper.TILE_ZOOM - 1, 26, 102).exists());
+				assertTrue(MapImageDumper.getTileFile(outDir, MapImageDumper.TILE_ZOOM - 1, 25, 101).exists());
+				assertTrue(MapImageDumper.getTileFile(outDir, 0, 0, 0).exists());
+			}
+		}
+	}
+
+	@Test
+	public void testDrawTilesIncremental() throws IOException
+	{
+		try (Store store = new Store(new DiskStorage(folder.newFolder())))
+		{
+			MapTestStore.create(store);
+
+			for (int x = 48; x < 54; ++x)
+			{
+				for (int y = 50; y < 52; ++y)
+				{
+					MapTestStore.saveRegion(store, x, y, x << 8 | y);
+				}
+			}
+
+			File outDir = folder.newFolder();
+			MapImageDumper dumper = new MapImageDumper(store);
+			dumper.loadDefinitions();
+			dumper.drawTiles(0, outDir);
+
+			setLastModified(outDir);
+			MapTestStore.saveRegion(store, 49, 50, 0);
+
+			dumper = new MapImageDumper(store);
+			dumper.loadDefinitions();
+			dumper.drawTiles(0, outDir);
+
+			// the tiles of the region and its neighbours, as the ground is
+			// blended across regions, and the tiles they are in at each
+			// zoom level out
+			Set<String> expected = new HashSet<>(Arrays.asList(
+				"8/48/205.png", "8/49/205.png", "8/50/205.png",
+				"8/48/204.png", "8/49/204.png", "8/50/204.png",
+				"7/24/102.png", "7/25/102.png",
+				"6/12/51.png", "5/6/25.png", "4/3/12.png", "3/1/6.png", "2/0/3.png", "1/0/1.png", "0/0/0.png",
+				MapTileManifest.FILE_NAME
+			));
+			assertEquals(expected, findModified(outDir));
+
+			// the tiles are the same as those drawn from scratch
+			File fullDir = folder.newFolder();
+			dumper.drawTiles(0, fullDir);
+
+			List<Path> files = findTiles(fullDir);
+			assertEquals(files, findTiles(outDir));
+			for (Path file : files)
+			{
+				assertArrayEquals(file.toString(),
+					Files.readAllBytes(fullDir.toPath().resolve(file)),
+					Files.readAllBytes(outDir.toPath().resolve(file)));
+			}
+
+			// nothing has changed since
+			setLastModified(outDir);
+			dumper.drawTiles(0, outDir);
+			assertEquals(Collections.emptySet(), findModified(outDir));
+		}
+	}
+
+	@Test
+	public void testDrawTilesKeysAdded() throws IOException
+	{
+		int[] keys = {1, 2, 3, 4};
+		Map<Integer, int[]> known = new HashMap<>();
+		XteaKeyManager keyManager = new XteaKeyManager()
+		{
+			@Override
+			public int[] getKeys(int region)
+			{
+				return known.get(region);
+			}
+		};
+
+		try (Store store = new Store(new DiskStorage(folder.newFolder())))
+		{
+			MapTestStore.create(store);
+
+			for (int x = 48; x < 54; ++x)
+			{
+				for (int y = 50; y < 52; ++y)
+				{
+					MapTestStore.saveRegion(store, x, y, x << 8 | y, x == 49 && y == 50 ? keys : null);
+				}
+			}
+
+			File outDir = folder.newFolder();
+			MapImageDumper dumper = new MapImageDumper(store);
+			dumper.setKeyManager(keyManager);
+			dumper.loadDefinitions();
+			dumper.drawTiles(0, outDir);
+
+			// the walls of the region can be drawn once its keys are known
+			File tileFile = MapImageDumper.getTileFile(outDir, MapImageDumper.TILE_ZOOM, 49, 205);
+			byte[] withoutWalls = Files.readAllBytes(tileFile.toPath());
+			setLastModified(outDir);
+			known.put(49 << 8 | 50, keys);
+			dumper.drawTiles(0, outDir);
+			assertFalse(Arrays.equals(withoutWalls, Files.readAllBytes(tileFile.toPath())));
+
+			// the tiles of the region and the region to the east, which the
+			// walls can be drawn over, there are no regions to the south
+			Set<String> expected = new HashSet<>(Arrays.asList(
+				"8/49/205.png", "8/50/205.png",
+				"7/24/102.png", "7/25/102.png",
+				"6/12/51.png", "5/6/25.png", "4/3/12.png", "3/1/6.png", "2/0/3.png", "1/0/1.png", "0/0/0.png",
+				MapTileManifest.FILE_NAME
+			));
+			assertEquals(expected, findModified(outDir));
+
+			File fullDir = folder.newFolder();
+			dumper.drawTiles(0, fullDir);
+			assertArrayEquals(
+				Files.readAllBytes(MapImageDumper.getTileFile(fullDir, MapImageDumper.TILE_ZOOM, 49, 205).toPath()),
+				Files.readAllBytes(tileFile.toPath()));
+		}
+	}
+
+	private static void setLastModified(File dir) throws IOException
+	{
+		try (Stream<Path> paths = Files.walk(dir.toPath()))
+		{
+			for (Path path : (Iterable<Path>) paths::iterator)
+			{
+				Files.setLastModifiedTime(path, FileTime.fromMillis(0L));
+			}
+		}
+	}
+
+	private static Set<String> findModified(File dir) throws IOException
+	{
+		try (Stream<Path> paths = Files.walk(dir.toPath()))
+		{
+			return paths.filter(Files::isRegularFile)
+				.filter(path -> path.toFile().lastModified() != 0L)
+				.map(path -> dir.toPath().relativize(path).toString().replace(File.separatorChar, '/'))
+				.collect(Collectors.toSet());
+		}
+	}
+
+	private static List<Path> findTiles(File dir) throws IOException
+	{
+		try (Stream<Path> paths = Files.walk(dir.toPath()))
+		{
+			return paths.filter(path -> path.toString().endsWith(".png"))
+				.map(path -> dir.toPath().relativize(path))
+				.sorted()
+				.collect(Collectors.toList());
+		}
+	}
+
 	@Test
 	@Ignore
 	public void dumpRegions() throws Exception
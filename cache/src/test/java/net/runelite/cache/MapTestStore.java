@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache;
+
+import java.io.IOException;
+import java.util.Random;
+import static net.runelite.cache.TestArchives.file;
+import static net.runelite.cache.TestArchives.files;
+import static net.runelite.cache.TestArchives.saveArchive;
+import net.runelite.cache.definitions.LocationsDefinition;
+import net.runelite.cache.definitions.MapDefinition;
+import net.runelite.cache.definitions.ObjectDefinition;
+import net.runelite.cache.definitions.savers.LocationSaver;
+import net.runelite.cache.definitions.savers.MapSaver;
+import net.runelite.cache.definitions.savers.ObjectSaver;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.ArchiveFiles;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.io.OutputStream;
+import net.runelite.cache.region.Location;
+import net.runelite.cache.region.Position;
+import net.runelite.cache.util.Djb2;
+
+/**
+ * Builds stores with the definitions needed to draw the map, and regions
+ * of generated terrain, for testing the map dumpers without a cache
+ */
+public class MapTestStore
+{
+	// tiles along each side of the patches of underlay
+	private static final int PATCH_SIZE = 8;
+
+	private static final int[] UNDERLAY_COLORS =
+	{
+		0x3F7F1F, 0x5F8F2F, 0x7F6F3F, 0x8F7F4F, 0x2F5F1F
+	};
+
+	private static final int[] OVERLAY_COLORS =
+	{
+		0x2F4F9F, 0x6F6F7F, 0x9F3F2F
+	};
+
+	/**
+	 * Add the indexes, and the config archives needed to draw the map, to
+	 * an empty store
+	 *
+	 * @param store
+	 * @throws IOException
+	 */
+	public static void create(Store store) throws IOException
+	{
+		for (int i = 0; i <= IndexType.TEXTURES.getNumber(); ++i)
+		{
+			store.addIndex(i);
+		}
+
+		store.getIndex(IndexType.MAPS).setNamed(true);
+
+		Index configs = store.getIndex(IndexType.CONFIGS);
+
+		ArchiveFiles underlays = new ArchiveFiles();
+		for (int i = 0; i < UNDERLAY_COLORS.length; ++i)
+		{
+			underlays.addFile(file(i, color(UNDERLAY_COLORS[i])));
+		}
+		saveArchive(store, configs.addArchive(ConfigType.UNDERLAY.getId()), underlays);
+
+		ArchiveFiles overlays = new ArchiveFiles();
+		for (int i = 0; i < OVERLAY_COLORS.length; ++i)
+		{
+			overlays.addFile(file(i, color(OVERLAY_COLORS[i])));
+		}
+		saveArchive(store, configs.addArchive(ConfigType.OVERLAY.getId()), overlays);
+
+		ObjectDefinition object = new ObjectDefinition();
+		ArchiveFiles objects = new ArchiveFiles();
+		objects.addFile(file(0, new ObjectSaver().save(object)));
+		saveArchive(store, configs.addArchive(ConfigType.OBJECT.getId()), objects);
+
+		ArchiveFiles areas = new ArchiveFiles();
+		areas.addFile(file(0, new byte[1]));
+		saveArchive(store, configs.addArchive(ConfigType.AREA.getId()), areas);
+
+		OutputStream texture = new OutputStream();
+		texture.writeShort(0x7F7F);
+		texture.writeByte(0);
+		texture.writeByte(1);
+		texture.writeShort(0);
+		texture.writeInt(0);
+		texture.writeByte(0);
+		texture.writeByte(0);
+		ArchiveFiles textures = new ArchiveFiles();
+		textures.addFile(file(0, texture.flip()));
+		saveArchive(store, store.getIndex(IndexType.TEXTURES).addArchive(0), textures);
+	}
+
+	/**
+	 * Generate the terrain of a region and save it, replacing the region
+	 * if it is already in the store
+	 *
+	 * @param store
+	 * @param regionX
+	 * @param regionY
+	 * @param seed seed for the terrain
+	 * @throws IOException
+	 */
+	public static void saveRegion(Store store, int regionX, int regionY, long seed) throws IOException
+	{
+		saveRegion(store, regionX, regionY, seed, null);
+	}
+
+	/**
+	 * Generate the terrain of a region and save it, with a row of walls
+	 * along the north edge of the region encrypted with the given keys
+	 *
+	 * @param store
+	 * @param regionX
+	 * @param regionY
+	 * @param seed seed for the terrain
+	 * @param keys keys of the walls, or null for no walls
+	 * @throws IOException
+	 */
+	public static void saveRegion(Store store, int regionX, int regionY, long seed, int[] keys) throws IOException
+	{
+		Random random = new Random(seed);
+
+		MapDefinition map = new MapDefinition();
+		map.setRegionX(regionX);
+		map.setRegionY(regionY);
+
+		// the terrain is made of patches of underlay, with some overlays
+		// scattered over it
+		MapDefinition.Tile[][][] tiles = map.getTiles();
+		for (int z = 0; z < MapDefinition.Z; ++z)
+		{
+			int[][] patches = new int[MapDefinition.X / PATCH_SIZE][MapDefinition.Y / PATCH_SIZE];
+			for (int[] row : patches)
+			{
+				for (int i = 0; i < row.length; ++i)
+				{
+					row[i] = 1 + random.nextInt(UNDERLAY_COLORS.length);
+				}
+			}
+
+			for (int x = 0; x < MapDefinition.X; ++x)
+			{
+				for (int y = 0; y < MapDefinition.Y; ++y)
+				{
+					MapDefinition.Tile tile = new MapDefinition.Tile();
+					tile.underlayId = (byte) patches[x / PATCH_SIZE][y / PATCH_SIZE];
+					if (random.nextInt(32) == 0)
+					{
+						// path and rotation are packed into the opcode
+						tile.attrOpcode = 2 + random.nextInt(48);
+						tile.overlayId = (byte) (1 + random.nextInt(OVERLAY_COLORS.length));
+					}
+					tiles[z][x][y] = tile;
+				}
+			}
+		}
+
+		LocationsDefinition locations = new LocationsDefinition();
+		locations.setRegionX(regionX);
+		locations.setRegionY(regionY);
+		if (keys != null)
+		{
+			for (int x = 0; x < MapDefinition.X; ++x)
+			{
+				locations.getLocations().add(new Location(0, 0, 1, new Position(x, MapDefinition.Y - 1, 0)));
+			}
+		}
+
+		Index maps = store.getIndex(IndexType.MAPS);
+		saveArchive(store, findOrAddArchive(maps, "m" + regionX + "_" + regionY),
+			files(file(0, new MapSaver().save(map))));
+		saveArchive(store, findOrAddArchive(maps, "l" + regionX + "_" + regionY),
+			files(file(0, new LocationSaver().save(locations))), keys);
+	}
+
+	private static Archive findOrAddArchive(Index index, String name)
+	{
+		Archive archive = index.findArchiveByName(name);
+		if (archive == null)
+		{
+			int archiveId = index.getArchives().stream().mapToInt(Archive::getArchiveId).max().orElse(-1) + 1;
+			archive = index.addArchive(archiveId);
+			archive.setNameHash(Djb2.hash(name));
+		}
+		return archive;
+	}
+
+	private static byte[] color(int rgb)
+	{
+		OutputStream out = new OutputStream();
+		out.writeByte(1);
+		out.write24BitInt(rgb);
+		out.writeByte(0);
+		return out.flip();
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache;
+
+import java.io.IOException;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.ArchiveFiles;
+import net.runelite.cache.fs.Container;
+import net.runelite.cache.fs.FSFile;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.fs.jagex.CompressionType;
+import net.runelite.cache.index.FileData;
+
+/**
+ * Helpers for building the archives of test stores
+ */
+public class TestArchives
+{
+	public static FSFile file(int fileId, byte[] contents)
+	{
+		FSFile file = new FSFile(fileId);
+		file.setContents(contents);
+		return file;
+	}
+
+	public static ArchiveFiles files(FSFile... files)
+	{
+		ArchiveFiles archiveFiles = new ArchiveFiles();
+		for (FSFile file : files)
+		{
+			archiveFiles.addFile(file);
+		}
+		return archiveFiles;
+	}
+
+	public static void saveArchive(Store store, Archive archive, ArchiveFiles files) throws IOException
+	{
+		saveArchive(store, archive, files, null);
+	}
+
+	/**
+	 * Set the file ids of an archive, and save its files to the storage of
+	 * a store
+	 *
+	 * @param store
+	 * @param archive
+	 * @param files
+	 * @param keys xtea keys to encrypt the archive with, or null
+	 * @throws IOException
+	 */
+	public static void saveArchive(Store store, Archive archive, ArchiveFiles files, int[] keys) throws IOException
+	{
+		FileData[] fileData = new FileData[files.getFiles().size()];
+		for (int i = 0; i < fileData.length; ++i)
+		{
+			fileData[i] = new FileData();
+			fileData[i].setId(files.getFiles().get(i).getFileId());
+		}
+		archive.setFileData(fileData);
+
+		Container container = new Container(CompressionType.GZ, -1);
+		container.compress(files.saveContents(), keys);
+		store.getStorage().saveArchive(archive, container.data);
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import net.runelite.cache.fs.jagex.CompressionType;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the time and memory allocated to decompress containers of
+ * each compression type, at sizes from a small config to a large map.
+ */
+public class ContainerBenchmark
+{
+	private static final Logger logger = LoggerFactory.getLogger(ContainerBenchmark.class);
+
+	private static final int WARMUP_OPERATIONS = 4_000_000;
+	private static final int OPERATIONS = 16_000_000;
+
+	private static final int[] SIZES =
+	{
+		64, 4096, 65536, 262144
+	};
+
+	private static final int[] KEYS =
+	{
+		4, 8, 15, 16
+	};
+
+	@Test
+	public void benchmark() throws IOException
+	{
+		for (int compression : new int[]
+		{
+			CompressionType.NONE, CompressionType.BZ2, CompressionType.GZ
+		})
+		{
+			for (int size : SIZES)
+			{
+				for (int[] keys : new int[][]
+				{
+					null, KEYS
+				})
+				{
+					benchmark(compression, size, keys);
+				}
+			}
+		}
+	}
+
+	private static void benchmark(int compression, int size, int[] keys) throws IOException
+	{
+		byte[] data = createData(size);
+
+		Container container = new Container(compression, 1);
+		container.compress(data, keys);
+		byte[] compressed = container.data;
+
+		Assert.assertArrayEquals(data, Container.decompress(compressed, keys).data);
+
+		// the same number of bytes is decompressed for each size
+		int iterations = Math.max(OPERATIONS / size, 10);
+		for (int i = 0; i < Math.max(WARMUP_OPERATIONS / size, 10); ++i)
+		{
+			Container.decompress(compressed, keys);
+		}
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+
+		long allocated = threads.getThreadAllocatedBytes(thread);
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; ++i)
+		{
+			Container.decompress(compressed, keys);
+		}
+		long end = System.nanoTime();
+		allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+
+		logger.info("{} {} bytes{}: {} ns/op, {} bytes allocated/op", compressionName(compression), size,
+			keys != null ? " encrypted" : "", (end - start) / iterations, allocated / iterations);
+	}
+
+	/**
+	 * Data which compresses about as well as cache data, rather than
+	 * random bytes which don't compress at all
+	 */
+	private static byte[] createData(int size)
+	{
+		Random random = new Random(42L);
+		byte[] data = new byte[size];
+		for (int i = 0; i < size; ++i)
+		{
+			data[i] = (byte) (random.nextInt(16) * random.nextInt(4));
+		}
+		return data;
+	}
+
+	private static String compressionName(int compression)
+	{
+		switch (compression)
+		{
+			case CompressionType.NONE:
+				return "NONE";
+			case CompressionType.BZ2:
+				return "BZ2";
+			default:
+				return "GZ";
+		}
+	}
+}
@@ -26,8 +26,12 @@ package net.runelite.cache.fs;
 
 import java.io.IOException;
 import java.util.Random;
+import static net.runelite.cache.fs.jagex.CompressionType.BZ2;
 import static net.runelite.cache.fs.jagex.CompressionType.GZ;
+import static net.runelite.cache.fs.jagex.CompressionType.NONE;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 import org.junit.Test;
 
 public class ContainerTest
@@ -52,4 +56,106 @@ public class ContainerTest
 		assertArrayEquals(data, container.data);
 	}
 
+	@Test
+	public void testDecompress() throws IOException
+	{
+		int[] keys = new int[]
+		{
+			4, 8, 15, 16
+		};
+		byte[] data = new byte[4099];
+		for (int i = 0; i < data.length; ++i)
+		{
+			data[i] = (byte) (i % 7);
+		}
+
+		for (int compression : new int[]
+		{
+			NONE, BZ2, GZ
+		})
+		{
+			Container container = new Container(compression, 42);
+			container.compress(data, keys);
+			byte[] compressedData = container.data.clone();
+
+			container = Container.decompress(compressedData, keys);
+			assertArrayEquals(data, container.data);
+			assertEquals(42, container.revision);
+
+			// decrypting doesn't modify the container
+			Container again = Container.decompress(compressedData, keys);
+			assertArrayEquals(data, again.data);
+			assertEquals(container.crc, again.crc);
+		}
+	}
+
+	@Test
+	public void testDecompressWrongKeys() throws IOException
+	{
+		int[] keys = new int[]
+		{
+			4, 8, 15, 16
+		};
+		byte[] data = new byte[4099];
+		new Random(42L).nextBytes(data);
+
+		Random random = new Random(7L);
+		for (int compression : new int[]
+		{
+			BZ2, GZ
+		})
+		{
+			Container container = new Container(compression, -1);
+			container.compress(data, keys);
+
+			for (int i = 0; i < 1000; ++i)
+			{
+				int[] wrongKeys = new int[]
+				{
+					random.nextInt(), random.nextInt(), random.nextInt(), random.nextInt()
+				};
+
+				try
+				{
+					Container.decompress(container.data, wrongKeys);
+					fail("decompressed with wrong keys");
+				}
+				catch (IOException ex)
+				{
+					// expected
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testDecompressInvalidLength() throws IOException
+	{
+		byte[] data = new byte[4099];
+		new Random(42L).nextBytes(data);
+
+		for (int compression : new int[]
+		{
+			BZ2, GZ
+		})
+		{
+			Container container = new Container(compression, -1);
+			container.compress(data, null);
+
+			// the decompressed length follows the compression type and length
+			byte[] compressedData = container.data.clone();
+			compressedData[5] = 0x7f;
+
+			try
+			{
+				Container.decompress(compressedData, null);
+				fail("decompressed with an invalid length");
+			}
+			catch (IOException ex)
+			{
+				// expected
+			}
+		}
+	}
+
 }
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs;
+
+import java.util.Random;
+import net.runelite.cache.util.Djb2;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the archive lookups of {@link Index} against scanning the
+ * archive list, as they were done before, on indexes the size of the maps
+ * and models indexes.
+ */
+public class IndexBenchmark
+{
+	private static final Logger logger = LoggerFactory.getLogger(IndexBenchmark.class);
+
+	private static final int WARMUP_ITERATIONS = 3;
+	private static final int ITERATIONS = 10;
+
+	// regions with a map, out of the 32768 region ids
+	private static final int REGIONS = 1800;
+	// archives of the models index
+	private static final int MODELS = 40000;
+
+	@Test
+	public void benchmark()
+	{
+		Index maps = createMapsIndex();
+		Index models = createModelsIndex();
+
+		Assert.assertEquals(loadRegions(maps, false), loadRegions(maps, true));
+		Assert.assertEquals(diff(models, false), diff(models, true));
+
+		for (boolean scan : new boolean[]
+		{
+			true, false
+		})
+		{
+			String name = scan ? "scan" : "table";
+
+			for (int i = 0; i < WARMUP_ITERATIONS; ++i)
+			{
+				loadRegions(maps, scan);
+				diff(models, scan);
+			}
+
+			long start = System.nanoTime();
+			for (int i = 0; i < ITERATIONS; ++i)
+			{
+				loadRegions(maps, scan);
+			}
+			long end = System.nanoTime();
+
+			logger.info("{}: {} us/op finding the archives of {} regions", name,
+				(end - start) / ITERATIONS / 1_000L, REGIONS);
+
+			start = System.nanoTime();
+			for (int i = 0; i < ITERATIONS; ++i)
+			{
+				diff(models, scan);
+			}
+			end = System.nanoTime();
+
+			logger.info("{}: {} us/op finding {} archives of a reference table", name,
+				(end - start) / ITERATIONS / 1_000L, MODELS);
+		}
+	}
+
+	private static Index createMapsIndex()
+	{
+		Random random = new Random(42);
+		Index index = new Index(5);
+		int id = 0;
+		for (int i = 0; i < REGIONS; ++i)
+		{
+			int region = random.nextInt(32768);
+			int x = region >> 8;
+			int y = region & 0xFF;
+			index.addArchive(id++).setNameHash(Djb2.hash("m" + x + "_" + y));
+			index.addArchive(id++).setNameHash(Djb2.hash("l" + x + "_" + y));
+		}
+		return index;
+	}
+
+	private static Index createModelsIndex()
+	{
+		Index index = new Index(7);
+		for (int i = 0; i < MODELS; ++i)
+		{
+			index.addArchive(i);
+		}
+		return index;
+	}
+
+	/**
+	 * Find the map and landscape archives of every region, as the
+	 * region loader does
+	 */
+	private static int loadRegions(Index index, boolean scan)
+	{
+		int found = 0;
+		for (int i = 0; i < 32768; ++i)
+		{
+			int x = i >> 8;
+			int y = i & 0xFF;
+
+			Archive map = scan ? scanByName(index, "m" + x + "_" + y) : index.findArchiveByName("m" + x + "_" + y);
+			Archive land = scan ? scanByName(index, "l" + x + "_" + y) : index.findArchiveByName("l" + x + "_" + y);
+			if (map != null && land != null)
+			{
+				++found;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Find the existing archive of every archive of a reference table, as
+	 * the cache client does when syncing
+	 */
+	private static int diff(Index index, boolean scan)
+	{
+		int found = 0;
+		for (int i = MODELS - 1; i >= 0; --i)
+		{
+			Archive archive = scan ? scanById(index, i) : index.getArchive(i);
+			if (archive != null)
+			{
+				++found;
+			}
+		}
+		return found;
+	}
+
+	private static Archive scanById(Index index, int id)
+	{
+		for (Archive a : index.getArchives())
+		{
+			if (a.getArchiveId() == id)
+			{
+				return a;
+			}
+		}
+		return null;
+	}
+
+	private static Archive scanByName(Index index, String name)
+	{
+		int hash = Djb2.hash(name);
+		for (Archive a : index.getArchives())
+		{
+			if (a.getNameHash() == hash)
+			{
+				return a;
+			}
+		}
+		return null;
+	}
+}
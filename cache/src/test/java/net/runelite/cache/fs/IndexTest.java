@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs;
+
+import net.runelite.cache.util.Djb2;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class IndexTest
+{
+	@Test
+	public void testFindArchive()
+	{
+		Index index = new Index(5);
+		Archive map = index.addArchive(0);
+		map.setNameHash(Djb2.hash("m50_50"));
+		Archive land = index.addArchive(1);
+
+		assertSame(map, index.getArchive(0));
+		assertSame(map, index.findArchiveByName("m50_50"));
+		assertNull(index.findArchiveByName("l50_50"));
+
+		// archives can be named after they are looked up
+		land.setNameHash(Djb2.hash("l50_50"));
+		assertSame(land, index.findArchiveByName("l50_50"));
+
+		// the first archive with an id is found, as the archives were scanned before
+		Archive duplicate = index.addArchive(0);
+		assertSame(map, index.getArchive(0));
+
+		index.removeArchive(map);
+		assertSame(duplicate, index.getArchive(0));
+		assertNull(index.findArchiveByName("m50_50"));
+
+		index.removeArchive(duplicate);
+		assertNull(index.getArchive(0));
+		assertSame(land, index.getArchive(1));
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs.jagex;
+
+import java.io.File;
+import java.io.IOException;
+import net.runelite.cache.StoreLocation;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares reading every archive of the test store through the
+ * {@link DataFile} and {@link MappedDataFile} backends.
+ */
+public class DataFileBenchmark
+{
+	private static final Logger logger = LoggerFactory.getLogger(DataFileBenchmark.class);
+
+	private static final int WARMUP_ITERATIONS = 3;
+	private static final int ITERATIONS = 10;
+
+	@Test
+	public void benchmark() throws IOException
+	{
+		long expected = readAll(StoreLocation.LOCATION, false);
+		Assert.assertEquals(expected, readAll(StoreLocation.LOCATION, true));
+
+		for (boolean mapped : new boolean[]
+		{
+			false, true
+		})
+		{
+			for (int i = 0; i < WARMUP_ITERATIONS; ++i)
+			{
+				readAll(StoreLocation.LOCATION, mapped);
+			}
+
+			long start = System.nanoTime();
+			for (int i = 0; i < ITERATIONS; ++i)
+			{
+				readAll(StoreLocation.LOCATION, mapped);
+			}
+			long end = System.nanoTime();
+
+			logger.info("{}: {} ms/op reading {} bytes", mapped ? "MappedDataFile" : "DataFile",
+				(end - start) / ITERATIONS / 1_000_000L, expected);
+		}
+	}
+
+	private static long readAll(File location, boolean mapped) throws IOException
+	{
+		long total = 0L;
+
+		try (Store store = new Store(new DiskStorage(location, mapped)))
+		{
+			store.load();
+
+			for (Index index : store.getIndexes())
+			{
+				for (Archive archive : index.getArchives())
+				{
+					byte[] data = store.getStorage().loadArchive(archive);
+					if (data != null)
+					{
+						total += data.length;
+					}
+				}
+			}
+		}
+
+		return total;
+	}
+}
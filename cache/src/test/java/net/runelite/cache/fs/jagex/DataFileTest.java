@@ -26,6 +26,7 @@ package net.runelite.cache.fs.jagex;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import net.runelite.cache.StoreLocation;
 import net.runelite.cache.fs.Container;
 import org.junit.Assert;
@@ -118,6 +119,83 @@ public class DataFileTest
 		Assert.assertEquals("test", str);
 	}
 
+	@Test
+	public void testOverwrite() throws IOException
+	{
+		File file = folder.newFile();
+		DataFile df = new DataFile(file);
+
+		byte[] b = new byte[2048];
+		for (int i = 0; i < b.length; ++i)
+		{
+			b[i] = (byte) i;
+		}
+
+		DataFileWriteResult res = df.write(42, 3, b);
+		DataFileWriteResult other = df.write(42, 4, "test".getBytes());
+		long length = file.length();
+
+		// same size, the existing sectors are reused
+		byte[] b2 = new byte[2048];
+		DataFileWriteResult res2 = df.write(42, 3, b2, res.sector);
+		Assert.assertEquals(res.sector, res2.sector);
+		Assert.assertEquals(length, file.length());
+		Assert.assertArrayEquals(b2, df.read(42, 3, res2.sector, res2.compressedLength));
+
+		// larger, the existing sectors are reused and the rest appended
+		byte[] b3 = new byte[4096];
+		DataFileWriteResult res3 = df.write(42, 3, b3, res.sector);
+		Assert.assertEquals(res.sector, res3.sector);
+		Assert.assertArrayEquals(b3, df.read(42, 3, res3.sector, res3.compressedLength));
+		Assert.assertEquals("test", new String(df.read(42, 4, other.sector, other.compressedLength)));
+
+		// sector of a different archive, so this has to be appended
+		DataFileWriteResult res4 = df.write(42, 3, b, other.sector);
+		Assert.assertNotEquals(other.sector, res4.sector);
+		Assert.assertArrayEquals(b, df.read(42, 3, res4.sector, res4.compressedLength));
+		Assert.assertEquals("test", new String(df.read(42, 4, other.sector, other.compressedLength)));
+	}
+
+	@Test
+	public void testOverwriteBrokenChain() throws IOException
+	{
+		File file = folder.newFile();
+		DataFile df = new DataFile(file);
+
+		byte[] b = new byte[2048];
+		for (int i = 0; i < b.length; ++i)
+		{
+			b[i] = (byte) i;
+		}
+
+		DataFileWriteResult res = df.write(42, 3, b);
+
+		// the third sector of the chain belongs to another archive
+		byte[] before;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+		{
+			raf.seek((long) DataFile.SECTOR_SIZE * (res.sector + 2) + 1);
+			raf.write(5);
+
+			before = new byte[(int) raf.length()];
+			raf.seek(0L);
+			raf.readFully(before);
+		}
+
+		// nothing of the existing chain is overwritten, the archive is appended
+		byte[] b2 = new byte[2048];
+		DataFileWriteResult res2 = df.write(42, 3, b2, res.sector);
+		Assert.assertNotEquals(res.sector, res2.sector);
+		Assert.assertArrayEquals(b2, df.read(42, 3, res2.sector, res2.compressedLength));
+
+		byte[] after = new byte[before.length];
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"))
+		{
+			raf.readFully(after);
+		}
+		Assert.assertArrayEquals(before, after);
+	}
+
 	@Test
 	public void testEnc() throws IOException
 	{
@@ -25,6 +25,12 @@
 package net.runelite.cache.fs.jagex;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import net.runelite.cache.StoreLocation;
 import net.runelite.cache.fs.Archive;
 import net.runelite.cache.fs.Container;
@@ -38,6 +44,11 @@ import org.junit.rules.TemporaryFolder;
 
 public class DiskStorageTest
 {
+	private static final int NUM_INDEXES = 4;
+	private static final int NUM_ARCHIVES = 250;
+	private static final int NUM_THREADS = 8;
+	private static final int NUM_READS = 5000;
+
 	@Rule
 	public TemporaryFolder folder = StoreLocation.getTemporaryFolder();
 
@@ -99,4 +110,172 @@ public class DiskStorageTest
 		}
 	}
 
+	@Test
+	public void testCompact() throws Exception
+	{
+		File file = folder.newFolder();
+		Random random = new Random(42L);
+
+		try (Store store = new Store(new DiskStorage(file)))
+		{
+			Index index = store.addIndex(0);
+			for (int i = 0; i < 10; ++i)
+			{
+				Archive archive = index.addArchive(i);
+				archive.setFileData(new FileData[]
+				{
+					new FileData()
+				});
+			}
+
+			// save every archive a few times, leaving the old copies behind
+			for (int i = 0; i < 3; ++i)
+			{
+				for (Archive archive : index.getArchives())
+				{
+					byte[] data = new byte[random.nextInt(2048) + 1];
+					random.nextBytes(data);
+
+					Container container = new Container(CompressionType.NONE, -1);
+					container.compress(data, null);
+					store.getStorage().saveArchive(archive, container.data);
+				}
+
+				store.save();
+			}
+		}
+
+		long length = new File(file, "main_file_cache.dat2").length();
+
+		CompactionResult result = DiskStorage.compact(file);
+		assertEquals(11, result.archives);
+		assertEquals(length, result.oldLength);
+		assertTrue(result.newLength < result.oldLength);
+		assertEquals(result.newLength, new File(file, "main_file_cache.dat2").length());
+
+		try (Store store = new Store(new DiskStorage(file)))
+		{
+			store.load();
+
+			Index index = store.findIndex(0);
+			assertEquals(10, index.getArchives().size());
+
+			for (Archive archive : index.getArchives())
+			{
+				byte[] data = store.getStorage().loadArchive(archive);
+				assertEquals(archive.getCrc(), Container.decompress(data, null).crc);
+			}
+		}
+	}
+
+	@Test
+	public void testOverwrite() throws Exception
+	{
+		File file = folder.newFolder();
+		File dataFile = new File(file, "main_file_cache.dat2");
+
+		DiskStorage storage = new DiskStorage(file);
+		storage.setOverwrite(true);
+
+		try (Store store = new Store(storage))
+		{
+			Index index = store.addIndex(0);
+			Archive archive = index.addArchive(0);
+			archive.setFileData(new FileData[]
+			{
+				new FileData()
+			});
+
+			Container container = new Container(CompressionType.NONE, -1);
+			container.compress(new byte[2048], null);
+			storage.saveArchive(archive, container.data);
+			store.save();
+
+			long length = dataFile.length();
+
+			storage.saveArchive(archive, container.data);
+			store.save();
+
+			assertEquals(length, dataFile.length());
+		}
+	}
+
+	@Test
+	public void testConcurrentLoadArchive() throws Exception
+	{
+		File file = folder.newFolder();
+		Random random = new Random(42L);
+
+		try (Store store = new Store(new DiskStorage(file)))
+		{
+			for (int i = 0; i < NUM_INDEXES; ++i)
+			{
+				Index index = store.addIndex(i);
+				for (int j = 0; j < NUM_ARCHIVES; ++j)
+				{
+					Archive archive = index.addArchive(j);
+					archive.setFileData(new FileData[]
+					{
+						new FileData()
+					});
+
+					// a mix of single and multi sector archives
+					byte[] data = new byte[random.nextInt(4096) + 1];
+					random.nextBytes(data);
+
+					Container container = new Container(CompressionType.NONE, -1);
+					container.compress(data, null);
+					store.getStorage().saveArchive(archive, container.data);
+				}
+			}
+
+			store.save();
+		}
+
+		loadConcurrently(new DiskStorage(file));
+		loadConcurrently(new DiskStorage(file, true));
+	}
+
+	private static void loadConcurrently(DiskStorage storage) throws Exception
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+		try (Store store = new Store(storage))
+		{
+			store.load();
+
+			List<Future<Integer>> futures = new ArrayList<>();
+			for (int i = 0; i < NUM_THREADS; ++i)
+			{
+				final long seed = i;
+				futures.add(executor.submit(() ->
+				{
+					Random random = new Random(seed);
+					int loaded = 0;
+					for (int j = 0; j < NUM_READS; ++j)
+					{
+						Index index = store.getIndexes().get(random.nextInt(NUM_INDEXES));
+						Archive archive = index.getArchives().get(random.nextInt(NUM_ARCHIVES));
+
+						byte[] data = storage.loadArchive(archive);
+						assertNotNull(data);
+
+						Container container = Container.decompress(data, null);
+						assertEquals(archive.getCrc(), container.crc);
+						++loaded;
+					}
+					return loaded;
+				}));
+			}
+
+			for (Future<Integer> future : futures)
+			{
+				assertEquals(NUM_READS, (int) future.get());
+			}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs.jagex;
+
+import java.io.File;
+import java.io.IOException;
+import net.runelite.cache.StoreLocation;
+import net.runelite.cache.fs.Container;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedDataFileTest
+{
+	@Rule
+	public TemporaryFolder folder = StoreLocation.getTemporaryFolder();
+
+	@Test
+	public void testRead() throws IOException
+	{
+		File file = folder.newFile();
+
+		Container container = new Container(CompressionType.GZ, 0);
+		container.compress("test".getBytes(), null);
+		byte[] compressedData = container.data;
+
+		DataFileWriteResult res;
+		try (DataFile df = new DataFile(file))
+		{
+			res = df.write(42, 3, compressedData);
+		}
+
+		try (DataFile df = new MappedDataFile(file))
+		{
+			byte[] data = df.read(42, 3, res.sector, res.compressedLength);
+			Assert.assertArrayEquals(compressedData, data);
+
+			Container res2 = Container.decompress(data, null);
+			Assert.assertEquals("test", new String(res2.data));
+		}
+	}
+
+	@Test
+	public void testReadMultipleSectors() throws IOException
+	{
+		byte[] b = new byte[4096];
+		for (int i = 0; i < b.length; ++i)
+		{
+			b[i] = (byte) i;
+		}
+
+		try (DataFile df = new MappedDataFile(folder.newFile()))
+		{
+			DataFileWriteResult res = df.write(42, 0x1FFFF, b);
+			DataFileWriteResult res2 = df.write(42, 3, b);
+
+			Assert.assertArrayEquals(b, df.read(42, 0x1FFFF, res.sector, res.compressedLength));
+			Assert.assertArrayEquals(b, df.read(42, 3, res2.sector, res2.compressedLength));
+		}
+	}
+
+	@Test
+	public void testReadAfterWrite() throws IOException
+	{
+		try (DataFile df = new MappedDataFile(folder.newFile()))
+		{
+			DataFileWriteResult res = df.write(1, 1, "test1".getBytes());
+			Assert.assertEquals("test1", new String(df.read(1, 1, res.sector, res.compressedLength)));
+
+			// the file has grown past the existing mapping
+			res = df.write(1, 2, "test2".getBytes());
+			Assert.assertEquals("test2", new String(df.read(1, 2, res.sector, res.compressedLength)));
+		}
+	}
+
+	@Test
+	public void testBadRead() throws IOException
+	{
+		try (DataFile df = new MappedDataFile(folder.newFile()))
+		{
+			DataFileWriteResult res = df.write(1, 1, "test".getBytes());
+			Assert.assertNull(df.read(1, 2, res.sector, res.compressedLength));
+			Assert.assertNull(df.read(1, 1, res.sector + 1, res.compressedLength));
+			Assert.assertNull(df.read(1, 1, res.sector, res.compressedLength + 1));
+		}
+	}
+}
@@ -43,6 +43,7 @@ public class ConfigClient
 	private static final Logger logger = LoggerFactory.getLogger(ConfigClient.class);
 
 	private static final MediaType TEXT_PLAIN = MediaType.parse("text/plain");
+	private static final MediaType JSON = MediaType.parse("application/json");
 
 	private final UUID uuid;
 
@@ -96,6 +97,33 @@ public class ConfigClient
 		}
 	}
 
+	/**
+	 * Set and unset many configuration values in one request. Entries
+	 * with a null value are unset.
+	 *
+	 * @param configuration
+	 * @throws IOException
+	 */
+	public void patch(Configuration configuration) throws IOException
+	{
+		HttpUrl url = RuneLiteAPI.getApiBase().newBuilder()
+			.addPathSegment("config")
+			.build();
+
+		logger.debug("Built URI: {}", url);
+
+		Request request = new Request.Builder()
+			.patch(RequestBody.create(JSON, RuneLiteAPI.GSON.toJson(configuration)))
+			.header(RuneLiteAPI.RUNELITE_AUTH, uuid.toString())
+			.url(url)
+			.build();
+
+		try (Response response = RuneLiteAPI.CLIENT.newCall(request).execute())
+		{
+			logger.debug("Patched {} configuration values", configuration.getConfig().size());
+		}
+	}
+
 	public void unset(String key) throws IOException
 	{
 		HttpUrl url = RuneLiteAPI.getApiBase().newBuilder()
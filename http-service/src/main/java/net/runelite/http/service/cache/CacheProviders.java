@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.cache.IndexType;
+import net.runelite.cache.definitions.ItemDefinition;
+import net.runelite.cache.definitions.ModelDefinition;
+import net.runelite.cache.definitions.SpriteDefinition;
+import net.runelite.cache.definitions.TextureDefinition;
+import net.runelite.cache.definitions.loaders.ModelLoader;
+import net.runelite.cache.definitions.loaders.SpriteLoader;
+import net.runelite.cache.definitions.loaders.TextureLoader;
+import net.runelite.cache.definitions.providers.ItemProvider;
+import net.runelite.cache.definitions.providers.ModelProvider;
+import net.runelite.cache.definitions.providers.SpriteProvider;
+import net.runelite.cache.definitions.providers.TextureProvider;
+import net.runelite.cache.fs.ArchiveFiles;
+import net.runelite.cache.fs.Container;
+import net.runelite.cache.fs.FSFile;
+import net.runelite.http.service.cache.beans.ArchiveEntry;
+import net.runelite.http.service.cache.beans.CacheEntry;
+import net.runelite.http.service.cache.beans.IndexEntry;
+import net.runelite.http.service.util.exception.NotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Definition providers backed by archives held in memory across requests.
+ * The item renderer modifies the models, sprites and textures it is given,
+ * so the decompressed archives are shared and each provider decodes its own
+ * copy of the definitions from them.
+ */
+@Service
+@Slf4j
+public class CacheProviders
+{
+	// maximum size of the decompressed model and sprite archives held
+	private static final long MAX_ARCHIVE_BYTES = 128L * 1024 * 1024;
+
+	private final CacheService cacheService;
+	private final DefinitionCache definitionCache;
+
+	private final Cache<ArchiveKey, byte[]> archives = CacheBuilder.newBuilder()
+		.maximumWeight(MAX_ARCHIVE_BYTES)
+		.weigher((ArchiveKey key, byte[] value) -> value.length)
+		.recordStats()
+		.build();
+
+	private final Cache<Integer, ArchiveFiles> textures = CacheBuilder.newBuilder()
+		.maximumSize(2)
+		.build();
+
+	@Autowired
+	public CacheProviders(CacheService cacheService, DefinitionCache definitionCache)
+	{
+		this.cacheService = cacheService;
+		this.definitionCache = definitionCache;
+	}
+
+	public ItemProvider itemProvider()
+	{
+		return itemId ->
+		{
+			try
+			{
+				ItemDefinition itemdef = definitionCache.loadItem(itemId);
+				if (itemdef == null)
+				{
+					throw new NotFoundException();
+				}
+				return itemdef;
+			}
+			catch (IOException ex)
+			{
+				log.warn(null, ex);
+				return null;
+			}
+		};
+	}
+
+	public ModelProvider modelProvider(CacheEntry cache)
+	{
+		return modelId ->
+		{
+			byte[] archiveData = getArchive(cache, IndexType.MODELS, modelId);
+			return archiveData != null ? new ModelLoader().load(modelId, archiveData) : null;
+		};
+	}
+
+	public SpriteProvider spriteProvider(CacheEntry cache)
+	{
+		return (spriteId, frameId) ->
+		{
+			try
+			{
+				byte[] archiveData = getArchive(cache, IndexType.SPRITES, spriteId);
+				if (archiveData == null)
+				{
+					return null;
+				}
+
+				SpriteDefinition[] defs = new SpriteLoader().load(spriteId, archiveData);
+				return defs[frameId];
+			}
+			catch (Exception ex)
+			{
+				log.warn(null, ex);
+				return null;
+			}
+		};
+	}
+
+	/**
+	 * Create a texture provider for a single render. The textures are
+	 * decoded on the first call, and the same definitions are returned
+	 * after that.
+	 *
+	 * @param cache
+	 * @return
+	 */
+	public TextureProvider textureProvider(CacheEntry cache)
+	{
+		return new TextureProvider()
+		{
+			private TextureDefinition[] defs;
+
+			@Override
+			public TextureDefinition[] provide()
+			{
+				if (defs == null)
+				{
+					defs = loadTextures(cache);
+				}
+				return defs;
+			}
+		};
+	}
+
+	private TextureDefinition[] loadTextures(CacheEntry cache)
+	{
+		try
+		{
+			ArchiveFiles archiveFiles = textures.get(cache.getId(), () ->
+			{
+				IndexEntry indexEntry = cacheService.findIndexForCache(cache, IndexType.TEXTURES.getNumber());
+				ArchiveEntry archiveEntry = cacheService.findArchiveForIndex(indexEntry, 0);
+				ArchiveFiles files = cacheService.getArchiveFiles(archiveEntry);
+				if (files == null)
+				{
+					throw new NotFoundException();
+				}
+				return files;
+			});
+
+			TextureLoader loader = new TextureLoader();
+			TextureDefinition[] defs = new TextureDefinition[archiveFiles.getFiles().size()];
+			int i = 0;
+			for (FSFile file : archiveFiles.getFiles())
+			{
+				TextureDefinition def = loader.load(file.getFileId(), file.getContents());
+				defs[i++] = def;
+			}
+			return defs;
+		}
+		catch (Exception ex)
+		{
+			log.warn(null, ex);
+			return null;
+		}
+	}
+
+	/**
+	 * Get the decompressed contents of an archive in the given cache
+	 *
+	 * @param cache
+	 * @param index
+	 * @param archiveId
+	 * @return the archive contents, or null if the archive doesn't exist
+	 * @throws IOException
+	 */
+	private byte[] getArchive(CacheEntry cache, IndexType index, int archiveId) throws IOException
+	{
+		ArchiveKey key = new ArchiveKey(cache.getId(), index, archiveId);
+		byte[] archiveData = archives.getIfPresent(key);
+		if (archiveData != null)
+		{
+			return archiveData;
+		}
+
+		IndexEntry indexEntry = cacheService.findIndexForCache(cache, index.getNumber());
+		if (indexEntry == null)
+		{
+			return null;
+		}
+
+		ArchiveEntry archiveEntry = cacheService.findArchiveForIndex(indexEntry, archiveId);
+		if (archiveEntry == null)
+		{
+			return null;
+		}
+
+		try
+		{
+			return archives.get(key, () ->
+			{
+				byte[] data = cacheService.getArchive(archiveEntry);
+				if (data == null)
+				{
+					throw new IOException("Unable to fetch archive " + archiveId + " of index " + index);
+				}
+				return Container.decompress(data, null).data;
+			});
+		}
+		catch (ExecutionException | UncheckedExecutionException ex)
+		{
+			Throwable cause = ex.getCause();
+			if (cause instanceof IOException)
+			{
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException)
+			{
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	public double getArchiveHitRate()
+	{
+		return archives.stats().hitRate();
+	}
+
+	@Value
+	private static class ArchiveKey
+	{
+		int cacheId;
+		IndexType index;
+		int archiveId;
+	}
+}
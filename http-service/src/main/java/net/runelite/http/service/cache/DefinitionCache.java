@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.cache.ConfigType;
+import net.runelite.cache.IndexType;
+import net.runelite.cache.definitions.ItemDefinition;
+import net.runelite.cache.definitions.NpcDefinition;
+import net.runelite.cache.definitions.ObjectDefinition;
+import net.runelite.cache.definitions.loaders.ItemLoader;
+import net.runelite.cache.definitions.loaders.NpcLoader;
+import net.runelite.cache.definitions.loaders.ObjectLoader;
+import net.runelite.cache.fs.ArchiveFiles;
+import net.runelite.cache.fs.FSFile;
+import net.runelite.http.service.cache.beans.ArchiveEntry;
+import net.runelite.http.service.cache.beans.CacheEntry;
+import net.runelite.http.service.cache.beans.IndexEntry;
+import net.runelite.http.service.util.exception.NotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Caches the definitions decoded from the config archives of the most
+ * recent cache. Each config archive is fetched and decoded once, and the
+ * cached definitions are dropped once a newer cache is found.
+ */
+@Service
+@Slf4j
+public class DefinitionCache
+{
+	// maximum number of definitions held, across all config types
+	private static final long MAX_DEFINITIONS = 250_000L;
+
+	private final CacheService cacheService;
+
+	private final Cache<DefinitionKey, Definitions> definitions = CacheBuilder.newBuilder()
+		.maximumWeight(MAX_DEFINITIONS)
+		.weigher((DefinitionKey key, Definitions value) -> value.definitions.size())
+		.recordStats()
+		.build();
+
+	private volatile int cacheId = -1;
+
+	@Autowired
+	public DefinitionCache(CacheService cacheService)
+	{
+		this.cacheService = cacheService;
+	}
+
+	public ItemDefinition getItem(int itemId) throws IOException
+	{
+		return (ItemDefinition) getDefinition(ConfigType.ITEM, itemId);
+	}
+
+	/**
+	 * Decode a copy of an item definition, for callers which modify the
+	 * definition, such as when rendering noted items
+	 *
+	 * @param itemId
+	 * @return
+	 * @throws IOException
+	 */
+	public ItemDefinition loadItem(int itemId) throws IOException
+	{
+		byte[] contents = getDefinitions(ConfigType.ITEM).contents.get(itemId);
+		return contents != null ? new ItemLoader().load(itemId, contents) : null;
+	}
+
+	public NpcDefinition getNpc(int npcId) throws IOException
+	{
+		return (NpcDefinition) getDefinition(ConfigType.NPC, npcId);
+	}
+
+	public ObjectDefinition getObject(int objectId) throws IOException
+	{
+		return (ObjectDefinition) getDefinition(ConfigType.OBJECT, objectId);
+	}
+
+	/**
+	 * Get a definition from the most recent cache. The definition is
+	 * shared, and must not be modified.
+	 *
+	 * @param type config type
+	 * @param id definition id
+	 * @return the definition, or null if it doesn't exist
+	 * @throws IOException
+	 */
+	private Object getDefinition(ConfigType type, int id) throws IOException
+	{
+		return getDefinitions(type).definitions.get(id);
+	}
+
+	private Definitions getDefinitions(ConfigType type) throws IOException
+	{
+		CacheEntry cache = cacheService.findMostRecent();
+		if (cache == null)
+		{
+			throw new NotFoundException();
+		}
+
+		if (cache.getId() != cacheId)
+		{
+			// a new cache has been added, the definitions of the old one are not needed
+			log.debug("Most recent cache is now {}, dropping {} cached config archives", cache.getId(), definitions.size());
+			definitions.invalidateAll();
+			cacheId = cache.getId();
+		}
+
+		try
+		{
+			return definitions.get(new DefinitionKey(cache.getId(), type), () -> load(cache, type));
+		}
+		catch (ExecutionException | UncheckedExecutionException ex)
+		{
+			Throwable cause = ex.getCause();
+			if (cause instanceof IOException)
+			{
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException)
+			{
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	private Definitions load(CacheEntry cache, ConfigType type) throws IOException
+	{
+		IndexEntry indexEntry = cacheService.findIndexForCache(cache, IndexType.CONFIGS.getNumber());
+		if (indexEntry == null)
+		{
+			throw new NotFoundException();
+		}
+
+		ArchiveEntry archiveEntry = cacheService.findArchiveForIndex(indexEntry, type.getId());
+		if (archiveEntry == null)
+		{
+			throw new NotFoundException();
+		}
+
+		ArchiveFiles archiveFiles = cacheService.getArchiveFiles(archiveEntry);
+		if (archiveFiles == null)
+		{
+			throw new NotFoundException();
+		}
+
+		int capacity = archiveFiles.getFiles().size() * 4 / 3 + 1;
+		Map<Integer, Object> defs = new HashMap<>(capacity);
+		Map<Integer, byte[]> contents = new HashMap<>(capacity);
+		for (FSFile file : archiveFiles.getFiles())
+		{
+			defs.put(file.getFileId(), decode(type, file));
+			contents.put(file.getFileId(), file.getContents());
+		}
+
+		log.debug("Decoded {} {} definitions from cache {}", defs.size(), type, cache.getId());
+
+		return new Definitions(Collections.unmodifiableMap(defs), Collections.unmodifiableMap(contents));
+	}
+
+	private static Object decode(ConfigType type, FSFile file)
+	{
+		switch (type)
+		{
+			case ITEM:
+				return new ItemLoader().load(file.getFileId(), file.getContents());
+			case NPC:
+				return new NpcLoader().load(file.getFileId(), file.getContents());
+			case OBJECT:
+				return new ObjectLoader().load(file.getFileId(), file.getContents());
+			default:
+				throw new IllegalArgumentException("Unsupported config type " + type);
+		}
+	}
+
+	public double getHitRate()
+	{
+		return definitions.stats().hitRate();
+	}
+
+	@Value
+	private static class Definitions
+	{
+		Map<Integer, Object> definitions;
+		// encoded definitions, to decode copies from
+		Map<Integer, byte[]> contents;
+	}
+
+	@Value
+	private static class DefinitionKey
+	{
+		int cacheId;
+		ConfigType type;
+	}
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.cache.item.ItemSpriteFactory;
+import net.runelite.http.service.cache.beans.CacheEntry;
+import net.runelite.http.service.util.exception.NotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Renders item images, and caches the encoded images. An image is keyed by
+ * the cache it was rendered from and the render parameters, which together
+ * determine its contents.
+ */
+@Service
+@Slf4j
+public class ItemImageRenderer
+{
+	// maximum size of the encoded images held
+	private static final long MAX_IMAGE_BYTES = 64L * 1024 * 1024;
+	// maximum number of items in a batch request
+	static final int MAX_BATCH = 1000;
+
+	private final CacheProviders cacheProviders;
+
+	private final Cache<ImageKey, byte[]> images = CacheBuilder.newBuilder()
+		.maximumWeight(MAX_IMAGE_BYTES)
+		.weigher((ImageKey key, byte[] value) -> value.length)
+		.recordStats()
+		.build();
+
+	private final ThreadPoolExecutor executor;
+
+	@Autowired
+	public ItemImageRenderer(CacheProviders cacheProviders)
+	{
+		this(cacheProviders, Runtime.getRuntime().availableProcessors());
+	}
+
+	ItemImageRenderer(CacheProviders cacheProviders, int threads)
+	{
+		this.cacheProviders = cacheProviders;
+		// when the queue is full the requesting thread renders the image itself
+		this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<>(MAX_BATCH),
+			new ThreadFactoryBuilder().setNameFormat("item-render-%d").setDaemon(true).build(),
+			new ThreadPoolExecutor.CallerRunsPolicy());
+	}
+
+	@PreDestroy
+	public void shutdown()
+	{
+		executor.shutdown();
+	}
+
+	/**
+	 * Get the PNG encoded image of an item
+	 *
+	 * @param cache cache to render the item from
+	 * @param itemId
+	 * @param quantity
+	 * @param border
+	 * @param shadowColor
+	 * @return the image, or null if the item has no model
+	 * @throws IOException
+	 */
+	public byte[] getImage(CacheEntry cache, int itemId, int quantity, int border, int shadowColor) throws IOException
+	{
+		ImageKey key = new ImageKey(cache.getId(), itemId, quantity, border, shadowColor);
+		try
+		{
+			byte[] image = images.get(key, () -> render(cache, itemId, quantity, border, shadowColor));
+			return image.length > 0 ? image : null;
+		}
+		catch (ExecutionException | UncheckedExecutionException ex)
+		{
+			Throwable cause = ex.getCause();
+			if (cause instanceof IOException)
+			{
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException)
+			{
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Get the PNG encoded images of many items, rendering them in parallel.
+	 * Items which do not exist or have no model are left out of the result.
+	 *
+	 * @param cache cache to render the items from
+	 * @param itemIds
+	 * @param quantity
+	 * @param border
+	 * @param shadowColor
+	 * @return map of item id to image, in the order of the requested ids
+	 * @throws IOException
+	 */
+	public Map<Integer, byte[]> getImages(CacheEntry cache, List<Integer> itemIds, int quantity, int border, int shadowColor) throws IOException
+	{
+		if (itemIds.size() > MAX_BATCH)
+		{
+			throw new IllegalArgumentException("At most " + MAX_BATCH + " items may be rendered at once");
+		}
+
+		List<CompletableFuture<byte[]>> futures = new ArrayList<>(itemIds.size());
+		for (int itemId : itemIds)
+		{
+			futures.add(CompletableFuture.supplyAsync(() ->
+			{
+				try
+				{
+					return getImage(cache, itemId, quantity, border, shadowColor);
+				}
+				catch (NotFoundException ex)
+				{
+					return null;
+				}
+				catch (IOException ex)
+				{
+					throw new CompletionException(ex);
+				}
+			}, executor));
+		}
+
+		Map<Integer, byte[]> result = new LinkedHashMap<>();
+		for (int i = 0; i < itemIds.size(); ++i)
+		{
+			byte[] image;
+			try
+			{
+				image = futures.get(i).join();
+			}
+			catch (CompletionException ex)
+			{
+				if (ex.getCause() instanceof IOException)
+				{
+					throw (IOException) ex.getCause();
+				}
+				throw ex;
+			}
+
+			if (image != null)
+			{
+				result.put(itemIds.get(i), image);
+			}
+		}
+		return result;
+	}
+
+	private byte[] render(CacheEntry cache, int itemId, int quantity, int border, int shadowColor) throws IOException
+	{
+		BufferedImage itemImage = ItemSpriteFactory.createSprite(cacheProviders.itemProvider(), cacheProviders.modelProvider(cache),
+			cacheProviders.spriteProvider(cache), cacheProviders.textureProvider(cache),
+			itemId, quantity, border, shadowColor, false);
+		if (itemImage == null)
+		{
+			// cache the miss too, as an empty image
+			return new byte[0];
+		}
+
+		ByteArrayOutputStream bao = new ByteArrayOutputStream();
+		ImageIO.write(itemImage, "png", bao);
+		return bao.toByteArray();
+	}
+
+	public double getHitRate()
+	{
+		return images.stats().hitRate();
+	}
+
+	@Value
+	private static class ImageKey
+	{
+		int cacheId;
+		int itemId;
+		int quantity;
+		int border;
+		int shadowColor;
+	}
+}
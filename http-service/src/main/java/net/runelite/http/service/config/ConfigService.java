@@ -24,28 +24,49 @@
  */
 package net.runelite.http.service.config;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Striped;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.http.api.RuneLiteAPI;
 import net.runelite.http.api.config.ConfigEntry;
 import net.runelite.http.api.config.Configuration;
 import net.runelite.http.service.account.AuthFilter;
 import net.runelite.http.service.account.beans.SessionEntry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import static org.springframework.web.bind.annotation.RequestMethod.DELETE;
+import static org.springframework.web.bind.annotation.RequestMethod.GET;
+import static org.springframework.web.bind.annotation.RequestMethod.PATCH;
 import static org.springframework.web.bind.annotation.RequestMethod.PUT;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.sql2o.Connection;
+import org.sql2o.Query;
 import org.sql2o.Sql2o;
 import org.sql2o.Sql2oException;
 
 @RestController
 @RequestMapping("/config")
+@Slf4j
 public class ConfigService
 {
 	private static final String CREATE_CONFIG = "CREATE TABLE IF NOT EXISTS `config` (\n"
@@ -58,9 +79,25 @@ public class ConfigService
 	private static final String CONFIG_FK = "ALTER TABLE `config`\n"
 		+ "  ADD CONSTRAINT `user_fk` FOREIGN KEY (`user`) REFERENCES `users` (`id`) ON DELETE CASCADE ON UPDATE CASCADE;";
 
+	// number of users whose configuration is kept in memory
+	private static final int MAX_SNAPSHOTS = 10_000;
+	// how long a snapshot is kept, which bounds how long writes made by
+	// other instances take to be seen here
+	private static final long SNAPSHOT_TTL_SECONDS = 60L;
+
 	private final Sql2o sql2o;
 	private final AuthFilter auth;
 
+	private final Cache<Integer, ConfigSnapshot> snapshots = CacheBuilder.newBuilder()
+		.maximumSize(MAX_SNAPSHOTS)
+		.expireAfterWrite(SNAPSHOT_TTL_SECONDS, TimeUnit.SECONDS)
+		.recordStats()
+		.build();
+
+	// serializes loading and writing the configuration of a user, so the
+	// cached snapshot is updated in the same order as the database
+	private final Striped<Lock> userLocks = Striped.lock(64);
+
 	@Autowired
 	public ConfigService(
 		@Qualifier("Runelite SQL2O") Sql2o sql2o,
@@ -87,8 +124,8 @@ public class ConfigService
 		}
 	}
 
-	@RequestMapping
-	public Configuration get(HttpServletRequest request, HttpServletResponse response) throws IOException
+	@RequestMapping(method = GET)
+	public ResponseEntity<byte[]> get(HttpServletRequest request, HttpServletResponse response) throws IOException
 	{
 		SessionEntry session = auth.handle(request, response);
 
@@ -97,16 +134,17 @@ public class ConfigService
 			return null;
 		}
 
-		List<ConfigEntry> config;
+		ConfigSnapshot snapshot = getSnapshot(session.getUser());
 
-		try (Connection con = sql2o.open())
+		if (new ServletWebRequest(request, response).checkNotModified(snapshot.getEtag()))
 		{
-			config = con.createQuery("select `key`, value from config where user = :user")
-				.addParameter("user", session.getUser())
-				.executeAndFetch(ConfigEntry.class);
+			return null;
 		}
 
-		return new Configuration(config);
+		return ResponseEntity.ok()
+			.contentType(MediaType.APPLICATION_JSON_UTF8)
+			.eTag(snapshot.getEtag())
+			.body(snapshot.getJson());
 	}
 
 	@RequestMapping(path = "/{key:.+}", method = PUT)
@@ -124,14 +162,7 @@ public class ConfigService
 			return;
 		}
 
-		try (Connection con = sql2o.open())
-		{
-			con.createQuery("insert into config (user, `key`, value) values (:user, :key, :value) on duplicate key update value = :value")
-				.addParameter("user", session.getUser())
-				.addParameter("key", key)
-				.addParameter("value", value != null ? value : "")
-				.executeUpdate();
-		}
+		update(session.getUser(), Collections.singletonMap(key, value != null ? value : ""));
 	}
 
 	@RequestMapping(path = "/{key:.+}", method = DELETE)
@@ -148,12 +179,232 @@ public class ConfigService
 			return;
 		}
 
+		update(session.getUser(), Collections.singletonMap(key, null));
+	}
+
+	/**
+	 * Apply many configuration changes at once. Entries with a null
+	 * value unset the key, and later entries for a key replace earlier
+	 * ones.
+	 *
+	 * @param request
+	 * @param response
+	 * @param configuration the changes to make
+	 * @throws IOException
+	 */
+	@RequestMapping(method = PATCH)
+	public void patch(
+		HttpServletRequest request,
+		HttpServletResponse response,
+		@RequestBody Configuration configuration
+	) throws IOException
+	{
+		SessionEntry session = auth.handle(request, response);
+
+		if (session == null)
+		{
+			return;
+		}
+
+		Map<String, String> changes = new LinkedHashMap<>();
+		if (configuration.getConfig() != null)
+		{
+			for (ConfigEntry entry : configuration.getConfig())
+			{
+				if (entry.getKey() != null)
+				{
+					changes.put(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+
+		if (!changes.isEmpty())
+		{
+			update(session.getUser(), changes);
+		}
+	}
+
+	ConfigSnapshot getSnapshot(int user)
+	{
+		ConfigSnapshot snapshot = snapshots.getIfPresent(user);
+		if (snapshot != null)
+		{
+			return snapshot;
+		}
+
+		// the snapshot is loaded and cached under the lock of the user, so
+		// a write can't be made between loading it and caching it
+		Lock lock = userLocks.get(user);
+		lock.lock();
+		try
+		{
+			snapshot = snapshots.asMap().get(user);
+			if (snapshot == null)
+			{
+				snapshot = load(user);
+				snapshots.put(user, snapshot);
+			}
+			return snapshot;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	private ConfigSnapshot load(int user)
+	{
 		try (Connection con = sql2o.open())
 		{
-			con.createQuery("delete from config where user = :user and `key` = :key")
-				.addParameter("user", session.getUser())
-				.addParameter("key", key)
-				.executeUpdate();
+			List<ConfigEntry> config = con.createQuery("select `key`, value from config where user = :user")
+				.addParameter("user", user)
+				.executeAndFetch(ConfigEntry.class);
+
+			Map<String, String> values = new TreeMap<>();
+			for (ConfigEntry entry : config)
+			{
+				values.put(entry.getKey(), entry.getValue());
+			}
+			return new ConfigSnapshot(values);
+		}
+	}
+
+	/**
+	 * Write configuration changes for a user in a single transaction, and
+	 * apply them to the user's cached snapshot, if there is one.
+	 *
+	 * @param user user id
+	 * @param changes map of key to new value, or null to unset the key
+	 */
+	void update(int user, Map<String, String> changes)
+	{
+		Lock lock = userLocks.get(user);
+		lock.lock();
+		try
+		{
+			try (Connection con = sql2o.beginTransaction())
+			{
+				Query set = null, unset = null;
+
+				for (Map.Entry<String, String> change : changes.entrySet())
+				{
+					if (change.getValue() != null)
+					{
+						if (set == null)
+						{
+							set = con.createQuery("insert into config (user, `key`, value) values (:user, :key, :value) on duplicate key update value = VALUES(value)");
+						}
+
+						set.addParameter("user", user)
+							.addParameter("key", change.getKey())
+							.addParameter("value", change.getValue())
+							.addToBatch();
+					}
+					else
+					{
+						if (unset == null)
+						{
+							unset = con.createQuery("delete from config where user = :user and `key` = :key");
+						}
+
+						unset.addParameter("user", user)
+							.addParameter("key", change.getKey())
+							.addToBatch();
+					}
+				}
+
+				if (set != null)
+				{
+					set.executeBatch();
+				}
+				if (unset != null)
+				{
+					unset.executeBatch();
+				}
+
+				con.commit();
+			}
+
+			ConfigSnapshot snapshot = snapshots.getIfPresent(user);
+			if (snapshot != null)
+			{
+				snapshots.put(user, snapshot.apply(changes));
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	public double getHitRate()
+	{
+		return snapshots.stats().hitRate();
+	}
+
+	/**
+	 * An immutable copy of the configuration of a user. Changes to the
+	 * configuration replace the snapshot with a new one.
+	 */
+	static class ConfigSnapshot
+	{
+		private final Map<String, String> values;
+		private volatile byte[] json;
+		private volatile String etag;
+
+		ConfigSnapshot(Map<String, String> values)
+		{
+			this.values = Collections.unmodifiableMap(values);
+		}
+
+		ConfigSnapshot apply(Map<String, String> changes)
+		{
+			Map<String, String> newValues = new TreeMap<>(values);
+			for (Map.Entry<String, String> change : changes.entrySet())
+			{
+				if (change.getValue() != null)
+				{
+					newValues.put(change.getKey(), change.getValue());
+				}
+				else
+				{
+					newValues.remove(change.getKey());
+				}
+			}
+			return new ConfigSnapshot(newValues);
+		}
+
+		Map<String, String> getValues()
+		{
+			return values;
+		}
+
+		byte[] getJson()
+		{
+			// serialized on first use, as snapshots are replaced on every write
+			byte[] json = this.json;
+			if (json == null)
+			{
+				List<ConfigEntry> config = new ArrayList<>(values.size());
+				for (Map.Entry<String, String> value : values.entrySet())
+				{
+					ConfigEntry entry = new ConfigEntry();
+					entry.setKey(value.getKey());
+					entry.setValue(value.getValue());
+					config.add(entry);
+				}
+
+				json = RuneLiteAPI.GSON.toJson(new Configuration(config)).getBytes(StandardCharsets.UTF_8);
+				etag = '"' + Hashing.murmur3_128().hashBytes(json).toString() + '"';
+				this.json = json;
+			}
+			return json;
+		}
+
+		String getEtag()
+		{
+			getJson();
+			return etag;
 		}
 	}
 }
@@ -24,8 +24,24 @@
  */
 package net.runelite.http.service.examine;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.PreDestroy;
+import lombok.Value;
 import static net.runelite.http.service.examine.ExamineType.ITEM;
 import static net.runelite.http.service.examine.ExamineType.NPC;
 import static net.runelite.http.service.examine.ExamineType.OBJECT;
@@ -33,13 +49,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import static org.springframework.web.bind.annotation.RequestMethod.POST;
 import org.springframework.web.bind.annotation.RestController;
 import org.sql2o.Connection;
+import org.sql2o.Query;
 import org.sql2o.Sql2o;
+import org.sql2o.Sql2oException;
 
 @RestController
 @RequestMapping("/examine")
@@ -56,8 +75,31 @@ public class ExamineService
 		+ "  UNIQUE KEY `type` (`type`,`id`,`text`(64))\n"
 		+ ") ENGINE=InnoDB";
 
+	// maximum number of distinct pending submissions before they are flushed early
+	static final int MAX_PENDING = 8192;
+	// maximum number of distinct pending submissions, when flushes are failing
+	// new submissions are dropped past this
+	static final int MAX_BUFFERED = 4 * MAX_PENDING;
+
 	private final Sql2o sql2o;
 
+	// submission counts not yet written to the database
+	private final ConcurrentMap<ExamineKey, Integer> pending = new ConcurrentHashMap<>();
+	private final LongAdder dropped = new LongAdder();
+
+	// early flushes run here rather than on the request thread
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(
+		new ThreadFactoryBuilder().setNameFormat("examine-flush").setDaemon(true).build());
+	private final AtomicBoolean flushQueued = new AtomicBoolean();
+	// set while flushes are failing, early flushes wait for the scheduled flush
+	private volatile boolean failing;
+
+	// most common text of each examine
+	private final Cache<ExamineKey, Optional<String>> topText = CacheBuilder.newBuilder()
+		.maximumSize(65536)
+		.expireAfterWrite(10, TimeUnit.MINUTES)
+		.build();
+
 	@Autowired
 	public ExamineService(@Qualifier("Runelite SQL2O") Sql2o sql2o)
 	{
@@ -107,6 +149,19 @@ public class ExamineService
 	}
 
 	private String get(ExamineType type, int id)
+	{
+		try
+		{
+			return topText.get(new ExamineKey(type, id, null), () -> Optional.ofNullable(find(type, id)))
+				.orElse(null);
+		}
+		catch (ExecutionException ex)
+		{
+			throw new RuntimeException(ex.getCause());
+		}
+	}
+
+	private String find(ExamineType type, int id)
 	{
 		try (Connection con = sql2o.open())
 		{
@@ -127,16 +182,107 @@ public class ExamineService
 
 	private void insert(ExamineType type, int id, String examine)
 	{
-		try (Connection con = sql2o.open())
+		ExamineKey key = new ExamineKey(type, id, examine);
+		if (pending.size() < MAX_BUFFERED)
 		{
-			con.createQuery("insert into examine (type, id, time, count, text) values "
-				+ "(:type, :id, :time, :count, :text) on duplicate key update count = count + 1")
-				.addParameter("type", type.toString())
-				.addParameter("id", id)
-				.addParameter("time", Timestamp.from(Instant.now()))
-				.addParameter("count", 1)
-				.addParameter("text", examine)
-				.executeUpdate();
+			pending.merge(key, 1, Integer::sum);
+		}
+		else if (pending.computeIfPresent(key, (k, count) -> count + 1) == null)
+		{
+			dropped.increment();
+		}
+
+		if (pending.size() >= MAX_PENDING && !failing && flushQueued.compareAndSet(false, true))
+		{
+			executor.execute(() ->
+			{
+				flushQueued.set(false);
+				flush();
+			});
 		}
 	}
+
+	/**
+	 * Write pending submissions to the database
+	 */
+	@Scheduled(fixedDelay = 10_000)
+	public synchronized void flush()
+	{
+		long droppedCount = dropped.sumThenReset();
+		if (droppedCount > 0)
+		{
+			logger.warn("dropped {} examine submissions while flushes were failing", droppedCount);
+		}
+
+		if (pending.isEmpty())
+		{
+			return;
+		}
+
+		// removing each entry atomically takes its count, later submissions start a new one
+		Map<ExamineKey, Integer> counts = new HashMap<>();
+		for (ExamineKey key : pending.keySet())
+		{
+			Integer count = pending.remove(key);
+			if (count != null)
+			{
+				counts.put(key, count);
+			}
+		}
+
+		try (Connection con = sql2o.beginTransaction())
+		{
+			Timestamp now = Timestamp.from(Instant.now());
+			Query query = con.createQuery("insert into examine (type, id, time, count, text) values "
+				+ "(:type, :id, :time, :count, :text) on duplicate key update count = count + VALUES(count)");
+
+			for (Map.Entry<ExamineKey, Integer> entry : counts.entrySet())
+			{
+				ExamineKey key = entry.getKey();
+				query.addParameter("type", key.getType().toString())
+					.addParameter("id", key.getId())
+					.addParameter("time", now)
+					.addParameter("count", entry.getValue())
+					.addParameter("text", key.getText())
+					.addToBatch();
+			}
+
+			query.executeBatch();
+			con.commit();
+		}
+		catch (Sql2oException ex)
+		{
+			logger.warn("unable to flush {} examine submissions", counts.size(), ex);
+
+			// keep the counts for the next flush
+			counts.forEach((key, count) -> pending.merge(key, count, Integer::sum));
+			failing = true;
+			return;
+		}
+
+		failing = false;
+
+		for (ExamineKey key : counts.keySet())
+		{
+			topText.invalidate(new ExamineKey(key.getType(), key.getId(), null));
+		}
+
+		logger.debug("Flushed {} examine submissions", counts.size());
+	}
+
+	@PreDestroy
+	public void shutdown()
+	{
+		executor.shutdown();
+		flush();
+	}
+
+	@Value
+	private static class ExamineKey
+	{
+		ExamineType type;
+		int id;
+		// null when keying the top text of an examine
+		String text;
+	}
 }
@@ -24,10 +24,17 @@
  */
 package net.runelite.http.service.hiscore;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.http.api.RuneLiteAPI;
 import net.runelite.http.api.hiscore.HiscoreEndpoint;
+import net.runelite.http.api.hiscore.HiscoreResult;
 import net.runelite.http.api.hiscore.HiscoreSkill;
 import net.runelite.http.api.hiscore.Skill;
 import net.runelite.http.service.util.exception.InternalServerErrorException;
@@ -45,6 +52,58 @@ import org.springframework.stereotype.Service;
 @Slf4j
 public class HiscoreService
 {
+	// how long a looked up result is reused for
+	private static final long RESULT_TTL_SECONDS = 60;
+
+	private final Cache<HiscoreKey, HiscoreResult> results = CacheBuilder.newBuilder()
+		.maximumSize(10_000)
+		.expireAfterWrite(RESULT_TTL_SECONDS, TimeUnit.SECONDS)
+		.recordStats()
+		.build();
+
+	/**
+	 * Look up a player on the hiscores, reusing the result of a recent
+	 * lookup of the same player. Concurrent lookups of a player share a
+	 * single request to the hiscores. Usernames are not case sensitive, so
+	 * lookups of the same player with different case share a result too.
+	 * The result is shared, and must not be modified.
+	 *
+	 * @param username
+	 * @param endpoint
+	 * @return
+	 * @throws IOException
+	 */
+	public HiscoreResult lookup(String username, HiscoreEndpoint endpoint) throws IOException
+	{
+		try
+		{
+			return results.get(new HiscoreKey(endpoint, username.toLowerCase()), () -> lookupUsername(username, endpoint).build());
+		}
+		catch (ExecutionException | UncheckedExecutionException ex)
+		{
+			Throwable cause = ex.getCause();
+			if (cause instanceof IOException)
+			{
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException)
+			{
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	public long getLookupCount()
+	{
+		return results.stats().loadCount();
+	}
+
+	public double getHitRate()
+	{
+		return results.stats().hitRate();
+	}
+
 	public HiscoreResultBuilder lookupUsername(String username, HiscoreEndpoint endpoint) throws IOException
 	{
 		return lookupUsername(username, endpoint.getHiscoreURL());
@@ -113,4 +172,10 @@ public class HiscoreService
 		return hiscoreBuilder;
 	}
 
+	@Value
+	private static class HiscoreKey
+	{
+		HiscoreEndpoint endpoint;
+		String username;
+	}
 }
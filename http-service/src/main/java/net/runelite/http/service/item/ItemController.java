@@ -31,6 +31,7 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import javax.servlet.http.HttpServletResponse;
@@ -197,11 +198,14 @@ public class ItemController
 			itemIds = Arrays.copyOf(itemIds, MAX_BATCH_LOOKUP);
 		}
 
+		Map<Integer, ItemEntry> items = itemService.getItems(itemIds);
+		Map<Integer, PriceEntry> prices = itemService.getPrices(itemIds);
+
 		List<ItemPrice> itemPrices = new ArrayList<>(itemIds.length);
 		for (int itemId : itemIds)
 		{
-			ItemEntry item = itemService.getItem(itemId);
-			PriceEntry priceEntry = itemService.getPrice(itemId, null);
+			ItemEntry item = items.get(itemId);
+			PriceEntry priceEntry = prices.get(itemId);
 
 			if (item == null || priceEntry == null)
 			{
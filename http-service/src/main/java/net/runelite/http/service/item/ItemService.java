@@ -28,11 +28,18 @@ import com.google.gson.JsonParseException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.http.api.RuneLiteAPI;
 import net.runelite.http.api.item.ItemType;
@@ -53,9 +60,6 @@ import org.sql2o.Sql2oException;
 public class ItemService
 {
 	private static final String BASE = "https://services.runescape.com/m=itemdb_oldschool";
-	private static final HttpUrl RS_ITEM_URL = HttpUrl.parse(BASE + "/api/catalogue/detail.json");
-	private static final HttpUrl RS_PRICE_URL = HttpUrl.parse(BASE + "/api/graph");
-	private static final HttpUrl RS_SEARCH_URL = HttpUrl.parse(BASE + "/api/catalogue/items.json?category=1");
 
 	private static final String CREATE_ITEMS = "CREATE TABLE IF NOT EXISTS `items` (\n"
 		+ "  `id` int(11) NOT NULL,\n"
@@ -81,15 +85,41 @@ public class ItemService
 	private static final String CREATE_PRICES_FK = "ALTER TABLE `prices`\n"
 		+ "  ADD CONSTRAINT `item` FOREIGN KEY (`item`) REFERENCES `items` (`id`);";
 
+	private static final String CREATE_PRICES_FETCHED_TIME = "ALTER TABLE `prices`\n"
+		+ "  ADD KEY `fetched_time` (`fetched_time`);";
+
 	private static final int MAX_PENDING = 512;
+	private static final int LOOKUP_WORKERS = 4;
+	// upstream requests per second
+	private static final double LOOKUP_RATE = 2;
+	// prices fetched this long before the newest price in the snapshot are
+	// reloaded too, in case they were committed after it was refreshed
+	private static final Duration REFRESH_OVERLAP = Duration.ofMinutes(5);
 
 	private final Sql2o sql2o;
-	private final ConcurrentLinkedQueue<PendingLookup> pendingLookups = new ConcurrentLinkedQueue<PendingLookup>();
+	private final HttpUrl itemUrl;
+	private final HttpUrl priceUrl;
+	private final HttpUrl searchUrl;
+	private final LookupScheduler lookupScheduler;
+
+	// latest price of every item, refreshed by refreshPrices()
+	private volatile Map<Integer, PriceEntry> priceSnapshot = new ConcurrentHashMap<>();
+	// newest fetched time of the prices loaded into the snapshot
+	private Instant snapshotFetched;
 
 	@Autowired
 	public ItemService(@Qualifier("Runelite SQL2O") Sql2o sql2o)
+	{
+		this(sql2o, BASE, LOOKUP_WORKERS, LOOKUP_RATE);
+	}
+
+	ItemService(Sql2o sql2o, String base, int lookupWorkers, double lookupRate)
 	{
 		this.sql2o = sql2o;
+		this.itemUrl = HttpUrl.parse(base + "/api/catalogue/detail.json");
+		this.priceUrl = HttpUrl.parse(base + "/api/graph");
+		this.searchUrl = HttpUrl.parse(base + "/api/catalogue/items.json?category=1");
+		this.lookupScheduler = new LookupScheduler(this::lookup, lookupWorkers, lookupRate, MAX_PENDING);
 
 		try (Connection con = sql2o.open())
 		{
@@ -108,6 +138,16 @@ public class ItemService
 			{
 				// Ignore, happens when index already exists
 			}
+
+			try
+			{
+				con.createQuery(CREATE_PRICES_FETCHED_TIME)
+					.executeUpdate();
+			}
+			catch (Sql2oException ex)
+			{
+				// Ignore, happens when index already exists
+			}
 		}
 	}
 
@@ -143,6 +183,141 @@ public class ItemService
 		}
 	}
 
+	/**
+	 * Get the items with the given ids. Item icons are not loaded.
+	 *
+	 * @param itemIds
+	 * @return map of item id to item, for the items which exist
+	 */
+	public Map<Integer, ItemEntry> getItems(int[] itemIds)
+	{
+		if (itemIds.length == 0)
+		{
+			return Collections.emptyMap();
+		}
+
+		try (Connection con = sql2o.open())
+		{
+			List<ItemEntry> items = con.createQuery("select id, name, description, type from items where id in (" + idList(itemIds) + ")")
+				.executeAndFetch(ItemEntry.class);
+
+			Map<Integer, ItemEntry> result = new HashMap<>(items.size() * 4 / 3 + 1);
+			for (ItemEntry item : items)
+			{
+				result.put(item.getId(), item);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Get the latest prices of the given items. Prices are read from the price
+	 * snapshot, and only items missing from it are looked up.
+	 *
+	 * @param itemIds
+	 * @return map of item id to latest price, for the items which have a price
+	 */
+	public Map<Integer, PriceEntry> getPrices(int[] itemIds)
+	{
+		Map<Integer, PriceEntry> snapshot = priceSnapshot;
+		Map<Integer, PriceEntry> result = new HashMap<>(itemIds.length * 4 / 3 + 1);
+		int[] missing = new int[itemIds.length];
+		int numMissing = 0;
+
+		for (int itemId : itemIds)
+		{
+			PriceEntry priceEntry = snapshot.get(itemId);
+			if (priceEntry != null)
+			{
+				result.put(itemId, priceEntry);
+			}
+			else
+			{
+				missing[numMissing++] = itemId;
+			}
+		}
+
+		if (numMissing == 0)
+		{
+			return result;
+		}
+
+		try (Connection con = sql2o.open())
+		{
+			List<PriceEntry> prices = con.createQuery("select p.item, p.price, p.time, p.fetched_time from prices p "
+				+ "join (select item, max(time) as time from prices where item in (" + idList(Arrays.copyOf(missing, numMissing)) + ") group by item) latest "
+				+ "on p.item = latest.item and p.time = latest.time")
+				.executeAndFetch(PriceEntry.class);
+
+			for (PriceEntry priceEntry : prices)
+			{
+				result.put(priceEntry.getItem(), priceEntry);
+			}
+		}
+
+		return result;
+	}
+
+	private static String idList(int[] ids)
+	{
+		return Arrays.stream(ids)
+			.distinct()
+			.mapToObj(Integer::toString)
+			.collect(Collectors.joining(","));
+	}
+
+	/**
+	 * Load the prices fetched since the last refresh into the price snapshot.
+	 * The latest price of every item is loaded on the first refresh.
+	 */
+	@Scheduled(fixedDelay = 60_000)
+	public synchronized void refreshPrices()
+	{
+		try (Connection con = sql2o.open())
+		{
+			if (snapshotFetched == null)
+			{
+				// read first so prices fetched during the load are picked up by the next refresh
+				Instant fetched = con.createQuery("select max(fetched_time) from prices")
+					.executeScalar(Instant.class);
+
+				List<PriceEntry> prices = con.createQuery("select p.item, p.price, p.time, p.fetched_time from prices p "
+					+ "join (select item, max(time) as time from prices group by item) latest "
+					+ "on p.item = latest.item and p.time = latest.time")
+					.executeAndFetch(PriceEntry.class);
+
+				Map<Integer, PriceEntry> snapshot = new ConcurrentHashMap<>(prices.size() * 4 / 3 + 1);
+				for (PriceEntry priceEntry : prices)
+				{
+					snapshot.put(priceEntry.getItem(), priceEntry);
+				}
+				priceSnapshot = snapshot;
+				snapshotFetched = fetched != null ? fetched : Instant.EPOCH;
+
+				log.debug("Loaded {} prices into price snapshot", snapshot.size());
+				return;
+			}
+
+			List<PriceEntry> prices = con.createQuery("select item, price, time, fetched_time from prices where fetched_time > :fetched_time")
+				.addParameter("fetched_time", snapshotFetched.minus(REFRESH_OVERLAP))
+				.executeAndFetch(PriceEntry.class);
+
+			Map<Integer, PriceEntry> snapshot = priceSnapshot;
+			for (PriceEntry priceEntry : prices)
+			{
+				// an older price may have been fetched again, keep the latest
+				snapshot.merge(priceEntry.getItem(), priceEntry, (a, b) -> b.getTime().isBefore(a.getTime()) ? a : b);
+
+				if (priceEntry.getFetched_time().isAfter(snapshotFetched))
+				{
+					snapshotFetched = priceEntry.getFetched_time();
+				}
+			}
+
+			log.debug("Updated price snapshot with {} prices", prices.size());
+		}
+	}
+
 	public List<ItemEntry> search(String search)
 	{
 		try (Connection con = sql2o.open())
@@ -246,6 +421,10 @@ public class ItemService
 			query.executeBatch();
 			con.commit();
 
+			entries.stream()
+				.max(Comparator.comparing(PriceEntry::getTime))
+				.ifPresent(latest -> priceSnapshot.put(itemId, latest));
+
 			return entries;
 		}
 		catch (IOException ex)
@@ -257,13 +436,13 @@ public class ItemService
 
 	private RSItem fetchRSItem(int itemId) throws IOException
 	{
-		HttpUrl itemUrl = RS_ITEM_URL
+		HttpUrl url = itemUrl
 			.newBuilder()
 			.addQueryParameter("item", "" + itemId)
 			.build();
 
 		Request request = new Request.Builder()
-			.url(itemUrl)
+			.url(url)
 			.build();
 
 		RSItemResponse itemResponse = fetchJson(request, RSItemResponse.class);
@@ -273,13 +452,13 @@ public class ItemService
 
 	private RSPrices fetchRSPrices(int itemId) throws IOException
 	{
-		HttpUrl priceUrl = RS_PRICE_URL
+		HttpUrl url = priceUrl
 			.newBuilder()
 			.addPathSegment(itemId + ".json")
 			.build();
 
 		Request request = new Request.Builder()
-			.url(priceUrl)
+			.url(url)
 			.build();
 
 		return fetchJson(request, RSPrices.class);
@@ -290,13 +469,13 @@ public class ItemService
 		// rs api seems to require lowercase
 		query = query.toLowerCase();
 
-		HttpUrl searchUrl = RS_SEARCH_URL
+		HttpUrl url = searchUrl
 			.newBuilder()
 			.addQueryParameter("alpha", query)
 			.build();
 
 		Request request = new Request.Builder()
-			.url(searchUrl)
+			.url(url)
 			.build();
 
 		return fetchJson(request, RSSearch.class);
@@ -326,6 +505,8 @@ public class ItemService
 
 	private <T> T fetchJson(Request request, Class<T> clazz) throws IOException
 	{
+		lookupScheduler.acquire();
+
 		try (Response response = RuneLiteAPI.CLIENT.newCall(request).execute())
 		{
 			if (!response.isSuccessful())
@@ -350,6 +531,8 @@ public class ItemService
 			.url(httpUrl)
 			.build();
 
+		lookupScheduler.acquire();
+
 		try (Response response = RuneLiteAPI.CLIENT.newCall(request).execute())
 		{
 			if (!response.isSuccessful())
@@ -363,70 +546,61 @@ public class ItemService
 
 	public void queuePriceLookup(int itemId)
 	{
-		if (pendingLookups.size() < MAX_PENDING)
-		{
-			pendingLookups.add(new PendingLookup(itemId, PendingLookup.Type.PRICE));
-		}
-		else
-		{
-			log.debug("Dropping pending price lookup for {}", itemId);
-		}
+		// refresh the least recently fetched prices first
+		PriceEntry priceEntry = priceSnapshot.get(itemId);
+		lookupScheduler.submit(new PendingLookup(itemId, PendingLookup.Type.PRICE), priceEntry != null ? priceEntry.getFetched_time() : null);
 	}
 
 	public void queueSearch(String search)
 	{
-		if (pendingLookups.size() < MAX_PENDING)
-		{
-			pendingLookups.add(new PendingLookup(search, PendingLookup.Type.SEARCH));
-		}
-		else
-		{
-			log.debug("Dropping pending search for {}", search);
-		}
+		lookupScheduler.submit(new PendingLookup(search, PendingLookup.Type.SEARCH), null);
 	}
 
 	public void queueItem(int itemId)
 	{
-		if (pendingLookups.size() < MAX_PENDING)
-		{
-			pendingLookups.add(new PendingLookup(itemId, PendingLookup.Type.ITEM));
-		}
-		else
-		{
-			log.debug("Dropping pending item lookup for {}", itemId);
-		}
+		lookupScheduler.submit(new PendingLookup(itemId, PendingLookup.Type.ITEM), null);
 	}
 
-	@Scheduled(fixedDelay = 5000)
-	public void check()
+	private boolean lookup(PendingLookup pendingLookup)
 	{
-		PendingLookup pendingLookup = pendingLookups.poll();
-		if (pendingLookup == null)
-		{
-			return;
-		}
-
 		switch (pendingLookup.getType())
 		{
 			case PRICE:
-				fetchPrice(pendingLookup.getItemId());
-				break;
+				return fetchPrice(pendingLookup.getItemId()) != null;
 			case SEARCH:
 				try
 				{
 					RSSearch reSearch = fetchRSSearch(pendingLookup.getSearch());
 
 					batchInsertItems(reSearch);
+					return true;
 				}
 				catch (IOException ex)
 				{
 					log.warn("error while searching items", ex);
+					return false;
 				}
-				break;
 			case ITEM:
-				fetchItem(pendingLookup.getItemId());
-				break;
+				return fetchItem(pendingLookup.getItemId()) != null;
+			default:
+				return false;
 		}
 	}
 
+	LookupScheduler getLookupScheduler()
+	{
+		return lookupScheduler;
+	}
+
+	@Scheduled(fixedDelay = 60_000)
+	public void logLookups()
+	{
+		log.debug("{}", lookupScheduler);
+	}
+
+	@PreDestroy
+	public void shutdown()
+	{
+		lookupScheduler.shutdown();
+	}
 }
@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.item;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs pending lookups against the upstream item database on a pool of
+ * workers. Each lookup is pending at most once, lookups of the least
+ * recently fetched data are run first, and requests to the upstream are
+ * rate limited. A lookup may make several requests, each of which takes
+ * a permit with {@link #acquire()}.
+ */
+@Slf4j
+class LookupScheduler
+{
+	private final Predicate<PendingLookup> handler;
+	private final int maxPending;
+	private final RateLimiter rateLimiter;
+	private final ExecutorService workers;
+
+	private final Set<PendingLookup> pending = ConcurrentHashMap.newKeySet();
+	private final PriorityBlockingQueue<Job> queue = new PriorityBlockingQueue<>();
+	private final AtomicLong sequence = new AtomicLong();
+
+	private final AtomicLong queued = new AtomicLong();
+	private final AtomicLong duplicates = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong completed = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong totalWait = new AtomicLong();
+	private volatile long maxWait;
+
+	/**
+	 * @param handler runs a lookup, and returns whether it was successful
+	 * @param workers number of lookups to run at once
+	 * @param permitsPerSecond maximum number of upstream requests per second
+	 * @param maxPending maximum number of pending lookups
+	 */
+	LookupScheduler(Predicate<PendingLookup> handler, int workers, double permitsPerSecond, int maxPending)
+	{
+		this.handler = handler;
+		this.maxPending = maxPending;
+		this.rateLimiter = RateLimiter.create(permitsPerSecond);
+		this.workers = Executors.newFixedThreadPool(workers,
+			new ThreadFactoryBuilder().setNameFormat("item-lookup-%d").setDaemon(true).build());
+
+		for (int i = 0; i < workers; ++i)
+		{
+			this.workers.execute(this::run);
+		}
+	}
+
+	/**
+	 * Queue a lookup
+	 *
+	 * @param lookup
+	 * @param lastFetched when the data being looked up was last fetched, or
+	 * null if it never has been
+	 * @return true if the lookup was queued, false if it was already pending
+	 * or the queue is full
+	 */
+	boolean submit(PendingLookup lookup, Instant lastFetched)
+	{
+		if (pending.size() >= maxPending)
+		{
+			dropped.incrementAndGet();
+			log.debug("Dropping pending lookup {}", lookup);
+			return false;
+		}
+
+		if (!pending.add(lookup))
+		{
+			duplicates.incrementAndGet();
+			return false;
+		}
+
+		long priority = lastFetched == null ? Long.MIN_VALUE : lastFetched.toEpochMilli();
+		queue.add(new Job(lookup, priority, sequence.getAndIncrement(), System.nanoTime()));
+		queued.incrementAndGet();
+		return true;
+	}
+
+	private void run()
+	{
+		while (true)
+		{
+			Job job;
+			try
+			{
+				job = queue.take();
+			}
+			catch (InterruptedException ex)
+			{
+				return;
+			}
+
+			try
+			{
+				long wait = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - job.queuedAt);
+				totalWait.addAndGet(wait);
+				if (wait > maxWait)
+				{
+					maxWait = wait;
+				}
+
+				if (handler.test(job.lookup))
+				{
+					completed.incrementAndGet();
+				}
+				else
+				{
+					failed.incrementAndGet();
+				}
+			}
+			catch (RuntimeException ex)
+			{
+				failed.incrementAndGet();
+				log.warn("error running lookup {}", job.lookup, ex);
+			}
+			finally
+			{
+				// the lookup may be queued again once it has run
+				pending.remove(job.lookup);
+			}
+		}
+	}
+
+	/**
+	 * Wait for a permit to make a request to the upstream
+	 */
+	void acquire()
+	{
+		rateLimiter.acquire();
+	}
+
+	void shutdown()
+	{
+		workers.shutdownNow();
+	}
+
+	/**
+	 * Number of lookups queued or running
+	 */
+	int getPending()
+	{
+		return pending.size();
+	}
+
+	long getQueued()
+	{
+		return queued.get();
+	}
+
+	long getDuplicates()
+	{
+		return duplicates.get();
+	}
+
+	long getDropped()
+	{
+		return dropped.get();
+	}
+
+	long getCompleted()
+	{
+		return completed.get();
+	}
+
+	long getFailed()
+	{
+		return failed.get();
+	}
+
+	/**
+	 * Age of the oldest queued lookup, in milliseconds
+	 */
+	long getOldestAge()
+	{
+		long now = System.nanoTime();
+		long oldest = now;
+		for (Job job : queue)
+		{
+			oldest = Math.min(oldest, job.queuedAt);
+		}
+		return TimeUnit.NANOSECONDS.toMillis(now - oldest);
+	}
+
+	/**
+	 * Average time lookups waited before running, in milliseconds
+	 */
+	long getAverageWait()
+	{
+		long started = completed.get() + failed.get();
+		return started > 0 ? totalWait.get() / started : 0;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "LookupScheduler{pending=" + getPending() + ", queued=" + getQueued()
+			+ ", duplicates=" + getDuplicates() + ", dropped=" + getDropped()
+			+ ", completed=" + getCompleted() + ", failed=" + getFailed()
+			+ ", oldestAge=" + getOldestAge() + "ms, averageWait=" + getAverageWait()
+			+ "ms, maxWait=" + maxWait + "ms}";
+	}
+
+	@Value
+	private static class Job implements Comparable<Job>
+	{
+		PendingLookup lookup;
+		long priority;
+		long sequence;
+		long queuedAt;
+
+		@Override
+		public int compareTo(Job other)
+		{
+			int c = Long.compare(priority, other.priority);
+			return c != 0 ? c : Long.compare(sequence, other.sequence);
+		}
+	}
+}
@@ -24,11 +24,24 @@
  */
 package net.runelite.http.service.worlds;
 
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import net.runelite.http.api.RuneLiteAPI;
 import net.runelite.http.api.worlds.World;
 import net.runelite.http.api.worlds.WorldResult;
@@ -36,19 +49,134 @@ import net.runelite.http.api.worlds.WorldType;
 import okhttp3.HttpUrl;
 import okhttp3.Request;
 import okhttp3.Response;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @RequestMapping("/worlds")
+@Slf4j
 public class WorldsService
 {
 	private static final HttpUrl WORLD_URL = HttpUrl.parse("http://www.runescape.com/g=oldscape/slr.ws?order=LPWM");
+	private static final long DEFAULT_TTL = 60_000L;
+	// percentage of the ttl after which the world list is refreshed in the background
+	private static final int REFRESH_AHEAD = 75;
 
 	private HttpUrl url = WORLD_URL;
 
+	@Value("${runelite.worlds.ttl:" + DEFAULT_TTL + "}")
+	private long ttl = DEFAULT_TTL;
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(
+		new ThreadFactoryBuilder().setNameFormat("worlds-refresh").setDaemon(true).build());
+
+	private volatile Worlds worlds;
+	// the fetch in progress, shared by everything waiting for the world list
+	private CompletableFuture<Worlds> refreshing;
+
 	@RequestMapping
+	public ResponseEntity<byte[]> getWorlds(WebRequest webRequest) throws IOException
+	{
+		Worlds worlds = get();
+
+		if (webRequest.checkNotModified(worlds.getEtag()))
+		{
+			return null;
+		}
+
+		return ResponseEntity.ok()
+			.contentType(MediaType.APPLICATION_JSON_UTF8)
+			.eTag(worlds.getEtag())
+			.body(worlds.getJson());
+	}
+
 	public WorldResult listWorlds() throws IOException
+	{
+		return get().getResult();
+	}
+
+	/**
+	 * Get the world list. A cached list is returned until it expires, and is
+	 * refreshed in the background shortly before that. Concurrent requests
+	 * for an expired list wait on a single fetch.
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	private Worlds get() throws IOException
+	{
+		Worlds current = worlds;
+		long age = current != null ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - current.getFetched()) : Long.MAX_VALUE;
+
+		if (age < ttl)
+		{
+			if (age >= ttl * REFRESH_AHEAD / 100)
+			{
+				refresh();
+			}
+			return current;
+		}
+
+		try
+		{
+			return refresh().join();
+		}
+		catch (CompletionException ex)
+		{
+			if (current != null)
+			{
+				log.warn("unable to refresh world list, using expired list", ex.getCause());
+				return current;
+			}
+
+			if (ex.getCause() instanceof UncheckedIOException)
+			{
+				throw ((UncheckedIOException) ex.getCause()).getCause();
+			}
+			throw ex;
+		}
+	}
+
+	private synchronized CompletableFuture<Worlds> refresh()
+	{
+		if (refreshing != null)
+		{
+			return refreshing;
+		}
+
+		CompletableFuture<Worlds> future = CompletableFuture.supplyAsync(() ->
+		{
+			try
+			{
+				return fetch();
+			}
+			catch (IOException ex)
+			{
+				throw new UncheckedIOException(ex);
+			}
+		}, executor);
+		refreshing = future;
+
+		future.whenComplete((result, ex) ->
+		{
+			synchronized (this)
+			{
+				if (result != null)
+				{
+					worlds = result;
+				}
+				refreshing = null;
+			}
+		});
+
+		return future;
+	}
+
+	private Worlds fetch() throws IOException
 	{
 		Request okrequest = new Request.Builder()
 			.url(url)
@@ -58,6 +186,11 @@ public class WorldsService
 
 		try (Response okresponse = RuneLiteAPI.CLIENT.newCall(okrequest).execute())
 		{
+			if (!okresponse.isSuccessful())
+			{
+				throw new IOException("Unsuccessful http response: " + okresponse.message());
+			}
+
 			b = okresponse.body().bytes();
 		}
 
@@ -84,7 +217,17 @@ public class WorldsService
 
 		WorldResult result = new WorldResult();
 		result.setWorlds(worlds);
-		return result;
+
+		byte[] json = RuneLiteAPI.GSON.toJson(result).getBytes(StandardCharsets.UTF_8);
+		String etag = '"' + Hashing.murmur3_128().hashBytes(json).toString() + '"';
+
+		return new Worlds(result, json, etag, System.nanoTime());
+	}
+
+	@PreDestroy
+	public void shutdown()
+	{
+		executor.shutdown();
 	}
 
 	private static EnumSet<WorldType> getTypes(int mask)
@@ -104,22 +247,16 @@ public class WorldsService
 
 	private static String readString(ByteBuffer buf)
 	{
-		byte b;
-		StringBuilder sb = new StringBuilder();
+		int start = buf.position();
+		int end = start;
 
-		for (;;)
+		while (buf.get(end) != 0)
 		{
-			b = buf.get();
-
-			if (b == 0)
-			{
-				break;
-			}
-
-			sb.append((char) b);
+			++end;
 		}
 
-		return sb.toString();
+		buf.position(end + 1);
+		return new String(buf.array(), buf.arrayOffset() + start, end - start, StandardCharsets.ISO_8859_1);
 	}
 
 	public HttpUrl getUrl()
@@ -131,4 +268,20 @@ public class WorldsService
 	{
 		this.url = url;
 	}
+
+	public void setTtl(long ttl)
+	{
+		this.ttl = ttl;
+	}
+
+	@RequiredArgsConstructor
+	@Getter
+	private static class Worlds
+	{
+		private final WorldResult result;
+		private final byte[] json;
+		private final String etag;
+		// System.nanoTime() when the list was fetched
+		private final long fetched;
+	}
 }
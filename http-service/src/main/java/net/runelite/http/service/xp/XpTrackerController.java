@@ -27,7 +27,6 @@ package net.runelite.http.service.xp;
 import java.io.IOException;
 import java.time.Instant;
 import net.runelite.http.api.xp.XpData;
-import net.runelite.http.service.xp.beans.XpEntity;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -53,7 +52,6 @@ public class XpTrackerController
 		{
 			time = Instant.now();
 		}
-		XpEntity xpEntity = xpTrackerService.findXpAtTime(username, time);
-		return XpMapper.INSTANCE.xpEntityToXpData(xpEntity);
+		return xpTrackerService.findXpAtTime(username, time);
 	}
 }
@@ -24,128 +24,424 @@
  */
 package net.runelite.http.service.xp;
 
+import com.google.common.base.Joiner;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.IOException;
+import java.sql.SQLException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PreDestroy;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.http.api.hiscore.HiscoreEndpoint;
 import net.runelite.http.api.hiscore.HiscoreResult;
 import net.runelite.http.api.xp.XpData;
-import net.runelite.http.service.hiscore.HiscoreResultBuilder;
 import net.runelite.http.service.hiscore.HiscoreService;
 import net.runelite.http.service.xp.beans.PlayerEntity;
 import net.runelite.http.service.xp.beans.XpEntity;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.sql2o.Connection;
+import org.sql2o.Query;
 import org.sql2o.Sql2o;
+import org.sql2o.Sql2oException;
 
+/**
+ * Tracks the xp of players. Updates are buffered in memory and written in
+ * batches by {@link #flush()}, keeping only the most recent snapshot of
+ * each player and dropping snapshots which are identical to the previous
+ * one.
+ */
 @Service
 @Slf4j
 public class XpTrackerService
 {
-	@Autowired
-	@Qualifier("Runelite XP Tracker SQL2O")
-	private Sql2o sql2o;
+	// columns of the xp table written from XpData, in the order of values()
+	private static final String[] XP_COLUMNS =
+	{
+		"attack_xp",
+		"defence_xp",
+		"strength_xp",
+		"hitpoints_xp",
+		"ranged_xp",
+		"prayer_xp",
+		"magic_xp",
+		"cooking_xp",
+		"woodcutting_xp",
+		"fletching_xp",
+		"fishing_xp",
+		"firemaking_xp",
+		"crafting_xp",
+		"smithing_xp",
+		"mining_xp",
+		"herblore_xp",
+		"agility_xp",
+		"thieving_xp",
+		"slayer_xp",
+		"farming_xp",
+		"runecraft_xp",
+		"hunter_xp",
+		"construction_xp",
+		"attack_rank",
+		"defence_rank",
+		"strength_rank",
+		"hitpoints_rank",
+		"ranged_rank",
+		"prayer_rank",
+		"magic_rank",
+		"cooking_rank",
+		"woodcutting_rank",
+		"fletching_rank",
+		"fishing_rank",
+		"firemaking_rank",
+		"crafting_rank",
+		"smithing_rank",
+		"mining_rank",
+		"herblore_rank",
+		"agility_rank",
+		"thieving_rank",
+		"slayer_rank",
+		"farming_rank",
+		"runecraft_rank",
+		"hunter_rank",
+		"construction_rank",
+		"overall_rank"
+	};
+
+	// maximum number of players with pending updates before they are flushed early
+	private static final int MAX_PENDING = 4096;
+	// maximum number of rows inserted by a single statement
+	private static final int BATCH_SIZE = 100;
+
+	private final Sql2o sql2o;
+	private final HiscoreService hiscoreService;
+
+	private final ConcurrentMap<String, PendingXp> pending = new ConcurrentHashMap<>();
+
+	// early flushes run here rather than on the request thread
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(
+		new ThreadFactoryBuilder().setNameFormat("xp-flush").setDaemon(true).build());
+	private final AtomicBoolean flushQueued = new AtomicBoolean();
+	// set while flushes are failing, early flushes wait for the scheduled flush
+	private volatile boolean failing;
+
+	// the most recent snapshot of recently updated or looked up players
+	private final Cache<String, XpData> recent = CacheBuilder.newBuilder()
+		.maximumSize(1024)
+		.recordStats()
+		.build();
+
+	private final Cache<String, Integer> playerIds = CacheBuilder.newBuilder()
+		.maximumSize(16384)
+		.build();
 
 	@Autowired
-	private HiscoreService hiscoreService;
+	public XpTrackerService(
+		@Qualifier("Runelite XP Tracker SQL2O") Sql2o sql2o,
+		HiscoreService hiscoreService
+	)
+	{
+		this.sql2o = sql2o;
+		this.hiscoreService = hiscoreService;
+	}
 
 	public void update(String username) throws IOException
 	{
-		HiscoreResultBuilder hiscoreResultBuilder = hiscoreService.lookupUsername(username, HiscoreEndpoint.NORMAL);
-		HiscoreResult hiscoreResult = hiscoreResultBuilder.build();
+		HiscoreResult hiscoreResult = hiscoreService.lookup(username, HiscoreEndpoint.NORMAL);
 		update(username, hiscoreResult);
 	}
 
 	public void update(String username, HiscoreResult hiscoreResult)
 	{
+		XpData xpData = XpMapper.INSTANCE.hiscoreResultToXpData(hiscoreResult);
+		xpData.setTime(Instant.now());
+
+		XpData previous = recent.getIfPresent(username);
+		if (xpData.equals(previous))
+		{
+			log.debug("Hiscore for {} already up to date", username);
+			return;
+		}
+
+		recent.put(username, xpData);
+		// replaces an earlier update of the player which has not been written yet
+		pending.put(username, new PendingXp(xpData, previous != null));
+
+		if (pending.size() >= MAX_PENDING && !failing && flushQueued.compareAndSet(false, true))
+		{
+			executor.execute(() ->
+			{
+				flushQueued.set(false);
+				flush();
+			});
+		}
+	}
+
+	/**
+	 * Write the pending updates to the database
+	 */
+	@Scheduled(fixedDelay = 5_000)
+	public synchronized void flush()
+	{
+		if (pending.isEmpty())
+		{
+			return;
+		}
+
+		// removing each entry atomically takes its update, later updates of the player start a new one
+		Map<String, PendingXp> unwritten = new LinkedHashMap<>();
+		for (String username : pending.keySet())
+		{
+			PendingXp update = pending.remove(username);
+			if (update != null)
+			{
+				unwritten.put(username, update);
+			}
+		}
+
+		List<String> usernames = new ArrayList<>(unwritten.size());
+		List<XpData> updates = new ArrayList<>(unwritten.size());
+
 		try (Connection con = sql2o.open())
 		{
-			PlayerEntity playerEntity = findOrCreatePlayer(con, username);
+			for (Map.Entry<String, PendingXp> entry : unwritten.entrySet())
+			{
+				String username = entry.getKey();
+				PendingXp update = entry.getValue();
+
+				if (!update.isChecked())
+				{
+					// the previous snapshot wasn't known when the update was made
+					XpEntity currentXp = findXpAtTime(con, username, update.getXp().getTime());
+					if (currentXp != null && update.getXp().equals(XpMapper.INSTANCE.xpEntityToXpData(currentXp)))
+					{
+						log.debug("Hiscore for {} already up to date", username);
+						continue;
+					}
+				}
+
+				usernames.add(username);
+				updates.add(update.getXp());
+			}
+
+			List<Integer> players = new ArrayList<>(usernames.size());
+			for (String username : usernames)
+			{
+				players.add(findOrCreatePlayer(con, username).getId());
+			}
+
+			for (int i = 0; i < updates.size(); i += BATCH_SIZE)
+			{
+				int end = Math.min(i + BATCH_SIZE, updates.size());
+				insert(con, unwritten, usernames.subList(i, end), players.subList(i, end), updates.subList(i, end));
+			}
+		}
+		catch (Sql2oException ex)
+		{
+			log.warn("unable to write {} xp updates", unwritten.size(), ex);
+
+			// keep the updates for the next flush, unless the player has been updated since
+			unwritten.forEach(pending::putIfAbsent);
+			recent.invalidateAll(unwritten.keySet());
+			failing = true;
+			return;
+		}
+
+		failing = false;
+
+		log.debug("Wrote {} xp updates", updates.size());
+	}
 
-			XpEntity currentXp = findXpAtTime(con, username, Instant.now());
-			if (currentXp != null)
+	@PreDestroy
+	public void shutdown()
+	{
+		executor.shutdown();
+		flush();
+	}
+
+	/**
+	 * Write a batch of updates, removing them from the unwritten updates as
+	 * they are written. If the batch is rejected because of the data of a
+	 * row the rows are written one at a time, and only the rows which are
+	 * rejected are dropped. Other failures are thrown, leaving the rest of
+	 * the updates unwritten.
+	 */
+	private void insert(Connection con, Map<String, PendingXp> unwritten, List<String> usernames, List<Integer> players, List<XpData> updates)
+	{
+		try
+		{
+			insert(con, players, updates);
+			unwritten.keySet().removeAll(usernames);
+			return;
+		}
+		catch (Sql2oException ex)
+		{
+			if (!isDataError(ex))
 			{
-				XpData hiscoreData = XpMapper.INSTANCE.hiscoreResultToXpData(hiscoreResult);
-				XpData existingData = XpMapper.INSTANCE.xpEntityToXpData(currentXp);
+				throw ex;
+			}
+
+			log.debug("unable to write batch of {} xp updates", updates.size(), ex);
+		}
 
-				if (hiscoreData.equals(existingData))
+		// write the rows one at a time, so one bad row doesn't lose the whole batch
+		for (int i = 0; i < updates.size(); ++i)
+		{
+			String username = usernames.get(i);
+			try
+			{
+				insert(con, players.subList(i, i + 1), updates.subList(i, i + 1));
+			}
+			catch (Sql2oException ex)
+			{
+				if (!isDataError(ex))
 				{
-					log.debug("Hiscore for {} already up to date", username);
-					return;
+					throw ex;
 				}
+
+				log.warn("dropping xp update for {}", username, ex);
+				recent.invalidate(username);
 			}
+			unwritten.remove(username);
+		}
+	}
 
-			con.createQuery("insert into xp (player,attack_xp,defence_xp,strength_xp,hitpoints_xp,ranged_xp,prayer_xp,magic_xp,cooking_xp,woodcutting_xp,"
-				+ "fletching_xp,fishing_xp,firemaking_xp,crafting_xp,smithing_xp,mining_xp,herblore_xp,agility_xp,thieving_xp,slayer_xp,farming_xp,"
-				+ "runecraft_xp,hunter_xp,construction_xp,attack_rank,defence_rank,strength_rank,hitpoints_rank,ranged_rank,prayer_rank,magic_rank,"
-				+ "cooking_rank,woodcutting_rank,fletching_rank,fishing_rank,firemaking_rank,crafting_rank,smithing_rank,mining_rank,herblore_rank,"
-				+ "agility_rank,thieving_rank,slayer_rank,farming_rank,runecraft_rank,hunter_rank,construction_rank,overall_rank) values (:player,:attack_xp,:defence_xp,"
-				+ ":strength_xp,:hitpoints_xp,:ranged_xp,:prayer_xp,:magic_xp,:cooking_xp,:woodcutting_xp,:fletching_xp,:fishing_xp,:firemaking_xp,"
-				+ ":crafting_xp,:smithing_xp,:mining_xp,:herblore_xp,:agility_xp,:thieving_xp,:slayer_xp,:farming_xp,:runecraft_xp,:hunter_xp,"
-				+ ":construction_xp,:attack_rank,:defence_rank,:strength_rank,:hitpoints_rank,:ranged_rank,:prayer_rank,:magic_rank,:cooking_rank,"
-				+ ":woodcutting_rank,:fletching_rank,:fishing_rank,:firemaking_rank,:crafting_rank,:smithing_rank,:mining_rank,:herblore_rank,"
-				+ ":agility_rank,:thieving_rank,:slayer_rank,:farming_rank,:runecraft_rank,:hunter_rank,:construction_rank,:overall_rank)")
-				.addParameter("player", playerEntity.getId())
-				.addParameter("attack_xp", hiscoreResult.getAttack().getExperience())
-				.addParameter("defence_xp", hiscoreResult.getDefence().getExperience())
-				.addParameter("strength_xp", hiscoreResult.getStrength().getExperience())
-				.addParameter("hitpoints_xp", hiscoreResult.getHitpoints().getExperience())
-				.addParameter("ranged_xp", hiscoreResult.getRanged().getExperience())
-				.addParameter("prayer_xp", hiscoreResult.getPrayer().getExperience())
-				.addParameter("magic_xp", hiscoreResult.getMagic().getExperience())
-				.addParameter("cooking_xp", hiscoreResult.getCooking().getExperience())
-				.addParameter("woodcutting_xp", hiscoreResult.getWoodcutting().getExperience())
-				.addParameter("fletching_xp", hiscoreResult.getFletching().getExperience())
-				.addParameter("fishing_xp", hiscoreResult.getFishing().getExperience())
-				.addParameter("firemaking_xp", hiscoreResult.getFiremaking().getExperience())
-				.addParameter("crafting_xp", hiscoreResult.getCrafting().getExperience())
-				.addParameter("smithing_xp", hiscoreResult.getSmithing().getExperience())
-				.addParameter("mining_xp", hiscoreResult.getMining().getExperience())
-				.addParameter("herblore_xp", hiscoreResult.getHerblore().getExperience())
-				.addParameter("agility_xp", hiscoreResult.getAgility().getExperience())
-				.addParameter("thieving_xp", hiscoreResult.getThieving().getExperience())
-				.addParameter("slayer_xp", hiscoreResult.getSlayer().getExperience())
-				.addParameter("farming_xp", hiscoreResult.getFarming().getExperience())
-				.addParameter("runecraft_xp", hiscoreResult.getRunecraft().getExperience())
-				.addParameter("hunter_xp", hiscoreResult.getHunter().getExperience())
-				.addParameter("construction_xp", hiscoreResult.getConstruction().getExperience())
-				.addParameter("attack_rank", hiscoreResult.getAttack().getRank())
-				.addParameter("defence_rank", hiscoreResult.getDefence().getRank())
-				.addParameter("strength_rank", hiscoreResult.getStrength().getRank())
-				.addParameter("hitpoints_rank", hiscoreResult.getHitpoints().getRank())
-				.addParameter("ranged_rank", hiscoreResult.getRanged().getRank())
-				.addParameter("prayer_rank", hiscoreResult.getPrayer().getRank())
-				.addParameter("magic_rank", hiscoreResult.getMagic().getRank())
-				.addParameter("cooking_rank", hiscoreResult.getCooking().getRank())
-				.addParameter("woodcutting_rank", hiscoreResult.getWoodcutting().getRank())
-				.addParameter("fletching_rank", hiscoreResult.getFletching().getRank())
-				.addParameter("fishing_rank", hiscoreResult.getFishing().getRank())
-				.addParameter("firemaking_rank", hiscoreResult.getFiremaking().getRank())
-				.addParameter("crafting_rank", hiscoreResult.getCrafting().getRank())
-				.addParameter("smithing_rank", hiscoreResult.getSmithing().getRank())
-				.addParameter("mining_rank", hiscoreResult.getMining().getRank())
-				.addParameter("herblore_rank", hiscoreResult.getHerblore().getRank())
-				.addParameter("agility_rank", hiscoreResult.getAgility().getRank())
-				.addParameter("thieving_rank", hiscoreResult.getThieving().getRank())
-				.addParameter("slayer_rank", hiscoreResult.getSlayer().getRank())
-				.addParameter("farming_rank", hiscoreResult.getFarming().getRank())
-				.addParameter("runecraft_rank", hiscoreResult.getRunecraft().getRank())
-				.addParameter("hunter_rank", hiscoreResult.getHunter().getRank())
-				.addParameter("construction_rank", hiscoreResult.getConstruction().getRank())
-				.addParameter("overall_rank", hiscoreResult.getOverall().getRank())
-				.executeUpdate();
+	/**
+	 * Check if a statement failed because of the data it was given, in which
+	 * case it fails again if it is retried
+	 */
+	private static boolean isDataError(Sql2oException ex)
+	{
+		for (Throwable cause = ex.getCause(); cause != null; cause = cause.getCause())
+		{
+			if (cause instanceof SQLException)
+			{
+				// class 22 is a data exception, 23 an integrity constraint violation
+				String state = ((SQLException) cause).getSQLState();
+				return state != null && (state.startsWith("22") || state.startsWith("23"));
+			}
+		}
+		return false;
+	}
+
+	private static void insert(Connection con, List<Integer> players, List<XpData> updates)
+	{
+		StringBuilder sql = new StringBuilder("insert into xp (player,time,")
+			.append(Joiner.on(',').join(XP_COLUMNS))
+			.append(") values ");
+		for (int i = 0; i < updates.size(); ++i)
+		{
+			if (i > 0)
+			{
+				sql.append(',');
+			}
+			sql.append("(:player").append(i).append(",:time").append(i);
+			for (String column : XP_COLUMNS)
+			{
+				sql.append(",:").append(column).append(i);
+			}
+			sql.append(')');
+		}
+
+		Query query = con.createQuery(sql.toString());
+		for (int i = 0; i < updates.size(); ++i)
+		{
+			XpData xp = updates.get(i);
+			query.addParameter("player" + i, players.get(i))
+				.addParameter("time" + i, xp.getTime());
+
+			int[] values = values(xp);
+			for (int j = 0; j < XP_COLUMNS.length; ++j)
+			{
+				query.addParameter(XP_COLUMNS[j] + i, values[j]);
+			}
 		}
+		query.executeUpdate();
+	}
+
+	private static int[] values(XpData xp)
+	{
+		return new int[]
+		{
+			xp.getAttack_xp(),
+			xp.getDefence_xp(),
+			xp.getStrength_xp(),
+			xp.getHitpoints_xp(),
+			xp.getRanged_xp(),
+			xp.getPrayer_xp(),
+			xp.getMagic_xp(),
+			xp.getCooking_xp(),
+			xp.getWoodcutting_xp(),
+			xp.getFletching_xp(),
+			xp.getFishing_xp(),
+			xp.getFiremaking_xp(),
+			xp.getCrafting_xp(),
+			xp.getSmithing_xp(),
+			xp.getMining_xp(),
+			xp.getHerblore_xp(),
+			xp.getAgility_xp(),
+			xp.getThieving_xp(),
+			xp.getSlayer_xp(),
+			xp.getFarming_xp(),
+			xp.getRunecraft_xp(),
+			xp.getHunter_xp(),
+			xp.getConstruction_xp(),
+			xp.getAttack_rank(),
+			xp.getDefence_rank(),
+			xp.getStrength_rank(),
+			xp.getHitpoints_rank(),
+			xp.getRanged_rank(),
+			xp.getPrayer_rank(),
+			xp.getMagic_rank(),
+			xp.getCooking_rank(),
+			xp.getWoodcutting_rank(),
+			xp.getFletching_rank(),
+			xp.getFishing_rank(),
+			xp.getFiremaking_rank(),
+			xp.getCrafting_rank(),
+			xp.getSmithing_rank(),
+			xp.getMining_rank(),
+			xp.getHerblore_rank(),
+			xp.getAgility_rank(),
+			xp.getThieving_rank(),
+			xp.getSlayer_rank(),
+			xp.getFarming_rank(),
+			xp.getRunecraft_rank(),
+			xp.getHunter_rank(),
+			xp.getConstruction_rank(),
+			xp.getOverall_rank()
+		};
 	}
 
 	private synchronized PlayerEntity findOrCreatePlayer(Connection con, String username)
 	{
+		Integer playerId = playerIds.getIfPresent(username);
+		if (playerId != null)
+		{
+			PlayerEntity playerEntity = new PlayerEntity();
+			playerEntity.setId(playerId);
+			playerEntity.setName(username);
+			return playerEntity;
+		}
+
 		PlayerEntity playerEntity = con.createQuery("select * from player where name = :name")
 			.addParameter("name", username)
 			.executeAndFetchFirst(PlayerEntity.class);
 		if (playerEntity != null)
 		{
+			playerIds.put(username, playerEntity.getId());
 			return playerEntity;
 		}
 
@@ -157,6 +453,8 @@ public class XpTrackerService
 			.executeUpdate()
 			.getKey(int.class);
 
+		playerIds.put(username, id);
+
 		playerEntity = new PlayerEntity();
 		playerEntity.setId(id);
 		playerEntity.setName(username);
@@ -164,20 +462,72 @@ public class XpTrackerService
 		return playerEntity;
 	}
 
+	private Integer findPlayerId(Connection con, String username)
+	{
+		Integer playerId = playerIds.getIfPresent(username);
+		if (playerId == null)
+		{
+			playerId = con.createQuery("select id from player where name = :name")
+				.addParameter("name", username)
+				.executeScalar(Integer.class);
+			if (playerId != null)
+			{
+				playerIds.put(username, playerId);
+			}
+		}
+		return playerId;
+	}
+
 	private XpEntity findXpAtTime(Connection con, String username, Instant time)
 	{
-		return con.createQuery("select * from xp join player on player.id=xp.player where player.name = :username and time <= :time order by time desc limit 1")
+		Integer playerId = findPlayerId(con, username);
+		if (playerId == null)
+		{
+			return null;
+		}
+
+		// looking up the player first lets this use the (player, time) key
+		return con.createQuery("select * from xp where player = :player and time <= :time order by time desc limit 1")
 			.throwOnMappingFailure(false)
-			.addParameter("username", username)
+			.addParameter("player", playerId)
 			.addParameter("time", time)
 			.executeAndFetchFirst(XpEntity.class);
 	}
 
-	public XpEntity findXpAtTime(String username, Instant time)
+	/**
+	 * Find the xp of a player at a time. The most recent snapshot of
+	 * recently updated players is returned from memory, including updates
+	 * which are not yet written.
+	 *
+	 * @param username
+	 * @param time
+	 * @return the xp of the player, or null if the player is not tracked
+	 */
+	public XpData findXpAtTime(String username, Instant time)
 	{
+		XpData latest = recent.getIfPresent(username);
+		if (latest != null && !time.isBefore(latest.getTime()))
+		{
+			return latest;
+		}
+
 		try (Connection con = sql2o.open())
 		{
-			return findXpAtTime(con, username, time);
+			XpEntity xpEntity = findXpAtTime(con, username, time);
+			return xpEntity != null ? XpMapper.INSTANCE.xpEntityToXpData(xpEntity) : null;
 		}
 	}
+
+	public double getHitRate()
+	{
+		return recent.stats().hitRate();
+	}
+
+	@Value
+	private static class PendingXp
+	{
+		XpData xp;
+		// if the update was already compared to the previous snapshot
+		boolean checked;
+	}
 }
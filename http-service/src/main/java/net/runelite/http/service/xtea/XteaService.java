@@ -24,12 +24,24 @@
  */
 package net.runelite.http.service.xtea;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
+import lombok.Value;
 import net.runelite.cache.IndexType;
 import net.runelite.cache.fs.Container;
 import net.runelite.cache.util.Djb2;
+import net.runelite.http.api.RuneLiteAPI;
 import net.runelite.http.api.xtea.XteaKey;
 import net.runelite.http.api.xtea.XteaRequest;
 import net.runelite.http.service.cache.CacheService;
@@ -41,11 +53,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import static org.springframework.web.bind.annotation.RequestMethod.POST;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.sql2o.Connection;
 import org.sql2o.Query;
 import org.sql2o.Sql2o;
@@ -69,9 +85,21 @@ public class XteaService
 		+ "  KEY `region` (`region`,`time`)\n"
 		+ ") ENGINE=InnoDB";
 
+	private static final int MAX_VALIDATED = 16384;
+
 	private final Sql2o sql2o;
 	private final CacheService cacheService;
 
+	// latest key of each region, replaced rather than modified on update
+	private volatile Map<Integer, XteaEntry> latestKeys = Collections.emptyMap();
+	// serialized response of get(), built on the first request after an update
+	private volatile KeysResponse keysResponse;
+
+	// results of key validations, by cache, region and keys
+	private final Cache<ValidationKey, Boolean> validatedKeys = CacheBuilder.newBuilder()
+		.maximumSize(MAX_VALIDATED)
+		.build();
+
 	@Autowired
 	public XteaService(
 		@Qualifier("Runelite SQL2O") Sql2o sql2o,
@@ -86,21 +114,61 @@ public class XteaService
 			con.createQuery(CREATE_SQL)
 				.executeUpdate();
 		}
+
+		loadKeys();
+	}
+
+	/**
+	 * Load the latest key of each region. This is also run periodically to
+	 * pick up keys submitted to other instances.
+	 */
+	@Scheduled(initialDelay = 600_000, fixedDelay = 600_000)
+	public void loadKeys()
+	{
+		List<XteaEntry> entries;
+
+		try (Connection con = sql2o.open())
+		{
+			entries = con.createQuery(
+				"select t1.region, t1.time, t2.rev, t2.key1, t2.key2, t2.key3, t2.key4 from " +
+					"(select region,max(time) as time from xtea group by region) t1 " +
+					"join xtea t2 on t1.region = t2.region and t1.time = t2.time")
+				.executeAndFetch(XteaEntry.class);
+		}
+
+		Map<Integer, XteaEntry> keys = new HashMap<>(entries.size() * 4 / 3 + 1);
+		for (XteaEntry entry : entries)
+		{
+			keys.put(entry.getRegion(), entry);
+		}
+
+		synchronized (this)
+		{
+			latestKeys = Collections.unmodifiableMap(keys);
+			keysResponse = null;
+		}
+
+		logger.debug("Loaded {} xtea keys", keys.size());
 	}
 
-	private XteaEntry findLatestXtea(Connection con, int region)
+	private synchronized void updateKeys(List<XteaEntry> entries)
 	{
-		return con.createQuery("select region, time, key1, key2, key3, key4 from xtea "
-			+ "where region = :region "
-			+ "order by time desc "
-			+ "limit 1")
-			.addParameter("region", region)
-			.executeAndFetchFirst(XteaEntry.class);
+		Map<Integer, XteaEntry> keys = new HashMap<>(latestKeys);
+		for (XteaEntry entry : entries)
+		{
+			keys.put(entry.getRegion(), entry);
+		}
+
+		latestKeys = Collections.unmodifiableMap(keys);
+		keysResponse = null;
 	}
 
 	@RequestMapping(method = POST)
 	public void submit(@RequestBody XteaRequest xteaRequest)
 	{
+		Map<Integer, XteaEntry> latest = latestKeys;
+		List<XteaEntry> added = new ArrayList<>();
+
 		try (Connection con = sql2o.beginTransaction())
 		{
 			CacheEntry cache = cacheService.findMostRecent();
@@ -118,13 +186,13 @@ public class XteaService
 				int region = key.getRegion();
 				int[] keys = key.getKeys();
 
-				XteaEntry xteaEntry = findLatestXtea(con, region);
-
 				if (keys.length != 4)
 				{
 					throw new IllegalArgumentException("Key length must be 4");
 				}
 
+				XteaEntry xteaEntry = latest.get(region);
+
 				// already have these?
 				if (xteaEntry != null
 					&& xteaEntry.getKey1() == keys[0]
@@ -147,43 +215,74 @@ public class XteaService
 					.addParameter("key3", keys[2])
 					.addParameter("key4", keys[3])
 					.addToBatch();
+
+				XteaEntry entry = new XteaEntry();
+				entry.setRegion(region);
+				entry.setTime(Instant.now());
+				entry.setRev(xteaRequest.getRevision());
+				entry.setKey1(keys[0]);
+				entry.setKey2(keys[1]);
+				entry.setKey3(keys[2]);
+				entry.setKey4(keys[3]);
+				added.add(entry);
+			}
+
+			if (added.isEmpty())
+			{
+				return;
 			}
 
 			query.executeBatch();
 			con.commit();
 		}
+
+		updateKeys(added);
 	}
 
 	@RequestMapping
-	public List<XteaKey> get()
+	public ResponseEntity<byte[]> get(WebRequest webRequest)
 	{
-		try (Connection con = sql2o.open())
+		KeysResponse response = keysResponse;
+		if (response == null)
 		{
-			List<XteaEntry> entries = con.createQuery(
-				"select t1.region, t1.time, t2.rev, t2.key1, t2.key2, t2.key3, t2.key4 from " +
-					"(select region,max(time) as time from xtea group by region) t1 " +
-					"join xtea t2 on t1.region = t2.region and t1.time = t2.time")
-				.executeAndFetch(XteaEntry.class);
+			response = buildKeysResponse();
+		}
 
-			return entries.stream()
-				.map(XteaService::entryToKey)
-				.collect(Collectors.toList());
+		if (webRequest.checkNotModified(response.getEtag()))
+		{
+			return null;
 		}
+
+		return ResponseEntity.ok()
+			.contentType(MediaType.APPLICATION_JSON_UTF8)
+			.eTag(response.getEtag())
+			.body(response.getBody());
 	}
 
-	@RequestMapping("/{region}")
-	public XteaKey getRegion(@PathVariable int region)
+	private synchronized KeysResponse buildKeysResponse()
 	{
-		XteaEntry entry;
-
-		try (Connection con = sql2o.open())
+		if (keysResponse != null)
 		{
-			entry = con.createQuery("select region, time, rev, key1, key2, key3, key4 from xtea "
-				+ "where region = :region order by time desc limit 1")
-				.addParameter("region", region)
-				.executeAndFetchFirst(XteaEntry.class);
+			return keysResponse;
 		}
 
+		List<XteaKey> keys = latestKeys.values().stream()
+			.sorted(Comparator.comparingInt(XteaEntry::getRegion))
+			.map(XteaService::entryToKey)
+			.collect(Collectors.toList());
+
+		byte[] body = RuneLiteAPI.GSON.toJson(keys).getBytes(StandardCharsets.UTF_8);
+		String etag = '"' + Hashing.murmur3_128().hashBytes(body).toString() + '"';
+
+		keysResponse = new KeysResponse(body, etag);
+		return keysResponse;
+	}
+
+	@RequestMapping("/{region}")
+	public XteaKey getRegion(@PathVariable int region)
+	{
+		XteaEntry entry = latestKeys.get(region);
+
 		if (entry == null)
 		{
 			throw new NotFoundException();
@@ -193,6 +292,18 @@ public class XteaService
 	}
 
 	private boolean checkKeys(CacheEntry cache, int regionId, int[] keys)
+	{
+		ValidationKey validationKey = new ValidationKey(cache.getId(), regionId, keys[0], keys[1], keys[2], keys[3]);
+		Boolean valid = validatedKeys.getIfPresent(validationKey);
+		if (valid == null)
+		{
+			valid = decryptRegion(cache, regionId, keys);
+			validatedKeys.put(validationKey, valid);
+		}
+		return valid;
+	}
+
+	private boolean decryptRegion(CacheEntry cache, int regionId, int[] keys)
 	{
 		int x = regionId >>> 8;
 		int y = regionId & 0xFF;
@@ -241,4 +352,22 @@ public class XteaService
 		});
 		return xteaKey;
 	}
+
+	@Value
+	private static class KeysResponse
+	{
+		byte[] body;
+		String etag;
+	}
+
+	@Value
+	private static class ValidationKey
+	{
+		int cacheId;
+		int region;
+		int key1;
+		int key2;
+		int key3;
+		int key4;
+	}
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.cache;
+
+import net.runelite.cache.ConfigType;
+import net.runelite.cache.IndexType;
+import net.runelite.cache.definitions.loaders.ItemLoader;
+import net.runelite.cache.fs.ArchiveFiles;
+import net.runelite.cache.fs.FSFile;
+import net.runelite.http.service.cache.beans.ArchiveEntry;
+import net.runelite.http.service.cache.beans.IndexEntry;
+import net.runelite.http.service.util.TestCacheService;
+import static org.junit.Assert.assertNotNull;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares item lookups through {@link DefinitionCache} against fetching
+ * and decoding the item archive for every request, as was done before.
+ */
+public class DefinitionCacheBenchmark
+{
+	private static final Logger logger = LoggerFactory.getLogger(DefinitionCacheBenchmark.class);
+
+	private static final int ITEMS = 20_000;
+	private static final int REQUESTS = 2000;
+
+	@Test
+	public void benchmark() throws Exception
+	{
+		TestCacheService cacheService = new TestCacheService(ITEMS);
+		DefinitionCache definitionCache = new DefinitionCache(cacheService);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < REQUESTS; ++i)
+		{
+			// the previous path: fetch and decode the archive for every request
+			IndexEntry indexEntry = cacheService.findIndexForCache(cacheService.findMostRecent(), IndexType.CONFIGS.getNumber());
+			ArchiveEntry archiveEntry = cacheService.findArchiveForIndex(indexEntry, ConfigType.ITEM.getId());
+			ArchiveFiles archiveFiles = cacheService.getArchiveFiles(archiveEntry);
+			FSFile file = archiveFiles.findFile(i % ITEMS);
+			assertNotNull(new ItemLoader().load(file.getFileId(), file.getContents()));
+		}
+		long uncached = System.nanoTime() - start;
+		int uncachedFetches = cacheService.getFetches().getAndSet(0);
+
+		start = System.nanoTime();
+		for (int i = 0; i < REQUESTS; ++i)
+		{
+			assertNotNull(definitionCache.getItem(i % ITEMS));
+		}
+		long cached = System.nanoTime() - start;
+
+		logger.info("uncached: {} ns/request, {} fetches/request",
+			uncached / REQUESTS, (double) uncachedFetches / REQUESTS);
+		logger.info("cached: {} ns/request, {} fetches/request, hit rate {}",
+			cached / REQUESTS, (double) cacheService.getFetches().get() / REQUESTS, definitionCache.getHitRate());
+	}
+}
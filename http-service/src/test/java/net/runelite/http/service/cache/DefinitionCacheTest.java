@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.cache;
+
+import java.io.IOException;
+import net.runelite.cache.definitions.ItemDefinition;
+import net.runelite.http.service.util.TestCacheService;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DefinitionCacheTest
+{
+	private static final int ITEMS = 20_000;
+
+	private TestCacheService cacheService;
+	private DefinitionCache definitionCache;
+
+	@Before
+	public void before() throws Exception
+	{
+		cacheService = new TestCacheService(ITEMS);
+		definitionCache = new DefinitionCache(cacheService);
+	}
+
+	@Test
+	public void testFetchOncePerRevision() throws IOException
+	{
+		for (int i = 0; i < 1000; ++i)
+		{
+			ItemDefinition itemdef = definitionCache.getItem(i);
+			assertNotNull(itemdef);
+			assertEquals(i, itemdef.id);
+		}
+
+		assertSame(definitionCache.getItem(42), definitionCache.getItem(42));
+		assertNull(definitionCache.getItem(ITEMS));
+		assertEquals(1, cacheService.getFetches().get());
+
+		// a newer cache invalidates the definitions of the old one
+		cacheService.getCache().setId(2);
+		assertNotNull(definitionCache.getItem(42));
+		assertEquals(2, cacheService.getFetches().get());
+	}
+
+	@Test
+	public void testLoadItemCopy() throws IOException
+	{
+		ItemDefinition copy = definitionCache.loadItem(42);
+		assertNotNull(copy);
+		assertNotSame(definitionCache.getItem(42), copy);
+		assertNull(definitionCache.loadItem(ITEMS));
+		assertEquals(1, cacheService.getFetches().get());
+	}
+}
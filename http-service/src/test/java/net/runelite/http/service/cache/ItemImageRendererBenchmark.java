@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import net.runelite.http.service.cache.beans.CacheEntry;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the throughput of rendering item images in batches with one
+ * render thread and with a thread per processor.
+ */
+public class ItemImageRendererBenchmark
+{
+	private static final Logger logger = LoggerFactory.getLogger(ItemImageRendererBenchmark.class);
+
+	private static final int ITEMS = 5000;
+
+	@Test
+	public void benchmark() throws Exception
+	{
+		CacheEntry cache = new CacheEntry();
+		cache.setId(1);
+
+		List<Integer> itemIds = new ArrayList<>();
+		for (int i = 0; i < ITEMS; ++i)
+		{
+			itemIds.add(i);
+		}
+
+		for (int threads : new int[]
+		{
+			1, Runtime.getRuntime().availableProcessors()
+		})
+		{
+			ItemImageRenderer renderer = new ItemImageRenderer(new TestCacheProviders(), threads);
+			long start = System.nanoTime();
+			for (int i = 0; i < ITEMS; i += ItemImageRenderer.MAX_BATCH)
+			{
+				renderer.getImages(cache, itemIds.subList(i, Math.min(ITEMS, i + ItemImageRenderer.MAX_BATCH)), 1, 1, 3153952);
+			}
+			long elapsed = System.nanoTime() - start;
+			renderer.shutdown();
+
+			logger.info("{} threads: {} items in {} ms, {} items/s",
+				threads, ITEMS, elapsed / 1_000_000L, ITEMS * 1_000_000_000L / elapsed);
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.cache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import net.runelite.http.service.cache.beans.CacheEntry;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ItemImageRendererTest
+{
+	private static final byte[] PNG_SIGNATURE =
+	{
+		(byte) 0x89, 'P', 'N', 'G'
+	};
+
+	private final CacheEntry cache = new CacheEntry();
+	private TestCacheProviders cacheProviders;
+	private ItemImageRenderer renderer;
+
+	@Before
+	public void before()
+	{
+		cache.setId(1);
+		cacheProviders = new TestCacheProviders();
+		renderer = new ItemImageRenderer(cacheProviders, 4);
+	}
+
+	@After
+	public void after()
+	{
+		renderer.shutdown();
+	}
+
+	@Test
+	public void testImageCached() throws IOException
+	{
+		byte[] image = renderer.getImage(cache, 1, 1, 1, 3153952);
+		assertNotNull(image);
+		assertArrayEquals(PNG_SIGNATURE, Arrays.copyOf(image, PNG_SIGNATURE.length));
+
+		assertSame(image, renderer.getImage(cache, 1, 1, 1, 3153952));
+		assertEquals(1, cacheProviders.renders.get());
+
+		// other render parameters, or a newer cache, render the item again
+		renderer.getImage(cache, 1, 1, 1, 0);
+		assertEquals(2, cacheProviders.renders.get());
+
+		CacheEntry newCache = new CacheEntry();
+		newCache.setId(2);
+		renderer.getImage(newCache, 1, 1, 1, 3153952);
+		assertEquals(3, cacheProviders.renders.get());
+	}
+
+	@Test
+	public void testNoModel() throws IOException
+	{
+		assertNull(renderer.getImage(cache, TestCacheProviders.NO_MODEL, 1, 1, 3153952));
+		assertNull(renderer.getImage(cache, TestCacheProviders.NO_MODEL, 1, 1, 3153952));
+		assertEquals(1, cacheProviders.renders.get());
+	}
+
+	@Test
+	public void testBatch() throws IOException
+	{
+		List<Integer> itemIds = new ArrayList<>();
+		for (int i = 200; i > 0; --i)
+		{
+			itemIds.add(i);
+		}
+
+		Map<Integer, byte[]> images = renderer.getImages(cache, itemIds, 1, 1, 3153952);
+		assertEquals(199, images.size());
+		assertFalse(images.containsKey(TestCacheProviders.NO_MODEL));
+		assertEquals(200, cacheProviders.renders.get());
+
+		// results are in request order
+		int previous = Integer.MAX_VALUE;
+		for (int itemId : images.keySet())
+		{
+			assertEquals(true, itemId < previous);
+			previous = itemId;
+		}
+
+		renderer.getImages(cache, itemIds, 1, 1, 3153952);
+		assertEquals(200, cacheProviders.renders.get());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBatchLimit() throws IOException
+	{
+		List<Integer> itemIds = new ArrayList<>();
+		for (int i = 0; i <= ItemImageRenderer.MAX_BATCH; ++i)
+		{
+			itemIds.add(i);
+		}
+		renderer.getImages(cache, itemIds, 1, 1, 3153952);
+	}
+}
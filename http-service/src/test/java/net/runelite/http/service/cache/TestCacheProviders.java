@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.cache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import net.runelite.cache.definitions.ItemDefinition;
+import net.runelite.cache.definitions.ModelDefinition;
+import net.runelite.cache.definitions.TextureDefinition;
+import net.runelite.cache.definitions.providers.ItemProvider;
+import net.runelite.cache.definitions.providers.ModelProvider;
+import net.runelite.cache.definitions.providers.SpriteProvider;
+import net.runelite.cache.definitions.providers.TextureProvider;
+import net.runelite.http.service.cache.beans.CacheEntry;
+
+/**
+ * Cache providers of a single triangle model in a different color for
+ * every item, which count the items they render
+ */
+class TestCacheProviders extends CacheProviders
+{
+	// items with this id have no model
+	static final int NO_MODEL = 7;
+
+	final AtomicInteger renders = new AtomicInteger();
+
+	TestCacheProviders()
+	{
+		super(null, null);
+	}
+
+	@Override
+	public ItemProvider itemProvider()
+	{
+		return itemId ->
+		{
+			ItemDefinition itemdef = new ItemDefinition(itemId);
+			itemdef.inventoryModel = itemId == NO_MODEL ? -1 : 0;
+			// a different color per item
+			itemdef.colorFind = new short[]
+			{
+				0
+			};
+			itemdef.colorReplace = new short[]
+			{
+				(short) itemId
+			};
+			return itemdef;
+		};
+	}
+
+	@Override
+	public ModelProvider modelProvider(CacheEntry cache)
+	{
+		renders.incrementAndGet();
+		return modelId -> modelId == 0 ? triangle() : null;
+	}
+
+	@Override
+	public SpriteProvider spriteProvider(CacheEntry cache)
+	{
+		return (spriteId, frameId) -> null;
+	}
+
+	@Override
+	public TextureProvider textureProvider(CacheEntry cache)
+	{
+		return () -> new TextureDefinition[0];
+	}
+
+	private static ModelDefinition triangle()
+	{
+		ModelDefinition model = new ModelDefinition();
+		model.vertexCount = 3;
+		model.vertexPositionsX = new int[]
+		{
+			-100, 100, 0
+		};
+		model.vertexPositionsY = new int[]
+		{
+			0, 0, -150
+		};
+		model.vertexPositionsZ = new int[]
+		{
+			0, 0, 0
+		};
+		model.faceCount = 1;
+		model.faceVertexIndices1 = new int[]
+		{
+			0
+		};
+		model.faceVertexIndices2 = new int[]
+		{
+			1
+		};
+		model.faceVertexIndices3 = new int[]
+		{
+			2
+		};
+		model.faceColors = new short[]
+		{
+			0
+		};
+		return model;
+	}
+}
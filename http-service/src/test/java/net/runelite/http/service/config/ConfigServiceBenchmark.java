@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.config;
+
+import static net.runelite.http.service.config.ConfigServiceTest.configuration;
+import static net.runelite.http.service.config.ConfigServiceTest.request;
+import net.runelite.http.service.util.TestDatabase;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.sql2o.Connection;
+import org.sql2o.Sql2o;
+
+/**
+ * Measures many users syncing their configs. Each user logs in, then drags
+ * a slider through a number of values, either with a request per key or
+ * with a single patch. The configs are then read from the database, and
+ * again from the snapshots.
+ */
+public class ConfigServiceBenchmark
+{
+	private static final Logger logger = LoggerFactory.getLogger(ConfigServiceBenchmark.class);
+
+	private static final int USERS = 500;
+	private static final int KEYS = 40;
+	private static final int CHANGES = 20;
+	private static final int READS = 10;
+
+	@Test
+	public void benchmark() throws Exception
+	{
+		Sql2o sql2o = TestDatabase.create("config-benchmark");
+
+		// keep the in memory database open between connections
+		try (Connection keepAlive = sql2o.open())
+		{
+			keepAlive.createQuery("create table config (user int not null, `key` varchar(255) not null, "
+				+ "value varchar(4096) not null, unique key user_key (user, `key`))")
+				.executeUpdate();
+
+			ConfigService configService = new ConfigService(sql2o, new UserAuthFilter(sql2o));
+
+			long start = System.nanoTime();
+			for (int user = 0; user < USERS; ++user)
+			{
+				for (int key = 0; key < KEYS; ++key)
+				{
+					configService.setKey(request("PUT", user), new MockHttpServletResponse(), "plugin.key" + key, "value");
+				}
+				for (int change = 0; change < CHANGES; ++change)
+				{
+					configService.setKey(request("PUT", user), new MockHttpServletResponse(), "plugin.slider", Integer.toString(change));
+				}
+			}
+			long perKey = System.nanoTime() - start;
+
+			keepAlive.createQuery("delete from config").executeUpdate();
+			// start over without snapshots
+			configService = new ConfigService(sql2o, new UserAuthFilter(sql2o));
+
+			start = System.nanoTime();
+			for (int user = 0; user < USERS; ++user)
+			{
+				String[] keyValues = new String[(KEYS + CHANGES) * 2];
+				for (int key = 0; key < KEYS; ++key)
+				{
+					keyValues[key * 2] = "plugin.key" + key;
+					keyValues[key * 2 + 1] = "value";
+				}
+				for (int change = 0; change < CHANGES; ++change)
+				{
+					keyValues[(KEYS + change) * 2] = "plugin.slider";
+					keyValues[(KEYS + change) * 2 + 1] = Integer.toString(change);
+				}
+				configService.patch(request("PATCH", user), new MockHttpServletResponse(), configuration(keyValues));
+			}
+			long patched = System.nanoTime() - start;
+
+			// uncached reads, as the snapshots have not been loaded yet
+			start = System.nanoTime();
+			for (int user = 0; user < USERS; ++user)
+			{
+				configService.get(request("GET", user), new MockHttpServletResponse());
+			}
+			long uncached = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < READS; ++i)
+			{
+				for (int user = 0; user < USERS; ++user)
+				{
+					configService.get(request("GET", user), new MockHttpServletResponse());
+				}
+			}
+			long cached = (System.nanoTime() - start) / READS;
+
+			logger.info("Writes of {} users: per key {} ms, patch {} ms", USERS, perKey / 1_000_000L, patched / 1_000_000L);
+			logger.info("Reads of {} users: database {} ms, snapshot {} ms", USERS, uncached / 1_000_000L, cached / 1_000_000L);
+
+			keepAlive.createQuery("drop all objects").executeUpdate();
+		}
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.config;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import net.runelite.http.api.RuneLiteAPI;
+import net.runelite.http.api.config.ConfigEntry;
+import net.runelite.http.api.config.Configuration;
+import net.runelite.http.service.util.TestDatabase;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.sql2o.Connection;
+import org.sql2o.Sql2o;
+
+public class ConfigServiceTest
+{
+	private Sql2o sql2o;
+	private Connection keepAlive;
+	private ConfigService configService;
+
+	@Before
+	public void before()
+	{
+		sql2o = TestDatabase.create("config");
+		// keep the in memory database open between connections
+		keepAlive = sql2o.open();
+		keepAlive.createQuery("create table config (user int not null, `key` varchar(255) not null, "
+			+ "value varchar(4096) not null, unique key user_key (user, `key`))")
+			.executeUpdate();
+
+		configService = new ConfigService(sql2o, new UserAuthFilter(sql2o));
+	}
+
+	@After
+	public void after()
+	{
+		keepAlive.createQuery("drop all objects").executeUpdate();
+		keepAlive.close();
+	}
+
+	static MockHttpServletRequest request(String method, int user)
+	{
+		MockHttpServletRequest request = new MockHttpServletRequest(method, "/config");
+		request.addHeader("user", user);
+		return request;
+	}
+
+	static Configuration configuration(String... keyValues)
+	{
+		List<ConfigEntry> entries = new ArrayList<>();
+		for (int i = 0; i < keyValues.length; i += 2)
+		{
+			ConfigEntry entry = new ConfigEntry();
+			entry.setKey(keyValues[i]);
+			entry.setValue(keyValues[i + 1]);
+			entries.add(entry);
+		}
+		return new Configuration(entries);
+	}
+
+	private Map<String, String> stored(int user)
+	{
+		Map<String, String> values = new LinkedHashMap<>();
+		for (ConfigEntry entry : keepAlive.createQuery("select `key`, value from config where user = :user order by `key`")
+			.addParameter("user", user)
+			.executeAndFetch(ConfigEntry.class))
+		{
+			values.put(entry.getKey(), entry.getValue());
+		}
+		return values;
+	}
+
+	@Test
+	public void testPatch() throws Exception
+	{
+		configService.patch(request("PATCH", 1), new MockHttpServletResponse(),
+			configuration("a", "1", "b", "2", "c", "3"));
+		assertEquals("{a=1, b=2, c=3}", stored(1).toString());
+		assertEquals(stored(1), configService.getSnapshot(1).getValues());
+
+		// a null value unsets the key, and the last value for a key wins
+		configService.patch(request("PATCH", 1), new MockHttpServletResponse(),
+			configuration("b", null, "a", "4", "c", "5", "c", "6"));
+		assertEquals("{a=4, c=6}", stored(1).toString());
+		assertEquals(stored(1), configService.getSnapshot(1).getValues());
+	}
+
+	@Test
+	public void testSnapshot() throws Exception
+	{
+		configService.setKey(request("PUT", 1), new MockHttpServletResponse(), "a", "1");
+
+		ResponseEntity<byte[]> response = configService.get(request("GET", 1), new MockHttpServletResponse());
+		Configuration configuration = RuneLiteAPI.GSON.fromJson(new String(response.getBody(), StandardCharsets.UTF_8), Configuration.class);
+		assertEquals(1, configuration.getConfig().size());
+		assertEquals("1", configuration.getConfig().get(0).getValue());
+
+		// served from the snapshot, without reading the database
+		keepAlive.createQuery("delete from config").executeUpdate();
+		String etag = response.getHeaders().getETag();
+		MockHttpServletRequest request = request("GET", 1);
+		request.addHeader("If-None-Match", etag);
+		MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+		assertNull(configService.get(request, servletResponse));
+		assertEquals(304, servletResponse.getStatus());
+
+		// writes update the snapshot
+		configService.unsetKey(request("DELETE", 1), new MockHttpServletResponse(), "a");
+		configService.setKey(request("PUT", 1), new MockHttpServletResponse(), "b", "2");
+		response = configService.get(request("GET", 1), new MockHttpServletResponse());
+		assertNotEquals(etag, response.getHeaders().getETag());
+		assertEquals(Collections.singletonMap("b", "2"), configService.getSnapshot(1).getValues());
+		assertEquals(stored(1), configService.getSnapshot(1).getValues());
+	}
+
+	@Test
+	public void testWriteWhileLoading() throws Exception
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try
+		{
+			// each user's snapshot is loaded while it is written to
+			for (int user = 1; user <= 200; ++user)
+			{
+				final int u = user;
+				CyclicBarrier barrier = new CyclicBarrier(2);
+				Future<?> load = executor.submit(() ->
+				{
+					barrier.await();
+					return configService.getSnapshot(u);
+				});
+				Future<?> write = executor.submit(() ->
+				{
+					barrier.await();
+					configService.update(u, Collections.singletonMap("a", "1"));
+					return null;
+				});
+				load.get();
+				write.get();
+
+				assertEquals(stored(user), configService.getSnapshot(user).getValues());
+			}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+}
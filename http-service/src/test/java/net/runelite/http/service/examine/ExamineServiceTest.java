@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.examine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import net.runelite.http.service.util.TestDatabase;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Before;
+import org.junit.Test;
+import org.sql2o.Connection;
+import org.sql2o.Sql2o;
+
+public class ExamineServiceTest
+{
+	private Sql2o sql2o;
+	private Connection keepAlive;
+	private ExamineService examineService;
+
+	@Before
+	public void before()
+	{
+		sql2o = TestDatabase.create("examine");
+		// keep the in memory database open between connections
+		keepAlive = sql2o.open();
+		keepAlive.createQuery("create table examine (type varchar(16) not null, id int not null, "
+			+ "time timestamp not null default current_timestamp, count int not null, text varchar(255) not null, "
+			+ "unique key type (type, id, text))")
+			.executeUpdate();
+
+		examineService = new ExamineService(sql2o);
+	}
+
+	@After
+	public void after()
+	{
+		keepAlive.createQuery("drop all objects").executeUpdate();
+		keepAlive.close();
+	}
+
+	private int count(ExamineType type, int id, String text)
+	{
+		Integer count = keepAlive.createQuery("select count from examine where type = :type and id = :id and text = :text")
+			.addParameter("type", type.toString())
+			.addParameter("id", id)
+			.addParameter("text", text)
+			.executeScalar(Integer.class);
+		return count != null ? count : 0;
+	}
+
+	@Test
+	public void testTopText()
+	{
+		examineService.submitItem(4151, "A vicious whip.");
+		assertNull(examineService.getItem(4151));
+
+		examineService.flush();
+		assertEquals("A vicious whip.", examineService.getItem(4151));
+
+		examineService.submitItem(4151, "A whip.");
+		examineService.submitItem(4151, "A whip.");
+		// cached until the submissions are flushed
+		assertEquals("A vicious whip.", examineService.getItem(4151));
+
+		examineService.flush();
+		assertEquals("A whip.", examineService.getItem(4151));
+		assertEquals(2, count(ExamineType.ITEM, 4151, "A whip."));
+	}
+
+	@Test
+	public void testConcurrentSubmissions() throws Exception
+	{
+		final int threads = 8, submissions = 5000, ids = 10;
+		final String[] texts =
+		{
+			"It's a goblin.", "An ugly green creature.", "Goblin."
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicBoolean done = new AtomicBoolean();
+
+		// flush repeatedly while the submissions are made
+		Thread flusher = new Thread(() ->
+		{
+			while (!done.get())
+			{
+				examineService.flush();
+			}
+		});
+		flusher.start();
+
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < threads; ++t)
+		{
+			futures.add(executor.submit(() ->
+			{
+				start.await();
+				for (int i = 0; i < submissions; ++i)
+				{
+					examineService.submitNpc(i % ids, texts[i % texts.length]);
+				}
+				return null;
+			}));
+		}
+
+		start.countDown();
+		for (Future<?> future : futures)
+		{
+			future.get();
+		}
+		done.set(true);
+		flusher.join();
+		executor.shutdown();
+
+		examineService.flush();
+
+		int[][] expected = new int[ids][texts.length];
+		for (int i = 0; i < submissions; ++i)
+		{
+			expected[i % ids][i % texts.length] += threads;
+		}
+
+		for (int id = 0; id < ids; ++id)
+		{
+			for (int text = 0; text < texts.length; ++text)
+			{
+				assertEquals(expected[id][text], count(ExamineType.NPC, id, texts[text]));
+			}
+		}
+
+		// make the least common text the most common
+		int max = Math.max(expected[0][0], expected[0][1]);
+		for (int i = expected[0][2]; i <= max; ++i)
+		{
+			examineService.submitNpc(0, texts[2]);
+		}
+		examineService.flush();
+		assertEquals(texts[2], examineService.getNpc(0));
+	}
+
+	@Test
+	public void testEarlyFlush() throws Exception
+	{
+		for (int i = 0; i < ExamineService.MAX_PENDING; ++i)
+		{
+			examineService.submitItem(i, "An item.");
+		}
+
+		// flushed in the background, not on the submitting thread
+		for (int i = 0; i < 1000 && count(ExamineType.ITEM, ExamineService.MAX_PENDING - 1, "An item.") == 0; ++i)
+		{
+			Thread.sleep(10);
+		}
+		assertEquals(1, count(ExamineType.ITEM, ExamineService.MAX_PENDING - 1, "An item."));
+	}
+
+	@Test
+	public void testFlushFailing()
+	{
+		keepAlive.createQuery("alter table examine rename to examine_down").executeUpdate();
+
+		examineService.submitItem(0, "An item.");
+		examineService.flush();
+
+		// past the limit new submissions are dropped, and counts of pending ones kept
+		for (int i = 0; i < ExamineService.MAX_BUFFERED + 100; ++i)
+		{
+			examineService.submitItem(i, "An item.");
+		}
+
+		keepAlive.createQuery("alter table examine_down rename to examine").executeUpdate();
+		examineService.flush();
+
+		assertEquals(2, count(ExamineType.ITEM, 0, "An item."));
+		assertEquals(1, count(ExamineType.ITEM, ExamineService.MAX_BUFFERED - 1, "An item."));
+		assertEquals(0, count(ExamineType.ITEM, ExamineService.MAX_BUFFERED, "An item."));
+		assertEquals(ExamineService.MAX_BUFFERED, (int) keepAlive.createQuery("select count(*) from examine")
+			.executeScalar(Integer.class));
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.item;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Random;
+import net.runelite.http.service.util.TestDatabase;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sql2o.Connection;
+import org.sql2o.Sql2o;
+
+/**
+ * Compares looking up items and prices one id at a time, in bulk, and in
+ * bulk with the price snapshot loaded.
+ */
+public class ItemServiceBenchmark
+{
+	private static final Logger logger = LoggerFactory.getLogger(ItemServiceBenchmark.class);
+
+	private static final int ITEMS = 20_000;
+	private static final int DAYS = 30;
+	private static final int LOOKUPS = 500;
+	private static final int ROUNDS = 20;
+
+	@Test
+	public void benchmark()
+	{
+		Sql2o sql2o = TestDatabase.create("items-benchmark");
+
+		// keep the in memory database open between connections
+		try (Connection keepAlive = sql2o.open())
+		{
+			TestItemData.createTables(keepAlive);
+			TestItemData.populate(sql2o, ITEMS, DAYS, Instant.now().truncatedTo(ChronoUnit.DAYS));
+
+			// no lookups are made, so the upstream is never contacted
+			ItemService itemService = new ItemService(sql2o, "http://localhost:1", 1, 1);
+			try
+			{
+				benchmark(itemService);
+			}
+			finally
+			{
+				itemService.shutdown();
+				keepAlive.createQuery("drop all objects").executeUpdate();
+			}
+		}
+	}
+
+	private static void benchmark(ItemService itemService)
+	{
+		Random random = new Random(42);
+		int[] itemIds = random.ints(LOOKUPS, 0, ITEMS).toArray();
+
+		for (int round = 0; round < 2; ++round)
+		{
+			long start = System.nanoTime();
+			for (int i = 0; i < ROUNDS; ++i)
+			{
+				for (int itemId : itemIds)
+				{
+					itemService.getItem(itemId);
+					itemService.getPrice(itemId, null);
+				}
+			}
+			long perId = (System.nanoTime() - start) / ROUNDS;
+
+			start = System.nanoTime();
+			for (int i = 0; i < ROUNDS; ++i)
+			{
+				itemService.getItems(itemIds);
+				itemService.getPrices(itemIds);
+			}
+			long bulk = (System.nanoTime() - start) / ROUNDS;
+
+			itemService.refreshPrices();
+
+			start = System.nanoTime();
+			for (int i = 0; i < ROUNDS; ++i)
+			{
+				itemService.getItems(itemIds);
+				itemService.getPrices(itemIds);
+			}
+			long snapshot = (System.nanoTime() - start) / ROUNDS;
+
+			logger.info("{} ids: per id {} us ({} queries), bulk {} us (2 queries), with snapshot {} us (1 query)",
+				LOOKUPS, perId / 1_000L, LOOKUPS * 2, bulk / 1_000L, snapshot / 1_000L);
+		}
+	}
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.item;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import net.runelite.http.service.util.TestDatabase;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+import org.sql2o.Connection;
+import org.sql2o.Query;
+import org.sql2o.Sql2o;
+
+public class ItemServiceTest
+{
+	private static final Instant NOW = Instant.now().truncatedTo(ChronoUnit.DAYS);
+
+	private final MockWebServer server = new MockWebServer();
+	// item ids of the price lookups made against the upstream stub, in order
+	private final List<Integer> requested = Collections.synchronizedList(new ArrayList<>());
+	private final CountDownLatch release = new CountDownLatch(1);
+	private volatile boolean block;
+
+	private Sql2o sql2o;
+	private Connection keepAlive;
+	private ItemService itemService;
+
+	@Before
+	public void before() throws IOException
+	{
+		server.setDispatcher(new Dispatcher()
+		{
+			@Override
+			public MockResponse dispatch(RecordedRequest request) throws InterruptedException
+			{
+				String path = request.getPath();
+				if (path.startsWith("/api/catalogue/detail.json"))
+				{
+					return new MockResponse().setBody("{\"item\":{\"id\":1,\"name\":\"item 1\",\"description\":\"an item\","
+						+ "\"type\":\"DEFAULT\",\"icon\":\"" + upstream() + "/icon.gif\",\"icon_large\":\"" + upstream() + "/icon_large.gif\"}}");
+				}
+				else if (path.startsWith("/icon"))
+				{
+					return new MockResponse().setBody("GIF89a");
+				}
+
+				// /api/graph/<item id>.json
+				int itemId = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1, path.indexOf(".json")));
+				requested.add(itemId);
+
+				if (block)
+				{
+					release.await();
+				}
+
+				return new MockResponse().setBody("{\"daily\":{\"" + NOW.toEpochMilli() + "\":" + itemId + "}}");
+			}
+		});
+		server.start();
+
+		sql2o = TestDatabase.create("items");
+		// keep the in memory database open between connections
+		keepAlive = sql2o.open();
+
+		TestItemData.createTables(keepAlive);
+
+		itemService = new ItemService(sql2o, upstream(), 1, 100);
+	}
+
+	@After
+	public void after() throws IOException
+	{
+		release.countDown();
+		itemService.shutdown();
+		server.shutdown();
+
+		keepAlive.createQuery("drop all objects").executeUpdate();
+		keepAlive.close();
+	}
+
+	private String upstream()
+	{
+		return "http://" + server.getHostName() + ":" + server.getPort();
+	}
+
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException
+	{
+		long end = System.currentTimeMillis() + 10_000;
+		while (!condition.getAsBoolean())
+		{
+			assertTrue("timed out", System.currentTimeMillis() < end);
+			Thread.sleep(10);
+		}
+	}
+
+	@Test
+	public void testGetPrices()
+	{
+		TestItemData.populate(sql2o, 10, 5, NOW);
+
+		int[] itemIds =
+		{
+			3, 7, 3, 42
+		};
+
+		Map<Integer, ItemEntry> items = itemService.getItems(itemIds);
+		assertEquals(2, items.size());
+		assertEquals("item 7", items.get(7).getName());
+		assertNull(items.get(42));
+
+		for (int i = 0; i < 2; ++i)
+		{
+			Map<Integer, PriceEntry> prices = itemService.getPrices(itemIds);
+			assertEquals(2, prices.size());
+			assertEquals(3004, prices.get(3).getPrice());
+			assertEquals(NOW, prices.get(7).getTime());
+			assertFalse(prices.containsKey(42));
+
+			// the second pass reads from the snapshot
+			itemService.refreshPrices();
+		}
+	}
+
+	@Test
+	public void testRefreshPricesIncremental()
+	{
+		TestItemData.populate(sql2o, 10, 5, NOW);
+		itemService.refreshPrices();
+
+		int[] itemIds =
+		{
+			3, 4, 5
+		};
+		assertEquals(3004, itemService.getPrices(itemIds).get(3).getPrice());
+
+		try (Connection con = sql2o.open())
+		{
+			Instant fetched = Instant.now();
+			Query query = con.createQuery("insert into prices (item, price, time, fetched_time) values (:item, :price, :time, :fetched_time)");
+			// a new day, and an old day fetched again
+			query.addParameter("item", 3).addParameter("price", 3005).addParameter("time", NOW.plus(1, ChronoUnit.DAYS))
+				.addParameter("fetched_time", fetched).addToBatch();
+			query.addParameter("item", 5).addParameter("price", 1).addParameter("time", NOW.minus(10, ChronoUnit.DAYS))
+				.addParameter("fetched_time", fetched).addToBatch();
+			query.executeBatch();
+
+			con.createQuery("update prices set price = 4100, fetched_time = :fetched_time where item = 4 and time = :time")
+				.addParameter("fetched_time", fetched)
+				.addParameter("time", NOW)
+				.executeUpdate();
+		}
+
+		// the snapshot is stale until it is refreshed
+		assertEquals(3004, itemService.getPrices(itemIds).get(3).getPrice());
+
+		itemService.refreshPrices();
+
+		Map<Integer, PriceEntry> prices = itemService.getPrices(itemIds);
+		assertEquals(3005, prices.get(3).getPrice());
+		assertEquals(4100, prices.get(4).getPrice());
+		assertEquals(5004, prices.get(5).getPrice());
+	}
+
+	@Test
+	public void testLookupDeduplicated() throws InterruptedException
+	{
+		LookupScheduler scheduler = itemService.getLookupScheduler();
+
+		// hold the only worker on the first lookup
+		block = true;
+		itemService.queuePriceLookup(1);
+		waitFor(() -> requested.size() == 1);
+
+		for (int i = 0; i < 5; ++i)
+		{
+			itemService.queuePriceLookup(2);
+			itemService.queuePriceLookup(3);
+		}
+
+		assertEquals(3, scheduler.getPending());
+		assertEquals(8, scheduler.getDuplicates());
+
+		release.countDown();
+		waitFor(() -> scheduler.getCompleted() == 3);
+
+		assertEquals(Arrays.asList(1, 2, 3), requested);
+		assertEquals(0, scheduler.getPending());
+		assertEquals(0, scheduler.getFailed());
+		assertEquals(3, itemService.getPrices(new int[]
+		{
+			1, 2, 3
+		}).get(3).getPrice());
+	}
+
+	@Test
+	public void testLookupPriority() throws InterruptedException
+	{
+		try (Connection con = sql2o.open())
+		{
+			Query query = con.createQuery("insert into prices (item, price, time, fetched_time) values (:item, 1, :time, :time)");
+			query.addParameter("item", 10).addParameter("time", NOW.minus(3, ChronoUnit.DAYS)).addToBatch();
+			query.addParameter("item", 11).addParameter("time", NOW.minus(1, ChronoUnit.DAYS)).addToBatch();
+			query.addParameter("item", 12).addParameter("time", NOW.minus(2, ChronoUnit.DAYS)).addToBatch();
+			query.executeBatch();
+		}
+		itemService.refreshPrices();
+
+		block = true;
+		itemService.queuePriceLookup(1);
+		waitFor(() -> requested.size() == 1);
+
+		itemService.queuePriceLookup(11);
+		itemService.queuePriceLookup(10);
+		itemService.queuePriceLookup(12);
+		itemService.queuePriceLookup(13);
+
+		release.countDown();
+		waitFor(() -> itemService.getLookupScheduler().getCompleted() == 5);
+
+		// never fetched first, then the least recently fetched
+		assertEquals(Arrays.asList(1, 13, 10, 12, 11), requested);
+	}
+
+	@Test
+	public void testLookupRateLimited() throws InterruptedException
+	{
+		ItemService limited = new ItemService(sql2o, upstream(), 4, 10);
+		try
+		{
+			long start = System.nanoTime();
+			for (int i = 0; i < 10; ++i)
+			{
+				limited.queuePriceLookup(i);
+			}
+			waitFor(() -> limited.getLookupScheduler().getCompleted() == 10);
+			long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+			// 10 lookups at 10 per second are spread over at least 900ms
+			assertTrue("completed in " + elapsed + "ms", elapsed >= 800);
+			assertEquals(10, server.getRequestCount());
+		}
+		finally
+		{
+			limited.shutdown();
+		}
+	}
+
+	@Test
+	public void testItemLookupRateLimited() throws InterruptedException
+	{
+		ItemService limited = new ItemService(sql2o, upstream(), 4, 10);
+		try
+		{
+			long start = System.nanoTime();
+			for (int i = 0; i < 4; ++i)
+			{
+				limited.queueItem(i);
+			}
+			waitFor(() -> limited.getLookupScheduler().getCompleted() == 4);
+			long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+			// each lookup fetches the item and its two icons, so the 12
+			// requests at 10 per second are spread over at least 1100ms
+			assertTrue("completed in " + elapsed + "ms", elapsed >= 1000);
+			assertEquals(12, server.getRequestCount());
+		}
+		finally
+		{
+			limited.shutdown();
+		}
+	}
+
+	@Test
+	public void testLookupDropped() throws InterruptedException
+	{
+		LookupScheduler scheduler = itemService.getLookupScheduler();
+
+		block = true;
+		itemService.queuePriceLookup(0);
+		waitFor(() -> requested.size() == 1);
+
+		for (int i = 1; i <= 600; ++i)
+		{
+			itemService.queuePriceLookup(i);
+		}
+
+		assertEquals(512, scheduler.getPending());
+		assertEquals(89, scheduler.getDropped());
+		assertEquals(512, scheduler.getQueued());
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.item;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import org.sql2o.Connection;
+import org.sql2o.Query;
+import org.sql2o.Sql2o;
+
+/**
+ * Item and price tables for item service tests
+ */
+class TestItemData
+{
+	/**
+	 * Create the item tables, h2 can't parse the mysql schema
+	 *
+	 * @param con
+	 */
+	static void createTables(Connection con)
+	{
+		con.createQuery("create table items (id int primary key, name varchar(255) not null, "
+			+ "description varchar(255) not null, type varchar(16) not null, icon blob, icon_large blob, "
+			+ "timestamp timestamp default current_timestamp)")
+			.executeUpdate();
+		con.createQuery("create table prices (item int not null, price int not null, time timestamp not null, "
+			+ "fetched_time timestamp not null, unique key item_time (item, time), key item_fetched_time (item, fetched_time))")
+			.executeUpdate();
+	}
+
+	/**
+	 * Add items with a price for each of the last days, all fetched now
+	 *
+	 * @param sql2o
+	 * @param items
+	 * @param days
+	 * @param now
+	 */
+	static void populate(Sql2o sql2o, int items, int days, Instant now)
+	{
+		try (Connection con = sql2o.beginTransaction())
+		{
+			Query itemQuery = con.createQuery("insert into items (id, name, description, type) values (:id, :name, :description, 'DEFAULT')");
+			Query priceQuery = con.createQuery("insert into prices (item, price, time, fetched_time) values (:item, :price, :time, :fetched_time)");
+
+			for (int i = 0; i < items; ++i)
+			{
+				itemQuery.addParameter("id", i)
+					.addParameter("name", "item " + i)
+					.addParameter("description", "an item")
+					.addToBatch();
+
+				for (int day = 0; day < days; ++day)
+				{
+					priceQuery.addParameter("item", i)
+						.addParameter("price", i * 1000 + day)
+						.addParameter("time", now.minus(days - 1 - day, ChronoUnit.DAYS))
+						.addParameter("fetched_time", now)
+						.addToBatch();
+				}
+			}
+
+			itemQuery.executeBatch();
+			priceQuery.executeBatch();
+			con.commit();
+		}
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import net.runelite.cache.ConfigType;
+import net.runelite.cache.IndexType;
+import net.runelite.cache.fs.ArchiveFiles;
+import net.runelite.cache.fs.Container;
+import net.runelite.cache.fs.FSFile;
+import net.runelite.cache.fs.jagex.CompressionType;
+import net.runelite.cache.util.Djb2;
+import net.runelite.http.service.cache.CacheService;
+import net.runelite.http.service.cache.beans.ArchiveEntry;
+import net.runelite.http.service.cache.beans.CacheEntry;
+import net.runelite.http.service.cache.beans.IndexEntry;
+
+/**
+ * A cache service for service tests which serves an item config archive
+ * with the given number of items, and a landscape archive for every
+ * region. It counts the archives it fetches.
+ */
+public class TestCacheService extends CacheService
+{
+	private final CacheEntry cache = new CacheEntry();
+	private final IndexEntry configIndex = new IndexEntry();
+	private final ArchiveEntry itemArchive = new ArchiveEntry();
+	private final AtomicInteger fetches = new AtomicInteger();
+	private final int[] fileIds;
+	private final byte[] itemArchiveData;
+	private final Map<Integer, Integer> regionsByName = new HashMap<>();
+	private IntFunction<int[]> landscapeKeys = region -> null;
+
+	public TestCacheService(int items) throws Exception
+	{
+		super("http://localhost:9000", "", "");
+
+		cache.setId(1);
+		configIndex.setIndexId(IndexType.CONFIGS.getNumber());
+		itemArchive.setArchiveId(ConfigType.ITEM.getId());
+
+		ArchiveFiles archiveFiles = new ArchiveFiles();
+		fileIds = new int[items];
+		for (int i = 0; i < items; ++i)
+		{
+			FSFile file = new FSFile(i);
+			file.setContents(new byte[]
+			{
+				0
+			});
+			archiveFiles.addFile(file);
+			fileIds[i] = i;
+		}
+
+		Container container = new Container(CompressionType.GZ, -1);
+		container.compress(archiveFiles.saveContents(), null);
+		itemArchiveData = container.data;
+	}
+
+	/**
+	 * Set the xtea keys the landscape of each region is encrypted with
+	 *
+	 * @param landscapeKeys
+	 */
+	public void setLandscapeKeys(IntFunction<int[]> landscapeKeys)
+	{
+		this.landscapeKeys = landscapeKeys;
+	}
+
+	public CacheEntry getCache()
+	{
+		return cache;
+	}
+
+	/**
+	 * Number of archives fetched
+	 */
+	public AtomicInteger getFetches()
+	{
+		return fetches;
+	}
+
+	@Override
+	public CacheEntry findMostRecent()
+	{
+		return cache;
+	}
+
+	@Override
+	public IndexEntry findIndexForCache(CacheEntry cacheEntry, int indexId)
+	{
+		return indexId == configIndex.getIndexId() ? configIndex : null;
+	}
+
+	@Override
+	public ArchiveEntry findArchiveForIndex(IndexEntry indexEntry, int archiveId)
+	{
+		return archiveId == itemArchive.getArchiveId() ? itemArchive : null;
+	}
+
+	@Override
+	public ArchiveEntry findArchiveForTypeAndName(CacheEntry cache, IndexType index, int nameHash)
+	{
+		synchronized (regionsByName)
+		{
+			if (regionsByName.isEmpty())
+			{
+				for (int region = 0; region < 65536; ++region)
+				{
+					regionsByName.put(Djb2.hash("l" + (region >>> 8) + "_" + (region & 0xFF)), region);
+				}
+			}
+		}
+
+		ArchiveEntry archiveEntry = new ArchiveEntry();
+		archiveEntry.setArchiveId(regionsByName.get(nameHash));
+		archiveEntry.setNameHash(nameHash);
+		return archiveEntry;
+	}
+
+	@Override
+	public byte[] getArchive(ArchiveEntry archiveEntry)
+	{
+		fetches.incrementAndGet();
+
+		int region = archiveEntry.getArchiveId();
+		byte[] landscape = new byte[512];
+		Arrays.fill(landscape, (byte) region);
+		try
+		{
+			Container container = new Container(CompressionType.GZ, -1);
+			container.compress(landscape, landscapeKeys.apply(region));
+			return container.data;
+		}
+		catch (IOException ex)
+		{
+			throw new RuntimeException(ex);
+		}
+	}
+
+	@Override
+	public ArchiveFiles getArchiveFiles(ArchiveEntry archiveEntry) throws IOException
+	{
+		fetches.incrementAndGet();
+
+		Container result = Container.decompress(itemArchiveData, null);
+		ArchiveFiles archiveFiles = new ArchiveFiles();
+		for (int fileId : fileIds)
+		{
+			archiveFiles.addFile(new FSFile(fileId));
+		}
+		archiveFiles.loadContents(result.data);
+		return archiveFiles;
+	}
+}
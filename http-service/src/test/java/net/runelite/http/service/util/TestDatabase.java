@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import javax.sql.DataSource;
+import org.h2.jdbcx.JdbcDataSource;
+import org.sql2o.Sql2o;
+import org.sql2o.converters.Converter;
+import org.sql2o.quirks.NoQuirks;
+
+/**
+ * In memory h2 databases for service tests. h2 can't parse the MySQL
+ * schema the services create, so schema statements are ignored and tests
+ * create the tables they need themselves.
+ */
+public class TestDatabase
+{
+	public static Sql2o create(String name)
+	{
+		JdbcDataSource h2 = new JdbcDataSource();
+		h2.setURL("jdbc:h2:mem:" + name + ";MODE=MySQL");
+
+		Map<Class, Converter> converters = new HashMap<>();
+		converters.put(Instant.class, new InstantConverter());
+		return new Sql2o(skipSchema(h2), new NoQuirks(converters));
+	}
+
+	private static DataSource skipSchema(DataSource dataSource)
+	{
+		return (DataSource) Proxy.newProxyInstance(TestDatabase.class.getClassLoader(), new Class[]
+		{
+			DataSource.class
+		}, (proxy, method, args) ->
+		{
+			Object result = invoke(dataSource, method, args);
+			if (!(result instanceof Connection))
+			{
+				return result;
+			}
+
+			Connection connection = (Connection) result;
+			return Proxy.newProxyInstance(TestDatabase.class.getClassLoader(), new Class[]
+			{
+				Connection.class
+			}, (proxy2, method2, args2) ->
+			{
+				if (method2.getName().equals("prepareStatement") && isSchema((String) args2[0]))
+				{
+					args2 = args2.clone();
+					args2[0] = "set @schema = 0";
+				}
+				return invoke(connection, method2, args2);
+			});
+		});
+	}
+
+	private static boolean isSchema(String sql)
+	{
+		return sql.startsWith("CREATE TABLE IF NOT EXISTS `") || sql.startsWith("ALTER TABLE `");
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable
+	{
+		try
+		{
+			return method.invoke(target, args);
+		}
+		catch (InvocationTargetException ex)
+		{
+			throw ex.getCause();
+		}
+	}
+}
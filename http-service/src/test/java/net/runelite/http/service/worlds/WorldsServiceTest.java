@@ -26,6 +26,15 @@ package net.runelite.http.service.worlds;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import net.runelite.http.api.RuneLiteAPI;
 import net.runelite.http.api.worlds.World;
 import net.runelite.http.api.worlds.WorldResult;
 import net.runelite.http.api.worlds.WorldType;
@@ -35,28 +44,41 @@ import okio.Buffer;
 import org.junit.After;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.sql2o.tools.IOUtils;
 
 public class WorldsServiceTest
 {
 
 	private final MockWebServer server = new MockWebServer();
+	private byte[] worldData;
 
 	@Before
 	public void before() throws IOException
 	{
 		InputStream in = WorldsServiceTest.class.getResourceAsStream("worldlist");
-		byte[] worldData = IOUtils.toByteArray(in);
+		worldData = IOUtils.toByteArray(in);
 
+		enqueueWorlds();
+
+		server.start();
+	}
+
+	private void enqueueWorlds()
+	{
 		Buffer buffer = new Buffer();
 		buffer.write(worldData);
 
-		server.enqueue(new MockResponse().setBody(buffer));
-
-		server.start();
+		// slow enough for concurrent requests to overlap the fetch
+		server.enqueue(new MockResponse().setBody(buffer).setBodyDelay(200, TimeUnit.MILLISECONDS));
 	}
 
 	@After
@@ -79,4 +101,90 @@ public class WorldsServiceTest
 		assertTrue(world.getTypes().contains(WorldType.SKILL_TOTAL));
 	}
 
+	@Test
+	public void testSingleFetch() throws Exception
+	{
+		WorldsService worlds = new WorldsService();
+		worlds.setUrl(server.url("/"));
+
+		ExecutorService executor = Executors.newFixedThreadPool(100);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<WorldResult>> results = new ArrayList<>();
+		for (int i = 0; i < 100; ++i)
+		{
+			results.add(executor.submit(() ->
+			{
+				start.await();
+				return worlds.listWorlds();
+			}));
+		}
+
+		start.countDown();
+		WorldResult first = results.get(0).get();
+		for (Future<WorldResult> result : results)
+		{
+			assertSame(first, result.get());
+		}
+		executor.shutdown();
+
+		assertEquals(1, server.getRequestCount());
+	}
+
+	@Test
+	public void testNotModified() throws Exception
+	{
+		WorldsService worlds = new WorldsService();
+		worlds.setUrl(server.url("/"));
+
+		ResponseEntity<byte[]> response = worlds.getWorlds(new ServletWebRequest(new MockHttpServletRequest("GET", "/worlds"), new MockHttpServletResponse()));
+		WorldResult worldResult = RuneLiteAPI.GSON.fromJson(new String(response.getBody(), StandardCharsets.UTF_8), WorldResult.class);
+		assertEquals(82, worldResult.getWorlds().size());
+
+		String etag = response.getHeaders().getETag();
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/worlds");
+		request.addHeader("If-None-Match", etag);
+		MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+		assertNull(worlds.getWorlds(new ServletWebRequest(request, servletResponse)));
+		assertEquals(304, servletResponse.getStatus());
+		assertEquals(1, server.getRequestCount());
+	}
+
+	@Test
+	public void testRefreshAhead() throws Exception
+	{
+		WorldsService worlds = new WorldsService();
+		worlds.setUrl(server.url("/"));
+		worlds.setTtl(1000);
+
+		WorldResult first = worlds.listWorlds();
+		enqueueWorlds();
+
+		// near expiry the cached list is returned while a new one is fetched
+		Thread.sleep(800);
+		assertSame(first, worlds.listWorlds());
+
+		long end = System.currentTimeMillis() + 5000;
+		while (worlds.listWorlds() == first)
+		{
+			assertTrue(System.currentTimeMillis() < end);
+			Thread.sleep(10);
+		}
+		assertEquals(2, server.getRequestCount());
+	}
+
+	@Test
+	public void testExpiredOnFailure() throws Exception
+	{
+		WorldsService worlds = new WorldsService();
+		worlds.setUrl(server.url("/"));
+		worlds.setTtl(100);
+
+		WorldResult first = worlds.listWorlds();
+		server.enqueue(new MockResponse().setResponseCode(500));
+
+		// an expired list is still used if it can't be refreshed
+		Thread.sleep(150);
+		assertSame(first, worlds.listWorlds());
+		assertEquals(2, server.getRequestCount());
+	}
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.xp;
+
+import net.runelite.http.api.hiscore.HiscoreResult;
+import net.runelite.http.api.hiscore.Skill;
+import net.runelite.http.service.hiscore.HiscoreResultBuilder;
+import org.sql2o.Connection;
+
+/**
+ * Player and xp tables, and hiscore results, for xp tracker tests
+ */
+class TestXpData
+{
+	/**
+	 * Create the xp tables, h2 can't parse the mysql schema
+	 *
+	 * @param con
+	 */
+	static void createTables(Connection con)
+	{
+		con.createQuery("create table player (id int not null auto_increment primary key, name varchar(32) not null, "
+			+ "tracked_since timestamp not null default current_timestamp, unique key name (name))")
+			.executeUpdate();
+		con.createQuery("create table xp (id int not null auto_increment primary key, time timestamp not null default current_timestamp, "
+			+ "player int not null, attack_xp int not null, defence_xp int not null, strength_xp int not null, hitpoints_xp int not null, ranged_xp int not null, prayer_xp int not null, magic_xp int not null, cooking_xp int not null, woodcutting_xp int not null, fletching_xp int not null, fishing_xp int not null, firemaking_xp int not null, crafting_xp int not null, smithing_xp int not null, mining_xp int not null, herblore_xp int not null, agility_xp int not null, thieving_xp int not null, slayer_xp int not null, farming_xp int not null, runecraft_xp int not null, hunter_xp int not null, construction_xp int not null, attack_rank int not null, defence_rank int not null, strength_rank int not null, hitpoints_rank int not null, ranged_rank int not null, prayer_rank int not null, magic_rank int not null, cooking_rank int not null, woodcutting_rank int not null, fletching_rank int not null, fishing_rank int not null, firemaking_rank int not null, crafting_rank int not null, smithing_rank int not null, mining_rank int not null, herblore_rank int not null, agility_rank int not null, thieving_rank int not null, slayer_rank int not null, farming_rank int not null, runecraft_rank int not null, hunter_rank int not null, construction_rank int not null, overall_rank int not null, unique key player_time (player, time))")
+			.executeUpdate();
+	}
+
+	/**
+	 * A hiscore result with the same xp in every skill
+	 *
+	 * @param username
+	 * @param xp
+	 * @return
+	 */
+	static HiscoreResult result(String username, int xp)
+	{
+		HiscoreResultBuilder builder = new HiscoreResultBuilder();
+		builder.setPlayer(username);
+		for (int i = 0; i < 33; ++i)
+		{
+			builder.setNextSkill(new Skill(i + 1, 1, xp));
+		}
+		return builder.build();
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.xp;
+
+import static net.runelite.http.service.xp.TestXpData.result;
+import net.runelite.http.service.hiscore.HiscoreService;
+import net.runelite.http.service.util.TestDatabase;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sql2o.Connection;
+import org.sql2o.Sql2o;
+
+/**
+ * Compares writing each xp update as it is made against writing the
+ * updates in batches, as the scheduled flush does.
+ */
+public class XpTrackerServiceBenchmark
+{
+	private static final Logger logger = LoggerFactory.getLogger(XpTrackerServiceBenchmark.class);
+
+	private static final int PLAYERS = 2000;
+	private static final int UPDATES = 10;
+
+	@Test
+	public void benchmark()
+	{
+		Sql2o sql2o = TestDatabase.create("xp-benchmark");
+
+		// keep the in memory database open between connections
+		try (Connection keepAlive = sql2o.open())
+		{
+			TestXpData.createTables(keepAlive);
+
+			XpTrackerService xpTrackerService = new XpTrackerService(sql2o, new HiscoreService());
+
+			// writing each update as it is made
+			long start = System.nanoTime();
+			for (int u = 0; u < UPDATES; ++u)
+			{
+				for (int p = 0; p < PLAYERS; ++p)
+				{
+					xpTrackerService.update("single" + p, result("single" + p, u));
+					xpTrackerService.flush();
+				}
+			}
+			long single = System.nanoTime() - start;
+
+			// writing batches of updates, flushed as they would be on the schedule
+			start = System.nanoTime();
+			for (int u = 0; u < UPDATES; ++u)
+			{
+				for (int p = 0; p < PLAYERS; ++p)
+				{
+					xpTrackerService.update("batch" + p, result("batch" + p, u));
+				}
+				xpTrackerService.flush();
+			}
+			long batched = System.nanoTime() - start;
+
+			assertEquals(PLAYERS * UPDATES * 2, keepAlive.createQuery("select count(*) from xp").executeScalar(Integer.class).intValue());
+
+			int total = PLAYERS * UPDATES;
+			logger.info("Single row writes: {} updates/s", total * 1_000_000_000L / single);
+			logger.info("Batched writes: {} updates/s", total * 1_000_000_000L / batched);
+
+			xpTrackerService.shutdown();
+			keepAlive.createQuery("drop all objects").executeUpdate();
+		}
+	}
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.xp;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.runelite.http.api.hiscore.HiscoreEndpoint;
+import net.runelite.http.api.hiscore.Skill;
+import net.runelite.http.api.xp.XpData;
+import net.runelite.http.service.hiscore.HiscoreResultBuilder;
+import net.runelite.http.service.hiscore.HiscoreService;
+import net.runelite.http.service.util.TestDatabase;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Before;
+import org.junit.Test;
+import org.sql2o.Connection;
+import org.sql2o.Sql2o;
+
+public class XpTrackerServiceTest
+{
+	private Sql2o sql2o;
+	private Connection keepAlive;
+	private XpTrackerService xpTrackerService;
+
+	@Before
+	public void before()
+	{
+		sql2o = TestDatabase.create("xp");
+		// keep the in memory database open between connections
+		keepAlive = sql2o.open();
+		TestXpData.createTables(keepAlive);
+
+		xpTrackerService = new XpTrackerService(sql2o, new HiscoreService());
+	}
+
+	@After
+	public void after()
+	{
+		keepAlive.createQuery("drop all objects").executeUpdate();
+		keepAlive.close();
+	}
+
+	private int rows()
+	{
+		return keepAlive.createQuery("select count(*) from xp").executeScalar(Integer.class);
+	}
+
+	@Test
+	public void testUpdate()
+	{
+		Instant before = Instant.now();
+
+		xpTrackerService.update("zezima", TestXpData.result("zezima", 100));
+		xpTrackerService.update("zezima", TestXpData.result("zezima", 100));
+		// not written until flushed
+		assertEquals(0, rows());
+		assertEquals(100, xpTrackerService.findXpAtTime("zezima", Instant.now()).getAttack_xp());
+
+		xpTrackerService.flush();
+		assertEquals(1, rows());
+
+		// identical snapshots are dropped, and only the last of a player's
+		// pending updates is written
+		xpTrackerService.update("zezima", TestXpData.result("zezima", 100));
+		xpTrackerService.update("zezima", TestXpData.result("zezima", 200));
+		xpTrackerService.update("zezima", TestXpData.result("zezima", 300));
+		xpTrackerService.flush();
+		assertEquals(2, rows());
+
+		XpData xp = xpTrackerService.findXpAtTime("zezima", Instant.now());
+		assertEquals(300, xp.getConstruction_xp());
+		assertEquals(1, xp.getOverall_rank());
+		assertNull(xpTrackerService.findXpAtTime("zezima", before.minusSeconds(60)));
+	}
+
+	@Test
+	public void testUpdateAfterRestart()
+	{
+		xpTrackerService.update("zezima", TestXpData.result("zezima", 100));
+		xpTrackerService.flush();
+
+		// without the previous snapshot in memory it is compared when written
+		XpTrackerService restarted = new XpTrackerService(sql2o, new HiscoreService());
+		restarted.update("zezima", TestXpData.result("zezima", 100));
+		restarted.flush();
+		assertEquals(1, rows());
+		assertEquals(100, restarted.findXpAtTime("zezima", Instant.now()).getAttack_xp());
+	}
+
+	@Test
+	public void testFlushFailing()
+	{
+		xpTrackerService.update("zezima", TestXpData.result("zezima", 100));
+		xpTrackerService.flush();
+
+		keepAlive.createQuery("alter table player rename to player_down").executeUpdate();
+
+		xpTrackerService.update("zezima", TestXpData.result("zezima", 200));
+		xpTrackerService.update("lynx titan", TestXpData.result("lynx titan", 100));
+		xpTrackerService.flush();
+
+		// the updates are kept until they can be written
+		keepAlive.createQuery("alter table player_down rename to player").executeUpdate();
+		assertEquals(1, rows());
+		xpTrackerService.flush();
+
+		assertEquals(3, rows());
+		assertEquals(200, xpTrackerService.findXpAtTime("zezima", Instant.now()).getAttack_xp());
+		assertEquals(100, xpTrackerService.findXpAtTime("lynx titan", Instant.now()).getAttack_xp());
+	}
+
+	@Test
+	public void testInsertFailing()
+	{
+		xpTrackerService.update("zezima", TestXpData.result("zezima", 100));
+		xpTrackerService.update("lynx titan", TestXpData.result("lynx titan", 100));
+		xpTrackerService.flush();
+
+		keepAlive.createQuery("alter table xp rename to xp_down").executeUpdate();
+
+		xpTrackerService.update("zezima", TestXpData.result("zezima", 200));
+		xpTrackerService.update("lynx titan", TestXpData.result("lynx titan", 200));
+		xpTrackerService.flush();
+
+		// the rows are not at fault, so none are dropped
+		keepAlive.createQuery("alter table xp_down rename to xp").executeUpdate();
+		assertEquals(2, rows());
+		xpTrackerService.flush();
+
+		assertEquals(4, rows());
+		assertEquals(200, xpTrackerService.findXpAtTime("zezima", Instant.now()).getAttack_xp());
+		assertEquals(200, xpTrackerService.findXpAtTime("lynx titan", Instant.now()).getAttack_xp());
+	}
+
+	@Test
+	public void testRowRejected()
+	{
+		keepAlive.createQuery("alter table xp add constraint attack_xp check (attack_xp >= 0)").executeUpdate();
+
+		xpTrackerService.update("zezima", TestXpData.result("zezima", 100));
+		xpTrackerService.update("bad", TestXpData.result("bad", -1));
+		xpTrackerService.update("lynx titan", TestXpData.result("lynx titan", 100));
+		xpTrackerService.flush();
+
+		// only the rejected row is dropped, and it isn't retried
+		assertEquals(2, rows());
+		assertNull(xpTrackerService.findXpAtTime("bad", Instant.now()));
+		xpTrackerService.flush();
+		assertEquals(2, rows());
+	}
+
+	@Test
+	public void testUpdateReusesLookup() throws Exception
+	{
+		AtomicInteger hiscoreRequests = new AtomicInteger();
+		HiscoreService hiscoreService = new HiscoreService()
+		{
+			@Override
+			public HiscoreResultBuilder lookupUsername(String username, HiscoreEndpoint endpoint)
+			{
+				hiscoreRequests.incrementAndGet();
+
+				HiscoreResultBuilder builder = new HiscoreResultBuilder();
+				builder.setPlayer(username);
+				for (int i = 0; i < 33; ++i)
+				{
+					builder.setNextSkill(new Skill(i + 1, 1, 100));
+				}
+				return builder;
+			}
+		};
+		XpTrackerService xpTrackerService = new XpTrackerService(sql2o, hiscoreService);
+
+		// a player looked up on the hiscores is then updated in the xp tracker
+		hiscoreService.lookup("zezima", HiscoreEndpoint.NORMAL);
+		xpTrackerService.update("zezima");
+		assertEquals(1, hiscoreRequests.get());
+
+		xpTrackerService.flush();
+		assertEquals(1, rows());
+		assertEquals(100, xpTrackerService.findXpAtTime("zezima", Instant.now()).getAttack_xp());
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.xtea;
+
+import net.runelite.http.service.util.TestCacheService;
+import net.runelite.http.service.util.TestDatabase;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.sql2o.Connection;
+import org.sql2o.Sql2o;
+
+/**
+ * Measures submitting a large set of new keys, submitting them again, and
+ * getting the key table before and after it is cached.
+ */
+public class XteaServiceBenchmark
+{
+	private static final Logger logger = LoggerFactory.getLogger(XteaServiceBenchmark.class);
+
+	private static final int REGIONS = 1000;
+	private static final int GETS = 100;
+
+	@Test
+	public void benchmark() throws Exception
+	{
+		Sql2o sql2o = TestDatabase.create("xtea-benchmark");
+
+		// keep the in memory database open between connections
+		try (Connection keepAlive = sql2o.open())
+		{
+			keepAlive.createQuery("create table xtea (id int auto_increment primary key, region int not null, "
+				+ "time timestamp not null default current_timestamp, rev int not null, "
+				+ "key1 int not null, key2 int not null, key3 int not null, key4 int not null)")
+				.executeUpdate();
+
+			TestCacheService cacheService = new TestCacheService(0);
+			cacheService.setLandscapeKeys(XteaServiceTest::keysFor);
+			XteaService xteaService = new XteaService(sql2o, cacheService);
+
+			long start = System.nanoTime();
+			xteaService.submit(XteaServiceTest.request(10000, 10000 + REGIONS, true));
+			long submit = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			xteaService.submit(XteaServiceTest.request(10000, 10000 + REGIONS, true));
+			long resubmit = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			get(xteaService);
+			long firstGet = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < GETS; ++i)
+			{
+				get(xteaService);
+			}
+			long get = (System.nanoTime() - start) / GETS;
+
+			logger.info("{} keys: submit {} ms ({} archive fetches), resubmit {} ms, first get {} us, get {} us",
+				REGIONS, submit / 1_000_000L, cacheService.getFetches().get(), resubmit / 1_000_000L,
+				firstGet / 1_000L, get / 1_000L);
+
+			keepAlive.createQuery("drop all objects").executeUpdate();
+		}
+	}
+
+	private static void get(XteaService xteaService)
+	{
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/xtea");
+		xteaService.get(new ServletWebRequest(request, new MockHttpServletResponse()));
+	}
+}
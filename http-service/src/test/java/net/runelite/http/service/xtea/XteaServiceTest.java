@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.xtea;
+
+import net.runelite.http.api.RuneLiteAPI;
+import net.runelite.http.api.xtea.XteaKey;
+import net.runelite.http.api.xtea.XteaRequest;
+import net.runelite.http.service.util.TestCacheService;
+import net.runelite.http.service.util.TestDatabase;
+import org.junit.After;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.sql2o.Connection;
+import org.sql2o.Sql2o;
+
+public class XteaServiceTest
+{
+	private Sql2o sql2o;
+	private Connection keepAlive;
+	private TestCacheService cacheService;
+	private XteaService xteaService;
+
+	@Before
+	public void before() throws Exception
+	{
+		sql2o = TestDatabase.create("xtea");
+		// keep the in memory database open between connections
+		keepAlive = sql2o.open();
+		keepAlive.createQuery("create table xtea (id int auto_increment primary key, region int not null, "
+			+ "time timestamp not null default current_timestamp, rev int not null, "
+			+ "key1 int not null, key2 int not null, key3 int not null, key4 int not null)")
+			.executeUpdate();
+
+		cacheService = new TestCacheService(0);
+		cacheService.setLandscapeKeys(XteaServiceTest::keysFor);
+		xteaService = new XteaService(sql2o, cacheService);
+	}
+
+	@After
+	public void after()
+	{
+		keepAlive.createQuery("drop all objects").executeUpdate();
+		keepAlive.close();
+	}
+
+	static int[] keysFor(int region)
+	{
+		return new int[]
+		{
+			region, region * 3, region * 5, region * 7
+		};
+	}
+
+	static XteaRequest request(int from, int to, boolean valid)
+	{
+		XteaRequest request = new XteaRequest();
+		request.setRevision(165);
+		for (int region = from; region < to; ++region)
+		{
+			XteaKey key = new XteaKey();
+			key.setRegion(region);
+			key.setKeys(valid ? keysFor(region) : keysFor(region + 1));
+			request.addKey(key);
+		}
+		return request;
+	}
+
+	private ResponseEntity<byte[]> get(String ifNoneMatch)
+	{
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/xtea");
+		if (ifNoneMatch != null)
+		{
+			request.addHeader("If-None-Match", ifNoneMatch);
+		}
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		ResponseEntity<byte[]> entity = xteaService.get(new ServletWebRequest(request, response));
+		if (entity == null)
+		{
+			assertEquals(HttpStatus.NOT_MODIFIED.value(), response.getStatus());
+		}
+		return entity;
+	}
+
+	@Test
+	public void testSubmit()
+	{
+		xteaService.submit(request(12850, 12853, true));
+		xteaService.submit(request(12853, 12854, false));
+
+		assertArrayEquals(keysFor(12851), xteaService.getRegion(12851).getKeys());
+
+		ResponseEntity<byte[]> response = get(null);
+		XteaKey[] keys = RuneLiteAPI.GSON.fromJson(new String(response.getBody()), XteaKey[].class);
+		assertEquals(3, keys.length);
+		assertEquals(12850, keys[0].getRegion());
+		assertArrayEquals(keysFor(12852), keys[2].getKeys());
+
+		// unchanged keys are not modified, and keep their etag
+		String etag = response.getHeaders().getETag();
+		assertNotNull(etag);
+		assertNull(get(etag));
+		assertSame(response.getBody(), get(null).getBody());
+
+		xteaService.submit(request(12860, 12861, true));
+		assertEquals(4, RuneLiteAPI.GSON.fromJson(new String(get(etag).getBody()), XteaKey[].class).length);
+
+		// the key table is loaded from the database on startup
+		XteaService restarted = new XteaService(sql2o, cacheService);
+		assertArrayEquals(keysFor(12860), restarted.getRegion(12860).getKeys());
+	}
+
+	@Test
+	public void testValidationCached()
+	{
+		xteaService.submit(request(12850, 12860, true));
+		assertEquals(10, cacheService.getFetches().get());
+
+		// known keys are not validated again
+		xteaService.submit(request(12850, 12860, true));
+		assertEquals(10, cacheService.getFetches().get());
+
+		// neither are keys which failed validation
+		xteaService.submit(request(12860, 12870, false));
+		xteaService.submit(request(12860, 12870, false));
+		assertEquals(20, cacheService.getFetches().get());
+
+		assertEquals(10, keepAlive.createQuery("select count(*) from xtea").executeScalar(Integer.class).intValue());
+	}
+}
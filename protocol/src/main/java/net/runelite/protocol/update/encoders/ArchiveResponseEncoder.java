@@ -40,47 +40,65 @@ public class ArchiveResponseEncoder extends MessageToByteEncoder<ArchiveResponse
 
 	@Override
 	protected void encode(ChannelHandlerContext ctx, ArchiveResponsePacket archiveResponse, ByteBuf out) throws Exception
+	{
+		int pos = out.readableBytes();
+
+		encode(archiveResponse.getIndex(), archiveResponse.getArchive(),
+			Unpooled.wrappedBuffer(archiveResponse.getData()), out);
+
+		int size = out.readableBytes() - pos;
+		logger.debug("Wrote index {} archive {} (size {}) in {} bytes",
+			archiveResponse.getIndex(), archiveResponse.getArchive(),
+			archiveResponse.getData().length, size);
+	}
+
+	/**
+	 * Encode an archive response, splitting the archive data into chunks
+	 *
+	 * @param index index id
+	 * @param archive archive id
+	 * @param file compressed archive data, starting with the compression
+	 * type and length
+	 * @param out buffer to write to
+	 */
+	public static void encode(int index, int archive, ByteBuf file, ByteBuf out)
 	{
 		// archive file header
 		// 1 byte index
 		// 2 byte archive
-		out.writeByte(archiveResponse.getIndex());
-		out.writeShort(archiveResponse.getArchive());
-
-		int pos = out.readableBytes();
+		out.writeByte(index);
+		out.writeShort(archive);
 
 		// next is the compressed data which starts with compression
 		// type and length
-		ByteBuf file = Unpooled.wrappedBuffer(archiveResponse.getData());
 		// - 3 for the header
 		int chunkSize = Math.min(file.readableBytes(), CHUNK_SIZE - 3);
 
-		writeChunk(file.readBytes(chunkSize), out);
+		out.writeBytes(file, chunkSize);
 
 		while (file.isReadable())
 		{
 			out.writeByte(0xff);
 
 			chunkSize = Math.min(file.readableBytes(), CHUNK_SIZE - 1);
-			writeChunk(file.readBytes(chunkSize), out);
+			out.writeBytes(file, chunkSize);
 		}
-
-		int size = out.readableBytes() - pos;
-		logger.debug("Wrote index {} archive {} (size {}) in {} bytes",
-			archiveResponse.getIndex(), archiveResponse.getArchive(),
-			archiveResponse.getData().length, size);
 	}
 
-	private void writeChunk(ByteBuf chunk, ByteBuf out)
+	/**
+	 * Compute the size of an encoded archive response
+	 *
+	 * @param length length of the compressed archive data
+	 * @return
+	 */
+	public static int getEncodedLength(int length)
 	{
-		try
-		{
-			out.writeBytes(chunk);
-		}
-		finally
+		int markers = 0;
+		if (length > CHUNK_SIZE - 3)
 		{
-			chunk.release();
+			markers = (length - (CHUNK_SIZE - 3) + (CHUNK_SIZE - 2)) / (CHUNK_SIZE - 1);
 		}
+		return 3 + length + markers;
 	}
 
 }
@@ -73,4 +73,18 @@ public class ArchiveResponseEncoderTest
 		Assert.assertArrayEquals(data, decompressedData);
 	}
 
+	@Test
+	public void testEncodedLength()
+	{
+		for (int length : new int[]
+		{
+			5, 509, 510, 1020, 1021, 100000
+		})
+		{
+			ByteBuf buf = Unpooled.buffer();
+			ArchiveResponseEncoder.encode(0, 1, Unpooled.wrappedBuffer(new byte[length]), buf);
+			Assert.assertEquals(buf.readableBytes(), ArchiveResponseEncoder.getEncodedLength(length));
+		}
+	}
+
 }